@@ -0,0 +1,56 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import org.broadleafcommerce.cms.common.AssetGenerationRejectedException;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+
+/**
+ * Maintains the local cache of asset derivatives, the files produced by applying named operations (resizing, cropping,
+ * ...) to an asset.
+ */
+public interface StaticAssetDerivativeService {
+
+    /**
+     * Returns {@code cacheFile}, generating it first if it does not exist. Concurrent calls for the same file share a
+     * single generation, and the file only becomes visible once it is complete.
+     *
+     * @param cacheFile the derivative file to return
+     * @param generator produces the content of the derivative
+     * @return the derivative file
+     * @throws AssetGenerationRejectedException if the derivative could not be generated because the service is
+     * saturated
+     * @throws Exception if the generator fails
+     */
+    File getOrCreateDerivative(File cacheFile, Callable<InputStream> generator) throws Exception;
+
+    /**
+     * Records that an existing derivative was served, for the hit rate and for least recently used eviction.
+     */
+    void recordHit(File cacheFile);
+
+    /**
+     * @return the time spent generating derivatives
+     */
+    LatencyHistogram getGenerationTime();
+
+}
@@ -0,0 +1,437 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.common.AssetGenerationRejectedException;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+/**
+ * Default {@link StaticAssetDerivativeService}.
+ * <p>
+ * Generations are keyed by the absolute path of the derivative, so concurrent requests for a derivative that is not
+ * cached yet wait for one generation instead of each decoding and re-encoding the image. The content is written to a
+ * temporary file in the destination directory and atomically renamed into place, so a partially written derivative is
+ * never served.
+ * <p>
+ * By default generations run on the requesting thread. When "asset.server.derivative.maxConcurrentGenerations" is
+ * positive they run on a pool of that many threads with a queue of "asset.server.derivative.queueCapacity"; requests
+ * that find the queue full, or that wait longer than "asset.server.derivative.waitTimeoutMillis", fail with
+ * {@link AssetGenerationRejectedException} rather than piling up behind the image processing.
+ * <p>
+ * When "asset.server.derivative.cache.maxBytes" is positive, derivatives generated or served by this instance are
+ * tracked in least recently used order and the oldest are deleted once their total size exceeds that limit. The path
+ * returned for a derivative is opened for streaming after this service returns, so derivatives used within
+ * "asset.server.derivative.cache.evictionGraceMillis" are never deleted; the total may exceed the limit until they age
+ * out. A stream that is already open keeps reading a deleted file on POSIX file systems, and a derivative that can not
+ * be deleted because it is still open is tracked again and retried on a later eviction.
+ * <p>
+ * Hits and misses are reported to the {@link StatisticsService} under {@link #CACHE_STAT_KEY}, with the time a miss
+ * took to be served, and {@link #getGenerationTime()} records the time spent generating.
+ */
+@Service("blStaticAssetDerivativeService")
+public class StaticAssetDerivativeServiceImpl implements StaticAssetDerivativeService, DisposableBean {
+
+    private static final Log LOG = LogFactory.getLog(StaticAssetDerivativeServiceImpl.class);
+
+    public static final String CACHE_STAT_KEY = "cmsAssetDerivativeCache";
+
+    @Value("${asset.server.derivative.maxConcurrentGenerations:0}")
+    protected int maxConcurrentGenerations = 0;
+
+    @Value("${asset.server.derivative.queueCapacity:100}")
+    protected int queueCapacity = 100;
+
+    @Value("${asset.server.derivative.waitTimeoutMillis:30000}")
+    protected long waitTimeoutMillis = 30000;
+
+    @Value("${asset.server.derivative.cache.maxBytes:0}")
+    protected long maxCacheBytes = 0;
+
+    @Value("${asset.server.derivative.cache.evictionGraceMillis:60000}")
+    protected long evictionGraceMillis = 60000;
+
+    @Resource(name = "blStatisticsService")
+    protected StatisticsService statisticsService;
+
+    protected final ConcurrentMap<String, FutureTask<File>> inFlight = new ConcurrentHashMap<String, FutureTask<File>>();
+    protected final LatencyHistogram generationTime = new LatencyHistogram();
+
+    protected final LinkedHashMap<String, TrackedDerivative> trackedDerivatives =
+            new LinkedHashMap<String, TrackedDerivative>(16, 0.75f, true);
+    protected long trackedBytes = 0;
+
+    protected volatile ThreadPoolExecutor generationExecutor;
+
+    @Override
+    public File getOrCreateDerivative(final File cacheFile, final Callable<InputStream> generator) throws Exception {
+        if (cacheFile.exists()) {
+            recordHit(cacheFile);
+            return cacheFile;
+        }
+
+        long start = System.nanoTime();
+        final String key = cacheFile.getAbsolutePath();
+        FutureTask<File> task = inFlight.get(key);
+        if (task == null) {
+            FutureTask<File> newTask = new FutureTask<File>(new Callable<File>() {
+
+                @Override
+                public File call() throws Exception {
+                    return generate(cacheFile, generator);
+                }
+            }) {
+
+                @Override
+                protected void set(File v) {
+                    // Removed before the outcome is published, so that no waiter sees its own generation in flight
+                    inFlight.remove(key, this);
+                    super.set(v);
+                }
+
+                @Override
+                protected void setException(Throwable t) {
+                    inFlight.remove(key, this);
+                    super.setException(t);
+                }
+
+                @Override
+                protected void done() {
+                    inFlight.remove(key, this);
+                }
+            };
+            task = inFlight.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                startGeneration(newTask);
+            }
+        }
+
+        File derivative = awaitGeneration(cacheFile, task);
+        if (statisticsService != null) {
+            statisticsService.addCacheStat(CACHE_STAT_KEY, false, System.nanoTime() - start);
+        }
+        return derivative;
+    }
+
+    @Override
+    public void recordHit(File cacheFile) {
+        if (statisticsService != null) {
+            statisticsService.addCacheStat(CACHE_STAT_KEY, true);
+        }
+        if (maxCacheBytes > 0) {
+            track(cacheFile);
+        }
+    }
+
+    @Override
+    public LatencyHistogram getGenerationTime() {
+        return generationTime;
+    }
+
+    /**
+     * @return the number of derivatives currently being generated or waiting to be
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the total size of the derivatives tracked for eviction
+     */
+    public long getTrackedBytes() {
+        synchronized (trackedDerivatives) {
+            return trackedBytes;
+        }
+    }
+
+    protected void startGeneration(FutureTask<File> task) {
+        ThreadPoolExecutor executor = getGenerationExecutor();
+        if (executor == null) {
+            task.run();
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Releases any request that already joined this generation
+            task.cancel(false);
+            throw new AssetGenerationRejectedException("The asset derivative generation queue is full", e);
+        }
+    }
+
+    protected File awaitGeneration(File cacheFile, FutureTask<File> task) throws Exception {
+        try {
+            if (waitTimeoutMillis > 0) {
+                return task.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            return task.get();
+        } catch (TimeoutException e) {
+            throw new AssetGenerationRejectedException("Timed out waiting for the generation of "
+                    + cacheFile.getName(), e);
+        } catch (CancellationException e) {
+            throw new AssetGenerationRejectedException("The generation of " + cacheFile.getName() + " was rejected", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    protected File generate(File cacheFile, Callable<InputStream> generator) throws Exception {
+        // Another instance may have written the file since the caller looked for it
+        if (cacheFile.exists()) {
+            return cacheFile;
+        }
+        long start = System.nanoTime();
+        InputStream is = generator.call();
+        try {
+            writeAtomically(is, cacheFile);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+        generationTime.record(System.nanoTime() - start);
+        if (maxCacheBytes > 0) {
+            track(cacheFile);
+        }
+        return cacheFile;
+    }
+
+    /**
+     * Writes the stream to a temporary file next to {@code target} and renames it to {@code target}, so that readers
+     * either find no file or the complete one.
+     */
+    protected void writeAtomically(InputStream is, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("Unable to create middle directories for file: " + target.getAbsolutePath());
+        }
+        File tmpFile = File.createTempFile("." + target.getName() + ".", ".tmp", parent);
+        try {
+            OutputStream os = new FileOutputStream(tmpFile);
+            try {
+                IOUtils.copy(is, os);
+            } finally {
+                os.close();
+            }
+            try {
+                Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete() && LOG.isDebugEnabled()) {
+                LOG.debug("Unable to delete temporary file " + tmpFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Marks the derivative as most recently used and deletes the least recently used derivatives while the tracked
+     * total exceeds "asset.server.derivative.cache.maxBytes". The derivative being tracked, and derivatives used within
+     * "asset.server.derivative.cache.evictionGraceMillis", are never deleted.
+     */
+    protected void track(File cacheFile) {
+        String path = cacheFile.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, TrackedDerivative>> evicted = new ArrayList<Map.Entry<String, TrackedDerivative>>();
+        synchronized (trackedDerivatives) {
+            TrackedDerivative tracked = trackedDerivatives.get(path);
+            if (tracked == null) {
+                tracked = new TrackedDerivative(cacheFile.length());
+                trackedDerivatives.put(path, tracked);
+                trackedBytes += tracked.length;
+            }
+            tracked.lastUsed = now;
+            Iterator<Map.Entry<String, TrackedDerivative>> itr = trackedDerivatives.entrySet().iterator();
+            while (trackedBytes > maxCacheBytes && itr.hasNext()) {
+                Map.Entry<String, TrackedDerivative> eldest = itr.next();
+                if (now - eldest.getValue().lastUsed < evictionGraceMillis) {
+                    // Entries are in access order, so every remaining one is within the grace period too
+                    break;
+                }
+                if (!eldest.getKey().equals(path)) {
+                    trackedBytes -= eldest.getValue().length;
+                    evicted.add(eldest);
+                    itr.remove();
+                }
+            }
+        }
+        for (Map.Entry<String, TrackedDerivative> entry : evicted) {
+            File file = new File(entry.getKey());
+            if (file.exists() && !file.delete()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Unable to evict asset derivative " + entry.getKey() + ", it will be retried later");
+                }
+                retrack(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Tracks a derivative that could not be deleted again, as least recently used, so that a later eviction retries it
+     */
+    protected void retrack(String path, TrackedDerivative tracked) {
+        synchronized (trackedDerivatives) {
+            if (!trackedDerivatives.containsKey(path)) {
+                LinkedHashMap<String, TrackedDerivative> newer = new LinkedHashMap<String, TrackedDerivative>(
+                        trackedDerivatives);
+                trackedDerivatives.clear();
+                trackedDerivatives.put(path, tracked);
+                trackedDerivatives.putAll(newer);
+                trackedBytes += tracked.length;
+            }
+        }
+    }
+
+    protected ThreadPoolExecutor getGenerationExecutor() {
+        if (maxConcurrentGenerations <= 0) {
+            return null;
+        }
+        if (generationExecutor == null) {
+            synchronized (this) {
+                if (generationExecutor == null) {
+                    final AtomicInteger threadNumber = new AtomicInteger();
+                    generationExecutor = new ThreadPoolExecutor(maxConcurrentGenerations, maxConcurrentGenerations,
+                            60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)),
+                            new ThreadFactory() {
+
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread thread = new Thread(r, "asset-derivative-" + threadNumber.incrementAndGet());
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            });
+                }
+            }
+        }
+        return generationExecutor;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (generationExecutor != null) {
+            generationExecutor.shutdownNow();
+        }
+    }
+
+    public int getMaxConcurrentGenerations() {
+        return maxConcurrentGenerations;
+    }
+
+    public void setMaxConcurrentGenerations(int maxConcurrentGenerations) {
+        this.maxConcurrentGenerations = maxConcurrentGenerations;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getWaitTimeoutMillis() {
+        return waitTimeoutMillis;
+    }
+
+    public void setWaitTimeoutMillis(long waitTimeoutMillis) {
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    public long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
+    public void setMaxCacheBytes(long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    public long getEvictionGraceMillis() {
+        return evictionGraceMillis;
+    }
+
+    public void setEvictionGraceMillis(long evictionGraceMillis) {
+        this.evictionGraceMillis = evictionGraceMillis;
+    }
+
+    public StatisticsService getStatisticsService() {
+        return statisticsService;
+    }
+
+    public void setStatisticsService(StatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
+    }
+
+    /**
+     * The size of a tracked derivative and the last time it was generated or served
+     */
+    protected static class TrackedDerivative {
+
+        protected final long length;
+        protected long lastUsed;
+
+        protected TrackedDerivative(long length) {
+            this.length = length;
+        }
+    }
+}
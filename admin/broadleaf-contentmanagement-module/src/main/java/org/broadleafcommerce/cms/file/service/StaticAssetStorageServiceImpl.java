@@ -59,6 +59,7 @@ import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 
@@ -99,6 +100,9 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
     @Resource(name="blStreamingTransactionCapableUtil")
     protected StreamingTransactionCapableUtil transUtil;
 
+    @Resource(name="blStaticAssetDerivativeService")
+    protected StaticAssetDerivativeService derivativeService;
+
     protected StaticAsset findStaticAsset(String fullUrl) {
         StaticAsset staticAsset = staticAssetService.findStaticAssetByFullUrl(fullUrl);
 
@@ -219,6 +223,9 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
         // Look for a shared file (this represents a file that was based on a file originally in the classpath.
         File cacheFile = getFileFromLocalRepository(cachedFileName);
         if (cacheFile.exists()) {
+            if (!convertedParameters.isEmpty()) {
+                derivativeService.recordHit(cacheFile);
+            }
             return buildModel(cacheFile.getAbsolutePath(), mimeType);
         }
         
@@ -239,14 +246,8 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
         if (convertedParameters.isEmpty()) {
             return buildModel(baseLocalFile.getAbsolutePath(), mimeType);
         } else {
-            FileInputStream assetStream = new FileInputStream(baseLocalFile);
-            BufferedInputStream original = new BufferedInputStream(assetStream);
-            original.mark(0);                                    
-            
-            Operation[] operations = artifactService.buildOperations(convertedParameters, original, staticAsset.getMimeType());
-            InputStream converted = artifactService.convert(original, operations, staticAsset.getMimeType());
-            
-            createLocalFileFromInputStream(converted, cacheFile);
+            cacheFile = derivativeService.getOrCreateDerivative(cacheFile,
+                    buildDerivativeGenerator(staticAsset, baseLocalFile, convertedParameters));
             if ("image/gif".equals(mimeType)) {
                 mimeType = "image/png";
             }
@@ -254,6 +255,26 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
         }
     }
 
+    /**
+     * Builds the generation of a derivative of the given asset, applying the operations described by the parameters to
+     * its base file. It is run by the {@link StaticAssetDerivativeService} at most once per derivative at a time.
+     */
+    protected Callable<InputStream> buildDerivativeGenerator(final StaticAsset staticAsset, final File baseLocalFile,
+            final Map<String, String> convertedParameters) {
+        return new Callable<InputStream>() {
+
+            @Override
+            public InputStream call() throws Exception {
+                FileInputStream assetStream = new FileInputStream(baseLocalFile);
+                BufferedInputStream original = new BufferedInputStream(assetStream);
+                original.mark(0);
+
+                Operation[] operations = artifactService.buildOperations(convertedParameters, original, staticAsset.getMimeType());
+                return artifactService.convert(original, operations, staticAsset.getMimeType());
+            }
+        };
+    }
+
     protected Map<String, String> buildModel(String returnFilePath, String mimeType) {
         Map<String, String> model = new HashMap<String, String>(2);
         model.put("cacheFilePath", returnFilePath);
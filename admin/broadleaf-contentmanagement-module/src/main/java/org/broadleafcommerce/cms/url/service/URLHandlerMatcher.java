@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.url.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.url.domain.URLHandler;
+import org.broadleafcommerce.cms.url.domain.URLHandlerDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Precompiled index of the URL handlers used by {@link URLHandlerServiceImpl#checkForMatches(String)}.
+ * <p>
+ * Every handler is compiled once and filed under the literal text its anchored pattern must start with. Patterns that
+ * are entirely literal (e.g. "^/old-page$") are kept in a map keyed by that text, the rest are kept in a character trie
+ * keyed by their literal prefix (e.g. "^/blogs/(.*)$" under "/blogs/"). A lookup only evaluates the handlers whose prefix
+ * is a prefix of the URI, so its cost depends on how many rules share the URI's leading path rather than on the total
+ * number of rules. Patterns without a usable prefix, such as "(.*)/shirts-tops(.*)" or anything containing an
+ * alternation, sit at the root and are tried for every URI.
+ * <p>
+ * When more than one handler matches, the one added first wins, exactly as with a sequential scan. Instances are built
+ * once and never modified afterwards, so they can be shared between threads once published.
+ */
+public class URLHandlerMatcher {
+
+    private static final Log LOG = LogFactory.getLog(URLHandlerMatcher.class);
+
+    protected static final String REGEX_METACHARS = ".[]{}()*+?^$|";
+    protected static final String OPTIONAL_QUANTIFIERS = "?*{";
+
+    protected static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return o1.order < o2.order ? -1 : (o1.order == o2.order ? 0 : 1);
+        }
+    };
+
+    protected final Map<String, Entry> exactEntries = new HashMap<String, Entry>();
+    protected final Node root = new Node();
+    protected final long createdTime = System.currentTimeMillis();
+    protected int size = 0;
+
+    /**
+     * Adds a handler, which ranks behind every handler added before it.
+     *
+     * @param handler the handler to return when the pattern matches
+     * @param anchoredPattern the incoming URL of the handler, already wrapped with "^" and "$"
+     * @return false if the pattern could not be compiled, in which case the handler is ignored
+     */
+    public boolean addHandler(URLHandler handler, String anchoredPattern) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(anchoredPattern);
+        } catch (PatternSyntaxException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("Error parsing URL Handler (incoming =" + handler.getIncomingURL() + "), outgoing = ( "
+                        + handler.getNewURL() + "), the handler will be ignored");
+            }
+            return false;
+        }
+
+        Entry entry = new Entry(size++, handler, pattern);
+        StringBuilder prefix = new StringBuilder();
+        boolean literal = readLiteralPrefix(anchoredPattern, prefix);
+        if (literal) {
+            String key = prefix.toString();
+            if (!exactEntries.containsKey(key)) {
+                exactEntries.put(key, entry);
+            }
+        } else {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.getOrCreateChild(prefix.charAt(i));
+            }
+            node.entries.add(entry);
+        }
+        return true;
+    }
+
+    /**
+     * @return the first handler whose pattern matches the URI, a {@link URLHandlerDTO} carrying the rewritten URL if
+     * the handler's new URL references groups of the pattern, or null if nothing matches
+     */
+    public URLHandler findMatch(String requestURI) {
+        List<Entry> candidates = new ArrayList<Entry>();
+        Node node = root;
+        int i = 0;
+        while (node != null) {
+            candidates.addAll(node.entries);
+            node = i < requestURI.length() ? node.getChild(requestURI.charAt(i++)) : null;
+        }
+        Entry exact = exactEntries.get(requestURI);
+        if (exact != null) {
+            candidates.add(exact);
+        }
+        if (candidates.size() > 1) {
+            Collections.sort(candidates, ENTRY_ORDER);
+        }
+
+        for (Entry entry : candidates) {
+            URLHandler urlHandler = entry.handler;
+            try {
+                Matcher m = entry.pattern.matcher(requestURI);
+                if (m.find()) {
+                    String newUrl = m.replaceFirst(urlHandler.getNewURL());
+                    if (newUrl.equals(urlHandler.getNewURL())) {
+                        return urlHandler;
+                    } else {
+                        return new URLHandlerDTO(newUrl, urlHandler.getUrlRedirectType());
+                    }
+                }
+            } catch (RuntimeException re) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn("Error parsing URL Handler (incoming =" + urlHandler.getIncomingURL() + "), outgoing = ( "
+                            + urlHandler.getNewURL() + "), " + requestURI);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the number of handlers added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return when this instance was created, in milliseconds since the epoch
+     */
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    /**
+     * Appends to {@code prefix} the literal text every URI matching {@code anchoredPattern} must start with.
+     *
+     * @return true if the whole pattern is literal, meaning it matches that text and nothing else
+     */
+    protected static boolean readLiteralPrefix(String anchoredPattern, StringBuilder prefix) {
+        if (!anchoredPattern.startsWith("^") || containsAlternation(anchoredPattern)) {
+            return false;
+        }
+        int length = anchoredPattern.length();
+        int i = 1;
+        while (i < length) {
+            char c = anchoredPattern.charAt(i);
+            if (c == '\\') {
+                // Escaped punctuation is literal, escaped letters and digits are classes, back references or quotes
+                if (i + 1 < length && !Character.isLetterOrDigit(anchoredPattern.charAt(i + 1))) {
+                    prefix.append(anchoredPattern.charAt(i + 1));
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            if (REGEX_METACHARS.indexOf(c) >= 0) {
+                break;
+            }
+            prefix.append(c);
+            i++;
+        }
+        if (i < length && OPTIONAL_QUANTIFIERS.indexOf(anchoredPattern.charAt(i)) >= 0 && prefix.length() > 0) {
+            // The quantifier applies to the last literal character, which therefore may not be present
+            prefix.setLength(prefix.length() - 1);
+            return false;
+        }
+        return i == length - 1 && anchoredPattern.charAt(i) == '$';
+    }
+
+    /**
+     * An alternation may escape the anchors (e.g. "^/a|/b$"), so patterns containing one are never indexed by prefix.
+     */
+    protected static boolean containsAlternation(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '|') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static class Entry {
+
+        protected final int order;
+        protected final URLHandler handler;
+        protected final Pattern pattern;
+
+        protected Entry(int order, URLHandler handler, Pattern pattern) {
+            this.order = order;
+            this.handler = handler;
+            this.pattern = pattern;
+        }
+    }
+
+    protected static class Node {
+
+        protected final List<Entry> entries = new ArrayList<Entry>(1);
+        protected Map<Character, Node> children;
+
+        protected Node getChild(char c) {
+            return children == null ? null : children.get(c);
+        }
+
+        protected Node getOrCreateChild(char c) {
+            if (children == null) {
+                children = new HashMap<Character, Node>();
+            }
+            Node child = children.get(c);
+            if (child == null) {
+                child = new Node();
+                children.put(c, child);
+            }
+            return child;
+        }
+    }
+}
@@ -26,15 +26,16 @@ import org.broadleafcommerce.cms.url.domain.URLHandler;
 import org.broadleafcommerce.cms.url.domain.URLHandlerDTO;
 import org.broadleafcommerce.common.cache.StatisticsService;
 import org.broadleafcommerce.common.site.domain.Site;
-import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Resource;
 
@@ -61,7 +62,13 @@ public class URLHandlerServiceImpl implements URLHandlerService {
     @Resource(name = "blStatisticsService")
     protected StatisticsService statisticsService;
 
-    protected Map<String, Pattern> urlPatternMap = new EfficientLRUMap<String, Pattern>(2000);
+    @Value("${url.handler.matcher.refresh.seconds:60}")
+    protected int matcherRefreshSeconds = 60;
+
+    /**
+     * Production sandbox matchers keyed by {@link #buildUrlHandlerMatcherKey(Site)}
+     */
+    protected final ConcurrentMap<String, URLHandlerMatcher> urlHandlerMatchers = new ConcurrentHashMap<String, URLHandlerMatcher>();
 
     /**
      * Checks the passed in URL to determine if there is a matching URLHandler.
@@ -140,44 +147,79 @@ public class URLHandlerServiceImpl implements URLHandlerService {
     @Override
     @Transactional("blTransactionManager")
     public URLHandler saveURLHandler(URLHandler handler) {
-        return urlHandlerDao.saveURLHandler(handler);
+        URLHandler saved = urlHandlerDao.saveURLHandler(handler);
+        invalidateUrlHandlerMatcher();
+        return saved;
     }
 
     protected URLHandler checkForMatches(String requestURI) {
-        URLHandler currentHandler = null;
-        try {
-            List<URLHandler> urlHandlers = findAllURLHandlers();
-            for (URLHandler urlHandler : urlHandlers) {
-                currentHandler = urlHandler;
-                String incomingUrl = wrapStringsWithAnchors(currentHandler.getIncomingURL());
-
-                Pattern p = urlPatternMap.get(incomingUrl);
-                if (p == null) {
-                    p = Pattern.compile(incomingUrl);
-                    urlPatternMap.put(incomingUrl, p);
-                }
-                Matcher m = p.matcher(requestURI);
-                if (m.find()) {
-                    String newUrl = m.replaceFirst(urlHandler.getNewURL());
-                    if (newUrl.equals(urlHandler.getNewURL())) {
-                        return urlHandler;
-                    } else {
-                        return new URLHandlerDTO(newUrl, urlHandler.getUrlRedirectType());
-                    }
-                }
+        return getUrlHandlerMatcher().findMatch(requestURI);
+    }
 
-            }
-        } catch (RuntimeException re) {
-            if (currentHandler != null) {
-                // We don't want an invalid regex to cause tons of logging                
-                if (LOG.isWarnEnabled()) {
-                    LOG.warn("Error parsing URL Handler (incoming =" + currentHandler.getIncomingURL() + "), outgoing = ( "
-                            + currentHandler.getNewURL() + "), " + requestURI);
+    /**
+     * Returns the {@link URLHandlerMatcher} built from {@link #findAllURLHandlers()} for the current site, rebuilding it
+     * when it has been invalidated by {@link #saveURLHandler(URLHandler)} or is older than
+     * "url.handler.matcher.refresh.seconds". Handlers changed through the admin are picked up by the periodic rebuild.
+     * <p>
+     * Matchers are only kept for the production sandbox, like the URL handler cache. In any other sandbox the handlers
+     * visible to that sandbox are read and matched on every call.
+     */
+    protected URLHandlerMatcher getUrlHandlerMatcher() {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (context != null && !context.isProductionSandBox()) {
+            return buildUrlHandlerMatcher(findAllURLHandlers());
+        }
+        String key = buildUrlHandlerMatcherKey(context == null ? null : context.getNonPersistentSite());
+        URLHandlerMatcher matcher = urlHandlerMatchers.get(key);
+        if (matcher == null || isExpired(matcher)) {
+            synchronized (this) {
+                matcher = urlHandlerMatchers.get(key);
+                if (matcher == null || isExpired(matcher)) {
+                    matcher = buildUrlHandlerMatcher(findAllURLHandlers());
+                    urlHandlerMatchers.put(key, matcher);
                 }
             }
         }
+        return matcher;
+    }
 
-        return null;
+    protected String buildUrlHandlerMatcherKey(Site site) {
+        return site == null || site.getId() == null ? "site:none" : "site:" + site.getId();
+    }
+
+    protected URLHandlerMatcher buildUrlHandlerMatcher(List<URLHandler> urlHandlers) {
+        URLHandlerMatcher matcher = new URLHandlerMatcher();
+        for (URLHandler urlHandler : urlHandlers) {
+            if (StringUtils.isNotEmpty(urlHandler.getIncomingURL())) {
+                matcher.addHandler(urlHandler, wrapStringsWithAnchors(urlHandler.getIncomingURL()));
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Built URL handler matcher for " + matcher.size() + " handlers");
+        }
+        return matcher;
+    }
+
+    protected boolean isExpired(URLHandlerMatcher matcher) {
+        return matcherRefreshSeconds > 0
+                && System.currentTimeMillis() - matcher.getCreatedTime() > matcherRefreshSeconds * 1000L;
+    }
+
+    /**
+     * Discards the {@link URLHandlerMatcher} of every site. If a transaction is active they are discarded again once
+     * the transaction commits, so that a lookup made in the meantime cannot leave a matcher built from uncommitted
+     * state.
+     */
+    protected void invalidateUrlHandlerMatcher() {
+        urlHandlerMatchers.clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    urlHandlerMatchers.clear();
+                }
+            });
+        }
     }
 
     @Override
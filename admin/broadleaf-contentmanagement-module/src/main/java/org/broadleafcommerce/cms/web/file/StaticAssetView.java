@@ -25,23 +25,65 @@ import org.springframework.web.servlet.View;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
+ * Streams the cache file described by the model built in
+ * {@link org.broadleafcommerce.cms.file.service.StaticAssetStorageService#getCacheFileModel(String, Map)}
+ * ("cacheFilePath" and "mimeType").
+ * <p>
+ * File content is copied with {@link FileChannel#transferTo(long, long, WritableByteChannel)}. When
+ * {@link #isSendfileEnabled()} is true, content of at least {@link #getSendfileMinimumSize()} bytes is instead handed to
+ * the container through the Tomcat sendfile request attributes, but only when the connector advertises support for
+ * them and neither the request nor the response is wrapped, as Tomcat's DefaultServlet does. A wrapping filter, such
+ * as one compressing or caching the body, would otherwise see an empty body while the container sent the file. Responses
+ * carry a strong ETag built from the cache file name and size; the cache file name already encodes the asset's update
+ * date and manipulation parameters, so it changes whenever the content can. "If-None-Match", "Range" (single and
+ * multipart byte ranges) and "If-Range" are honored.
+ * <p>
+ * When {@link #isPrecompressedVariantsEnabled()} is true, a "cacheFilePath.br" or "cacheFilePath.gz" file next to the
+ * cache file is served instead of the cache file to clients that accept that encoding. These variants are not created
+ * here; they are expected to be produced when assets are deployed. Every response then carries
+ * "Vary: Accept-Encoding", and a variant gets its own ETag built from its encoding, size and modification date.
+ * "Range" is ignored when a variant is served, since the ranges would apply to the encoded content.
+ * <p>
  * Created by jfischer
  */
 public class StaticAssetView implements View {
 
     private static final Log LOG = LogFactory.getLog(StaticAssetView.class);
 
+    protected static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    protected static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    protected static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    protected static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+    protected static final String CONTAINER_REQUEST_CLASS = "org.apache.catalina.connector.RequestFacade";
+    protected static final String CONTAINER_RESPONSE_CLASS = "org.apache.catalina.connector.ResponseFacade";
+    protected static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
+    protected static final String[] PRECOMPRESSED_ENCODINGS = {"br", "gzip"};
+    protected static final int COPY_BUFFER_SIZE = 8192;
+
     protected boolean browserAssetCachingEnabled = true;
     protected long cacheSeconds = 60 * 60 * 24;
+    protected boolean precompressedVariantsEnabled = false;
+    protected boolean sendfileEnabled = false;
+    protected long sendfileMinimumSize = 48 * 1024;
+    protected int maxRanges = 16;
 
     @Override
     public String getContentType() {
@@ -51,18 +93,39 @@ public class StaticAssetView implements View {
     @Override
     public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
         String cacheFilePath = (String) model.get("cacheFilePath");
-        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(cacheFilePath));
+        String mimeType = (String) model.get("mimeType");
+        File cacheFile = new File(cacheFilePath);
         try {
-            String mimeType = (String) model.get("mimeType");
             response.setContentType(mimeType);
+            String encoding = null;
+            File variant = cacheFile;
+            if (precompressedVariantsEnabled) {
+                response.addHeader("Vary", "Accept-Encoding");
+                encoding = resolvePrecompressedEncoding(request, cacheFile);
+                if (encoding != null) {
+                    variant = getPrecompressedVariant(cacheFile, encoding);
+                }
+            }
+            String eTag = buildETag(cacheFile, variant, encoding);
+            response.setHeader("ETag", eTag);
             if (!browserAssetCachingEnabled) {
                 response.setHeader("Cache-Control","no-cache");
                 response.setHeader("Pragma","no-cache");
                 response.setDateHeader ("Expires", 0);
+                if (isNotModified(request, eTag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
             } else {
                 response.setHeader("Cache-Control","public");
                 response.setHeader("Pragma","cache");
-                if (!StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
+                String ifNoneMatch = request.getHeader("If-None-Match");
+                if (!StringUtils.isEmpty(ifNoneMatch)) {
+                    if (isNotModified(request, eTag)) {
+                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        return;
+                    }
+                } else if (!StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
                     long lastModified = request.getDateHeader("If-Modified-Since");
                     Calendar last = Calendar.getInstance();
                     last.setTime(new Date(lastModified));
@@ -72,7 +135,8 @@ public class StaticAssetView implements View {
                         response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
                         return;
                     }
-                } else {
+                }
+                if (StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
                     Calendar check = Calendar.getInstance();
                     check.add(Calendar.SECOND, -1 * new Long(cacheSeconds).intValue());
                     response.setDateHeader ("Last-Modified", check.getTimeInMillis());
@@ -82,19 +146,41 @@ public class StaticAssetView implements View {
                 cal.add(Calendar.SECOND, new Long(year).intValue());
                 response.setDateHeader ("Expires", cal.getTimeInMillis());
             }
-            OutputStream os = response.getOutputStream();
-            boolean eof = false;
-            while (!eof) {
-                int temp = bis.read();
-                if (temp < 0) {
-                    eof = true;
-                } else {
-                    os.write(temp);
+
+            response.setHeader("Accept-Ranges", "bytes");
+            long length = cacheFile.length();
+            String rangeHeader = request.getHeader("Range");
+            List<Range> ranges = null;
+            if (encoding == null && !StringUtils.isEmpty(rangeHeader) && isRangeApplicable(request, eTag)) {
+                ranges = parseRanges(rangeHeader, length);
+                if (ranges != null && ranges.isEmpty()) {
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (ranges != null && ranges.size() > maxRanges) {
+                    ranges = null;
                 }
             }
-            os.flush();
+
+            if (ranges == null) {
+                if (encoding != null) {
+                    response.setHeader("Content-Encoding", encoding);
+                }
+                response.setHeader("Content-Length", String.valueOf(variant.length()));
+                writeFile(request, response, variant, 0, variant.length());
+            } else if (ranges.size() == 1) {
+                Range range = ranges.get(0);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", range.toContentRange(length));
+                response.setHeader("Content-Length", String.valueOf(range.getLength()));
+                writeFile(request, response, cacheFile, range.start, range.getLength());
+            } else {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                writeMultipartRanges(response, cacheFile, mimeType, ranges);
+            }
         } catch (Exception e) {
-            if (e.getCause() instanceof SocketException) {
+            if (e instanceof SocketException || e.getCause() instanceof SocketException) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Unable to stream asset", e);
                 }
@@ -102,12 +188,294 @@ public class StaticAssetView implements View {
                 LOG.error("Unable to stream asset", e);
                 throw e;
             }
-        } finally {
+        }
+    }
+
+    /**
+     * Builds a strong entity tag from the name and size of the cache file.
+     */
+    protected String buildETag(File cacheFile) {
+        return "\"" + Integer.toHexString(cacheFile.getName().hashCode()) + "-" + Long.toHexString(cacheFile.length())
+                + "\"";
+    }
+
+    /**
+     * Builds a strong entity tag for the representation being served. A precompressed variant is produced outside of
+     * the cache file's lifecycle, so its tag also carries the variant's size and modification date and the encoding.
+     */
+    protected String buildETag(File cacheFile, File variant, String encoding) {
+        if (encoding == null) {
+            return buildETag(cacheFile);
+        }
+        return "\"" + Integer.toHexString(cacheFile.getName().hashCode()) + "-" + Long.toHexString(variant.length())
+                + "-" + Long.toHexString(variant.lastModified()) + "-" + encoding + "\"";
+    }
+
+    /**
+     * @return true if the "If-None-Match" header lists the given entity tag, using the weak comparison required for
+     * that header
+     */
+    protected boolean isNotModified(HttpServletRequest request, String eTag) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (StringUtils.isEmpty(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || eTag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A "Range" header only applies if there is no "If-Range" header or it holds the current entity tag. Dates are not
+     * precise enough for strong validation here, so an "If-Range" date always results in the full content.
+     */
+    protected boolean isRangeApplicable(HttpServletRequest request, String eTag) {
+        String ifRange = request.getHeader("If-Range");
+        return StringUtils.isEmpty(ifRange) || eTag.equals(ifRange.trim());
+    }
+
+    /**
+     * Parses a "Range" header against content of the given length.
+     *
+     * @return the satisfiable ranges in the order requested, an empty list if none of them is satisfiable, or null if
+     * the header is not a byte range specifier we understand and should be ignored
+     */
+    protected static List<Range> parseRanges(String rangeHeader, long length) {
+        String header = rangeHeader.trim();
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        List<Range> ranges = new ArrayList<Range>();
+        for (String spec : header.substring("bytes=".length()).split(",")) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
             try {
-                bis.close();
-            } catch (Throwable e) {
-                //do nothing
+                if (first.isEmpty()) {
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength < 0) {
+                        return null;
+                    }
+                    if (suffixLength == 0 || length == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffixLength);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                    if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) {
+                        return null;
+                    }
+                    if (start >= length) {
+                        continue;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
             }
+            ranges.add(new Range(start, end));
+        }
+        return ranges;
+    }
+
+    /**
+     * Picks the brotli or gzip encoding if the client accepts it and the matching variant of the cache file exists and
+     * is at least as recent as the cache file.
+     *
+     * @return the encoding to serve, or null to serve the cache file itself
+     */
+    protected String resolvePrecompressedEncoding(HttpServletRequest request, File cacheFile) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (StringUtils.isEmpty(acceptEncoding)) {
+            return null;
+        }
+        for (String encoding : PRECOMPRESSED_ENCODINGS) {
+            if (acceptsEncoding(acceptEncoding, encoding)) {
+                File variant = getPrecompressedVariant(cacheFile, encoding);
+                if (variant.isFile() && variant.lastModified() >= cacheFile.lastModified()) {
+                    return encoding;
+                }
+            }
+        }
+        return null;
+    }
+
+    protected File getPrecompressedVariant(File cacheFile, String encoding) {
+        return new File(cacheFile.getPath() + ("br".equals(encoding) ? ".br" : ".gz"));
+    }
+
+    protected boolean acceptsEncoding(String acceptEncoding, String encoding) {
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            if (encoding.equalsIgnoreCase(parts[0].trim())) {
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes {@code count} bytes of the file starting at {@code start}, through the container's sendfile support if
+     * {@link #canUseSendfile(HttpServletRequest, HttpServletResponse, long)} allows it and otherwise through
+     * {@link #transfer(FileChannel, long, long, WritableByteChannel)}.
+     */
+    protected void writeFile(HttpServletRequest request, HttpServletResponse response, File file, long start, long count)
+            throws IOException {
+        if (canUseSendfile(request, response, count)) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, Long.valueOf(start));
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, Long.valueOf(start + count));
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            OutputStream os = response.getOutputStream();
+            transfer(raf.getChannel(), start, count, Channels.newChannel(os));
+            os.flush();
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Sendfile writes no body through the response, so it is only used for content large enough to benefit from it
+     * and when the container will write directly to the connection.
+     */
+    protected boolean canUseSendfile(HttpServletRequest request, HttpServletResponse response, long count) {
+        return sendfileEnabled
+                && count >= sendfileMinimumSize
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))
+                && isUnwrapped(request, response);
+    }
+
+    /**
+     * Whether the request and response are the container's own objects rather than wrappers installed by a filter
+     */
+    protected boolean isUnwrapped(HttpServletRequest request, HttpServletResponse response) {
+        return CONTAINER_REQUEST_CLASS.equals(request.getClass().getName())
+                && CONTAINER_RESPONSE_CLASS.equals(response.getClass().getName());
+    }
+
+    protected void writeMultipartRanges(HttpServletResponse response, File file, String mimeType, List<Range> ranges)
+            throws IOException {
+        long length = file.length();
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        List<byte[]> partHeaders = new ArrayList<byte[]>(ranges.size());
+        long contentLength = 0;
+        for (Range range : ranges) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("\r\n--").append(boundary).append("\r\n");
+            if (mimeType != null) {
+                sb.append("Content-Type: ").append(mimeType).append("\r\n");
+            }
+            sb.append("Content-Range: ").append(range.toContentRange(length)).append("\r\n\r\n");
+            byte[] header = sb.toString().getBytes(HEADER_CHARSET);
+            partHeaders.add(header);
+            contentLength += header.length + range.getLength();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(HEADER_CHARSET);
+        contentLength += closing.length;
+        response.setHeader("Content-Length", String.valueOf(contentLength));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            OutputStream os = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(os);
+            FileChannel source = raf.getChannel();
+            for (int i = 0; i < ranges.size(); i++) {
+                os.write(partHeaders.get(i));
+                transfer(source, ranges.get(i).start, ranges.get(i).getLength(), target);
+            }
+            os.write(closing);
+            os.flush();
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Copies {@code count} bytes from {@code source}, starting at {@code position}, to {@code target}.
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)} may transfer fewer bytes than requested, so this
+     * loops until everything has been written. If it makes no progress at all, for instance because the target does
+     * not accept bytes without blocking, the rest is copied through a buffer instead of retrying.
+     */
+    protected void transfer(FileChannel source, long position, long count, WritableByteChannel target) throws IOException {
+        long remaining = count;
+        long offset = position;
+        while (remaining > 0) {
+            long transferred = source.transferTo(offset, remaining, target);
+            if (transferred <= 0) {
+                if (offset >= source.size()) {
+                    throw new IOException("Asset file was truncated while being streamed");
+                }
+                copy(source, offset, remaining, target);
+                return;
+            }
+            offset += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    /**
+     * Copies {@code count} bytes from {@code source}, starting at {@code position}, to {@code target} through a heap
+     * buffer.
+     */
+    protected void copy(FileChannel source, long position, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, count));
+        long remaining = count;
+        long offset = position;
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int read = source.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Asset file was truncated while being streamed");
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            offset += read;
+            remaining -= read;
+        }
+    }
+
+    protected void closeQuietly(RandomAccessFile raf) {
+        try {
+            raf.close();
+        } catch (Throwable e) {
+            //do nothing
         }
     }
 
@@ -126,4 +494,64 @@ public class StaticAssetView implements View {
     public void setCacheSeconds(long cacheSeconds) {
         this.cacheSeconds = cacheSeconds;
     }
+
+    public boolean isPrecompressedVariantsEnabled() {
+        return precompressedVariantsEnabled;
+    }
+
+    public void setPrecompressedVariantsEnabled(boolean precompressedVariantsEnabled) {
+        this.precompressedVariantsEnabled = precompressedVariantsEnabled;
+    }
+
+    public boolean isSendfileEnabled() {
+        return sendfileEnabled;
+    }
+
+    public void setSendfileEnabled(boolean sendfileEnabled) {
+        this.sendfileEnabled = sendfileEnabled;
+    }
+
+    public long getSendfileMinimumSize() {
+        return sendfileMinimumSize;
+    }
+
+    /**
+     * Content smaller than this many bytes is always copied through the response stream.
+     */
+    public void setSendfileMinimumSize(long sendfileMinimumSize) {
+        this.sendfileMinimumSize = sendfileMinimumSize;
+    }
+
+    public int getMaxRanges() {
+        return maxRanges;
+    }
+
+    /**
+     * Requests asking for more ranges than this are answered with the full content.
+     */
+    public void setMaxRanges(int maxRanges) {
+        this.maxRanges = maxRanges;
+    }
+
+    /**
+     * An inclusive byte range of the cache file.
+     */
+    protected static class Range {
+
+        protected final long start;
+        protected final long end;
+
+        protected Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        protected long getLength() {
+            return end - start + 1;
+        }
+
+        protected String toContentRange(long length) {
+            return "bytes " + start + "-" + end + "/" + length;
+        }
+    }
 }
@@ -20,6 +20,7 @@ package org.broadleafcommerce.cms.web.file;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.common.AssetGenerationRejectedException;
 import org.broadleafcommerce.cms.common.AssetNotFoundException;
 import org.broadleafcommerce.cms.file.service.StaticAssetStorageService;
 import org.broadleafcommerce.cms.file.service.operation.NamedOperationComponent;
@@ -140,6 +141,13 @@ public class StaticAssetViewController extends AbstractController {
         } catch (AssetNotFoundException e) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             return null;
+        } catch (AssetGenerationRejectedException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Rejected static asset request for " + fullUrl, e);
+            }
+            response.setHeader("Retry-After", "1");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return null;
         } catch (Exception e) {
             LOG.error("Unable to retrieve static asset", e);
             throw new RuntimeException(e);
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class StaticAssetDerivativeServiceImplTest extends TestCase {
+
+    protected File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("derivatives", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    protected Callable<InputStream> countingGenerator(final AtomicInteger generations, final int size) {
+        return new Callable<InputStream>() {
+
+            @Override
+            public InputStream call() throws Exception {
+                generations.incrementAndGet();
+                Thread.sleep(50);
+                return new ByteArrayInputStream(new byte[size]);
+            }
+        };
+    }
+
+    public void testConcurrentRequestsShareOneGeneration() throws Exception {
+        final StaticAssetDerivativeServiceImpl service = new StaticAssetDerivativeServiceImpl();
+        service.setMaxConcurrentGenerations(2);
+        final File cacheFile = new File(directory, "image---1.png");
+        final AtomicInteger generations = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        File derivative = service.getOrCreateDerivative(cacheFile, countingGenerator(generations, 100));
+                        if (derivative.length() != 100) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        service.destroy();
+
+        assertEquals(0, failures.get());
+        assertEquals(1, generations.get());
+        assertEquals(1, directory.listFiles().length);
+        assertEquals(1, service.getGenerationTime().getCount());
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    public void testLeastRecentlyUsedDerivativesAreEvicted() throws Exception {
+        StaticAssetDerivativeServiceImpl service = new StaticAssetDerivativeServiceImpl();
+        service.setMaxCacheBytes(250);
+        service.setEvictionGraceMillis(0);
+        AtomicInteger generations = new AtomicInteger();
+        File first = new File(directory, "first.png");
+        File second = new File(directory, "second.png");
+        File third = new File(directory, "third.png");
+
+        service.getOrCreateDerivative(first, countingGenerator(generations, 100));
+        service.getOrCreateDerivative(second, countingGenerator(generations, 100));
+        service.recordHit(first);
+        service.getOrCreateDerivative(third, countingGenerator(generations, 100));
+
+        assertTrue(first.exists());
+        assertFalse(second.exists());
+        assertTrue(third.exists());
+        assertEquals(200, service.getTrackedBytes());
+    }
+
+    public void testRecentlyUsedDerivativesAreNotEvicted() throws Exception {
+        StaticAssetDerivativeServiceImpl service = new StaticAssetDerivativeServiceImpl();
+        service.setMaxCacheBytes(150);
+        service.setEvictionGraceMillis(200);
+        AtomicInteger generations = new AtomicInteger();
+        File first = new File(directory, "first.png");
+        File second = new File(directory, "second.png");
+        File third = new File(directory, "third.png");
+
+        service.getOrCreateDerivative(first, countingGenerator(generations, 100));
+        service.getOrCreateDerivative(second, countingGenerator(generations, 100));
+        // The first derivative may still be about to be streamed
+        assertTrue(first.exists());
+        assertEquals(200, service.getTrackedBytes());
+
+        Thread.sleep(300);
+        service.getOrCreateDerivative(third, countingGenerator(generations, 100));
+
+        assertFalse(first.exists());
+        assertFalse(second.exists());
+        assertTrue(third.exists());
+        assertEquals(100, service.getTrackedBytes());
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.url.service;
+
+import org.broadleafcommerce.cms.url.domain.URLHandler;
+import org.broadleafcommerce.cms.url.domain.URLHandlerImpl;
+import org.broadleafcommerce.cms.url.type.URLRedirectType;
+
+import junit.framework.TestCase;
+
+public class URLHandlerMatcherTest extends TestCase {
+
+    protected URLHandler createHandler(String incomingUrl, String newUrl) {
+        URLHandler handler = new URLHandlerImpl();
+        handler.setIncomingURL(incomingUrl);
+        handler.setNewURL(newUrl);
+        handler.setUrlRedirectType(URLRedirectType.REDIRECT_PERM);
+        return handler;
+    }
+
+    public void testLiteralPrefix() {
+        StringBuilder prefix = new StringBuilder();
+        assertTrue(URLHandlerMatcher.readLiteralPrefix("^/old\\-page$", prefix));
+        assertEquals("/old-page", prefix.toString());
+
+        prefix.setLength(0);
+        assertFalse(URLHandlerMatcher.readLiteralPrefix("^/blogs/(.*)$", prefix));
+        assertEquals("/blogs/", prefix.toString());
+
+        prefix.setLength(0);
+        assertFalse(URLHandlerMatcher.readLiteralPrefix("^/colou?r$", prefix));
+        assertEquals("/colo", prefix.toString());
+
+        prefix.setLength(0);
+        assertFalse(URLHandlerMatcher.readLiteralPrefix("^/a$|/b$", prefix));
+        assertEquals("", prefix.toString());
+
+        prefix.setLength(0);
+        assertFalse(URLHandlerMatcher.readLiteralPrefix("^/a\\d+$", prefix));
+        assertEquals("/a", prefix.toString());
+    }
+
+    public void testFirstAddedHandlerWins() {
+        URLHandlerMatcher matcher = new URLHandlerMatcher();
+        matcher.addHandler(createHandler("/shoes/(.*)", "/footwear/$1"), "^/shoes/(.*)$");
+        matcher.addHandler(createHandler("/shoes/boots", "/boots"), "^/shoes/boots$");
+        matcher.addHandler(createHandler("(.*)", "/everything"), "^(.*)$");
+
+        assertEquals("/footwear/boots", matcher.findMatch("/shoes/boots").getNewURL());
+        assertEquals("/everything", matcher.findMatch("/hats").getNewURL());
+    }
+
+    public void testExactMatchRanksByOrder() {
+        URLHandlerMatcher matcher = new URLHandlerMatcher();
+        matcher.addHandler(createHandler("/about", "/about-us"), "^/about$");
+        matcher.addHandler(createHandler("/a(.*)", "/a-page"), "^/a(.*)$");
+
+        assertEquals("/about-us", matcher.findMatch("/about").getNewURL());
+        assertEquals("/a-page", matcher.findMatch("/abc").getNewURL());
+        assertNull(matcher.findMatch("/b"));
+    }
+
+    public void testInvalidPatternIsSkipped() {
+        URLHandlerMatcher matcher = new URLHandlerMatcher();
+        assertFalse(matcher.addHandler(createHandler("/broken(", "/x"), "^/broken($"));
+        assertTrue(matcher.addHandler(createHandler("/ok", "/fine"), "^/ok$"));
+
+        assertEquals(1, matcher.size());
+        assertEquals("/fine", matcher.findMatch("/ok").getNewURL());
+    }
+
+}
@@ -22,6 +22,12 @@ import org.broadleafcommerce.cms.url.dao.URLHandlerDao;
 import org.broadleafcommerce.cms.url.domain.URLHandler;
 import org.broadleafcommerce.cms.url.domain.URLHandlerImpl;
 import org.broadleafcommerce.cms.url.type.URLRedirectType;
+import org.broadleafcommerce.common.sandbox.domain.SandBox;
+import org.broadleafcommerce.common.sandbox.domain.SandBoxImpl;
+import org.broadleafcommerce.common.sandbox.domain.SandBoxType;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.site.domain.SiteImpl;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
@@ -66,6 +72,10 @@ public class URLHandlerServiceTest extends TestCase {
         EasyMock.replay(handlerDao);
     }
 
+    public void tearDown() throws Exception {
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+    }
+
     @Test
     public void testFoundSimpleUrl() {
         URLHandler h = handlerService.checkForMatches("/simple_url");
@@ -105,4 +115,61 @@ public class URLHandlerServiceTest extends TestCase {
         assertTrue(expectedNewURL.equals(h.getNewURL()));
     }
 
+    @Test
+    public void testMatcherIsKeptPerSite() {
+        List<URLHandler> siteOneHandlers = new ArrayList<URLHandler>();
+        siteOneHandlers.add(createHandler("/site_one", "/SiteOne"));
+        List<URLHandler> siteTwoHandlers = new ArrayList<URLHandler>();
+        siteTwoHandlers.add(createHandler("/site_two", "/SiteTwo"));
+        URLHandlerDao handlerDao = EasyMock.createMock(URLHandlerDao.class);
+        EasyMock.expect(handlerDao.findAllURLHandlers()).andReturn(siteOneHandlers);
+        EasyMock.expect(handlerDao.findAllURLHandlers()).andReturn(siteTwoHandlers);
+        EasyMock.replay(handlerDao);
+        handlerService.urlHandlerDao = handlerDao;
+
+        setRequestContext(createSite(1L), null);
+        assertEquals("/SiteOne", handlerService.checkForMatches("/site_one").getNewURL());
+        setRequestContext(createSite(2L), null);
+        assertNull(handlerService.checkForMatches("/site_one"));
+        assertEquals("/SiteTwo", handlerService.checkForMatches("/site_two").getNewURL());
+        setRequestContext(createSite(1L), null);
+        assertEquals("/SiteOne", handlerService.checkForMatches("/site_one").getNewURL());
+
+        EasyMock.verify(handlerDao);
+    }
+
+    @Test
+    public void testMatcherIsNotKeptOutsideProduction() {
+        List<URLHandler> sandBoxHandlers = new ArrayList<URLHandler>();
+        sandBoxHandlers.add(createHandler("/preview", "/Preview"));
+        URLHandlerDao handlerDao = EasyMock.createMock(URLHandlerDao.class);
+        EasyMock.expect(handlerDao.findAllURLHandlers()).andReturn(sandBoxHandlers);
+        EasyMock.expect(handlerDao.findAllURLHandlers()).andReturn(new ArrayList<URLHandler>());
+        EasyMock.replay(handlerDao);
+        handlerService.urlHandlerDao = handlerDao;
+
+        Site site = createSite(1L);
+        SandBox sandBox = new SandBoxImpl();
+        sandBox.setSandBoxType(SandBoxType.USER);
+        setRequestContext(site, sandBox);
+        assertEquals("/Preview", handlerService.checkForMatches("/preview").getNewURL());
+        setRequestContext(site, null);
+        assertNull(handlerService.checkForMatches("/preview"));
+
+        EasyMock.verify(handlerDao);
+    }
+
+    protected Site createSite(Long id) {
+        Site site = new SiteImpl();
+        site.setId(id);
+        return site;
+    }
+
+    protected void setRequestContext(Site site, SandBox sandBox) {
+        BroadleafRequestContext context = new BroadleafRequestContext();
+        context.setNonPersistentSite(site);
+        context.setSandBox(sandBox);
+        BroadleafRequestContext.setBroadleafRequestContext(context);
+    }
+
 }
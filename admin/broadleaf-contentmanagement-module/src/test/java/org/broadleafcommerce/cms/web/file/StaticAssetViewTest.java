@@ -0,0 +1,301 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.web.file;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+public class StaticAssetViewTest extends TestCase {
+
+    protected File cacheFile;
+    protected byte[] content;
+    protected StaticAssetView view;
+
+    @Override
+    protected void setUp() throws Exception {
+        content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        cacheFile = createFile(File.createTempFile("asset", ".bin"), content);
+        view = new StaticAssetView();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cacheFile.delete();
+        new File(cacheFile.getPath() + ".gz").delete();
+    }
+
+    public void testParseSingleRanges() {
+        List<StaticAssetView.Range> ranges = StaticAssetView.parseRanges("bytes=0-99", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals("bytes 0-99/1000", ranges.get(0).toContentRange(1000));
+
+        ranges = StaticAssetView.parseRanges("bytes=900-", 1000);
+        assertEquals("bytes 900-999/1000", ranges.get(0).toContentRange(1000));
+
+        ranges = StaticAssetView.parseRanges("bytes=-100", 1000);
+        assertEquals("bytes 900-999/1000", ranges.get(0).toContentRange(1000));
+
+        ranges = StaticAssetView.parseRanges("bytes=990-2000", 1000);
+        assertEquals(10, ranges.get(0).getLength());
+    }
+
+    public void testParseMultipleAndInvalidRanges() {
+        List<StaticAssetView.Range> ranges = StaticAssetView.parseRanges("bytes=0-9, 20-29, 5000-", 1000);
+        assertEquals(2, ranges.size());
+        assertEquals(20, ranges.get(1).start);
+
+        assertTrue(StaticAssetView.parseRanges("bytes=1000-", 1000).isEmpty());
+        assertNull(StaticAssetView.parseRanges("items=0-9", 1000));
+        assertNull(StaticAssetView.parseRanges("bytes=9-0", 1000));
+        assertNull(StaticAssetView.parseRanges("bytes=a-b", 1000));
+    }
+
+    public void testTransferCopiesRequestedBytes() throws Exception {
+        File file = File.createTempFile("asset", ".bin");
+        file.deleteOnExit();
+        byte[] content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(content);
+        fos.close();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            new StaticAssetView().transfer(raf.getChannel(), 500, 70000, Channels.newChannel(baos));
+        } finally {
+            raf.close();
+        }
+        byte[] copied = baos.toByteArray();
+        assertEquals(70000, copied.length);
+        assertEquals(content[500], copied[0]);
+        assertEquals(content[70499], copied[69999]);
+    }
+
+    public void testTransferFallsBackWhenTargetMakesNoProgress() throws Exception {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        WritableByteChannel target = new WritableByteChannel() {
+            protected boolean refused = false;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (!refused) {
+                    refused = true;
+                    return 0;
+                }
+                int count = src.remaining();
+                byte[] bytes = new byte[count];
+                src.get(bytes);
+                baos.write(bytes);
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+                //do nothing
+            }
+        };
+        RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+        try {
+            view.transfer(raf.getChannel(), 10, 900, target);
+        } finally {
+            raf.close();
+        }
+        byte[] copied = baos.toByteArray();
+        assertEquals(900, copied.length);
+        assertEquals(content[10], copied[0]);
+        assertEquals(content[909], copied[899]);
+    }
+
+    public void testRenderFullContent() throws Exception {
+        MockHttpServletResponse response = render(new MockHttpServletRequest());
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals("1000", response.getHeader("Content-Length"));
+        assertEquals(view.buildETag(cacheFile), response.getHeader("ETag"));
+        assertEquals(1000, response.getContentAsByteArray().length);
+    }
+
+    public void testRenderNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"other\", W/" + view.buildETag(cacheFile));
+        MockHttpServletResponse response = render(request);
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    public void testRenderSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=100-199");
+        MockHttpServletResponse response = render(request);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 100-199/1000", response.getHeader("Content-Range"));
+        assertEquals("100", response.getHeader("Content-Length"));
+        byte[] body = response.getContentAsByteArray();
+        assertEquals(100, body.length);
+        assertEquals(content[100], body[0]);
+        assertEquals(content[199], body[99]);
+    }
+
+    public void testRenderRangeWithStaleIfRangeReturnsFullContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=100-199");
+        request.addHeader("If-Range", "\"stale\"");
+        MockHttpServletResponse response = render(request);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(1000, response.getContentAsByteArray().length);
+    }
+
+    public void testRenderMultipartRanges() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=0-9,500-509");
+        MockHttpServletResponse response = render(request);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = new String(response.getContentAsByteArray(), "ISO-8859-1");
+        assertTrue(body.contains("Content-Range: bytes 0-9/1000"));
+        assertTrue(body.contains("Content-Range: bytes 500-509/1000"));
+        assertEquals(String.valueOf(response.getContentAsByteArray().length), response.getHeader("Content-Length"));
+    }
+
+    public void testRenderUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=1000-");
+        MockHttpServletResponse response = render(request);
+
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    public void testRenderPrecompressedVariantHasItsOwnETag() throws Exception {
+        File variant = createFile(new File(cacheFile.getPath() + ".gz"), new byte[] {1, 2, 3});
+        variant.setLastModified(cacheFile.lastModified() + 1000);
+        view.setPrecompressedVariantsEnabled(true);
+
+        MockHttpServletResponse identity = render(new MockHttpServletRequest());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        request.addHeader("Range", "bytes=0-0");
+        MockHttpServletResponse encoded = render(request);
+
+        assertEquals("Accept-Encoding", identity.getHeader("Vary"));
+        assertEquals("Accept-Encoding", encoded.getHeader("Vary"));
+        assertNull(identity.getHeader("Content-Encoding"));
+        assertEquals("gzip", encoded.getHeader("Content-Encoding"));
+        assertEquals(HttpServletResponse.SC_OK, encoded.getStatus());
+        assertEquals(3, encoded.getContentAsByteArray().length);
+        assertFalse(identity.getHeader("ETag").equals(encoded.getHeader("ETag")));
+
+        request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "gzip");
+        request.addHeader("If-None-Match", identity.getHeader("ETag"));
+        MockHttpServletResponse revalidated = render(request);
+        assertEquals(HttpServletResponse.SC_OK, revalidated.getStatus());
+        assertEquals("Accept-Encoding", revalidated.getHeader("Vary"));
+    }
+
+    public void testWrappedResponseIsNotHandedToSendfile() throws Exception {
+        view.setSendfileEnabled(true);
+        view.setSendfileMinimumSize(0);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(StaticAssetView.SENDFILE_SUPPORT_ATTRIBUTE, Boolean.TRUE);
+        MockHttpServletResponse response = render(request);
+
+        assertNull(request.getAttribute(StaticAssetView.SENDFILE_FILENAME_ATTRIBUTE));
+        assertEquals(1000, response.getContentAsByteArray().length);
+    }
+
+    public void testSendfileOnlyAboveMinimumSize() throws Exception {
+        view = new StaticAssetView() {
+
+            @Override
+            protected boolean isUnwrapped(HttpServletRequest request, HttpServletResponse response) {
+                return true;
+            }
+        };
+        view.setSendfileEnabled(true);
+        view.setSendfileMinimumSize(1001);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(StaticAssetView.SENDFILE_SUPPORT_ATTRIBUTE, Boolean.TRUE);
+        MockHttpServletResponse response = render(request);
+
+        assertNull(request.getAttribute(StaticAssetView.SENDFILE_FILENAME_ATTRIBUTE));
+        assertEquals(1000, response.getContentAsByteArray().length);
+
+        view.setSendfileMinimumSize(1000);
+        request = new MockHttpServletRequest();
+        request.setAttribute(StaticAssetView.SENDFILE_SUPPORT_ATTRIBUTE, Boolean.TRUE);
+        response = render(request);
+
+        assertEquals(cacheFile.getCanonicalPath(), request.getAttribute(StaticAssetView.SENDFILE_FILENAME_ATTRIBUTE));
+        assertEquals(Long.valueOf(1000), request.getAttribute(StaticAssetView.SENDFILE_END_ATTRIBUTE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    protected MockHttpServletResponse render(MockHttpServletRequest request) throws Exception {
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put("cacheFilePath", cacheFile.getPath());
+        model.put("mimeType", "application/octet-stream");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        view.render(model, request, response);
+        return response;
+    }
+
+    protected File createFile(File file, byte[] bytes) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(bytes);
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+}
@@ -45,6 +45,7 @@ import org.broadleafcommerce.openadmin.dto.TabMetadata;
 import org.broadleafcommerce.openadmin.server.dao.provider.metadata.FieldMetadataProvider;
 import org.broadleafcommerce.openadmin.server.dao.provider.metadata.request.AddMetadataFromFieldTypeRequest;
 import org.broadleafcommerce.openadmin.server.dao.provider.metadata.request.LateStageAddMetadataRequest;
+import org.broadleafcommerce.openadmin.server.service.metadata.EntityMetadataSnapshotService;
 import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldManager;
 import org.broadleafcommerce.openadmin.server.service.persistence.validation.FieldNamePropertyValidator;
 import org.broadleafcommerce.openadmin.server.service.type.MetadataProviderResponse;
@@ -138,6 +139,9 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
     @Resource(name = "blAppConfigurationMap")
     protected Map<String, String> propertyConfigurations = new HashMap<>();
 
+    @Resource(name = "blEntityMetadataSnapshotService")
+    protected EntityMetadataSnapshotService entityMetadataSnapshotService;
+
     protected DynamicDaoHelper dynamicDaoHelper = new DynamicDaoHelperImpl();
 
     @Value("${cache.entity.dao.metadata.ttl}")
@@ -692,7 +696,8 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
     protected String getCacheKey(String ceilingEntityFullyQualifiedClassname, ForeignKey foreignField, String[] additionalNonPersistentProperties, ForeignKey[] additionalForeignFields, MergedPropertyType mergedPropertyType, Boolean populateManyToOneFields, Class<?> clazz, String configurationKey, Boolean isParentExcluded) {
         StringBuilder sb = new StringBuilder(150);
         sb.append(ceilingEntityFullyQualifiedClassname);
-        sb.append(clazz.hashCode());
+        // the class name rather than its identity hash keeps the key stable across restarts for the metadata snapshot
+        sb.append(clazz.getName());
         sb.append(foreignField==null?"":foreignField.toString());
         sb.append(configurationKey);
         sb.append(isParentExcluded);
@@ -747,66 +752,84 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
             String cacheKey = getCacheKey(ceilingEntityFullyQualifiedClassname, foreignField, additionalNonPersistentProperties, additionalForeignFields, mergedPropertyType, populateManyToOneFields, clazz, configurationKey, isParentExcluded);
 
             Map<String, FieldMetadata> cacheData = null;
-            synchronized(DynamicDaoHelperImpl.LOCK_OBJECT) {
-                if (useCache()) {
-                    cacheData = METADATA_CACHE.get(cacheKey);
+            if (entityMetadataSnapshotService != null) {
+                cacheData = entityMetadataSnapshotService.getEntry(cacheKey);
+            }
+            if (cacheData == null) {
+                synchronized (DynamicDaoHelperImpl.LOCK_OBJECT) {
+                    if (useCache()) {
+                        cacheData = METADATA_CACHE.get(cacheKey);
+                    }
                 }
+            }
 
-                if (cacheData == null) {
-                    Map<String, FieldMetadata> props = getPropertiesForEntityClass(
-                        clazz,
-                        foreignField,
-                        additionalNonPersistentProperties,
-                        additionalForeignFields,
-                        mergedPropertyType,
-                        populateManyToOneFields,
-                        includeFields,
-                        excludeFields,
-                        configurationKey,
-                        ceilingEntityFullyQualifiedClassname,
-                        parentClasses,
-                        prefix,
-                        isParentExcluded,
-                        parentPrefix);
-                    //first check all the properties currently in there to see if my entity inherits from them
-                    for (Class<?> clazz2 : entities) {
-                        if (!clazz2.getName().equals(clazz.getName())) {
-                            for (Map.Entry<String, FieldMetadata> entry : props.entrySet()) {
-                                FieldMetadata metadata = entry.getValue();
-                                try {
-                                    if (Class.forName(metadata.getInheritedFromType()).isAssignableFrom(clazz2)) {
-                                        String[] both = ArrayUtils.addAll(metadata.getAvailableToTypes(), new String[]{clazz2.getName()});
-                                        metadata.setAvailableToTypes(both);
-                                    }
-                                } catch (ClassNotFoundException e) {
-                                    throw new RuntimeException(e);
+            if (cacheData == null) {
+                // Computed outside of the lock so that metadata for different entities can be built concurrently. Should
+                // two threads compute the same key, the first result stored wins.
+                Map<String, FieldMetadata> props = getPropertiesForEntityClass(
+                    clazz,
+                    foreignField,
+                    additionalNonPersistentProperties,
+                    additionalForeignFields,
+                    mergedPropertyType,
+                    populateManyToOneFields,
+                    includeFields,
+                    excludeFields,
+                    configurationKey,
+                    ceilingEntityFullyQualifiedClassname,
+                    parentClasses,
+                    prefix,
+                    isParentExcluded,
+                    parentPrefix);
+                //first check all the properties currently in there to see if my entity inherits from them
+                for (Class<?> clazz2 : entities) {
+                    if (!clazz2.getName().equals(clazz.getName())) {
+                        for (Map.Entry<String, FieldMetadata> entry : props.entrySet()) {
+                            FieldMetadata metadata = entry.getValue();
+                            try {
+                                if (Class.forName(metadata.getInheritedFromType()).isAssignableFrom(clazz2)) {
+                                    String[] both = ArrayUtils.addAll(metadata.getAvailableToTypes(), new String[]{clazz2.getName()});
+                                    metadata.setAvailableToTypes(both);
                                 }
+                            } catch (ClassNotFoundException e) {
+                                throw new RuntimeException(e);
                             }
                         }
                     }
-                    METADATA_CACHE.put(cacheKey, props);
-                    
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Added " + props.size() + " to the metadata cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
+                }
+
+                synchronized (DynamicDaoHelperImpl.LOCK_OBJECT) {
+                    if (useCache()) {
+                        cacheData = METADATA_CACHE.get(cacheKey);
                     }
-                    
-                    if (validateMetadataCacheSizes) {
-                        Integer previousSize = METADATA_CACHE_SIZES.get(cacheKey);
-                        Integer currentSize = props.size();
-                        if (previousSize == null) {
-                            METADATA_CACHE_SIZES.put(cacheKey, currentSize);
-                        } else if (!currentSize.equals(previousSize)) {
-                            String msg = "Attempted to store " + currentSize + " properties in the cache for the key " + cacheKey + " but we had previously stored " + previousSize + " properties";
-                            LOG.error(msg);
-                            throw new RuntimeException(msg);
+                    if (cacheData == null) {
+                        METADATA_CACHE.put(cacheKey, props);
+
+                        if (LOG.isTraceEnabled()) {
+                            LOG.trace("Added " + props.size() + " to the metadata cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
                         }
+
+                        if (validateMetadataCacheSizes) {
+                            Integer previousSize = METADATA_CACHE_SIZES.get(cacheKey);
+                            Integer currentSize = props.size();
+                            if (previousSize == null) {
+                                METADATA_CACHE_SIZES.put(cacheKey, currentSize);
+                            } else if (!currentSize.equals(previousSize)) {
+                                String msg = "Attempted to store " + currentSize + " properties in the cache for the key " + cacheKey + " but we had previously stored " + previousSize + " properties";
+                                LOG.error(msg);
+                                throw new RuntimeException(msg);
+                            }
+                        }
+
+                        cacheData = props;
                     }
-                    
-                    cacheData = props;
-                } else {
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Read " + cacheData.size() + " from the metada cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
-                    }
+                }
+                if (entityMetadataSnapshotService != null) {
+                    entityMetadataSnapshotService.addEntry(cacheKey, cacheData);
+                }
+            } else {
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Read " + cacheData.size() + " from the metada cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
                 }
             }
             //clone the metadata before passing to the system
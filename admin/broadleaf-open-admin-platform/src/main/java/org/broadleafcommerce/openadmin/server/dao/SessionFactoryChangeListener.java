@@ -20,11 +20,16 @@ package org.broadleafcommerce.openadmin.server.dao;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.persistence.IdOverrideTableGenerator;
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
 import org.broadleafcommerce.common.util.BLCFieldUtils;
 import org.broadleafcommerce.common.util.dao.DynamicDaoHelperImpl;
 import org.broadleafcommerce.openadmin.server.service.DynamicEntityRemoteService;
+import org.broadleafcommerce.openadmin.server.service.metadata.EntityMetadataSnapshotService;
 import org.hibernate.SessionFactory;
 import org.hibernate.SessionFactoryObserver;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.springframework.context.ApplicationContext;
 
 import java.lang.reflect.Field;
 import java.util.Map;
@@ -39,6 +44,8 @@ public class SessionFactoryChangeListener implements SessionFactoryObserver {
     
     private static final Log LOG = LogFactory.getLog(SessionFactoryChangeListener.class);
 
+    protected static final String SNAPSHOT_SERVICE_NAME = "blEntityMetadataSnapshotService";
+
     @Override
     public void sessionFactoryClosed(SessionFactory factory) {
         //do nothing
@@ -50,6 +57,7 @@ public class SessionFactoryChangeListener implements SessionFactoryObserver {
             DynamicEntityDaoImpl.METADATA_CACHE.clear();
             DynamicDaoHelperImpl.POLYMORPHIC_ENTITY_CACHE.clear();
             BLCFieldUtils.FIELD_CACHE.clear();
+            clearEntityMetadataSnapshot();
             try {
                 Field metadataCache = DynamicEntityRemoteService.class.getDeclaredField("METADATA_CACHE");
                 metadataCache.setAccessible(true);
@@ -68,4 +76,21 @@ public class SessionFactoryChangeListener implements SessionFactoryObserver {
         }
     }
 
+    /**
+     * Clears the entries of blEntityMetadataSnapshotService, which {@code DynamicEntityDao} reads before its metadata
+     * cache. The service is only looked up once it has been created, since the first session factory is created while
+     * the application context is still starting and no metadata has been computed yet.
+     */
+    protected void clearEntityMetadataSnapshot() {
+        ApplicationContext context = ApplicationContextHolder.getApplicationContext();
+        if (context == null) {
+            return;
+        }
+        AutowireCapableBeanFactory beanFactory = context.getAutowireCapableBeanFactory();
+        if (beanFactory instanceof SingletonBeanRegistry
+                && ((SingletonBeanRegistry) beanFactory).containsSingleton(SNAPSHOT_SERVICE_NAME)) {
+            ((EntityMetadataSnapshotService) ((SingletonBeanRegistry) beanFactory).getSingleton(SNAPSHOT_SERVICE_NAME)).clear();
+        }
+    }
+
 }
@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.metadata;
+
+import org.broadleafcommerce.openadmin.dto.FieldMetadata;
+import org.broadleafcommerce.openadmin.server.dao.DynamicEntityDaoImpl;
+
+import java.util.Map;
+
+/**
+ * Holds the per-class field metadata that {@link DynamicEntityDaoImpl} computes for admin managed entities, keyed by
+ * the same cache key the dao uses for its metadata cache. Entries are never modified once added, so they can be read
+ * without locking. The snapshot can be precomputed at startup for the ceiling entity of every admin section and
+ * persisted to disk, in which case it is reloaded on the next boot as long as the entity classes, the field metadata
+ * providers and the admin configuration properties have not changed.
+ * 
+ * Metadata overrides declared in xml are applied on top of these entries for every request, so they are not part of
+ * the snapshot.
+ */
+public interface EntityMetadataSnapshotService {
+
+    /**
+     * @return whether entries are kept. This requires "admin.metadata.snapshot.enabled" and an eternal metadata cache
+     * ("cache.entity.dao.metadata.ttl" of -1).
+     */
+    boolean isEnabled();
+
+    /**
+     * @param cacheKey the metadata cache key computed by {@link DynamicEntityDaoImpl}
+     * @return the unmodifiable metadata for the key, or null if it is not part of the snapshot
+     */
+    Map<String, FieldMetadata> getEntry(String cacheKey);
+
+    /**
+     * Adds the metadata computed for the given key. The map and its values must not be modified by the caller afterwards.
+     */
+    void addEntry(String cacheKey, Map<String, FieldMetadata> properties);
+
+    /**
+     * Loads the persisted snapshot if its fingerprint still matches, computes the merged properties of the ceiling
+     * entity of every admin section in parallel and persists the result when new entries were added.
+     */
+    void buildSnapshot();
+
+    /**
+     * @return the number of entries in the snapshot
+     */
+    int size();
+
+    /**
+     * Drops every entry, along with the fingerprint they were computed for, so that the metadata is computed again.
+     * Called when the session factory is recycled.
+     */
+    void clear();
+
+}
@@ -0,0 +1,547 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.metadata;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.common.persistence.TargetModeType;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.openadmin.dto.FieldMetadata;
+import org.broadleafcommerce.openadmin.dto.MergedPropertyType;
+import org.broadleafcommerce.openadmin.dto.PersistencePerspective;
+import org.broadleafcommerce.openadmin.server.dao.DynamicEntityDao;
+import org.broadleafcommerce.openadmin.server.dao.provider.metadata.FieldMetadataProvider;
+import org.broadleafcommerce.openadmin.server.security.domain.AdminSection;
+import org.broadleafcommerce.openadmin.server.security.service.navigation.AdminNavigationService;
+import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceManagerFactory;
+import org.hibernate.metadata.ClassMetadata;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.util.ClassUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Resource;
+
+@Service("blEntityMetadataSnapshotService")
+public class EntityMetadataSnapshotServiceImpl implements EntityMetadataSnapshotService, ApplicationContextAware,
+        ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+
+    private static final Log LOG = LogFactory.getLog(EntityMetadataSnapshotServiceImpl.class);
+
+    protected static final int FILE_MAGIC = 0x424c4d53;
+
+    /**
+     * Incremented whenever the layout of the file or of the cache keys changes, so older files are ignored
+     */
+    protected static final int FILE_FORMAT_VERSION = 1;
+
+    /**
+     * Packages whose classes may be read back from the snapshot file. Subpackages are not included.
+     */
+    protected static final Set<String> ALLOWED_SNAPSHOT_PACKAGES = new HashSet<>(Arrays.asList(
+            "org.broadleafcommerce.openadmin.dto",
+            "org.broadleafcommerce.common.presentation.client"));
+
+    /**
+     * JDK classes that may be read back from the snapshot file: the value types and collections the metadata is
+     * made of
+     */
+    protected static final Set<String> ALLOWED_SNAPSHOT_CLASSES = new HashSet<>(Arrays.asList(
+            "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Double", "java.lang.Enum",
+            "java.lang.Float", "java.lang.Integer", "java.lang.Long", "java.lang.Number", "java.lang.Short",
+            "java.lang.String", "java.math.BigDecimal", "java.math.BigInteger", "java.util.Date",
+            "java.util.ArrayList", "java.util.Arrays$ArrayList", "java.util.HashMap", "java.util.HashSet",
+            "java.util.LinkedHashMap", "java.util.LinkedHashSet", "java.util.LinkedList", "java.util.TreeMap",
+            "java.util.TreeSet", "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap",
+            "java.util.Collections$EmptySet", "java.util.Collections$UnmodifiableCollection",
+            "java.util.Collections$UnmodifiableList", "java.util.Collections$UnmodifiableMap",
+            "java.util.Collections$UnmodifiableRandomAccessList", "java.util.Collections$UnmodifiableSet"));
+
+    @Value("${admin.metadata.snapshot.enabled:false}")
+    protected boolean snapshotEnabled = false;
+
+    @Value("${admin.metadata.snapshot.threads:4}")
+    protected int snapshotThreads = 4;
+
+    @Value("${admin.metadata.snapshot.file:}")
+    protected String snapshotFile = "";
+
+    @Value("${cache.entity.dao.metadata.ttl:-1}")
+    protected int cacheEntityMetaDataTtl = -1;
+
+    @Resource(name = "blAdminNavigationService")
+    protected AdminNavigationService adminNavigationService;
+
+    @Resource(name = "blTransactionManager")
+    protected PlatformTransactionManager transactionManager;
+
+    @Resource(name = "blFieldMetadataProviders")
+    protected List<FieldMetadataProvider> fieldMetadataProviders = new ArrayList<>();
+
+    @Resource(name = "blAppConfigurationMap")
+    protected Map<String, String> propertyConfigurations = new HashMap<>();
+
+    protected final ConcurrentMap<String, Map<String, FieldMetadata>> entries = new ConcurrentHashMap<>();
+    protected final AtomicBoolean started = new AtomicBoolean();
+    protected volatile boolean dirty;
+    protected volatile String fingerprint;
+
+    protected ApplicationContext applicationContext;
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return snapshotEnabled && cacheEntityMetaDataTtl < 0;
+    }
+
+    @Override
+    public Map<String, FieldMetadata> getEntry(String cacheKey) {
+        if (!isEnabled()) {
+            return null;
+        }
+        return entries.get(cacheKey);
+    }
+
+    @Override
+    public void addEntry(String cacheKey, Map<String, FieldMetadata> properties) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (entries.putIfAbsent(cacheKey, Collections.unmodifiableMap(properties)) == null) {
+            dirty = true;
+        }
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        dirty = false;
+        // Nothing is persisted until the snapshot is built again for the new session factory
+        fingerprint = null;
+        started.set(false);
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // This bean only is valid when the following bean is active. (admin)
+        if (!isEnabled() || !applicationContext.containsBean(PersistenceManagerFactory.getPersistenceManagerRef())
+                || !applicationContext.containsBean("blPersistenceManagerFactory")) {
+            return;
+        }
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        //initialize the factory bean
+        applicationContext.getBean("blPersistenceManagerFactory");
+
+        // Startup does not wait for the snapshot; requests arriving earlier compute the metadata they need themselves
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    buildSnapshot();
+                } catch (RuntimeException e) {
+                    LOG.warn("Unable to build the admin metadata snapshot", e);
+                } finally {
+                    ThreadLocalManager.remove();
+                }
+            }
+        }, "admin-metadata-snapshot");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void buildSnapshot() {
+        long start = System.currentTimeMillis();
+        DynamicEntityDao dynamicEntityDao = PersistenceManagerFactory.getDefaultPersistenceManager().getDynamicEntityDao();
+        fingerprint = computeFingerprint(dynamicEntityDao);
+
+        File file = getSnapshotFile();
+        if (file != null && file.exists()) {
+            readSnapshot(file);
+        }
+        int loaded = entries.size();
+
+        precomputeMergedProperties(readCeilingEntities());
+
+        if (file != null && dirty) {
+            writeSnapshot(file);
+        }
+        LOG.info(String.format("Admin metadata snapshot ready with %d entries (%d loaded from disk) in %d ms", entries.size(),
+                loaded, System.currentTimeMillis() - start));
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        // Save what was computed by requests since the snapshot was built
+        File file = getSnapshotFile();
+        if (file != null && dirty && fingerprint != null) {
+            writeSnapshot(file);
+        }
+    }
+
+    protected File getSnapshotFile() {
+        if (StringUtils.isBlank(snapshotFile)) {
+            return null;
+        }
+        return new File(snapshotFile);
+    }
+
+    protected List<String> readCeilingEntities() {
+        Set<String> ceilingEntities = new LinkedHashSet<>();
+        BroadleafRequestContext.setBroadleafRequestContext(createRequestContext());
+        TransactionStatus status = TransactionUtils.createTransaction("readAdminSections",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            for (AdminSection section : adminNavigationService.findAllAdminSections()) {
+                if (StringUtils.isNotBlank(section.getCeilingEntity())) {
+                    ceilingEntities.add(section.getCeilingEntity());
+                }
+            }
+        } finally {
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            BroadleafRequestContext.setBroadleafRequestContext(null);
+        }
+        return new ArrayList<>(ceilingEntities);
+    }
+
+    /**
+     * Computes the merged properties of each ceiling entity the way the admin inspects it for its list grid and entity
+     * form. The per-class results are added to this snapshot by the dao as they are computed.
+     */
+    protected void precomputeMergedProperties(List<String> ceilingEntities) {
+        if (ceilingEntities.isEmpty()) {
+            return;
+        }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(snapshotThreads, ceilingEntities.size())),
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "admin-metadata-snapshot-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final String ceilingEntity : ceilingEntities) {
+                futures.add(executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        precomputeMergedProperties(ceilingEntity);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            LOG.warn("Precomputing admin metadata did not complete", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected void precomputeMergedProperties(String ceilingEntity) {
+        BroadleafRequestContext.setBroadleafRequestContext(createRequestContext());
+        TransactionStatus status = TransactionUtils.createTransaction("precomputeAdminMetadata",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            Class<?> ceilingClass = Class.forName(ceilingEntity);
+            PersistenceManagerFactory.startPersistenceManager(ceilingEntity, TargetModeType.SANDBOX);
+            try {
+                DynamicEntityDao dynamicEntityDao = PersistenceManagerFactory.getPersistenceManager().getDynamicEntityDao();
+                PersistencePerspective persistencePerspective = new PersistencePerspective();
+                dynamicEntityDao.getMergedProperties(
+                        ceilingEntity,
+                        dynamicEntityDao.getAllPolymorphicEntitiesFromCeiling(ceilingClass),
+                        null,
+                        persistencePerspective.getAdditionalNonPersistentProperties(),
+                        persistencePerspective.getAdditionalForeignKeys(),
+                        MergedPropertyType.PRIMARY,
+                        persistencePerspective.getPopulateToOneFields(),
+                        persistencePerspective.getIncludeFields(),
+                        persistencePerspective.getExcludeFields(),
+                        persistencePerspective.getConfigurationKey(),
+                        "");
+            } finally {
+                PersistenceManagerFactory.endPersistenceManager();
+            }
+        } catch (Exception e) {
+            LOG.warn("Unable to precompute admin metadata for " + ceilingEntity, e);
+        } finally {
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            ThreadLocalManager.remove();
+        }
+    }
+
+    protected BroadleafRequestContext createRequestContext() {
+        // This cannot be null during startup as we do not want to remove the null safety checks in a multi-tenant env.
+        BroadleafRequestContext brc = new BroadleafRequestContext();
+        brc.setIgnoreSite(true);
+        return brc;
+    }
+
+    /**
+     * Hashes everything the per-class metadata is derived from: the class files of the mapped entities and their
+     * superclasses, which include the annotation based overrides, the field metadata providers and the admin
+     * configuration properties.
+     */
+    protected String computeFingerprint(DynamicEntityDao dynamicEntityDao) {
+        Map<String, Class<?>> classes = new TreeMap<>();
+        for (Object item : dynamicEntityDao.getSessionFactory().getAllClassMetadata().values()) {
+            ClassMetadata metadata = (ClassMetadata) item;
+            for (Class<?> clazz = metadata.getMappedClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                classes.put(clazz.getName(), clazz);
+            }
+        }
+        for (FieldMetadataProvider provider : fieldMetadataProviders) {
+            classes.put(provider.getClass().getName(), provider.getClass());
+        }
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(String.valueOf(FILE_FORMAT_VERSION).getBytes("UTF-8"));
+            for (Map.Entry<String, Class<?>> entry : classes.entrySet()) {
+                md.update(entry.getKey().getBytes("UTF-8"));
+                InputStream classFile = entry.getValue().getResourceAsStream("/" + entry.getKey().replace('.', '/') + ".class");
+                if (classFile != null) {
+                    try {
+                        md.update(IOUtils.toByteArray(classFile));
+                    } finally {
+                        IOUtils.closeQuietly(classFile);
+                    }
+                }
+            }
+            for (Map.Entry<String, String> entry : new TreeMap<>(propertyConfigurations).entrySet()) {
+                md.update((entry.getKey() + "=" + entry.getValue()).getBytes("UTF-8"));
+            }
+            return new BigInteger(1, md.digest()).toString(16);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The file starts with a magic number, the format version and the fingerprint, followed by the number of entries
+     * and each entry as its cache key and its java serialized metadata map. Entries whose metadata cannot be
+     * serialized are left out and computed again on the next boot.
+     */
+    protected synchronized void writeSnapshot(File file) {
+        dirty = false;
+        Map<String, byte[]> serialized = new TreeMap<>();
+        for (Map.Entry<String, Map<String, FieldMetadata>> entry : entries.entrySet()) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.writeObject(new HashMap<>(entry.getValue()));
+                out.close();
+                serialized.put(entry.getKey(), bytes.toByteArray());
+            } catch (IOException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Leaving metadata with key " + entry.getKey() + " out of the snapshot", e);
+                }
+            }
+        }
+
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))));
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_FORMAT_VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(serialized.size());
+            for (Map.Entry<String, byte[]> entry : serialized.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+            out.close();
+            out = null;
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Wrote " + serialized.size() + " admin metadata entries to " + file.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to write the admin metadata snapshot to " + file.getAbsolutePath(), e);
+            dirty = true;
+        } finally {
+            IOUtils.closeQuietly(out);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Reads the entries of the given file if its fingerprint matches. Entries are only added once the whole file has
+     * been read, so a corrupt file, or one referring to a class outside of {@link #isAllowedSnapshotClass(String)},
+     * adds nothing and is rebuilt.
+     */
+    @SuppressWarnings("unchecked")
+    protected void readSnapshot(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_FORMAT_VERSION || !in.readUTF().equals(fingerprint)) {
+                LOG.info("The admin metadata snapshot at " + file.getAbsolutePath() + " is out of date and will be rebuilt");
+                return;
+            }
+            int count = in.readInt();
+            Map<String, Map<String, FieldMetadata>> loaded = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String cacheKey = in.readUTF();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                ObjectInputStream objectIn = createSnapshotObjectInputStream(data);
+                try {
+                    loaded.put(cacheKey, (Map<String, FieldMetadata>) objectIn.readObject());
+                } finally {
+                    objectIn.close();
+                }
+            }
+            for (Map.Entry<String, Map<String, FieldMetadata>> entry : loaded.entrySet()) {
+                entries.putIfAbsent(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+            }
+        } catch (IOException | ClassNotFoundException | LinkageError | ClassCastException e) {
+            LOG.warn("Unable to read the admin metadata snapshot at " + file.getAbsolutePath() + ", it will be rebuilt", e);
+            dirty = true;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Creates the stream a single serialized metadata map is read from. Only classes accepted by
+     * {@link #isAllowedSnapshotClass(String)} are resolved, and proxies are refused, so a tampered file cannot
+     * instantiate arbitrary classes.
+     */
+    protected ObjectInputStream createSnapshotObjectInputStream(byte[] data) throws IOException {
+        return new ObjectInputStream(new ByteArrayInputStream(data)) {
+
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (!isAllowedSnapshotClass(desc.getName())) {
+                    throw new InvalidClassException(desc.getName(), "Not allowed in the admin metadata snapshot");
+                }
+                return ClassUtils.forName(desc.getName(), ClassUtils.getDefaultClassLoader());
+            }
+
+            @Override
+            protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+                throw new InvalidClassException("Proxy classes are not allowed in the admin metadata snapshot");
+            }
+        };
+    }
+
+    /**
+     * @param className a class name as written by serialization, which uses the JVM notation for arrays
+     * @return whether the class may be read back from the snapshot file
+     */
+    protected boolean isAllowedSnapshotClass(String className) {
+        String name = className;
+        if (name.startsWith("[")) {
+            name = name.substring(name.lastIndexOf('[') + 1);
+            if (!name.startsWith("L")) {
+                // an array of primitives
+                return name.length() == 1;
+            }
+            name = name.substring(1, name.length() - 1);
+        }
+        if (ALLOWED_SNAPSHOT_CLASSES.contains(name)) {
+            return true;
+        }
+        int packageEnd = name.lastIndexOf('.');
+        return packageEnd > 0 && ALLOWED_SNAPSHOT_PACKAGES.contains(name.substring(0, packageEnd));
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.persistence.module;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads and writes a single field through method handles that are created once, instead of calling
+ * {@link Field#setAccessible(boolean)} and {@link Field#get(Object)} for every access. Static fields, and final fields
+ * the handles cannot write, fall back to the {@link Field}.
+ * 
+ * Instances are obtained from {@link FieldAccessorFactory#getAccessor(Class, String)}.
+ */
+public class FieldAccessor {
+
+    protected static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    protected static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    protected final Field field;
+    protected final MethodHandle getter;
+    protected final MethodHandle setter;
+
+    public FieldAccessor(Field field) {
+        field.setAccessible(true);
+        this.field = field;
+        MethodHandle getter = null;
+        MethodHandle setter = null;
+        if (!Modifier.isStatic(field.getModifiers())) {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                // use the field
+            }
+            try {
+                setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                // use the field
+            }
+        }
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Object get(Object bean) throws IllegalAccessException {
+        if (getter == null) {
+            return field.get(bean);
+        }
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (ClassCastException e) {
+            // keep the exception Field.get would throw
+            throw new IllegalArgumentException("Can not get field " + field + " on " + bean.getClass().getName(), e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void set(Object bean, Object value) throws IllegalAccessException {
+        if (setter == null || (value == null && field.getType().isPrimitive())) {
+            field.set(bean, value);
+            return;
+        }
+        try {
+            setter.invokeExact(bean, value);
+        } catch (ClassCastException e) {
+            // keep the exception Field.set would throw
+            throw new IllegalArgumentException("Can not set field " + field + " on " + bean.getClass().getName()
+                    + " to " + value.getClass().getName(), e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.persistence.module;
+
+import org.broadleafcommerce.common.util.BLCFieldUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches what {@link FieldManager} needs to walk a property path such as {@code defaultSku.name} or
+ * {@code productAttributes---color}: the parsed segments of each path and a {@link FieldAccessor} for each field of
+ * each class. The accessors are looked up by the runtime class of every intermediate value, as the reflective version
+ * did, since the same path can lead through different subclasses or proxies.
+ */
+public class FieldAccessorFactory {
+
+    /**
+     * Paths containing map keys can be built from data, so the number of cached paths is bounded
+     */
+    protected static final int MAX_CACHED_PATHS = 10000;
+
+    protected static final Object FIELD_NOT_FOUND = new Object();
+
+    protected static final ClassValue<ConcurrentMap<String, Object>> ACCESSORS = new ClassValue<ConcurrentMap<String, Object>>() {
+
+        @Override
+        protected ConcurrentMap<String, Object> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    protected static final ConcurrentMap<String, PathSegment[]> PATHS = new ConcurrentHashMap<>();
+
+    /**
+     * @return the accessor for the field with the given name declared on the class or one of its superclasses, or null
+     * if there is no such field
+     */
+    public static FieldAccessor getAccessor(Class<?> clazz, String fieldName) {
+        ConcurrentMap<String, Object> accessors = ACCESSORS.get(clazz);
+        Object accessor = accessors.get(fieldName);
+        if (accessor == null) {
+            Field field = BLCFieldUtils.getSingleField(clazz, fieldName);
+            accessor = field == null ? FIELD_NOT_FOUND : new FieldAccessor(field);
+            Object previous = accessors.putIfAbsent(fieldName, accessor);
+            if (previous != null) {
+                accessor = previous;
+            }
+        }
+        return accessor == FIELD_NOT_FOUND ? null : (FieldAccessor) accessor;
+    }
+
+    /**
+     * @return the segments of the dot separated property path. The returned array must not be modified.
+     */
+    public static PathSegment[] getPath(String propertyPath) {
+        PathSegment[] path = PATHS.get(propertyPath);
+        if (path == null) {
+            path = parsePath(propertyPath);
+            if (PATHS.size() < MAX_CACHED_PATHS) {
+                PATHS.putIfAbsent(propertyPath, path);
+            }
+        }
+        return path;
+    }
+
+    protected static PathSegment[] parsePath(String propertyPath) {
+        List<PathSegment> segments = new ArrayList<>();
+        StringTokenizer tokens = new StringTokenizer(propertyPath, ".");
+        StringBuilder containingPath = new StringBuilder();
+        while (tokens.hasMoreTokens()) {
+            String fieldNamePart = tokens.nextToken();
+            if (containingPath.length() > 0) {
+                containingPath.append(".");
+            }
+            containingPath.append(fieldNamePart);
+            String mapKey = null;
+            int separator = fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR);
+            if (separator >= 0) {
+                mapKey = fieldNamePart.substring(separator + FieldManager.MAPFIELDSEPARATOR.length());
+                fieldNamePart = fieldNamePart.substring(0, separator);
+            }
+            segments.add(new PathSegment(fieldNamePart, mapKey, containingPath.toString()));
+        }
+        return segments.toArray(new PathSegment[segments.size()]);
+    }
+
+    /**
+     * One dot separated part of a property path
+     */
+    public static class PathSegment {
+
+        protected final String fieldName;
+        protected final String mapKey;
+        protected final String containingPath;
+
+        public PathSegment(String fieldName, String mapKey, String containingPath) {
+            this.fieldName = fieldName;
+            this.mapKey = mapKey;
+            this.containingPath = containingPath;
+        }
+
+        /**
+         * @return the name of the field, without a map key
+         */
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        /**
+         * @return the map key following {@link FieldManager#MAPFIELDSEPARATOR}, or null
+         */
+        public String getMapKey() {
+            return mapKey;
+        }
+
+        /**
+         * @return the path up to and including this segment, as written in the original path
+         */
+        public String getContainingPath() {
+            return containingPath;
+        }
+    }
+
+}
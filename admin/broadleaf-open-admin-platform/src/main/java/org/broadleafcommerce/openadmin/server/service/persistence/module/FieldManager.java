@@ -42,7 +42,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.metamodel.EntityType;
@@ -82,23 +81,18 @@ public class FieldManager {
     }
 
     public Object getFieldValue(Object bean, String fieldName) throws IllegalAccessException, FieldNotAvailableException {
-        StringTokenizer tokens = new StringTokenizer(fieldName, ".");
         Class<?> componentClass = bean.getClass();
         Field field = null;
         Object value = HibernateUtils.deproxy(bean);
 
-        while (tokens.hasMoreTokens()) {
-            String fieldNamePart = tokens.nextToken();
-            String mapKey = null;
-            if (fieldNamePart.contains(FieldManager.MAPFIELDSEPARATOR)) {
-                mapKey = fieldNamePart.substring(fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR) + FieldManager.MAPFIELDSEPARATOR.length(), fieldNamePart.length());
-                fieldNamePart = fieldNamePart.substring(0, fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR));
-            }
-            field = getSingleField(componentClass, fieldNamePart);
+        for (FieldAccessorFactory.PathSegment segment : FieldAccessorFactory.getPath(fieldName)) {
+            String fieldNamePart = segment.getFieldName();
+            String mapKey = segment.getMapKey();
+            FieldAccessor accessor = FieldAccessorFactory.getAccessor(componentClass, fieldNamePart);
 
-            if (field != null) {
-                field.setAccessible(true);
-                value = field.get(value);
+            if (accessor != null) {
+                field = accessor.getField();
+                value = accessor.get(value);
 
                 if (mapKey != null) {
                     value = handleMapFieldExtraction(bean, fieldName, componentClass, value, fieldNamePart, mapKey);
@@ -123,26 +117,20 @@ public class FieldManager {
     }
 
     public Object setFieldValue(Object bean, String fieldName, Object newValue) throws IllegalAccessException, InstantiationException {
-        StringTokenizer tokens = new StringTokenizer(fieldName, ".");
         Class<?> componentClass = bean.getClass();
         Field field;
         bean = HibernateUtils.deproxy(bean);
         Object value = bean;
         
-        int count = tokens.countTokens();
-        int j=0;
-        StringBuilder sb = new StringBuilder();
-        while (tokens.hasMoreTokens()) {
-            String fieldNamePart = tokens.nextToken();
-            sb.append(fieldNamePart);
-            String mapKey = null;
-            if (fieldNamePart.contains(FieldManager.MAPFIELDSEPARATOR)) {
-                mapKey = fieldNamePart.substring(fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR) + FieldManager.MAPFIELDSEPARATOR.length(), fieldNamePart.length());
-                fieldNamePart = fieldNamePart.substring(0, fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR));
-            }
-
-            field = getSingleField(componentClass, fieldNamePart);
-            field.setAccessible(true);
+        FieldAccessorFactory.PathSegment[] segments = FieldAccessorFactory.getPath(fieldName);
+        int count = segments.length;
+        for (int j = 0; j < count; j++) {
+            String fieldNamePart = segments[j].getFieldName();
+            String mapKey = segments[j].getMapKey();
+            String containingPath = segments[j].getContainingPath();
+
+            FieldAccessor accessor = FieldAccessorFactory.getAccessor(componentClass, fieldNamePart);
+            field = accessor.getField();
             if (j == count - 1) {
                 if (mapKey != null) {
                     handleMapFieldPopulation(bean, fieldName, newValue, componentClass, field, value, fieldNamePart, mapKey);
@@ -151,10 +139,10 @@ public class FieldManager {
                     if (modifierManager != null) {
                         newValue = modifierManager.getModifiedWriteValue(field, value, newValue, entityManager);
                     }
-                    field.set(value, newValue);
+                    accessor.set(value, newValue);
                 }
             } else {
-                Object myValue = field.get(value);
+                Object myValue = accessor.get(value);
                 if (myValue != null) {
                     componentClass = myValue.getClass();
                     value = myValue;
@@ -163,9 +151,9 @@ public class FieldManager {
                     //configured entity for this class
                     try {
                         Object newEntity = entityConfiguration.createEntityInstance(field.getType().getName());
-                        SortableValue val = new SortableValue(bean, (Serializable) newEntity, j, sb.toString());
+                        SortableValue val = new SortableValue(bean, (Serializable) newEntity, j, containingPath);
                         middleFields.add(val);
-                        field.set(value, newEntity);
+                        accessor.set(value, newEntity);
                         componentClass = newEntity.getClass();
                         value = newEntity;
                     } catch (Exception e) {
@@ -174,9 +162,9 @@ public class FieldManager {
                         Class<?>[] entities = persistenceManager.getUpDownInheritance(field.getType());
                         if (!ArrayUtils.isEmpty(entities)) {
                             Object newEntity = entities[entities.length-1].newInstance();
-                            SortableValue val = new SortableValue(bean, (Serializable) newEntity, j, sb.toString());
+                            SortableValue val = new SortableValue(bean, (Serializable) newEntity, j, containingPath);
                             middleFields.add(val);
-                            field.set(value, newEntity);
+                            accessor.set(value, newEntity);
                             componentClass = newEntity.getClass();
                             value = newEntity;
                             LOG.info("Unable to find a reference to ("+field.getType().getName()+") in the EntityConfigurationManager. " +
@@ -184,7 +172,7 @@ public class FieldManager {
                         } else {
                             //Just use the field type
                             Object newEntity = field.getType().newInstance();
-                            field.set(value, newEntity);
+                            accessor.set(value, newEntity);
                             componentClass = newEntity.getClass();
                             value = newEntity;
                             LOG.info("Unable to find a reference to ("+field.getType().getName()+") in the EntityConfigurationManager. " +
@@ -193,8 +181,6 @@ public class FieldManager {
                     }
                 }
             }
-            sb.append(".");
-            j++;
         }
         
         return value;
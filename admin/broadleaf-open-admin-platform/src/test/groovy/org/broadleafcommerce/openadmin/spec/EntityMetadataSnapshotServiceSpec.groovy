@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.spec
+
+import org.broadleafcommerce.common.presentation.client.SupportedFieldType
+import org.broadleafcommerce.common.presentation.client.VisibilityEnum
+import org.broadleafcommerce.openadmin.dto.BasicFieldMetadata
+import org.broadleafcommerce.openadmin.dto.FieldMetadata
+import org.broadleafcommerce.openadmin.server.service.metadata.EntityMetadataSnapshotServiceImpl
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+import spock.lang.Specification
+
+/**
+ * Tests writing and reading the file of {@link EntityMetadataSnapshotServiceImpl}
+ */
+class EntityMetadataSnapshotServiceSpec extends Specification {
+
+    File file
+
+    def setup() {
+        file = File.createTempFile("metadata", ".snapshot")
+        file.delete()
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    def "a written snapshot is read back with the same fingerprint"() {
+        setup: "A snapshot with one entry is written"
+        EntityMetadataSnapshotServiceImpl written = createService("fingerprint")
+        written.addEntry("key", ["name": createMetadata("name")])
+        written.writeSnapshot(file)
+
+        when: "The snapshot is read with the same fingerprint"
+        EntityMetadataSnapshotServiceImpl read = createService("fingerprint")
+        read.readSnapshot(file)
+
+        then: "The entry is loaded"
+        read.size() == 1
+        !read.dirty
+        BasicFieldMetadata metadata = (BasicFieldMetadata) read.getEntry("key").get("name")
+        metadata.name == "name"
+        metadata.fieldType == SupportedFieldType.STRING
+        metadata.visibility == VisibilityEnum.HIDDEN_ALL
+        metadata.additionalMetadata.get("order") == 1
+    }
+
+    def "a snapshot with another fingerprint is ignored"() {
+        setup: "A snapshot with one entry is written"
+        EntityMetadataSnapshotServiceImpl written = createService("fingerprint")
+        written.addEntry("key", ["name": createMetadata("name")])
+        written.writeSnapshot(file)
+
+        when: "The snapshot is read after the entity classes changed"
+        EntityMetadataSnapshotServiceImpl read = createService("changed")
+        read.readSnapshot(file)
+
+        then: "Nothing is loaded"
+        read.size() == 0
+    }
+
+    def "a corrupt snapshot is ignored and rebuilt"() {
+        setup: "A snapshot is written and truncated"
+        EntityMetadataSnapshotServiceImpl written = createService("fingerprint")
+        written.addEntry("key1", ["name": createMetadata("name")])
+        written.addEntry("key2", ["name": createMetadata("name")])
+        written.writeSnapshot(file)
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream()
+        new GZIPInputStream(new FileInputStream(file)).withStream { uncompressed << it }
+        byte[] bytes = uncompressed.toByteArray()
+        new GZIPOutputStream(new FileOutputStream(file)).withStream { it.write(bytes, 0, bytes.length - 10) }
+
+        when: "The snapshot is read"
+        EntityMetadataSnapshotServiceImpl read = createService("fingerprint")
+        read.readSnapshot(file)
+
+        then: "No entry is loaded and the snapshot is marked for rewriting"
+        read.size() == 0
+        read.dirty
+    }
+
+    def "a snapshot referring to a class that is not allowed is rejected"() {
+        setup: "A snapshot whose metadata holds a class outside of the allowed ones"
+        EntityMetadataSnapshotServiceImpl written = createService("fingerprint")
+        written.addEntry("key1", ["name": createMetadata("name")])
+        BasicFieldMetadata metadata = createMetadata("counter")
+        metadata.additionalMetadata.put("counter", new AtomicLong(1))
+        written.addEntry("key2", ["counter": metadata])
+        written.writeSnapshot(file)
+
+        when: "The snapshot is read"
+        EntityMetadataSnapshotServiceImpl read = createService("fingerprint")
+        read.readSnapshot(file)
+
+        then: "No entry is loaded and the snapshot is marked for rewriting"
+        read.size() == 0
+        read.dirty
+    }
+
+    def "clearing drops the entries and the fingerprint"() {
+        setup: "A snapshot with one entry that has not been written"
+        EntityMetadataSnapshotServiceImpl service = createService("fingerprint")
+        service.addEntry("key", ["name": createMetadata("name")])
+
+        when: "The snapshot is cleared after the session factory was recycled"
+        service.clear()
+
+        then: "Nothing is served, and nothing is persisted until the snapshot is built again"
+        service.size() == 0
+        service.getEntry("key") == null
+        !service.dirty
+        service.fingerprint == null
+    }
+
+    def "only metadata, value and collection classes are allowed"() {
+        setup:
+        EntityMetadataSnapshotServiceImpl service = createService("fingerprint")
+
+        expect:
+        service.isAllowedSnapshotClass(BasicFieldMetadata.class.name)
+        service.isAllowedSnapshotClass(SupportedFieldType.class.name)
+        service.isAllowedSnapshotClass("java.util.HashMap")
+        service.isAllowedSnapshotClass("[Ljava.lang.String;")
+        service.isAllowedSnapshotClass("[[Ljava.lang.String;")
+        service.isAllowedSnapshotClass("[I")
+        !service.isAllowedSnapshotClass("java.util.concurrent.atomic.AtomicLong")
+        !service.isAllowedSnapshotClass("[Ljava.lang.Object;")
+        !service.isAllowedSnapshotClass("org.broadleafcommerce.openadmin.dto.visitor.MetadataVisitor")
+        !service.isAllowedSnapshotClass("org.apache.commons.collections.functors.InvokerTransformer")
+    }
+
+    protected EntityMetadataSnapshotServiceImpl createService(String fingerprint) {
+        EntityMetadataSnapshotServiceImpl service = new EntityMetadataSnapshotServiceImpl()
+        service.snapshotEnabled = true
+        service.fingerprint = fingerprint
+        return service
+    }
+
+    protected BasicFieldMetadata createMetadata(String name) {
+        BasicFieldMetadata metadata = new BasicFieldMetadata()
+        metadata.name = name
+        metadata.fieldType = SupportedFieldType.STRING
+        metadata.visibility = VisibilityEnum.HIDDEN_ALL
+        metadata.additionalMetadata = new HashMap<String, Object>()
+        metadata.additionalMetadata.put("order", 1)
+        return metadata
+    }
+
+}
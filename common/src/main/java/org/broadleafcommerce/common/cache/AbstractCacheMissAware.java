@@ -180,6 +180,7 @@ public abstract class AbstractCacheMissAware {
         BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
         String key = buildKey(params);
         T response = null;
+        long start = System.nanoTime();
         boolean allowL2Cache = false;
         if (context != null) {
             allowL2Cache = context.isProductionSandBox()
@@ -196,14 +197,14 @@ public abstract class AbstractCacheMissAware {
             }
             //only handle null, non-hits. Otherwise, let level 2 cache handle it
             if (allowL2Cache && response.equals(nullResponse)) {
-                statisticsService.addCacheStat(statisticsName, false);
+                statisticsService.addCacheStat(statisticsName, false, System.nanoTime() - start);
                 getCache(cacheName).put(new Element(key, response));
                 if (getLogger().isTraceEnabled()) {
                     getLogger().trace("Caching [" + key + "] as null in the [" + cacheName + "] cache.");
                 }
             }
         } else {
-            statisticsService.addCacheStat(statisticsName, true);
+            statisticsService.addCacheStat(statisticsName, true, System.nanoTime() - start);
         }
         if (response.equals(nullResponse)) {
             return null;
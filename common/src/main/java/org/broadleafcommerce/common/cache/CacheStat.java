@@ -17,50 +17,77 @@
  */
 package org.broadleafcommerce.common.cache;
 
+import org.broadleafcommerce.common.time.SystemTime;
+
 import java.math.BigDecimal;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.broadleafcommerce.common.time.SystemTime;
-
 /**
  * @author Jeff Fischer
  */
 public class CacheStat {
 
-    protected AtomicLong requestCount = new AtomicLong(0L);
-    protected AtomicLong cacheHitCount = new AtomicLong(0L);
-    protected Long lastLogTime = SystemTime.asMillis(true);
+    protected StripedCounter requestCount = new StripedCounter();
+    protected StripedCounter cacheHitCount = new StripedCounter();
+    protected AtomicLong lastLogTime = new AtomicLong(SystemTime.asMillis(true));
+    protected LatencyHistogram hitLatency = new LatencyHistogram();
+    protected LatencyHistogram missLatency = new LatencyHistogram();
 
     public Long getCacheHitCount() {
-        return cacheHitCount.longValue();
+        return cacheHitCount.sum();
     }
 
     public Long getLastLogTime() {
-        return lastLogTime;
+        return lastLogTime.get();
     }
 
-    public synchronized void setLastLogTime(Long lastLogTime) {
-        this.lastLogTime = lastLogTime;
+    public void setLastLogTime(Long lastLogTime) {
+        this.lastLogTime.set(lastLogTime);
+    }
+
+    /**
+     * Moves the last log time forward only if no other thread has done so since {@code expected} was read, so that
+     * exactly one thread logs per resolution period.
+     */
+    public boolean updateLastLogTime(long expected, long now) {
+        return lastLogTime.compareAndSet(expected, now);
     }
 
     public Long getRequestCount() {
-        return requestCount.longValue();
+        return requestCount.sum();
     }
 
     public void incrementRequest() {
-        requestCount.incrementAndGet();
+        requestCount.increment();
     }
 
     public void incrementHit() {
-        cacheHitCount.incrementAndGet();
+        cacheHitCount.increment();
+    }
+
+    public void recordLatency(boolean isHit, long nanos) {
+        if (isHit) {
+            hitLatency.record(nanos);
+        } else {
+            missLatency.record(nanos);
+        }
+    }
+
+    public LatencyHistogram getHitLatency() {
+        return hitLatency;
+    }
+
+    public LatencyHistogram getMissLatency() {
+        return missLatency;
     }
 
     public BigDecimal getHitRate() {
-        if (getRequestCount() == 0) {
+        long requestCount = getRequestCount();
+        if (requestCount == 0) {
             return new BigDecimal(-1);
         }
-        BigDecimal percentage = new BigDecimal(getCacheHitCount()).divide(new BigDecimal(getRequestCount
-                ()), 2, BigDecimal.ROUND_HALF_UP);
+        BigDecimal percentage = new BigDecimal(getCacheHitCount()).divide(new BigDecimal(requestCount), 2,
+                BigDecimal.ROUND_HALF_UP);
         percentage = percentage.multiply(new BigDecimal(100)).setScale(2, BigDecimal.ROUND_HALF_UP);
         return percentage;
     }
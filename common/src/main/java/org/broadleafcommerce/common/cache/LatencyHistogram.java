@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies in nanoseconds using power of two buckets. Percentiles are reported as the upper
+ * bound of the bucket they fall in, which is accurate to within a factor of two.
+ *
+ * Like {@link StripedCounter}, every bucket is striped: each stripe holds a full set of buckets, padded from the next
+ * stripe by a cache line, and a thread only increments the buckets of its own stripe. Threads recording similar
+ * latencies therefore do not contend on, or falsely share, the same cache line. Reads sum the stripes.
+ */
+public class LatencyHistogram {
+
+    protected static final int BUCKETS = 64;
+
+    /**
+     * Distance in longs between the first bucket of two consecutive stripes
+     */
+    protected static final int STRIPE_LENGTH = BUCKETS + StripedCounter.PADDING;
+
+    protected final AtomicLongArray buckets = new AtomicLongArray(StripedCounter.STRIPES * STRIPE_LENGTH);
+    protected final StripedCounter count = new StripedCounter();
+    protected final StripedCounter totalNanos = new StripedCounter();
+
+    public void record(long nanos) {
+        if (nanos < 0L) {
+            nanos = 0L;
+        }
+        buckets.getAndIncrement(StripedCounter.currentStripe() * STRIPE_LENGTH + bucketFor(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0L ? 0D : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return the upper bound, in nanoseconds, of the bucket holding the given percentile or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0L;
+        for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+            int offset = stripe * STRIPE_LENGTH;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] += buckets.get(offset + i);
+            }
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            total += snapshot[i];
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        long threshold = (long) Math.ceil(total * Math.min(100D, Math.max(0D, percentile)) / 100D);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= threshold && seen > 0L) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0L);
+        }
+        count.reset();
+        totalNanos.reset();
+    }
+
+    protected int bucketFor(long nanos) {
+        return nanos == 0L ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos);
+    }
+
+    protected long upperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1L;
+    }
+}
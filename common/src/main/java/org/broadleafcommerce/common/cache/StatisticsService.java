@@ -23,6 +23,13 @@ package org.broadleafcommerce.common.cache;
 public interface StatisticsService {
     void addCacheStat(String key, boolean isHit);
 
+    /**
+     * Same as {@link #addCacheStat(String, boolean)}, additionally recording how long the lookup took
+     *
+     * @param latencyNanos the elapsed time of the lookup in nanoseconds, as measured with {@link System#nanoTime()}
+     */
+    void addCacheStat(String key, boolean isHit, long latencyNanos);
+
     Long getLogResolution();
 
     void setLogResolution(Long logResolution);
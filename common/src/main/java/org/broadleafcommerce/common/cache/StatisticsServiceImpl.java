@@ -27,11 +27,12 @@ import org.springframework.jmx.support.ObjectNameManager;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
@@ -60,7 +61,12 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
 
     protected StatisticsServiceLogAdapter adapter;
 
-    protected Map<String, CacheStat> cacheStats = Collections.synchronizedMap(new HashMap<String, CacheStat>());
+    protected static final String HIT_LATENCY_P50 = "_HIT_LATENCY_P50_MICROS";
+    protected static final String HIT_LATENCY_P99 = "_HIT_LATENCY_P99_MICROS";
+    protected static final String MISS_LATENCY_P50 = "_MISS_LATENCY_P50_MICROS";
+    protected static final String MISS_LATENCY_P99 = "_MISS_LATENCY_P99_MICROS";
+
+    protected ConcurrentMap<String, CacheStat> cacheStats = new ConcurrentHashMap<String, CacheStat>();
 
     @Override
     public void addCacheStat(String key, boolean isHit) {
@@ -69,8 +75,24 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
             myStat.incrementHit();
         }
         myStat.incrementRequest();
-        if (myStat.getLastLogTime() + logResolution < SystemTime.asMillis()) {
-            myStat.setLastLogTime(SystemTime.asMillis());
+        logIfDue(key, myStat);
+    }
+
+    @Override
+    public void addCacheStat(String key, boolean isHit, long latencyNanos) {
+        CacheStat myStat = getCacheStat(key);
+        if (isHit) {
+            myStat.incrementHit();
+        }
+        myStat.incrementRequest();
+        myStat.recordLatency(isHit, latencyNanos);
+        logIfDue(key, myStat);
+    }
+
+    protected void logIfDue(String key, CacheStat myStat) {
+        long lastLogTime = myStat.getLastLogTime();
+        long now = SystemTime.asMillis();
+        if (lastLogTime + logResolution < now && myStat.updateLastLogTime(lastLogTime, now)) {
             BigDecimal percentage = myStat.getHitRate();
             if (LOG.isInfoEnabled()) {
                 LOG.info("Cache hit percentage for " + key + " is: " + percentage.toString() + "%");
@@ -79,11 +101,23 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
     }
 
     protected CacheStat getCacheStat(String key) {
-        if (!cacheStats.containsKey(key)) {
-            CacheStat stat = new CacheStat();
-            cacheStats.put(key, stat);
+        CacheStat stat = cacheStats.get(key);
+        if (stat == null) {
+            stat = new CacheStat();
+            CacheStat existing = cacheStats.putIfAbsent(key, stat);
+            if (existing != null) {
+                stat = existing;
+            }
         }
-        return cacheStats.get(key);
+        return stat;
+    }
+
+    /**
+     * @return a read only view of the statistics gathered so far, keyed by statistic name. Useful for publishing the
+     * counters and latency histograms to an external metrics registry.
+     */
+    public Map<String, CacheStat> getCacheStats() {
+        return Collections.unmodifiableMap(cacheStats);
     }
 
     @Override
@@ -123,9 +157,29 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
         if (attribute.equals("LOG_RESOLUTION")) {
             return getLogResolution();
         }
+        if (attribute.endsWith(HIT_LATENCY_P50)) {
+            return toMicros(getCacheStat(stripSuffix(attribute, HIT_LATENCY_P50)).getHitLatency(), 50D);
+        }
+        if (attribute.endsWith(HIT_LATENCY_P99)) {
+            return toMicros(getCacheStat(stripSuffix(attribute, HIT_LATENCY_P99)).getHitLatency(), 99D);
+        }
+        if (attribute.endsWith(MISS_LATENCY_P50)) {
+            return toMicros(getCacheStat(stripSuffix(attribute, MISS_LATENCY_P50)).getMissLatency(), 50D);
+        }
+        if (attribute.endsWith(MISS_LATENCY_P99)) {
+            return toMicros(getCacheStat(stripSuffix(attribute, MISS_LATENCY_P99)).getMissLatency(), 99D);
+        }
         return getCacheStat(attribute).getHitRate().doubleValue();
     }
 
+    protected String stripSuffix(String attribute, String suffix) {
+        return attribute.substring(0, attribute.length() - suffix.length());
+    }
+
+    protected Double toMicros(LatencyHistogram histogram, double percentile) {
+        return histogram.getPercentileNanos(percentile) / 1000D;
+    }
+
     @Override
     public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
         if (attribute.getName().equals("LOG_RESOLUTION")) {
@@ -139,6 +193,16 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
         AttributeList list = new AttributeList();
         for (Map.Entry<String, CacheStat> stats : cacheStats.entrySet()) {
             list.add(new Attribute(stats.getKey(), stats.getValue().getHitRate().doubleValue()));
+            LatencyHistogram hitLatency = stats.getValue().getHitLatency();
+            if (hitLatency.getCount() > 0) {
+                list.add(new Attribute(stats.getKey() + HIT_LATENCY_P50, toMicros(hitLatency, 50D)));
+                list.add(new Attribute(stats.getKey() + HIT_LATENCY_P99, toMicros(hitLatency, 99D)));
+            }
+            LatencyHistogram missLatency = stats.getValue().getMissLatency();
+            if (missLatency.getCount() > 0) {
+                list.add(new Attribute(stats.getKey() + MISS_LATENCY_P50, toMicros(missLatency, 50D)));
+                list.add(new Attribute(stats.getKey() + MISS_LATENCY_P99, toMicros(missLatency, 99D)));
+            }
         }
         return list;
     }
@@ -178,6 +242,14 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
         SortedSet<String> names = new TreeSet<String>();
         for (Map.Entry<String, CacheStat> stats : cacheStats.entrySet()) {
             names.add(stats.getKey());
+            if (stats.getValue().getHitLatency().getCount() > 0) {
+                names.add(stats.getKey() + HIT_LATENCY_P50);
+                names.add(stats.getKey() + HIT_LATENCY_P99);
+            }
+            if (stats.getValue().getMissLatency().getCount() > 0) {
+                names.add(stats.getKey() + MISS_LATENCY_P50);
+                names.add(stats.getKey() + MISS_LATENCY_P99);
+            }
         }
         MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[names.size()];
         Iterator<String> it = names.iterator();
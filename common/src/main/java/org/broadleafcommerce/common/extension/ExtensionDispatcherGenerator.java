@@ -0,0 +1,265 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extension;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.Modifier;
+
+/**
+ * Generates an implementation of an {@link ExtensionHandler} interface that dispatches each call straight to the
+ * enabled handlers of an {@link ExtensionManager}, in place of the {@link java.lang.reflect.Proxy} that invokes every
+ * handler through {@link Method#invoke(Object, Object...)}.
+ * <p/>
+ * For each interface method that returns an {@link ExtensionResultStatusType}, the generated method walks the
+ * handlers from {@link ExtensionManager#getDispatchHandlers()} and calls the method on each enabled handler directly,
+ * applying the same rules as {@link ExtensionManager#invoke(Object, Method, Object[])}. When no handler is registered
+ * the call returns {@link ExtensionResultStatusType#NOT_HANDLED} without allocating anything. Any other method is
+ * passed to {@link ExtensionManager#invoke(Object, Method, Object[])} as before.
+ * <p/>
+ * One class is generated per interface, in the interface's package and class loader, and is shared by every manager
+ * of that interface. The class is held in a {@link ClassValue} of the interface, so it does not keep the interface's
+ * class loader from being collected. When an interface cannot be dispatched this way, the failure is logged once and
+ * every later manager of that interface goes straight to the reflective proxy.
+ *
+ * @see ExtensionManager#getProxy()
+ */
+public class ExtensionDispatcherGenerator {
+
+    private static final Log LOG = LogFactory.getLog(ExtensionDispatcherGenerator.class);
+
+    protected static final String CLASS_SUFFIX = "$$BLCExtensionDispatcher";
+
+    protected static final ClassValue<DispatcherClass> DISPATCHER_CLASSES = new ClassValue<DispatcherClass>() {
+
+        @Override
+        protected DispatcherClass computeValue(Class<?> handlerInterface) {
+            try {
+                return new DispatcherClass(loadDispatcherClass(handlerInterface));
+            } catch (Throwable e) {
+                LOG.warn("Unable to generate an extension dispatcher for " + handlerInterface.getName()
+                        + ". Falling back to a reflective proxy.", e);
+                return new DispatcherClass(null);
+            }
+        }
+    };
+
+    /**
+     * Builds a dispatcher for the given manager. Returns null when the interface cannot be implemented this way (for
+     * example, when it is not public or bytecode cannot be defined in its class loader), in which case the caller
+     * should fall back to a reflective proxy.
+     *
+     * @param handlerInterface the {@link ExtensionHandler} interface managed by the manager
+     * @param manager the manager that the dispatcher reads its handlers and continuation rules from
+     * @return the dispatcher, or null if one could not be generated
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends ExtensionHandler> T createDispatcher(Class<T> handlerInterface, ExtensionManager<T> manager) {
+        if (!handlerInterface.isInterface() || !java.lang.reflect.Modifier.isPublic(handlerInterface.getModifiers())) {
+            return null;
+        }
+        DispatcherClass dispatcherClass = DISPATCHER_CLASSES.get(handlerInterface);
+        if (dispatcherClass.failed.get()) {
+            return null;
+        }
+        try {
+            Method[] methods = getDispatchedMethods(handlerInterface);
+            return (T) dispatcherClass.type.getConstructor(ExtensionManager.class, Method[].class, boolean.class)
+                    .newInstance(manager, methods, overridesShouldContinue(manager));
+        } catch (Throwable e) {
+            if (dispatcherClass.failed.compareAndSet(false, true)) {
+                LOG.warn("Unable to create an extension dispatcher for " + handlerInterface.getName()
+                        + ". Falling back to a reflective proxy.", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Loads the dispatcher class of the interface, generating it if it has not been defined in the interface's class
+     * loader yet. Generation is serialized, since {@link ClassValue} may compute the value for the same interface on
+     * several threads at once and a class can only be defined once per loader.
+     */
+    protected static Class<?> loadDispatcherClass(Class<?> handlerInterface) throws Exception {
+        synchronized (DISPATCHER_CLASSES) {
+            ClassLoader loader = handlerInterface.getClassLoader();
+            String className = handlerInterface.getName() + CLASS_SUFFIX;
+            try {
+                return Class.forName(className, false, loader);
+            } catch (ClassNotFoundException e) {
+                return generate(handlerInterface, className, loader);
+            }
+        }
+    }
+
+    protected static Class<?> generate(Class<?> handlerInterface, String className, ClassLoader loader) throws Exception {
+        ClassPool pool = new ClassPool(true);
+        pool.insertClassPath(new LoaderClassPath(loader));
+
+        CtClass dispatcher = pool.makeClass(className);
+        dispatcher.addInterface(pool.get(handlerInterface.getName()));
+        dispatcher.addField(CtField.make("private final " + ExtensionManager.class.getName() + " manager;", dispatcher));
+        dispatcher.addField(CtField.make("private final java.lang.reflect.Method[] methods;", dispatcher));
+        dispatcher.addField(CtField.make("private final boolean customShouldContinue;", dispatcher));
+        dispatcher.addConstructor(CtNewConstructor.make(
+                "public " + dispatcher.getSimpleName() + "(" + ExtensionManager.class.getName() + " manager, "
+                        + "java.lang.reflect.Method[] methods, boolean customShouldContinue) {"
+                        + " this.manager = manager; this.methods = methods; this.customShouldContinue = customShouldContinue; }",
+                dispatcher));
+
+        Method[] methods = getDispatchedMethods(handlerInterface);
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            CtClass[] parameterTypes = new CtClass[method.getParameterTypes().length];
+            for (int j = 0; j < parameterTypes.length; j++) {
+                parameterTypes[j] = toCtClass(pool, method.getParameterTypes()[j]);
+            }
+            CtClass[] exceptionTypes = new CtClass[method.getExceptionTypes().length];
+            for (int j = 0; j < exceptionTypes.length; j++) {
+                exceptionTypes[j] = toCtClass(pool, method.getExceptionTypes()[j]);
+            }
+            String body;
+            if (ExtensionResultStatusType.class.equals(method.getReturnType())) {
+                body = buildDispatchBody(handlerInterface, method, i);
+            } else {
+                body = "{ return ($r) manager.invoke(this, methods[" + i + "], $args); }";
+            }
+            dispatcher.addMethod(CtNewMethod.make(Modifier.PUBLIC, toCtClass(pool, method.getReturnType()), method.getName(),
+                    parameterTypes, exceptionTypes, body, dispatcher));
+        }
+
+        try {
+            return dispatcher.toClass(loader, handlerInterface.getProtectionDomain());
+        } finally {
+            dispatcher.detach();
+        }
+    }
+
+    protected static String buildDispatchBody(Class<?> handlerInterface, Method method, int index) {
+        String handler = ExtensionHandler.class.getName();
+        String status = ExtensionResultStatusType.class.getName();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        sb.append(handler).append("[] handlers = manager.getDispatchHandlers();");
+        sb.append("boolean notHandled = true;");
+        sb.append("for (int i = 0; i < handlers.length; i++) {");
+        sb.append("  ").append(handler).append(" handler = handlers[i];");
+        sb.append("  if (handler.isEnabled()) {");
+        sb.append("    ").append(status).append(" result = ((").append(handlerInterface.getName()).append(") handler).")
+                .append(method.getName()).append("($$);");
+        sb.append("    if (!").append(status).append(".NOT_HANDLED.equals(result)) { notHandled = false; }");
+        sb.append("    if (customShouldContinue) {");
+        sb.append("      if (!manager.shouldContinue(result, handler, methods[").append(index).append("], $args)) { break; }");
+        sb.append("    } else if (").append(status).append(".HANDLED_STOP.equals(result) || (").append(status)
+                .append(".HANDLED.equals(result) && !manager.continueOnHandled())) {");
+        sb.append("      break;");
+        sb.append("    }");
+        sb.append("  }");
+        sb.append("}");
+        sb.append("if (notHandled) { return ").append(status).append(".NOT_HANDLED; }");
+        sb.append("return ").append(status).append(".HANDLED;");
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * The public methods of the interface, including inherited ones, with a single entry per signature and in a stable
+     * order, so that the indexes compiled into the dispatcher class hold for every manager of the interface
+     */
+    protected static Method[] getDispatchedMethods(Class<?> handlerInterface) {
+        Method[] candidates = handlerInterface.getMethods();
+        Arrays.sort(candidates, new Comparator<Method>() {
+            @Override
+            public int compare(Method o1, Method o2) {
+                return toSignature(o1).compareTo(toSignature(o2));
+            }
+        });
+        List<Method> methods = new ArrayList<Method>(candidates.length);
+        Set<String> signatures = new HashSet<String>();
+        for (Method method : candidates) {
+            if (signatures.add(toSignature(method))) {
+                methods.add(method);
+            }
+        }
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    protected static String toSignature(Method method) {
+        StringBuilder sb = new StringBuilder(method.getName()).append('(');
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            sb.append(parameterType.getName()).append(';');
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Whether a subclass overrides {@link ExtensionManager#shouldContinue(ExtensionResultStatusType, ExtensionHandler, Method, Object[])},
+     * in which case the dispatcher calls it with the method and arguments instead of applying the default rules inline
+     */
+    protected static boolean overridesShouldContinue(ExtensionManager<?> manager) throws NoSuchMethodException {
+        Method shouldContinue = manager.getClass().getMethod("shouldContinue", ExtensionResultStatusType.class,
+                ExtensionHandler.class, Method.class, Object[].class);
+        return !ExtensionManager.class.equals(shouldContinue.getDeclaringClass());
+    }
+
+    protected static CtClass toCtClass(ClassPool pool, Class<?> type) throws Exception {
+        StringBuilder name = new StringBuilder();
+        Class<?> componentType = type;
+        int dimensions = 0;
+        while (componentType.isArray()) {
+            componentType = componentType.getComponentType();
+            dimensions++;
+        }
+        name.append(componentType.getName());
+        for (int i = 0; i < dimensions; i++) {
+            name.append("[]");
+        }
+        return pool.get(name.toString());
+    }
+
+    /**
+     * The dispatcher class generated for an interface, or a record that the interface cannot be dispatched this way
+     */
+    protected static class DispatcherClass {
+
+        protected final Class<?> type;
+        protected final AtomicBoolean failed;
+
+        protected DispatcherClass(Class<?> type) {
+            this.type = type;
+            this.failed = new AtomicBoolean(type == null);
+        }
+    }
+
+}
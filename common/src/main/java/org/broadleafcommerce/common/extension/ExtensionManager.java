@@ -49,17 +49,39 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
     protected T extensionHandler;
     protected List<T> handlers = new ArrayList<T>();
 
+    /**
+     * The sorted handlers as of the last registration change, read by the proxy on every call
+     */
+    protected volatile ExtensionHandler[] dispatchHandlers;
+
+    /**
+     * Whether a subclass overrides {@link #getHandlers()}, in which case the handlers are read from it on every call
+     * rather than from {@link #dispatchHandlers}
+     */
+    protected final boolean customHandlers;
+
     /**
      * Should take in a className that matches the ExtensionHandler interface being managed.
      * @param className
      */
     @SuppressWarnings("unchecked")
     public ExtensionManager(Class<T> _clazz) {
-        extensionHandler = (T) Proxy.newProxyInstance(_clazz.getClassLoader(),
-                new Class[] { _clazz },
-                this);
+        customHandlers = overridesGetHandlers();
+        extensionHandler = ExtensionDispatcherGenerator.createDispatcher(_clazz, this);
+        if (extensionHandler == null) {
+            extensionHandler = (T) Proxy.newProxyInstance(_clazz.getClassLoader(),
+                    new Class[] { _clazz },
+                    this);
+        }
     }
     
+    /**
+     * Returns an implementation of the extension handler interface that calls each enabled handler in priority order.
+     * This is normally a class generated by {@link ExtensionDispatcherGenerator} that calls the handlers directly, and
+     * otherwise a {@link Proxy} backed by {@link #invoke(Object, Method, Object[])}.
+     * 
+     * @return the proxy for the managed handlers
+     */
     public T getProxy() {
         return extensionHandler;
     }
@@ -82,6 +104,39 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
         return handlers;
     }
 
+    /**
+     * Returns the handlers sorted by their priority, as an array that is only rebuilt when the handlers have changed
+     * since the last call. Used by the proxy so that dispatch does not need to synchronize or iterate the list.
+     * <p/>
+     * The array is built from the registered handlers. When a subclass overrides {@link #getHandlers()}, for example
+     * to filter the handlers for the current request, its result is returned instead on every call.
+     * 
+     * @return the sorted handlers
+     */
+    public ExtensionHandler[] getDispatchHandlers() {
+        if (customHandlers) {
+            List<T> current = getHandlers();
+            return current.toArray(new ExtensionHandler[current.size()]);
+        }
+        ExtensionHandler[] snapshot = dispatchHandlers;
+        if (snapshot == null || !handlersSorted || snapshot.length != handlers.size()) {
+            synchronized (LOCK_OBJECT) {
+                sortHandlers();
+                snapshot = handlers.toArray(new ExtensionHandler[handlers.size()]);
+                dispatchHandlers = snapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    protected boolean overridesGetHandlers() {
+        try {
+            return !ExtensionManager.class.equals(getClass().getMethod("getHandlers").getDeclaringClass());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     protected void sortHandlers() {
         if (!handlersSorted) {
@@ -113,6 +168,7 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
             if (add) {
                 this.handlers.add(handler);
                 handlersSorted = false;
+                dispatchHandlers = null;
             }
             
             return add;
@@ -121,6 +177,7 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
 
     public void setHandlers(List<T> handlers) {
         this.handlers = handlers;
+        dispatchHandlers = null;
     }
     
     /**
@@ -167,7 +224,7 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         boolean notHandled = true;
-        for (ExtensionHandler handler : getHandlers()) {
+        for (ExtensionHandler handler : getDispatchHandlers()) {
             try {
                 if (handler.isEnabled()) {
                     ExtensionResultStatusType result = (ExtensionResultStatusType) method.invoke(handler, args);
@@ -200,7 +257,7 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
      */
     protected ExtensionResultStatusType execute(ExtensionManagerOperation operation, Object... params) {
         boolean notHandled = true;
-        for (ExtensionHandler handler : getHandlers()) {
+        for (ExtensionHandler handler : getDispatchHandlers()) {
             if (handler.isEnabled()) {
                 ExtensionResultStatusType result = operation.execute(handler, params);
                 if (!ExtensionResultStatusType.NOT_HANDLED.equals(result)) {
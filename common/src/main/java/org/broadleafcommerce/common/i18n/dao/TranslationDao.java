@@ -138,6 +138,18 @@ public interface TranslationDao {
      */
     List<Translation> readAllTranslationEntries(TranslatedEntity entityType, ResultType stage, List<String> entityIds);
 
+    /**
+     * Read the entity id, field name, locale code and translated value, in that order, of every translation of the
+     * entity type whose locale code starts with the given language code. The translations are not loaded as entities,
+     * which keeps reading every translation of an entity type cheap.
+     *
+     * @param entityType
+     * @param localeCode the language code, such as "en"
+     * @param stage param drives whether to look for entries at a template level or standard site level (multitenant concepts). Can be IGNORE. Any multitenant behavior is ignored in the absence of the multitenant module.
+     * @return
+     */
+    List<Object[]> readTranslationValues(TranslatedEntity entityType, String localeCode, ResultType stage);
+
     /**
      * Read all translation entries (see {@link #readAllTranslationEntries(org.broadleafcommerce.common.i18n.domain.TranslatedEntity, org.broadleafcommerce.common.extension.ResultType)}),
      * and convert those results into a list of {@link org.broadleafcommerce.common.extension.StandardCacheItem} instances.
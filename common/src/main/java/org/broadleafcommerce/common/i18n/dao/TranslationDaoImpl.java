@@ -234,6 +234,36 @@ public class TranslationDaoImpl implements TranslationDao {
         }
     }
 
+    @Override
+    public List<Object[]> readTranslationValues(TranslatedEntity entityType, String localeCode, ResultType stage) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<TranslationImpl> root = criteria.from(TranslationImpl.class);
+        criteria.multiselect(root.get("entityId"), root.get("fieldName"), root.get("localeCode"), root.get("translatedValue"));
+        List<Predicate> restrictions = new ArrayList<Predicate>();
+        restrictions.add(builder.equal(root.get("entityType"), entityType.getFriendlyType()));
+        restrictions.add(builder.like(root.get("localeCode").as(String.class), localeCode + "%"));
+        try {
+            if (extensionManager != null) {
+                extensionManager.getProxy().setup(TranslationImpl.class, stage);
+                extensionManager.getProxy().refineParameterRetrieve(TranslationImpl.class, stage, builder, criteria, root, restrictions);
+            }
+            criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+
+            TypedQuery<Object[]> query = em.createQuery(criteria);
+            if (extensionManager != null) {
+                extensionManager.getProxy().refineQuery(TranslationImpl.class, stage, query);
+            }
+            // The results are held by the caller, there is no point in also keeping them in the query cache
+            query.setHint(QueryHints.HINT_CACHEABLE, false);
+            return query.getResultList();
+        } finally {
+            if (extensionManager != null) {
+                extensionManager.getProxy().breakdown(TranslationImpl.class, stage);
+            }
+        }
+    }
+
     @Override
     public List<StandardCacheItem> readConvertedTranslationEntries(TranslatedEntity entityType, ResultType stage) {
         List<Translation> results = readAllTranslationEntries(entityType, stage);
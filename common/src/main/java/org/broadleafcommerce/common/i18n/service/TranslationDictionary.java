@@ -0,0 +1,261 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.i18n.service;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable set of the translations of one entity type for one requested locale, resolved the same way as
+ * {@link org.broadleafcommerce.common.i18n.dao.TranslationDao#readTranslation(org.broadleafcommerce.common.i18n.domain.TranslatedEntity, String, String, String, String, org.broadleafcommerce.common.extension.ResultType)}:
+ * a translation for the exact locale wins, and when the locale has a country, a translation for its language or for
+ * another country of the same language is used otherwise.
+ * 
+ * Translations are grouped by field name. Numeric entity ids, which are the norm, are held as a sorted long array with
+ * a parallel array of values and found with a binary search, so a lookup does not allocate.
+ * 
+ * @see TranslationDictionaryService
+ */
+public class TranslationDictionary {
+
+    protected static final long NOT_NUMERIC = Long.MIN_VALUE;
+
+    protected final Map<String, FieldTranslations> fields;
+
+    protected final int size;
+
+    protected final long estimatedSize;
+
+    protected TranslationDictionary(Map<String, FieldTranslations> fields) {
+        this.fields = fields;
+        int size = 0;
+        long estimatedSize = 64;
+        for (Map.Entry<String, FieldTranslations> entry : fields.entrySet()) {
+            size += entry.getValue().size();
+            estimatedSize += 48 + estimateStringSize(entry.getKey()) + entry.getValue().estimateSize();
+        }
+        this.size = size;
+        this.estimatedSize = estimatedSize;
+    }
+
+    /**
+     * @return the translated value of the field of the entity, or null if there is no translation
+     */
+    public String getTranslatedValue(String fieldName, String entityId) {
+        FieldTranslations translations = fields.get(fieldName);
+        return translations == null ? null : translations.get(entityId);
+    }
+
+    /**
+     * @return the number of translated values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a rough estimate of the memory held by this dictionary, in bytes
+     */
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * @return the id as a long, or {@link #NOT_NUMERIC} when the id is not the canonical form of a long
+     */
+    protected static long parseId(String entityId) {
+        int length = entityId.length();
+        if (length == 0 || length > 18) {
+            return NOT_NUMERIC;
+        }
+        int start = entityId.charAt(0) == '-' ? 1 : 0;
+        if (start == length || (entityId.charAt(start) == '0' && length > start + 1) || (start == 1 && entityId.charAt(1) == '0')) {
+            return NOT_NUMERIC;
+        }
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            char c = entityId.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_NUMERIC;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return start == 1 ? -value : value;
+    }
+
+    protected static long estimateStringSize(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    protected static class FieldTranslations {
+
+        protected final long[] ids;
+
+        protected final String[] values;
+
+        protected final Map<String, String> otherIds;
+
+        protected FieldTranslations(long[] ids, String[] values, Map<String, String> otherIds) {
+            this.ids = ids;
+            this.values = values;
+            this.otherIds = otherIds;
+        }
+
+        protected String get(String entityId) {
+            long id = parseId(entityId);
+            if (id == NOT_NUMERIC) {
+                return otherIds.get(entityId);
+            }
+            int index = Arrays.binarySearch(ids, id);
+            return index < 0 ? null : values[index];
+        }
+
+        protected int size() {
+            return ids.length + otherIds.size();
+        }
+
+        protected long estimateSize() {
+            long size = 64 + 8L * ids.length + 8L * values.length;
+            for (String value : values) {
+                size += estimateStringSize(value);
+            }
+            for (Map.Entry<String, String> entry : otherIds.entrySet()) {
+                size += 48 + estimateStringSize(entry.getKey()) + estimateStringSize(entry.getValue());
+            }
+            return size;
+        }
+
+    }
+
+    /**
+     * Collects translations and keeps, for each field and entity, the one that best matches the requested locale.
+     * Not thread-safe.
+     */
+    public static class Builder {
+
+        protected static final int OTHER_COUNTRY = 1;
+
+        protected static final int LANGUAGE = 2;
+
+        protected static final int EXACT = 3;
+
+        protected final String localeCode;
+
+        protected final String localeCountryCode;
+
+        protected final Map<String, Map<String, Candidate>> candidates = new HashMap<String, Map<String, Candidate>>();
+
+        /**
+         * @param localeCode the requested language code, such as "en"
+         * @param localeCountryCode the requested language and country, such as "en_US", or the language code when the
+         * locale has no country
+         */
+        public Builder(String localeCode, String localeCountryCode) {
+            this.localeCode = localeCode;
+            this.localeCountryCode = localeCountryCode;
+        }
+
+        public Builder add(String entityId, String fieldName, String translationLocaleCode, String translatedValue) {
+            int rank = rank(translationLocaleCode);
+            if (rank == 0) {
+                return this;
+            }
+            Map<String, Candidate> byEntity = candidates.get(fieldName);
+            if (byEntity == null) {
+                byEntity = new HashMap<String, Candidate>();
+                candidates.put(fieldName, byEntity);
+            }
+            Candidate current = byEntity.get(entityId);
+            if (current == null || rank > current.rank) {
+                byEntity.put(entityId, new Candidate(rank, translatedValue));
+            }
+            return this;
+        }
+
+        public TranslationDictionary build() {
+            Map<String, FieldTranslations> fields = new HashMap<String, FieldTranslations>(candidates.size() * 2);
+            for (Map.Entry<String, Map<String, Candidate>> field : candidates.entrySet()) {
+                List<Map.Entry<Long, String>> numeric = new ArrayList<Map.Entry<Long, String>>(field.getValue().size());
+                Map<String, String> otherIds = new HashMap<String, String>();
+                for (Map.Entry<String, Candidate> entity : field.getValue().entrySet()) {
+                    long id = parseId(entity.getKey());
+                    if (id == NOT_NUMERIC) {
+                        otherIds.put(entity.getKey(), entity.getValue().value);
+                    } else {
+                        numeric.add(new AbstractMap.SimpleImmutableEntry<Long, String>(id, entity.getValue().value));
+                    }
+                }
+                Collections.sort(numeric, new Comparator<Map.Entry<Long, String>>() {
+
+                    @Override
+                    public int compare(Map.Entry<Long, String> o1, Map.Entry<Long, String> o2) {
+                        return o1.getKey().compareTo(o2.getKey());
+                    }
+                });
+                long[] ids = new long[numeric.size()];
+                String[] values = new String[numeric.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = numeric.get(i).getKey();
+                    values[i] = numeric.get(i).getValue();
+                }
+                // Interned so that the lookups with the property names used in templates compare by reference
+                fields.put(field.getKey().intern(), new FieldTranslations(ids, values,
+                        otherIds.isEmpty() ? Collections.<String, String>emptyMap() : otherIds));
+            }
+            return new TranslationDictionary(fields);
+        }
+
+        /**
+         * @return how well a translation for the locale matches the requested locale, or 0 if it is not a match
+         */
+        protected int rank(String translationLocaleCode) {
+            if (translationLocaleCode == null) {
+                return 0;
+            }
+            if (translationLocaleCode.equals(localeCountryCode)) {
+                return EXACT;
+            }
+            if (localeCode.equals(localeCountryCode) || !translationLocaleCode.startsWith(localeCode)) {
+                // without a country only an exact match is used
+                return 0;
+            }
+            return translationLocaleCode.equals(localeCode) ? LANGUAGE : OTHER_COUNTRY;
+        }
+
+    }
+
+    protected static class Candidate {
+
+        protected final int rank;
+
+        protected final String value;
+
+        protected Candidate(int rank, String value) {
+            this.rank = rank;
+            this.value = value;
+        }
+
+    }
+
+}
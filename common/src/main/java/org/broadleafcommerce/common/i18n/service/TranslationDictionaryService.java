@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.i18n.service;
+
+import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
+
+/**
+ * Keeps a {@link TranslationDictionary} for each combination of cache key (which identifies the site or catalog in
+ * multitenant installations), entity type and requested locale, so that translating the many fields shown on a
+ * catalog page does not take a query or a cache lookup per field.
+ * 
+ * Dictionaries are loaded in bulk when first requested, and reloaded once they expire or after a translation of their
+ * entity type is saved. A reload replaces the dictionary as a whole, and the previous dictionary keeps serving other
+ * threads while it runs.
+ * 
+ * @see TranslationServiceImpl#getTranslatedValue(Object, String, java.util.Locale)
+ */
+public interface TranslationDictionaryService {
+
+    /**
+     * @return whether dictionaries are used, see the <code>translation.dictionary.enabled</code> property
+     */
+    boolean isEnabled();
+
+    /**
+     * @param cacheKey the key that identifies the site or catalog the translations belong to
+     * @param entityType
+     * @param localeCode the requested language code, such as "en"
+     * @param localeCountryCode the requested language and country, such as "en_US", or the language code when the
+     * locale has no country
+     * @return the dictionary, or null if dictionaries are disabled or the entity type has too many translations
+     */
+    TranslationDictionary getDictionary(String cacheKey, TranslatedEntity entityType, String localeCode, String localeCountryCode);
+
+    /**
+     * Discards the dictionaries of the entity type, now and again once the current transaction commits, so that they
+     * are reloaded when next requested
+     */
+    void invalidate(TranslatedEntity entityType);
+
+    /**
+     * Discards every dictionary
+     */
+    void invalidateAll();
+
+}
@@ -0,0 +1,288 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.i18n.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.extension.ResultType;
+import org.broadleafcommerce.common.i18n.dao.TranslationDao;
+import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+
+@Service("blTranslationDictionaryService")
+@ManagedResource(objectName="org.broadleafcommerce:name=TranslationDictionaryService", description="Translation Dictionary Service", currencyTimeLimit=15)
+public class TranslationDictionaryServiceImpl implements TranslationDictionaryService {
+
+    private static final Log LOG = LogFactory.getLog(TranslationDictionaryServiceImpl.class);
+
+    @Resource(name = "blTranslationDao")
+    protected TranslationDao dao;
+
+    @Value("${translation.dictionary.enabled:false}")
+    protected boolean enabled = false;
+
+    /**
+     * Entity types with more translations than this, across all locales, are not held in a dictionary
+     */
+    @Value("${translation.dictionary.maxEntries:200000}")
+    protected int maxEntries = 200000;
+
+    @Value("${translation.dictionary.ttlSeconds:3600}")
+    protected long ttlSeconds = 3600;
+
+    protected final ConcurrentMap<DictionaryKey, DictionaryHolder> dictionaries = new ConcurrentHashMap<DictionaryKey, DictionaryHolder>();
+
+    protected final ConcurrentMap<DictionaryKey, Object> loadLocks = new ConcurrentHashMap<DictionaryKey, Object>();
+
+    /**
+     * Incremented on every invalidation, so that a load that was running at the time is not stored
+     */
+    protected final AtomicLong generation = new AtomicLong();
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public TranslationDictionary getDictionary(String cacheKey, TranslatedEntity entityType, String localeCode, String localeCountryCode) {
+        if (!enabled) {
+            return null;
+        }
+        DictionaryKey key = new DictionaryKey(cacheKey, entityType.getFriendlyType(), localeCountryCode);
+        DictionaryHolder holder = dictionaries.get(key);
+        if (holder != null) {
+            if (holder.expiresAt > System.currentTimeMillis() || !holder.refreshing.compareAndSet(false, true)) {
+                return holder.dictionary;
+            }
+            // This thread reloads the expired dictionary while the others keep using it
+            try {
+                return load(key, entityType, localeCode, localeCountryCode, holder).dictionary;
+            } catch (RuntimeException e) {
+                holder.refreshing.set(false);
+                LOG.error("Unable to reload the translation dictionary for " + key + ", the previous one is still used", e);
+                return holder.dictionary;
+            }
+        }
+
+        Object lock = loadLocks.get(key);
+        if (lock == null) {
+            loadLocks.putIfAbsent(key, new Object());
+            lock = loadLocks.get(key);
+        }
+        synchronized (lock) {
+            holder = dictionaries.get(key);
+            if (holder != null) {
+                return holder.dictionary;
+            }
+            return load(key, entityType, localeCode, localeCountryCode, null).dictionary;
+        }
+    }
+
+    /**
+     * Reads the translations and builds the dictionary, which is stored unless an invalidation happened meanwhile
+     */
+    protected DictionaryHolder load(DictionaryKey key, TranslatedEntity entityType, String localeCode, String localeCountryCode,
+            DictionaryHolder previous) {
+        long loadGeneration = generation.get();
+        long start = System.currentTimeMillis();
+        TranslationDictionary dictionary = null;
+        Long count = dao.countTranslationEntries(entityType, ResultType.CATALOG_ONLY);
+        if (count != null && count <= maxEntries) {
+            List<Object[]> rows = dao.readTranslationValues(entityType, localeCode, ResultType.CATALOG_ONLY);
+            TranslationDictionary.Builder builder = new TranslationDictionary.Builder(localeCode, localeCountryCode);
+            for (Object[] row : rows) {
+                builder.add((String) row[0], (String) row[1], (String) row[2], (String) row[3]);
+            }
+            dictionary = builder.build();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Loaded the translation dictionary for %s with %d translations (about %d KB) in %d ms",
+                        key, dictionary.size(), dictionary.getEstimatedSize() / 1024, System.currentTimeMillis() - start));
+            }
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Not using a translation dictionary for %s as it has %s translations, more than "
+                    + "translation.dictionary.maxEntries", key, count));
+        }
+
+        DictionaryHolder holder = new DictionaryHolder(dictionary, start + ttlSeconds * 1000L);
+        if (generation.get() == loadGeneration) {
+            dictionaries.put(key, holder);
+        } else if (previous != null) {
+            // the next request loads it again
+            dictionaries.remove(key, previous);
+        }
+        return holder;
+    }
+
+    @Override
+    public void invalidate(final TranslatedEntity entityType) {
+        removeDictionaries(entityType.getFriendlyType());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    removeDictionaries(entityType.getFriendlyType());
+                }
+            });
+        }
+    }
+
+    @Override
+    @ManagedOperation(description="Discard every translation dictionary")
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        dictionaries.clear();
+    }
+
+    protected void removeDictionaries(String entityType) {
+        generation.incrementAndGet();
+        for (Iterator<DictionaryKey> itr = dictionaries.keySet().iterator(); itr.hasNext();) {
+            if (itr.next().entityType.equals(entityType)) {
+                itr.remove();
+            }
+        }
+    }
+
+    @ManagedAttribute(description="The number of translation dictionaries", currencyTimeLimit=15)
+    public int getDictionaryCount() {
+        return dictionaries.size();
+    }
+
+    @ManagedAttribute(description="The number of translations held by all dictionaries", currencyTimeLimit=15)
+    public long getTranslationCount() {
+        long count = 0;
+        for (DictionaryHolder holder : dictionaries.values()) {
+            if (holder.dictionary != null) {
+                count += holder.dictionary.size();
+            }
+        }
+        return count;
+    }
+
+    @ManagedAttribute(description="An estimate of the memory held by all dictionaries, in bytes", currencyTimeLimit=15)
+    public long getEstimatedSize() {
+        long size = 0;
+        for (DictionaryHolder holder : dictionaries.values()) {
+            if (holder.dictionary != null) {
+                size += holder.dictionary.getEstimatedSize();
+            }
+        }
+        return size;
+    }
+
+    public boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    protected static class DictionaryHolder {
+
+        /**
+         * Null when the entity type has too many translations for a dictionary
+         */
+        protected final TranslationDictionary dictionary;
+
+        protected final long expiresAt;
+
+        protected final AtomicBoolean refreshing = new AtomicBoolean();
+
+        protected DictionaryHolder(TranslationDictionary dictionary, long expiresAt) {
+            this.dictionary = dictionary;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+    protected static class DictionaryKey {
+
+        protected final String cacheKey;
+
+        protected final String entityType;
+
+        protected final String localeCountryCode;
+
+        protected DictionaryKey(String cacheKey, String entityType, String localeCountryCode) {
+            this.cacheKey = cacheKey;
+            this.entityType = entityType;
+            this.localeCountryCode = localeCountryCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DictionaryKey)) {
+                return false;
+            }
+            DictionaryKey other = (DictionaryKey) o;
+            return cacheKey.equals(other.cacheKey) && entityType.equals(other.entityType)
+                    && localeCountryCode.equals(other.localeCountryCode);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = cacheKey.hashCode();
+            result = 31 * result + entityType.hashCode();
+            result = 31 * result + localeCountryCode.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return cacheKey + "|" + entityType + "|" + localeCountryCode;
+        }
+
+    }
+
+}
@@ -68,6 +68,9 @@ public class TranslationServiceImpl implements TranslationService, TranslationSu
     @Resource(name="blTranslationServiceExtensionManager")
     protected TranslationServiceExtensionManager extensionManager;
 
+    @Resource(name = "blTranslationDictionaryService")
+    protected TranslationDictionaryService dictionaryService;
+
     /**
      * The default is 1000. Use the 'translation.thresholdForFullCache' to change the value.
      */
@@ -97,6 +100,9 @@ public class TranslationServiceImpl implements TranslationService, TranslationSu
     @Override
     @Transactional("blTransactionManager")
     public Translation save(Translation translation) {
+        if (translation.getEntityType() != null) {
+            dictionaryService.invalidate(translation.getEntityType());
+        }
         return dao.save(translation);
     }
     
@@ -145,6 +151,7 @@ public class TranslationServiceImpl implements TranslationService, TranslationSu
     @Transactional("blTransactionManager")
     public void deleteTranslationById(Long translationId) {
         Translation t = dao.readTranslationById(translationId);
+        dictionaryService.invalidate(t.getEntityType());
         dao.delete(t);
     }
     
@@ -196,6 +203,13 @@ public class TranslationServiceImpl implements TranslationService, TranslationSu
             isValidForCache = response.getResult();
         }
         if (!BroadleafRequestContext.getBroadleafRequestContext().isProductionSandBox() || !isValidForCache) {
+            if (BroadleafRequestContext.getBroadleafRequestContext().isProductionSandBox() && dictionaryService.isEnabled()) {
+                TranslationDictionary dictionary = dictionaryService.getDictionary(getCacheKey(ResultType.CATALOG_ONLY, entityType),
+                        entityType, localeCode, localeCountryCode);
+                if (dictionary != null) {
+                    return dictionary.getTranslatedValue(property, entityId);
+                }
+            }
             Translation translation = dao.readTranslation(entityType, entityId, property, localeCode, localeCountryCode,
                     ResultType.CATALOG_ONLY);
             if (translation != null) {
@@ -210,6 +224,7 @@ public class TranslationServiceImpl implements TranslationService, TranslationSu
 
     @Override
     public void removeTranslationFromCache(Translation translation) {
+        dictionaryService.invalidate(translation.getEntityType());
         if (BroadleafRequestContext.getBroadleafRequestContext().isProductionSandBox()) {
             ResultType resultType = ResultType.STANDARD;
             if (extensionManager != null) {
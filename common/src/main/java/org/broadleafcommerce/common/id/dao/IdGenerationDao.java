@@ -28,4 +28,14 @@ public interface IdGenerationDao {
 
     public IdGeneration findNextId(String idType, Long batchSize) throws OptimisticLockException, Exception;
 
+    /**
+     * Reserves the next range of ids for the given type.
+     * 
+     * @param idType
+     * @param batchSize the batch size to store if no row exists yet for this type
+     * @param rangeSize the number of ids to reserve, or null to reserve the batch size stored for this type
+     * @return the reserved range
+     */
+    public IdGeneration findNextId(String idType, Long batchSize, Long rangeSize) throws OptimisticLockException, Exception;
+
 }
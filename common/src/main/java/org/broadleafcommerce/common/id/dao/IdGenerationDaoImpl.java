@@ -57,16 +57,23 @@ public class IdGenerationDaoImpl implements IdGenerationDao {
     @Override
     @Transactional(value = "blTransactionManager", propagation = Propagation.REQUIRES_NEW)
     public IdGeneration findNextId(String idType, Long batchSize) throws OptimisticLockException, Exception {
+        return findNextId(idType, batchSize, null);
+    }
+
+    @Override
+    @Transactional(value = "blTransactionManager", propagation = Propagation.REQUIRES_NEW)
+    public IdGeneration findNextId(String idType, Long batchSize, Long rangeSize) throws OptimisticLockException, Exception {
         IdGeneration response;
         Query query = em.createNamedQuery("BC_FIND_NEXT_ID");
         query.setParameter("idType", idType);
         try {
             IdGeneration idGeneration =  (IdGeneration) query.getSingleResult();
             response =  (IdGeneration) entityConfiguration.createEntityInstance("org.broadleafcommerce.profile.core.domain.IdGeneration");
-            response.setBatchSize(idGeneration.getBatchSize());
+            Long size = rangeSize == null ? idGeneration.getBatchSize() : rangeSize;
+            response.setBatchSize(size);
             response.setBatchStart(idGeneration.getBatchStart());
             Long originalBatchStart = idGeneration.getBatchStart();
-            idGeneration.setBatchStart(originalBatchStart + idGeneration.getBatchSize());
+            idGeneration.setBatchStart(originalBatchStart + size);
             if (idGeneration.getBegin() != null) {
                 response.setBegin(idGeneration.getBegin());
                 if (idGeneration.getBatchStart() < idGeneration.getBegin()) {
@@ -107,7 +114,7 @@ public class IdGenerationDaoImpl implements IdGenerationDao {
                     LOG.warn("Error inserting row id generation for idType " + idType + ".  Requerying table.");
                 }
             }
-            return findNextId(idType);
+            return findNextId(idType, null, rangeSize);
         }
         
         return response;
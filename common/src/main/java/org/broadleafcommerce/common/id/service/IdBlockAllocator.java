@@ -0,0 +1,264 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.id.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out ids for a single id type from blocks reserved through an {@link IdBlockSource}.
+ * 
+ * Ids are claimed from the current block with a single CAS, so callers never take a lock on the common path. When a
+ * block runs out, exactly one caller fetches the next block while the others wait on the same {@link FutureTask}.
+ * 
+ * When a prefetch {@link Executor} is supplied, the next block is fetched in the background as soon as the current
+ * block drops to its low-water mark, so that callers normally find the next block already waiting. Blocks are still
+ * consumed in the order they were reserved, so ids stay in sequence for a single caller.
+ * 
+ * When adaptive sizing is enabled, the size requested for each block is derived from how quickly the previous block was
+ * used, aiming for a block to last {@code targetBlockMillis}. The size never drops below the first block the source
+ * handed out and never exceeds {@code maxBlockSize}.
+ */
+public class IdBlockAllocator {
+
+    private static final Log LOG = LogFactory.getLog(IdBlockAllocator.class);
+
+    protected static final IdBlock EXHAUSTED = new IdBlock(0L, 0L, 0);
+
+    protected final String idType;
+    protected final IdBlockSource source;
+    protected final Executor prefetchExecutor;
+    protected final int lowWaterPercent;
+    protected final boolean adaptive;
+    protected final long targetBlockNanos;
+    protected final long maxBlockSize;
+
+    protected final AtomicReference<IdBlock> current = new AtomicReference<IdBlock>(EXHAUSTED);
+    protected final AtomicReference<FutureTask<IdBlock>> pending = new AtomicReference<FutureTask<IdBlock>>();
+
+    /**
+     * Size requested for the next block, or 0 to let the source decide
+     */
+    protected final AtomicLong requestedBlockSize = new AtomicLong();
+    protected final AtomicLong minBlockSize = new AtomicLong();
+    protected final AtomicLong lastFetchNanos = new AtomicLong();
+    protected final AtomicLong lastBlockSize = new AtomicLong();
+
+    /**
+     * Creates an allocator that only fetches a block once the current one is used up and lets the source choose the
+     * block size.
+     */
+    public IdBlockAllocator(String idType, IdBlockSource source) {
+        this(idType, source, null, 0, false, 0L, 0L);
+    }
+
+    /**
+     * @param idType the id type, used for logging
+     * @param source reserves blocks of ids
+     * @param prefetchExecutor runs background fetches, or null to disable prefetching
+     * @param lowWaterPercent percentage of a block that may remain before the next block is prefetched
+     * @param adaptive whether to size blocks from the observed allocation rate
+     * @param targetBlockMillis how long a block should last when sizing adaptively
+     * @param maxBlockSize the largest block to request when sizing adaptively
+     */
+    public IdBlockAllocator(String idType, IdBlockSource source, Executor prefetchExecutor, int lowWaterPercent,
+            boolean adaptive, long targetBlockMillis, long maxBlockSize) {
+        this.idType = idType;
+        this.source = source;
+        this.prefetchExecutor = prefetchExecutor;
+        this.lowWaterPercent = Math.max(0, Math.min(100, lowWaterPercent));
+        this.adaptive = adaptive && targetBlockMillis > 0 && maxBlockSize > 0;
+        this.targetBlockNanos = TimeUnit.MILLISECONDS.toNanos(targetBlockMillis);
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    public Long allocate() {
+        while (true) {
+            IdBlock block = current.get();
+            long offset = block.claimed.getAndIncrement();
+            if (offset < block.size) {
+                if (offset == block.prefetchOffset) {
+                    prefetch(block);
+                }
+                return block.start + offset;
+            }
+            advance(block);
+        }
+    }
+
+    /**
+     * Replaces the exhausted block with the next one, fetching it on this thread unless a fetch is already in flight.
+     */
+    protected void advance(IdBlock exhausted) {
+        FutureTask<IdBlock> task = pending.get();
+        if (task == null) {
+            if (current.get() != exhausted) {
+                return;
+            }
+            FutureTask<IdBlock> created = createFetchTask();
+            if (!pending.compareAndSet(null, created)) {
+                return;
+            }
+            task = created;
+            task.run();
+        }
+
+        IdBlock next;
+        try {
+            next = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an id range for " + idType, e);
+        } catch (ExecutionException e) {
+            // Let the next caller try again
+            pending.compareAndSet(task, null);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Unable to retrieve id range for " + idType, e.getCause());
+        }
+
+        if (next != exhausted && current.compareAndSet(exhausted, next)) {
+            pending.compareAndSet(task, null);
+        }
+    }
+
+    protected void prefetch(IdBlock block) {
+        if (prefetchExecutor == null || pending.get() != null || current.get() != block) {
+            return;
+        }
+        FutureTask<IdBlock> task = createFetchTask();
+        if (pending.compareAndSet(null, task)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Prefetching the next id range for idType " + idType);
+            }
+            try {
+                prefetchExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+    }
+
+    protected FutureTask<IdBlock> createFetchTask() {
+        return new FutureTask<IdBlock>(new Callable<IdBlock>() {
+            @Override
+            public IdBlock call() throws Exception {
+                return fetchBlock();
+            }
+        });
+    }
+
+    protected IdBlock fetchBlock() {
+        long requested = requestedBlockSize.get();
+        IdRange range = source.fetchRange(requested > 0 ? requested : null);
+        IdBlock block = new IdBlock(range.getStart(), range.getSize(), lowWaterPercent);
+        if (adaptive) {
+            resize(block.size);
+        }
+        return block;
+    }
+
+    /**
+     * Sizes the next request from the time it took to need another block since the previous fetch
+     */
+    protected void resize(long fetchedSize) {
+        long now = System.nanoTime();
+        long previousFetch = lastFetchNanos.getAndSet(now);
+        long previousSize = lastBlockSize.getAndSet(fetchedSize);
+        minBlockSize.compareAndSet(0L, fetchedSize);
+        if (previousFetch == 0L || previousSize <= 0L) {
+            return;
+        }
+        long elapsed = Math.max(1L, now - previousFetch);
+        double desired = (double) previousSize * targetBlockNanos / elapsed;
+        // Move halfway towards the desired size to smooth out bursts
+        long size = (long) ((previousSize + Math.min(desired, (double) maxBlockSize)) / 2);
+        size = Math.max(minBlockSize.get(), Math.min(maxBlockSize, size));
+        if (size != requestedBlockSize.getAndSet(size) && LOG.isDebugEnabled()) {
+            LOG.debug("Requesting id ranges of " + size + " for idType " + idType);
+        }
+    }
+
+    public String getIdType() {
+        return idType;
+    }
+
+    /**
+     * @return the block size that will be requested next, or 0 if the source decides
+     */
+    public long getRequestedBlockSize() {
+        return requestedBlockSize.get();
+    }
+
+    /**
+     * Reserves ranges of ids, typically by advancing a row in the database.
+     */
+    public interface IdBlockSource {
+
+        /**
+         * @param requestedSize the number of ids to reserve, or null to use the configured batch size
+         * @return the reserved range
+         */
+        IdRange fetchRange(Long requestedSize);
+
+    }
+
+    public static class IdRange {
+
+        protected final long start;
+        protected final long size;
+
+        public IdRange(long start, long size) {
+            this.start = start;
+            this.size = size;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    protected static class IdBlock {
+
+        protected final long start;
+        protected final long size;
+        protected final long prefetchOffset;
+        protected final AtomicLong claimed = new AtomicLong();
+
+        protected IdBlock(long start, long size, int lowWaterPercent) {
+            this.start = start;
+            this.size = size;
+            long lowWater = Math.max(1L, size * lowWaterPercent / 100);
+            this.prefetchOffset = Math.max(0L, size - lowWater);
+        }
+    }
+}
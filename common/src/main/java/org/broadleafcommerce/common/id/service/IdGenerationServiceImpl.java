@@ -17,8 +17,12 @@
  */
 package org.broadleafcommerce.common.id.service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Resource;
 import javax.persistence.OptimisticLockException;
@@ -27,17 +31,46 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.id.dao.IdGenerationDao;
 import org.broadleafcommerce.common.id.domain.IdGeneration;
+import org.broadleafcommerce.common.id.service.IdBlockAllocator.IdBlockSource;
+import org.broadleafcommerce.common.id.service.IdBlockAllocator.IdRange;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * Hands out ids from blocks reserved through {@link IdGenerationDao}, with one {@link IdBlockAllocator} per id type.
+ * Allocation within a block is lock-free.
+ * 
+ * Setting {@code id.generation.prefetch.enabled} reserves the next block in the background once the current block
+ * reaches its low-water mark, and {@code id.generation.adaptive.enabled} sizes blocks from the observed allocation rate
+ * rather than the batch size stored for the id type.
+ */
 @Service("blIdGenerationService")
-public class IdGenerationServiceImpl implements IdGenerationService {
+public class IdGenerationServiceImpl implements IdGenerationService, DisposableBean {
 
     private static final Log LOG = LogFactory.getLog(IdGenerationServiceImpl.class);
 
     @Resource(name="blIdGenerationDao")
     protected IdGenerationDao idGenerationDao;
 
-    protected Map<String, Id> idTypeIdMap = new HashMap<String, Id>();
+    @Value("${id.generation.prefetch.enabled:false}")
+    protected boolean prefetchEnabled = false;
+
+    @Value("${id.generation.prefetch.lowWaterPercent:25}")
+    protected int prefetchLowWaterPercent = 25;
+
+    @Value("${id.generation.adaptive.enabled:false}")
+    protected boolean adaptiveBatchSizeEnabled = false;
+
+    @Value("${id.generation.adaptive.targetBlockMillis:10000}")
+    protected long adaptiveTargetBlockMillis = 10000L;
+
+    @Value("${id.generation.adaptive.maxBatchSize:10000}")
+    protected long adaptiveMaxBatchSize = 10000L;
+
+    protected ConcurrentMap<String, IdBlockAllocator> idTypeAllocators = new ConcurrentHashMap<String, IdBlockAllocator>();
+
+    protected volatile ExecutorService prefetchExecutor;
 
     @Override
     public Long findNextId(String idType) {
@@ -46,46 +79,70 @@ public class IdGenerationServiceImpl implements IdGenerationService {
 
     @Override
     public Long findNextId(String idType, Long batchSize) {
-        Id id;
-        synchronized (idTypeIdMap) {
-            id = idTypeIdMap.get(idType);
-            if (id == null) {
-                // recheck, another thread may have added this.
-                id = idTypeIdMap.get(idType);
-                if (id == null) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Getting the initial id from the database.");
-                    }
-                    IdGeneration idGeneration = getCurrentIdRange(idType, batchSize);
-                    id = new Id(idGeneration.getBatchStart(), idGeneration.getBatchSize());
-                }
-                idTypeIdMap.put(idType, id);
+        IdBlockAllocator allocator = idTypeAllocators.get(idType);
+        if (allocator == null) {
+            IdBlockAllocator created = createAllocator(idType, batchSize);
+            allocator = idTypeAllocators.putIfAbsent(idType, created);
+            if (allocator == null) {
+                allocator = created;
             }
         }
+        return allocator.allocate();
+    }
 
-        synchronized(id) {
-            if (id.batchSize == 0L) {
+    protected IdBlockAllocator createAllocator(final String idType, final Long batchSize) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Creating the id allocator for idType " + idType);
+        }
+        IdBlockSource source = new IdBlockSource() {
+            @Override
+            public IdRange fetchRange(Long requestedSize) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Updating batch size for idType " + idType);
                 }
-                IdGeneration idGeneration = getCurrentIdRange(idType, batchSize);
-                id.nextId = idGeneration.getBatchStart();
-                id.batchSize = idGeneration.getBatchSize();
+                IdGeneration idGeneration = getCurrentIdRange(idType, batchSize, requestedSize);
+                return new IdRange(idGeneration.getBatchStart(), idGeneration.getBatchSize());
+            }
+        };
+        return new IdBlockAllocator(idType, source, prefetchEnabled ? getPrefetchExecutor() : null,
+                prefetchLowWaterPercent, adaptiveBatchSizeEnabled, adaptiveTargetBlockMillis, adaptiveMaxBatchSize);
+    }
+
+    protected ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            synchronized (this) {
+                if (prefetchExecutor == null) {
+                    prefetchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                        protected final AtomicInteger threadCount = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "id-generation-prefetch-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
             }
-            Long retId = id.nextId++;
-            id.batchSize--;
+        }
+        return prefetchExecutor;
+    }
 
-            return retId;
+    @Override
+    public void destroy() throws Exception {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdown();
         }
     }
     
-    private IdGeneration getCurrentIdRange(String idType, Long batchSize) {
+    private IdGeneration getCurrentIdRange(String idType, Long batchSize, Long rangeSize) {
         IdGeneration idGeneration = null;
         int retryCount = 0;
         boolean stale = true;
         while (stale) {
             try {
-                idGeneration = idGenerationDao.findNextId(idType, batchSize);
+                idGeneration = idGenerationDao.findNextId(idType, batchSize, rangeSize);
                 stale = false;
             } catch (OptimisticLockException e) {
                 //do nothing -- we will try again
@@ -102,14 +159,4 @@ public class IdGenerationServiceImpl implements IdGenerationService {
         }
         return idGeneration;
     }
-
-    private class Id {
-        public Long nextId;
-        public Long batchSize;
-
-        public Id(Long nextId, Long batchSize) {
-            this.nextId = nextId;
-            this.batchSize = batchSize;
-        }
-    }
 }
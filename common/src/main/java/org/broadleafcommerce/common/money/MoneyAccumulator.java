@@ -0,0 +1,247 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.money;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * A mutable running total for pricing calculations that would otherwise create a new {@link Money}, and a new
+ * {@link BigDecimal}, for every intermediate result.
+ * 
+ * The amount is kept as a long number of units at the scale of the starting {@link Money}, which for amounts created
+ * from a currency are its minor units (cents for USD). Adding, subtracting, multiplying by and dividing by whole
+ * numbers give exactly the same amount, scale and rounding as the equivalent chain of {@link Money} calls. Whenever an
+ * operation cannot be done exactly on the long, because of an overflow, an operand with more decimal places than the
+ * total or a different currency, it is performed with {@link Money} instead, and the total continues from that result.
+ * 
+ * Convert back with {@link #toMoney()} once the calculation is complete:
+ * 
+ * <pre>
+ * MoneyAccumulator total = new MoneyAccumulator(BroadleafCurrencyUtils.getMoney(order.getCurrency()));
+ * for (OrderItem item : order.getOrderItems()) {
+ *     total.add(item.getTotalPrice());
+ * }
+ * order.setSubTotal(total.toMoney());
+ * </pre>
+ * 
+ * Instances are not thread-safe.
+ */
+public class MoneyAccumulator implements Comparable<Money> {
+
+    protected static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10L;
+        }
+    }
+
+    protected final Currency currency;
+
+    protected int scale;
+
+    protected long units;
+
+    /**
+     * The total, when it is not held in {@link #units}
+     */
+    protected Money money;
+
+    public MoneyAccumulator(Money start) {
+        this.currency = start.getCurrency();
+        load(start);
+    }
+
+    public Currency getCurrency() {
+        return money == null ? currency : money.getCurrency();
+    }
+
+    public MoneyAccumulator add(Money other) {
+        if (money == null && currency.equals(other.getCurrency()) && addUnits(toUnits(other.getAmount()))) {
+            return this;
+        }
+        load(toMoney().add(other));
+        return this;
+    }
+
+    public MoneyAccumulator add(MoneyAccumulator other) {
+        if (money == null && other.money == null && scale == other.scale && currency.equals(other.currency)
+                && addUnits(other.units)) {
+            return this;
+        }
+        return add(other.toMoney());
+    }
+
+    public MoneyAccumulator subtract(Money other) {
+        if (money == null && currency.equals(other.getCurrency()) && subtractUnits(toUnits(other.getAmount()))) {
+            return this;
+        }
+        load(toMoney().subtract(other));
+        return this;
+    }
+
+    public MoneyAccumulator subtract(MoneyAccumulator other) {
+        if (money == null && other.money == null && scale == other.scale && currency.equals(other.currency)
+                && subtractUnits(other.units)) {
+            return this;
+        }
+        return subtract(other.toMoney());
+    }
+
+    public MoneyAccumulator multiply(int multiplier) {
+        if (money == null) {
+            long result = units * multiplier;
+            if (multiplier == 0 || (result / multiplier == units && !(units == Long.MIN_VALUE && multiplier == -1))) {
+                units = result;
+                return this;
+            }
+        }
+        load(toMoney().multiply(multiplier));
+        return this;
+    }
+
+    /**
+     * Divides using {@link java.math.RoundingMode#HALF_EVEN}, like {@link Money#divide(int)}
+     */
+    public MoneyAccumulator divide(int divisor) {
+        if (money == null && divisor != 0 && units != Long.MIN_VALUE) {
+            long quotient = units / divisor;
+            long remainder = units % divisor;
+            if (remainder != 0) {
+                long twiceRemainder = Math.abs(remainder) * 2;
+                long absDivisor = Math.abs((long) divisor);
+                if (twiceRemainder > absDivisor || (twiceRemainder == absDivisor && (quotient & 1) != 0)) {
+                    quotient += (units < 0) == (divisor < 0) ? 1 : -1;
+                }
+            }
+            units = quotient;
+            return this;
+        }
+        load(toMoney().divide(divisor));
+        return this;
+    }
+
+    public boolean isZero() {
+        return money == null ? units == 0 : money.isZero();
+    }
+
+    public boolean lessThan(Money other) {
+        return compareTo(other) < 0;
+    }
+
+    public boolean lessThanOrEqual(Money other) {
+        return compareTo(other) <= 0;
+    }
+
+    public boolean greaterThan(Money other) {
+        return compareTo(other) > 0;
+    }
+
+    public boolean greaterThanOrEqual(Money other) {
+        return compareTo(other) >= 0;
+    }
+
+    /**
+     * Compares the amounts, ignoring the currencies, like {@link Money#compareTo(Money)}
+     */
+    @Override
+    public int compareTo(Money other) {
+        if (money == null) {
+            long otherUnits = toUnits(other.getAmount());
+            if (otherUnits != Long.MIN_VALUE) {
+                return units < otherUnits ? -1 : (units == otherUnits ? 0 : 1);
+            }
+        }
+        return toMoney().compareTo(other);
+    }
+
+    public BigDecimal getAmount() {
+        return money == null ? BigDecimal.valueOf(units, scale) : money.getAmount();
+    }
+
+    public Money toMoney() {
+        return money == null ? new Money(BigDecimal.valueOf(units, scale), currency, scale) : money;
+    }
+
+    @Override
+    public String toString() {
+        return getAmount().toString();
+    }
+
+    /**
+     * @return false, leaving the total unchanged, if the units are not exact or the result would overflow
+     */
+    protected boolean addUnits(long otherUnits) {
+        if (otherUnits == Long.MIN_VALUE) {
+            return false;
+        }
+        long result = units + otherUnits;
+        // overflow when both operands have a different sign than the result
+        if (((units ^ result) & (otherUnits ^ result)) < 0) {
+            return false;
+        }
+        units = result;
+        return true;
+    }
+
+    /**
+     * @return false, leaving the total unchanged, if the units are not exact or the result would overflow
+     */
+    protected boolean subtractUnits(long otherUnits) {
+        if (otherUnits == Long.MIN_VALUE) {
+            return false;
+        }
+        return addUnits(-otherUnits);
+    }
+
+    /**
+     * Continues from the given result, as units when it fits in a long
+     */
+    protected void load(Money result) {
+        BigDecimal amount = result.getAmount();
+        // Money keeps the scale of the left operand, except that a scale of zero becomes the currency's scale. Money.ZERO
+        // is also special-cased by Money when currencies differ. Both are rare enough to always defer to Money.
+        if (result != Money.ZERO && result.getCurrency().equals(currency)
+                && (amount.scale() > 0 || (amount.scale() == 0 && BankersRounding.getScaleForCurrency(currency) == 0))
+                && amount.scale() < POWERS_OF_TEN.length && amount.precision() < 19) {
+            scale = amount.scale();
+            units = amount.unscaledValue().longValue();
+            money = null;
+        } else {
+            money = result;
+        }
+    }
+
+    /**
+     * @return the amount as a number of units at the scale of this total, or Long.MIN_VALUE if it cannot be
+     * represented exactly
+     */
+    protected long toUnits(BigDecimal amount) {
+        if (amount.signum() == 0) {
+            return 0L;
+        }
+        int shift = scale - amount.scale();
+        if (shift < 0 || shift >= POWERS_OF_TEN.length || amount.precision() + shift >= 19) {
+            return Long.MIN_VALUE;
+        }
+        return amount.unscaledValue().longValue() * POWERS_OF_TEN[shift];
+    }
+
+}
@@ -36,6 +36,11 @@ import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import javax.servlet.http.HttpServletRequest;
 
 /**
@@ -55,6 +60,16 @@ public class MvelHelper {
     private static final Map<String, Serializable> DEFAULT_EXPRESSION_CACHE = new EfficientLRUMap<String, Serializable>(5000);
     private static final Log LOG = LogFactory.getLog(MvelHelper.class);
 
+    private static final MvelRuleStatistics STATISTICS = new MvelRuleStatistics();
+    private static final ConcurrentMap<CompilationKey, FutureTask<Serializable>> COMPILATIONS_IN_FLIGHT =
+            new ConcurrentHashMap<CompilationKey, FutureTask<Serializable>>();
+    private static final ThreadLocal<RuleParameterResolverFactory> RESOLVER_FACTORY = new ThreadLocal<RuleParameterResolverFactory>() {
+        @Override
+        protected RuleParameterResolverFactory initialValue() {
+            return new RuleParameterResolverFactory();
+        }
+    };
+
     private static boolean TEST_MODE = false;
     
     public static final String BLC_RULE_MAP_PARAM = "blRuleMap";
@@ -144,39 +159,10 @@ public class MvelHelper {
             return true;
         } else {
             // MVEL expression compiling can be expensive so let's cache the expression
-            Serializable exp = null;
-            if (expressionCache != null) {
-                exp = expressionCache.get(rule);
-            }
-            if (exp == null) {
-                ParserContext context = new ParserContext();
-                context.addImport("MVEL", MVEL.class);
-                context.addImport("MvelHelper", MvelHelper.class);
-                context.addImport("CollectionUtils", SelectizeCollectionUtils.class);
-                if (MapUtils.isNotEmpty(additionalContextImports)) {
-                    for (Entry<String, Class<?>> entry : additionalContextImports.entrySet()) {
-                        context.addImport(entry.getKey(), entry.getValue());
-                    }
-                }
-                
-                String modifiedRule = modifyExpression(rule, ruleParameters, context);
-
-                synchronized (expressionCache) {
-                    exp = MVEL.compileExpression(modifiedRule, context);
-                    expressionCache.put(rule, exp);
-                }
-            }
-
-            Map<String, Object> mvelParameters = new HashMap<String, Object>();
-
-            if (ruleParameters != null) {
-                for (String parameter : ruleParameters.keySet()) {
-                    mvelParameters.put(parameter, ruleParameters.get(parameter));
-                }
-            }
+            Serializable exp = getCompiledExpression(rule, ruleParameters, expressionCache, additionalContextImports);
 
             try {
-                Object test = MVEL.executeExpression(exp, mvelParameters);
+                Object test = executeExpression(exp, ruleParameters);
                 if (test == null) {
                     // This can occur if there is no actual rule
                     return true;
@@ -193,6 +179,153 @@ public class MvelHelper {
             }
         }
     }
+
+    /**
+     * Compiles the passed in rule into the DEFAULT_EXPRESSION_CACHE so that the first evaluation does not pay the
+     * compilation cost. Intended to be called when a rule is saved or loaded.
+     * 
+     * @param rule
+     * @return false if the rule could not be compiled
+     * @see #precompileRule(String, Map, Map)
+     */
+    public static boolean precompileRule(String rule) {
+        return precompileRule(rule, DEFAULT_EXPRESSION_CACHE, null);
+    }
+
+    /**
+     * Compiles the passed in rule into the given expression cache. The cache and imports must be the same ones that
+     * will later be passed to {@link #evaluateRule(String, Map, Map, Map)} for the compiled expression to be reused.
+     * Rules that are already cached are not compiled again.
+     * 
+     * @param rule
+     * @param expressionCache
+     * @param additionalContextImports
+     * @return false if the rule could not be compiled
+     */
+    public static boolean precompileRule(String rule, Map<String, Serializable> expressionCache,
+            Map<String, Class<?>> additionalContextImports) {
+        if (rule == null || "".equals(rule) || expressionCache == null) {
+            return true;
+        }
+        try {
+            getCompiledExpression(rule, null, expressionCache, additionalContextImports);
+            return true;
+        } catch (RuntimeException e) {
+            if (!TEST_MODE && LOG.isWarnEnabled()) {
+                LOG.warn("Unable to compile the mvel expression (" + StringUtil.sanitize(rule) + ")", e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the compiled form of the passed in rule from the expression cache, compiling it on a miss.
+     * 
+     * Compilation happens outside of any lock on the expression cache. Concurrent misses for the same rule and cache
+     * share a single compilation through a {@link FutureTask}, so a rule is compiled once no matter how many threads
+     * ask for it at the same moment, and threads asking for other rules are never blocked.
+     */
+    protected static Serializable getCompiledExpression(final String rule, final Map<String, Object> ruleParameters,
+            final Map<String, Serializable> expressionCache, final Map<String, Class<?>> additionalContextImports) {
+        if (expressionCache == null) {
+            STATISTICS.recordMiss();
+            return compileExpression(rule, ruleParameters, additionalContextImports);
+        }
+        Serializable exp = expressionCache.get(rule);
+        if (exp != null) {
+            STATISTICS.recordHit();
+            return exp;
+        }
+        STATISTICS.recordMiss();
+
+        CompilationKey key = new CompilationKey(expressionCache, rule);
+        FutureTask<Serializable> task = new FutureTask<Serializable>(new Callable<Serializable>() {
+            @Override
+            public Serializable call() throws Exception {
+                // Another thread may have finished compiling between our cache miss and claiming the key
+                Serializable compiled = expressionCache.get(rule);
+                if (compiled == null) {
+                    compiled = compileExpression(rule, ruleParameters, additionalContextImports);
+                    // Callers may hand us a cache that is not thread-safe, so only the put is guarded
+                    synchronized (expressionCache) {
+                        expressionCache.put(rule, compiled);
+                    }
+                }
+                return compiled;
+            }
+        });
+        FutureTask<Serializable> compilation = COMPILATIONS_IN_FLIGHT.putIfAbsent(key, task);
+        if (compilation == null) {
+            compilation = task;
+            try {
+                task.run();
+            } finally {
+                COMPILATIONS_IN_FLIGHT.remove(key, task);
+            }
+        }
+        try {
+            return compilation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting on the compilation of an mvel expression", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    protected static Serializable compileExpression(String rule, Map<String, Object> ruleParameters,
+            Map<String, Class<?>> additionalContextImports) {
+        ParserContext context = new ParserContext();
+        context.addImport("MVEL", MVEL.class);
+        context.addImport("MvelHelper", MvelHelper.class);
+        context.addImport("CollectionUtils", SelectizeCollectionUtils.class);
+        if (MapUtils.isNotEmpty(additionalContextImports)) {
+            for (Entry<String, Class<?>> entry : additionalContextImports.entrySet()) {
+                context.addImport(entry.getKey(), entry.getValue());
+            }
+        }
+
+        String modifiedRule = modifyExpression(rule, ruleParameters, context);
+
+        long start = System.nanoTime();
+        boolean successful = false;
+        try {
+            Serializable exp = MVEL.compileExpression(modifiedRule, context);
+            successful = true;
+            return exp;
+        } finally {
+            STATISTICS.recordCompilation(System.nanoTime() - start, successful);
+        }
+    }
+
+    /**
+     * Executes the compiled expression with the rule parameters bound through this thread's
+     * {@link RuleParameterResolverFactory}. A fresh factory is only created when a rule is evaluated from within
+     * another rule on the same thread.
+     */
+    protected static Object executeExpression(Serializable exp, Map<String, Object> ruleParameters) {
+        RuleParameterResolverFactory factory = RESOLVER_FACTORY.get();
+        if (!factory.bind(ruleParameters)) {
+            RuleParameterResolverFactory nested = new RuleParameterResolverFactory();
+            nested.bind(ruleParameters);
+            return MVEL.executeExpression(exp, nested);
+        }
+        try {
+            return MVEL.executeExpression(exp, factory);
+        } finally {
+            factory.release();
+        }
+    }
+
+    /**
+     * @return the hit, miss and compilation counters shared by all of the expression caches
+     */
+    public static MvelRuleStatistics getRuleStatistics() {
+        return STATISTICS;
+    }
     
     /**
      * <p>
@@ -274,4 +407,36 @@ public class MvelHelper {
 
        return mvelParameters;
    }    
+
+    /**
+     * Identifies an in-flight compilation. Caches are compared by identity since two distinct caches that happen to
+     * be equal (e.g. both empty) must not share a compilation.
+     */
+    private static final class CompilationKey {
+
+        private final Map<String, Serializable> expressionCache;
+        private final String rule;
+
+        CompilationKey(Map<String, Serializable> expressionCache, String rule) {
+            this.expressionCache = expressionCache;
+            this.rule = rule;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CompilationKey)) {
+                return false;
+            }
+            CompilationKey that = (CompilationKey) o;
+            return expressionCache == that.expressionCache && rule.equals(that.rule);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(expressionCache) + rule.hashCode();
+        }
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running counters for the compiled expression caches used by {@link MvelHelper}. Every rule evaluation or
+ * precompilation records either a hit or a miss, and every compilation records the time it took. The counters are
+ * lock-free and shared by all of the expression caches handed to {@link MvelHelper}.
+ * 
+ * Available through {@link MvelHelper#getRuleStatistics()}.
+ */
+public class MvelRuleStatistics {
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong compilations = new AtomicLong();
+    protected final AtomicLong compilationFailures = new AtomicLong();
+    protected final AtomicLong compileNanos = new AtomicLong();
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordCompilation(long nanos, boolean successful) {
+        compilations.incrementAndGet();
+        compileNanos.addAndGet(nanos);
+        if (!successful) {
+            compilationFailures.incrementAndGet();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getCompilations() {
+        return compilations.get();
+    }
+
+    public long getCompilationFailures() {
+        return compilationFailures.get();
+    }
+
+    public long getCompileTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(compileNanos.get());
+    }
+
+    /**
+     * @return the ratio of cache hits to total lookups, or 0 when nothing has been looked up yet
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0D : (double) hitCount / total;
+    }
+
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        compilations.set(0);
+        compilationFailures.set(0);
+        compileNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "MvelRuleStatistics{hits=" + getHits() + ", misses=" + getMisses() + ", hitRatio=" + getHitRatio()
+                + ", compilations=" + getCompilations() + ", compilationFailures=" + getCompilationFailures()
+                + ", compileTimeMillis=" + getCompileTimeMillis() + "}";
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link MapVariableResolverFactory} that is reused across rule evaluations on the same thread, rather than
+ * allocating a new parameter map and factory for every call to {@link MvelHelper#evaluateRule(String, Map)}.
+ * 
+ * The rule parameters are bound before execution and the scope is cleared again afterwards, which also discards any
+ * variable an expression may have assigned. Cached variable resolvers are discarded on release as well, so that a
+ * variable missing from the next set of parameters fails to resolve exactly as it would against a fresh factory.
+ * 
+ * Instances are not thread-safe and are only handed out by {@link MvelHelper} through a {@link ThreadLocal}.
+ */
+public class RuleParameterResolverFactory extends MapVariableResolverFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final Map<String, Object> scope;
+    protected boolean bound = false;
+
+    public RuleParameterResolverFactory() {
+        this(new HashMap<String, Object>());
+    }
+
+    protected RuleParameterResolverFactory(Map<String, Object> scope) {
+        super(scope);
+        this.scope = scope;
+    }
+
+    /**
+     * Binds the given parameters to this factory.
+     * 
+     * @param ruleParameters the parameters for the rule, may be null
+     * @return false if the factory is already bound, which happens when a rule evaluates another rule on the
+     * same thread. The caller should use a fresh factory in that case.
+     */
+    public boolean bind(Map<String, Object> ruleParameters) {
+        if (bound) {
+            return false;
+        }
+        bound = true;
+        if (ruleParameters != null) {
+            scope.putAll(ruleParameters);
+        }
+        return true;
+    }
+
+    /**
+     * Clears the bound parameters, any variables created during execution and the cached resolvers.
+     */
+    public void release() {
+        scope.clear();
+        variableResolvers.clear();
+        bound = false;
+    }
+
+    public boolean isBound() {
+        return bound;
+    }
+}
@@ -15,7 +15,6 @@
  * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
  * #L%
  */
-
 package org.broadleafcommerce.common.sitemap.service;
 
 import org.apache.commons.logging.Log;
@@ -23,8 +22,7 @@ import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.file.domain.FileWorkArea;
 import org.broadleafcommerce.common.file.service.BroadleafFileUtils;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
-import org.broadleafcommerce.common.sitemap.wrapper.SiteMapIndexWrapper;
-import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLSetWrapper;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapImageWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapWrapper;
 import org.broadleafcommerce.common.util.FormatUtil;
@@ -34,9 +32,13 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -44,50 +46,173 @@ import javax.xml.bind.Marshaller;
 
 /**
  * Handles creating the various sitemap files. 
+ * <p>
+ * URLs are written to the current sitemap file as soon as they are added, so memory use does not depend on the number
+ * of URLs. A new file is started when the current one holds {@link SiteMapConfiguration#getMaximumUrlEntriesPerFile()}
+ * URLs or would exceed {@link #getMaximumBytesPerFile()} bytes. {@link #addUrl(SiteMapURLWrapper)} may be called
+ * concurrently by several generators.
  * 
  * @author bpolster
  */
 public class SiteMapBuilder {
 
     protected static final Log LOG = LogFactory.getLog(SiteMapBuilder.class);
+
+    /**
+     * The limit of the sitemap protocol for an uncompressed sitemap file
+     */
+    public static final long DEFAULT_MAXIMUM_BYTES_PER_FILE = 50L * 1024 * 1024;
+
+    protected static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+    protected static final String NAMESPACES = " xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\""
+            + " xmlns:image=\"http://www.google.com/schemas/sitemap-image/1.1\"";
+    protected static final String URL_SET_HEADER = XML_DECLARATION + "<urlset" + NAMESPACES + ">\n";
+    protected static final String URL_SET_FOOTER = "</urlset>\n";
+    protected static final String SITE_MAP_INDEX_HEADER = XML_DECLARATION + "<sitemapindex" + NAMESPACES + ">\n";
+    protected static final String SITE_MAP_INDEX_FOOTER = "</sitemapindex>\n";
+
+    protected static final ConcurrentMap<Class<?>, JAXBContext> JAXB_CONTEXTS = new ConcurrentHashMap<Class<?>, JAXBContext>();
+
     protected FileWorkArea fileWorkArea;
 
     protected SiteMapConfiguration siteMapConfig;
-    protected SiteMapURLSetWrapper currentURLSetWrapper;
     protected List<String> indexedFileNames = new ArrayList<String>();
     protected String baseUrl;
     protected boolean gzipSiteMapFiles = true;
+    protected boolean keepUncompressedFiles = true;
+    protected long maximumBytesPerFile = DEFAULT_MAXIMUM_BYTES_PER_FILE;
+    protected Runnable pageCompletedCallback;
+
+    protected SiteMapFileWriter currentWriter;
+    protected String currentFileName;
 
     public SiteMapBuilder(SiteMapConfiguration siteMapConfig, FileWorkArea fileWorkArea, String baseUrl, boolean gzipSiteMapFiles) {
         this.fileWorkArea = fileWorkArea;
         this.siteMapConfig = siteMapConfig;
-        this.currentURLSetWrapper = new SiteMapURLSetWrapper();
         this.baseUrl = baseUrl;
         this.gzipSiteMapFiles = gzipSiteMapFiles;
     }
 
     /**
-     * Returns the SiteMapURLSetWrapper that a Generator should use to add its next URL element.
-     * 
+     * Writes the URL element to the current sitemap file, starting a new file if the current one is full.
      */
     public void addUrl(SiteMapURLWrapper urlWrapper) {
-        if (currentURLSetWrapper.getSiteMapUrlWrappers().size() >= siteMapConfig.getMaximumUrlEntriesPerFile()) {
-            persistIndexedURLSetWrapper(currentURLSetWrapper);
-            currentURLSetWrapper = new SiteMapURLSetWrapper();
+        byte[] entry = formatUrl(urlWrapper).getBytes(SiteMapFileWriter.UTF_8);
+        synchronized (this) {
+            try {
+                if (currentWriter != null
+                        && (currentWriter.getEntryCount() >= siteMapConfig.getMaximumUrlEntriesPerFile()
+                        || currentWriter.getByteCountWith(entry) > maximumBytesPerFile)) {
+                    closeIndexedFile();
+                }
+                if (currentWriter == null) {
+                    currentFileName = createNextIndexedFileName();
+                    currentWriter = openFile(currentFileName, URL_SET_HEADER, URL_SET_FOOTER);
+                }
+                currentWriter.writeEntry(entry);
+            } catch (IOException ioe) {
+                LOG.error("IOException occurred persisting XML Document", ioe);
+                throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
+            }
         }
-        currentURLSetWrapper.getSiteMapUrlWrappers().add(urlWrapper);
+    }
+
+    /**
+     * Generators that page through large result sets call this after each page, allowing the caller of the
+     * generators to release resources such as the persistence context when that is safe.
+     */
+    public void pageCompleted() {
+        if (pageCompletedCallback != null) {
+            pageCompletedCallback.run();
+        }
+    }
+
+    protected String formatUrl(SiteMapURLWrapper urlWrapper) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("    <url>\n");
+        appendElement(sb, "        ", "loc", urlWrapper.getLoc());
+        appendElement(sb, "        ", "lastmod", urlWrapper.getLastmod());
+        appendElement(sb, "        ", "changefreq", urlWrapper.getChangefreq());
+        appendElement(sb, "        ", "priority", urlWrapper.getPriority());
+        if (urlWrapper.getSiteMapImageWrappers() != null) {
+            for (SiteMapImageWrapper imageWrapper : urlWrapper.getSiteMapImageWrappers()) {
+                sb.append("        <image:image>\n");
+                appendElement(sb, "            ", "image:loc", imageWrapper.getLoc());
+                sb.append("        </image:image>\n");
+            }
+        }
+        sb.append("    </url>\n");
+        return sb.toString();
+    }
+
+    protected String formatSiteMap(SiteMapWrapper siteMapWrapper) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("    <sitemap>\n");
+        appendElement(sb, "        ", "loc", siteMapWrapper.getLoc());
+        appendElement(sb, "        ", "lastmod", siteMapWrapper.getLastmod());
+        sb.append("    </sitemap>\n");
+        return sb.toString();
+    }
+
+    protected void appendElement(StringBuilder sb, String indent, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        sb.append(indent).append('<').append(name).append('>');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                case '\'':
+                    sb.append("&apos;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        sb.append("</").append(name).append(">\n");
+    }
+
+    protected SiteMapFileWriter openFile(String fileName, String header, String footer) throws IOException {
+        File file = new File(fileWorkArea.getFilePathLocation() + fileName);
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Persisting SiteMap document " + file.getAbsolutePath());
+        }
+        return new SiteMapFileWriter(file, gzipSiteMapFiles, keepUncompressedFiles, header, footer);
+    }
+
+    protected void closeIndexedFile() throws IOException {
+        currentWriter.close();
+        currentWriter = null;
+        indexedFileNames.add(currentFileName);
     }
 
     /**
      * Method takes in a valid JAXB object (e.g. has a RootElement) and persists it to 
-     * the temporary directory associated with this builder. 
+     * the temporary directory associated with this builder. The sitemap files themselves are streamed and do not
+     * use this method.
      * 
      * @param fileName
      */
     protected void persistXMLDocument(String fileName, Object xmlObject) {
 
         try {
-            JAXBContext context = JAXBContext.newInstance(xmlObject.getClass());
+            JAXBContext context = JAXB_CONTEXTS.get(xmlObject.getClass());
+            if (context == null) {
+                context = JAXBContext.newInstance(xmlObject.getClass());
+                JAXB_CONTEXTS.putIfAbsent(xmlObject.getClass(), context);
+            }
             Marshaller m = context.createMarshaller();
             m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
             m.setProperty(Marshaller.JAXB_FRAGMENT, true);
@@ -101,7 +226,7 @@ public class SiteMapBuilder {
                 file.createNewFile();
             }
             Writer writer = new BufferedWriter(new FileWriter(file.getAbsoluteFile()));
-            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write(XML_DECLARATION);
             m.marshal(xmlObject, writer);
             writer.close();
         } catch (IOException ioe) {
@@ -114,24 +239,20 @@ public class SiteMapBuilder {
     }
 
     /**
-     * Save the passed in URL set to a new indexed file. 
+     * Save the URLs to a non-indexed file. Everything fit in the first indexed file, which is renamed.
      * 
      * @return
      */
-    protected void persistIndexedURLSetWrapper(SiteMapURLSetWrapper urlSetWrapper) {
-        String indexedFileName = createNextIndexedFileName();
-        indexedFileNames.add(indexedFileName);
-        persistXMLDocument(indexedFileName, urlSetWrapper);
-    }
-
-    /**
-     * Save the passed in URL set to a non-indexed file. 
-     * 
-     * @return
-     */
-    protected void persistNonIndexedSiteMap() {
-        indexedFileNames.add(siteMapConfig.getSiteMapFileName());
-        persistXMLDocument(siteMapConfig.getSiteMapFileName(), currentURLSetWrapper);
+    protected void persistNonIndexedSiteMap() throws IOException {
+        String fileName = siteMapConfig.getSiteMapFileName();
+        if (currentWriter == null) {
+            openFile(fileName, URL_SET_HEADER, URL_SET_FOOTER).close();
+        } else {
+            currentWriter.close();
+            currentWriter = null;
+            renameFile(currentFileName, fileName);
+        }
+        indexedFileNames.add(fileName);
     }
 
     /**
@@ -139,33 +260,47 @@ public class SiteMapBuilder {
      * 
      * @return
      */
-    protected void persistIndexedSiteMap() {
+    protected void persistIndexedSiteMap() throws IOException {
         String now = FormatUtil.formatDateUsingW3C(new Date());
         
         // Save the leftover URL set
-        persistIndexedURLSetWrapper(currentURLSetWrapper);
-
-        // Build the siteMapIndex
-        SiteMapIndexWrapper siteMapIndexWrapper = new SiteMapIndexWrapper();
-        for (String fileName : indexedFileNames) {
-            SiteMapWrapper siteMapWrapper = new SiteMapWrapper();
-            String fileLoc = null;
-            if (gzipSiteMapFiles) {
-                fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName + ".gz");
-            } else {
-                fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName);
-            }
-            siteMapWrapper.setLoc(fileLoc)   ;         
-            siteMapWrapper.setLastmod(now);
-            siteMapIndexWrapper.getSiteMapWrappers().add(siteMapWrapper);
+        if (currentWriter != null) {
+            closeIndexedFile();
         }
 
         if (LOG.isTraceEnabled()) {
             LOG.trace("Persisting sitemap.xml file for indexed site map ");
         }
+        SiteMapFileWriter indexWriter = openFile(siteMapConfig.getIndexedSiteMapFileName(), SITE_MAP_INDEX_HEADER,
+                SITE_MAP_INDEX_FOOTER);
+        try {
+            for (String fileName : indexedFileNames) {
+                SiteMapWrapper siteMapWrapper = new SiteMapWrapper();
+                String fileLoc = null;
+                if (gzipSiteMapFiles) {
+                    fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName + ".gz");
+                } else {
+                    fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName);
+                }
+                siteMapWrapper.setLoc(fileLoc);
+                siteMapWrapper.setLastmod(now);
+                indexWriter.writeEntry(formatSiteMap(siteMapWrapper).getBytes(SiteMapFileWriter.UTF_8));
+            }
+        } finally {
+            indexWriter.close();
+        }
         indexedFileNames.add(siteMapConfig.getIndexedSiteMapFileName());
-        persistXMLDocument(siteMapConfig.getIndexedSiteMapFileName(),
-                siteMapIndexWrapper);
+    }
+
+    protected void renameFile(String fromFileName, String toFileName) throws IOException {
+        String from = fileWorkArea.getFilePathLocation() + fromFileName;
+        String to = fileWorkArea.getFilePathLocation() + toFileName;
+        if (!gzipSiteMapFiles || keepUncompressedFiles) {
+            Files.move(new File(from).toPath(), new File(to).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (gzipSiteMapFiles) {
+            Files.move(new File(from + ".gz").toPath(), new File(to + ".gz").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
     /**
@@ -181,14 +316,22 @@ public class SiteMapBuilder {
         return fileName;
     }
 
-    protected void persistSiteMap() {
-        if (indexedFileNames.size() > 0) {
-            persistIndexedSiteMap();
-        } else {
-            persistNonIndexedSiteMap();
+    protected synchronized void persistSiteMap() {
+        try {
+            if (indexedFileNames.size() > 0) {
+                persistIndexedSiteMap();
+            } else {
+                persistNonIndexedSiteMap();
+            }
+        } catch (IOException ioe) {
+            LOG.error("IOException occurred persisting XML Document", ioe);
+            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
         }
     }
 
+    /**
+     * @return the names of the files written, without the ".gz" extension of the gzipped files
+     */
     public List<String> getIndexedFileNames() {
         return indexedFileNames;
     }
@@ -197,4 +340,31 @@ public class SiteMapBuilder {
         return baseUrl;
     }
 
+    public boolean isKeepUncompressedFiles() {
+        return keepUncompressedFiles;
+    }
+
+    /**
+     * When gzipping, whether to also keep the uncompressed version of each file
+     */
+    public void setKeepUncompressedFiles(boolean keepUncompressedFiles) {
+        this.keepUncompressedFiles = keepUncompressedFiles;
+    }
+
+    public long getMaximumBytesPerFile() {
+        return maximumBytesPerFile;
+    }
+
+    public void setMaximumBytesPerFile(long maximumBytesPerFile) {
+        this.maximumBytesPerFile = maximumBytesPerFile;
+    }
+
+    public Runnable getPageCompletedCallback() {
+        return pageCompletedCallback;
+    }
+
+    public void setPageCompletedCallback(Runnable pageCompletedCallback) {
+        this.pageCompletedCallback = pageCompletedCallback;
+    }
+
 }
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.sitemap.service;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a single sitemap XML document (a url set or a sitemap index) entry by entry, directly as UTF-8. When gzip is
+ * requested the compressed "fileName.gz" is produced in the same pass, optionally alongside the uncompressed file.
+ * Only the size of the document written so far is retained.
+ */
+public class SiteMapFileWriter {
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    protected final OutputStream out;
+    protected final byte[] footer;
+    protected long byteCount = 0;
+    protected int entryCount = 0;
+
+    /**
+     * @param file the uncompressed file to write
+     * @param gzip whether to write "file.gz"
+     * @param keepUncompressed when gzipping, whether to write the uncompressed file as well
+     * @param header the XML declaration and opening root element
+     * @param footer the closing root element
+     */
+    public SiteMapFileWriter(File file, boolean gzip, boolean keepUncompressed, String header, String footer)
+            throws IOException {
+        if (gzip) {
+            OutputStream gzipped = new GZIPOutputStream(new FileOutputStream(file.getPath() + ".gz"), 8192);
+            if (keepUncompressed) {
+                out = new TeeOutputStream(new BufferedOutputStream(new FileOutputStream(file), 8192), gzipped);
+            } else {
+                out = gzipped;
+            }
+        } else {
+            out = new BufferedOutputStream(new FileOutputStream(file), 8192);
+        }
+        this.footer = footer.getBytes(UTF_8);
+        write(header.getBytes(UTF_8));
+    }
+
+    /**
+     * Writes one already formatted entry.
+     */
+    public void writeEntry(byte[] entry) throws IOException {
+        write(entry);
+        entryCount++;
+    }
+
+    /**
+     * Writes the closing root element and closes the file(s).
+     */
+    public void close() throws IOException {
+        try {
+            write(footer);
+        } finally {
+            out.close();
+        }
+    }
+
+    protected void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        byteCount += bytes.length;
+    }
+
+    /**
+     * @return the uncompressed size of the document so far, not counting the closing root element
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the size the uncompressed document would have if the given entry was added and the document closed
+     */
+    public long getByteCountWith(byte[] entry) {
+        return byteCount + entry.length + footer.length;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    protected static class TeeOutputStream extends OutputStream {
+
+        protected final OutputStream first;
+        protected final OutputStream second;
+
+        protected TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                first.close();
+            } finally {
+                second.close();
+            }
+        }
+    }
+}
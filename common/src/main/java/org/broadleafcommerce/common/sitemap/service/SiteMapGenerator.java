@@ -43,6 +43,11 @@ public interface SiteMapGenerator {
      * Typically, the generator will loop through and build a list of URLs to add to the sitemap by calling 
      * methods on the SiteMapBuilder.
      * 
+     * When "sitemap.generation.threads" is greater than 1, generators for different configurations may run at the same
+     * time against the same SiteMapBuilder; {@link SiteMapBuilder#addUrl(org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper)}
+     * is thread-safe. Generators that read their entries a page at a time should call
+     * {@link SiteMapBuilder#pageCompleted()} after each page so the persistence context can be cleared.
+     * 
      * @param siteMapGeneratorConfiguration
      * @param siteMapBuilder
      */
@@ -21,17 +21,25 @@ package org.broadleafcommerce.common.sitemap.service;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
 import org.broadleafcommerce.common.config.domain.ModuleConfiguration;
 import org.broadleafcommerce.common.config.service.ModuleConfigurationService;
 import org.broadleafcommerce.common.config.service.type.ModuleConfigurationType;
+import org.broadleafcommerce.common.dao.GenericEntityDao;
 import org.broadleafcommerce.common.file.domain.FileWorkArea;
 import org.broadleafcommerce.common.file.service.BroadleafFileService;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
 import org.broadleafcommerce.common.sitemap.exception.SiteMapException;
 import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.broadleafcommerce.common.util.TransactionUtils;
 import org.broadleafcommerce.common.web.BaseUrlResolver;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -39,6 +47,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.Resource;
@@ -61,6 +75,22 @@ public class SiteMapServiceImpl implements SiteMapService {
 
     protected Boolean gzipSiteMapFiles;
 
+    /**
+     * When gzipping, whether the uncompressed sitemap files are kept as well
+     */
+    @Value("${sitemap.gzip.keepUncompressedFiles:true}")
+    protected boolean keepUncompressedSiteMapFiles = true;
+
+    @Value("${sitemap.max.file.bytes:52428800}")
+    protected long maximumBytesPerSiteMapFile = SiteMapBuilder.DEFAULT_MAXIMUM_BYTES_PER_FILE;
+
+    /**
+     * The number of sitemap generator configurations processed concurrently. 1 processes them in order on a single
+     * generator thread, which keeps the order of the URLs across files stable.
+     */
+    @Value("${sitemap.generation.threads:1}")
+    protected int siteMapGenerationThreads = 1;
+
     @Resource(name = "blModuleConfigurationService")
     protected ModuleConfigurationService moduleConfigurationService;
 
@@ -73,6 +103,12 @@ public class SiteMapServiceImpl implements SiteMapService {
     @Resource(name = "blBaseUrlResolver")
     protected BaseUrlResolver baseUrlResolver;
 
+    @Resource(name = "blGenericEntityDao")
+    protected GenericEntityDao genericEntityDao;
+
+    @Resource(name = "blTransactionManager")
+    protected PlatformTransactionManager transactionManager;
+
     @Override
     public SiteMapGenerationResponse generateSiteMap() throws SiteMapException, IOException {
         SiteMapGenerationResponse smgr = new SiteMapGenerationResponse();
@@ -88,10 +124,13 @@ public class SiteMapServiceImpl implements SiteMapService {
 
         FileWorkArea fileWorkArea = broadleafFileService.initializeWorkArea();
         SiteMapBuilder siteMapBuilder = new SiteMapBuilder(smc, fileWorkArea, baseUrlResolver.getSiteBaseUrl(), getGzipSiteMapFiles());
+        siteMapBuilder.setKeepUncompressedFiles(getKeepUncompressedSiteMapFiles());
+        siteMapBuilder.setMaximumBytesPerFile(getMaximumBytesPerSiteMapFile());
 
         if (LOG.isTraceEnabled()) {
             LOG.trace("File work area initalized with path " + fileWorkArea.getFilePathLocation());
         }
+        List<SiteMapGeneratorConfiguration> enabledConfigurations = new ArrayList<SiteMapGeneratorConfiguration>();
         for (SiteMapGeneratorConfiguration currentConfiguration : smc.getSiteMapGeneratorConfigurations()) {
             if (currentConfiguration.isDisabled()) {
                 if (LOG.isTraceEnabled()) {
@@ -99,23 +138,17 @@ public class SiteMapServiceImpl implements SiteMapService {
                 }
                 continue;
             }
-            SiteMapGenerator generator = selectSiteMapGenerator(currentConfiguration);
-            if (generator != null) {
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("SiteMapGenerator found, adding entries" + generator.getClass());
-                }
-                generator.addSiteMapEntries(currentConfiguration, siteMapBuilder);
-            } else {
-                LOG.warn("No site map generator found to process generator configuration for " + currentConfiguration.getSiteMapGeneratorType());
-            }
+            enabledConfigurations.add(currentConfiguration);
         }
 
-        siteMapBuilder.persistSiteMap();
+        if (!enabledConfigurations.isEmpty()) {
+            addSiteMapEntriesOnGeneratorThreads(enabledConfigurations, siteMapBuilder);
+        }
 
+        siteMapBuilder.persistSiteMap();
 
-        // Check for GZip
+        // Files were gzipped while they were written
         if (getGzipSiteMapFiles()) {
-            gzipAndDeleteFiles(fileWorkArea, siteMapBuilder.getIndexedFileNames(), false);
             List<String> indexFileNames = new ArrayList<String>();
             for (String fileName: siteMapBuilder.getIndexedFileNames()) {
                 indexFileNames.add(fileName + ENCODING_EXTENSION);
@@ -178,6 +211,114 @@ public class SiteMapServiceImpl implements SiteMapService {
         }        
     }
 
+    protected void addSiteMapEntries(SiteMapGeneratorConfiguration currentConfiguration, SiteMapBuilder siteMapBuilder) {
+        SiteMapGenerator generator = selectSiteMapGenerator(currentConfiguration);
+        if (generator != null) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("SiteMapGenerator found, adding entries" + generator.getClass());
+            }
+            generator.addSiteMapEntries(currentConfiguration, siteMapBuilder);
+        } else {
+            LOG.warn("No site map generator found to process generator configuration for " + currentConfiguration.getSiteMapGeneratorType());
+        }
+    }
+
+    /**
+     * Runs the generator of the given configuration in its own read-only transaction. Only called on the threads of
+     * {@link #addSiteMapEntriesOnGeneratorThreads(List, SiteMapBuilder)}, which have no EntityManager bound, so the
+     * transaction opens a new one and the callback from {@link #createPageCompletedCallback()} only clears the
+     * entities the generator read.
+     */
+    protected void addSiteMapEntriesInTransaction(SiteMapGeneratorConfiguration configuration, SiteMapBuilder siteMapBuilder) {
+        TransactionStatus status = TransactionUtils.createTransaction("generateSiteMap",
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW, transactionManager, true);
+        boolean isError = true;
+        try {
+            addSiteMapEntries(configuration, siteMapBuilder);
+            isError = false;
+        } finally {
+            TransactionUtils.finalizeTransaction(status, transactionManager, isError);
+        }
+    }
+
+    /**
+     * Clears the persistence context whenever a generator reports a completed page, so entities read for earlier
+     * pages do not accumulate. Only used while the generators run in the transactions of
+     * {@link #addSiteMapEntriesInTransaction(SiteMapGeneratorConfiguration, SiteMapBuilder)}.
+     */
+    protected Runnable createPageCompletedCallback() {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                genericEntityDao.clear();
+            }
+        };
+    }
+
+    /**
+     * Runs the generators of the given configurations on up to "sitemap.generation.threads" threads. Each one runs
+     * in its own read-only transaction with a copy of the current {@link BroadleafRequestContext}. With one thread the
+     * configurations are processed in order, which keeps the order of the URLs across files stable.
+     * <p>
+     * The generators never run on the calling thread. During a storefront request, open-EntityManager-in-view has
+     * already bound an EntityManager to that thread and a REQUIRES_NEW transaction would reuse it, so clearing it
+     * after each page would detach the entities of the request.
+     */
+    protected void addSiteMapEntriesOnGeneratorThreads(List<SiteMapGeneratorConfiguration> configurations,
+            final SiteMapBuilder siteMapBuilder) throws SiteMapException {
+        final BroadleafRequestContext requestContext = BroadleafRequestContext.getBroadleafRequestContext();
+        siteMapBuilder.setPageCompletedCallback(createPageCompletedCallback());
+        final AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Math.max(1, Math.min(getSiteMapGenerationThreads(), configurations.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sitemap-generator-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final SiteMapGeneratorConfiguration configuration : configurations) {
+                futures.add(executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (requestContext != null) {
+                            BroadleafRequestContext.setBroadleafRequestContext(requestContext.createLightWeightClone());
+                        }
+                        try {
+                            addSiteMapEntriesInTransaction(configuration, siteMapBuilder);
+                        } finally {
+                            ThreadLocalManager.remove();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            // Surface generator failures as they were thrown, as when the generators ran on the calling thread
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new SiteMapException("Error generating sitemap entries", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SiteMapException("Interrupted while generating sitemap entries", e);
+        } finally {
+            executor.shutdownNow();
+            siteMapBuilder.setPageCompletedCallback(null);
+        }
+    }
+
     protected SiteMapConfiguration findActiveSiteMapConfiguration() {
         List<ModuleConfiguration> configurations = moduleConfigurationService.findActiveConfigurationsByType(ModuleConfigurationType.SITE_MAP);
 
@@ -287,6 +428,30 @@ public class SiteMapServiceImpl implements SiteMapService {
         return BLCSystemProperty.resolveBooleanSystemProperty("sitemap.createIfTimeoutExpired",false);
     }
 
+    public boolean getKeepUncompressedSiteMapFiles() {
+        return keepUncompressedSiteMapFiles;
+    }
+
+    public void setKeepUncompressedSiteMapFiles(boolean keepUncompressedSiteMapFiles) {
+        this.keepUncompressedSiteMapFiles = keepUncompressedSiteMapFiles;
+    }
+
+    public long getMaximumBytesPerSiteMapFile() {
+        return maximumBytesPerSiteMapFile;
+    }
+
+    public void setMaximumBytesPerSiteMapFile(long maximumBytesPerSiteMapFile) {
+        this.maximumBytesPerSiteMapFile = maximumBytesPerSiteMapFile;
+    }
+
+    public int getSiteMapGenerationThreads() {
+        return siteMapGenerationThreads;
+    }
+
+    public void setSiteMapGenerationThreads(int siteMapGenerationThreads) {
+        this.siteMapGenerationThreads = siteMapGenerationThreads;
+    }
+
     public Long getSiteMapTimeoutInMillis() {
         Long cacheSeconds = BLCSystemProperty.resolveLongSystemProperty("sitemap.cache.seconds");
         return cacheSeconds * 1000;
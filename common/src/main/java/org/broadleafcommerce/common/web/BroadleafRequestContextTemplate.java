@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web;
+
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
+import org.broadleafcommerce.common.currency.domain.BroadleafRequestedCurrencyDto;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.site.domain.Theme;
+
+/**
+ * An immutable snapshot of the site, theme, locale and currencies that {@link BroadleafRequestProcessor} resolved for
+ * a request, used to populate the {@link BroadleafRequestContext} of later requests with the same
+ * {@link RequestContextResolutionKey} without running the resolvers again.
+ *
+ * @see RequestContextResolutionCache
+ */
+public class BroadleafRequestContextTemplate {
+
+    protected final Site site;
+    protected final Theme theme;
+    protected final Locale locale;
+    protected final BroadleafCurrency currency;
+    protected final BroadleafCurrency requestedCurrency;
+    protected final long createdAt = System.currentTimeMillis();
+
+    public BroadleafRequestContextTemplate(Site site, Theme theme, Locale locale, BroadleafRequestedCurrencyDto currencyDto) {
+        this.site = site;
+        this.theme = theme;
+        this.locale = locale;
+        this.currency = currencyDto == null ? null : currencyDto.getCurrencyToUse();
+        this.requestedCurrency = currencyDto == null ? null : currencyDto.getRequestedCurrency();
+    }
+
+    /**
+     * Populate the site, theme, locale and currencies of the given request context from this snapshot
+     */
+    public void applyTo(BroadleafRequestContext brc) {
+        brc.setNonPersistentSite(site);
+        if (site == null) {
+            brc.setIgnoreSite(true);
+        }
+        brc.setTheme(theme);
+        brc.setLocale(locale);
+        brc.setBroadleafCurrency(currency);
+        brc.setRequestedBroadleafCurrency(requestedCurrency);
+    }
+
+    public Site getSite() {
+        return site;
+    }
+
+    public Theme getTheme() {
+        return theme;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public BroadleafRequestedCurrencyDto getCurrencyDto() {
+        return currency == null && requestedCurrency == null ? null : new BroadleafRequestedCurrencyDto(currency, requestedCurrency);
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+}
@@ -33,12 +33,14 @@ import org.broadleafcommerce.common.site.domain.Theme;
 import org.broadleafcommerce.common.util.BLCRequestUtils;
 import org.broadleafcommerce.common.util.DeployBehaviorUtil;
 import org.broadleafcommerce.common.util.StringUtil;
+import org.broadleafcommerce.common.web.RequestContextResolutionCache.Phase;
 import org.broadleafcommerce.common.web.exception.HaltFilterChainException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.i18n.CookieLocaleResolver;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -109,19 +111,33 @@ public class BroadleafRequestProcessor extends AbstractBroadleafWebRequestProces
     
     @Resource(name="blEntityExtensionManagers")
     protected Map<String, ExtensionManager> entityExtensionManagers;
+
+    @Resource(name = "blRequestContextResolutionCache")
+    protected RequestContextResolutionCache resolutionCache;
     
     @Override
     public void process(WebRequest request) {
         BroadleafRequestContext brc = new BroadleafRequestContext();
         brc.getAdditionalProperties().putAll(entityExtensionManagers);
-        
-        Site site = siteResolver.resolveSite(request);
-        
-        brc.setNonPersistentSite(site);
-        brc.setWebRequest(request);
-        if (site == null) {
-            brc.setIgnoreSite(true);
+
+        RequestContextResolutionKey resolutionKey = resolutionCache.isEnabled() ? resolutionCache.buildKey(request) : null;
+        BroadleafRequestContextTemplate template = resolutionKey == null ? null : resolutionCache.get(resolutionKey);
+
+        long start;
+        if (template != null) {
+            // The site, theme, locale and currencies were resolved by an earlier request with the same key
+            template.applyTo(brc);
+        } else {
+            start = System.nanoTime();
+            Site site = siteResolver.resolveSite(request);
+            resolutionCache.recordPhase(Phase.SITE, System.nanoTime() - start);
+
+            brc.setNonPersistentSite(site);
+            if (site == null) {
+                brc.setIgnoreSite(true);
+            }
         }
+        brc.setWebRequest(request);
         brc.setAdmin(false);
 
         if (siteStrictValidateProductionChanges) {
@@ -132,17 +148,37 @@ public class BroadleafRequestProcessor extends AbstractBroadleafWebRequestProces
 
         BroadleafRequestContext.setBroadleafRequestContext(brc);
 
-        Locale locale = localeResolver.resolveLocale(request);
-        brc.setLocale(locale);
+        Locale locale;
+        if (template != null) {
+            locale = template.getLocale();
+            applyResolvedLocale(request, locale, resolutionKey);
+        } else {
+            start = System.nanoTime();
+            locale = localeResolver.resolveLocale(request);
+            resolutionCache.recordPhase(Phase.LOCALE, System.nanoTime() - start);
+            brc.setLocale(locale);
+        }
+        start = System.nanoTime();
         TimeZone timeZone = broadleafTimeZoneResolver.resolveTimeZone(request);
-        BroadleafRequestedCurrencyDto currencyDto = currencyResolver.resolveCurrency(request);
+        resolutionCache.recordPhase(Phase.TIME_ZONE, System.nanoTime() - start);
+        BroadleafRequestedCurrencyDto currencyDto;
+        if (template != null) {
+            currencyDto = template.getCurrencyDto();
+            applyResolvedCurrency(request, currencyDto);
+        } else {
+            start = System.nanoTime();
+            currencyDto = currencyResolver.resolveCurrency(request);
+            resolutionCache.recordPhase(Phase.CURRENCY, System.nanoTime() - start);
+        }
         // Assumes BroadleafProcess
         RequestDTO requestDTO = (RequestDTO) request.getAttribute(REQUEST_DTO_PARAM_NAME, WebRequest.SCOPE_REQUEST);
         if (requestDTO == null) {
             requestDTO = new RequestDTOImpl(request);
         }
 
-        SandBox currentSandbox = sandboxResolver.resolveSandBox(request, site);
+        start = System.nanoTime();
+        SandBox currentSandbox = sandboxResolver.resolveSandBox(request, brc.getNonPersistentSite());
+        resolutionCache.recordPhase(Phase.SANDBOX, System.nanoTime() - start);
         
         // When a user elects to switch his sandbox, we want to invalidate the current session. We'll then redirect the 
         // user to the current URL so that the configured filters trigger again appropriately.
@@ -200,9 +236,21 @@ public class BroadleafRequestProcessor extends AbstractBroadleafWebRequestProces
         brc.setDeployBehavior(deployBehaviorUtil.isProductionSandBoxMode() ? DeployBehavior.CLONE_PARENT : DeployBehavior.OVERWRITE_PARENT);
 
         // Note that this must happen after the request context is set up as resolving a theme is dependent on site
-        Theme theme = themeResolver.resolveTheme(request);
+        Theme theme;
+        if (template != null && currentSandbox == null) {
+            theme = template.getTheme();
+        } else {
+            start = System.nanoTime();
+            theme = themeResolver.resolveTheme(request);
+            resolutionCache.recordPhase(Phase.THEME, System.nanoTime() - start);
+        }
         brc.setTheme(theme);
 
+        // Sandbox previews are always resolved in full, and so are never cached
+        if (template == null && resolutionKey != null && currentSandbox == null) {
+            resolutionCache.put(resolutionKey, new BroadleafRequestContextTemplate(brc.getNonPersistentSite(), theme, locale, currencyDto));
+        }
+
         brc.setMessageSource(messageSource);
         brc.setTimeZone(timeZone);
         brc.setRequestDTO(requestDTO);
@@ -224,6 +272,35 @@ public class BroadleafRequestProcessor extends AbstractBroadleafWebRequestProces
 
     }
 
+    /**
+     * Set the request and session attributes that {@link BroadleafLocaleResolverImpl} would have set when resolving
+     * the given locale for a request with the given key
+     */
+    protected void applyResolvedLocale(WebRequest request, Locale locale, RequestContextResolutionKey resolutionKey) {
+        boolean useSession = BLCRequestUtils.isOKtoUseSession(request);
+        if (resolutionKey.getLocaleSource() == RequestContextResolutionKey.Source.SESSION) {
+            request.setAttribute(BroadleafLocaleResolverImpl.LOCALE_PULLED_FROM_SESSION, Boolean.TRUE, WebRequest.SCOPE_REQUEST);
+        } else if (useSession && resolutionKey.getLocaleSource() != RequestContextResolutionKey.Source.ATTRIBUTE) {
+            request.removeAttribute(BroadleafCurrencyResolverImpl.CURRENCY_VAR, WebRequest.SCOPE_GLOBAL_SESSION);
+        }
+        request.setAttribute(BroadleafLocaleResolverImpl.LOCALE_VAR, locale, WebRequest.SCOPE_REQUEST);
+        request.setAttribute(CookieLocaleResolver.LOCALE_REQUEST_ATTRIBUTE_NAME, BroadleafRequestContext.convertLocaleToJavaLocale(locale),
+                WebRequest.SCOPE_REQUEST);
+        if (useSession) {
+            request.setAttribute(BroadleafLocaleResolverImpl.LOCALE_VAR, locale, WebRequest.SCOPE_GLOBAL_SESSION);
+        }
+    }
+
+    /**
+     * Set the session attribute that {@link BroadleafCurrencyResolverImpl} would have set when resolving the given
+     * currencies
+     */
+    protected void applyResolvedCurrency(WebRequest request, BroadleafRequestedCurrencyDto currencyDto) {
+        if (currencyDto != null && BLCRequestUtils.isOKtoUseSession(request)) {
+            request.setAttribute(BroadleafCurrencyResolverImpl.CURRENCY_VAR, currencyDto.getCurrencyToUse(), WebRequest.SCOPE_GLOBAL_SESSION);
+        }
+    }
+
     protected boolean isUrlValid(String url) {
         boolean isValid = false;
         String siteBaseUrl = baseUrlResolver.getSiteBaseUrl() + "/";
@@ -0,0 +1,47 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web;
+
+import org.broadleafcommerce.common.event.BroadleafApplicationEvent;
+
+/**
+ * An event for whenever a {@link org.broadleafcommerce.common.site.domain.Site},
+ * {@link org.broadleafcommerce.common.locale.domain.Locale} or
+ * {@link org.broadleafcommerce.common.currency.domain.BroadleafCurrency} has been saved or removed
+ *
+ * @see {@link RequestContextReferenceDataEntityListener}
+ */
+public class RequestContextReferenceDataChangedEvent extends BroadleafApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param entity the changed site, locale or currency
+     */
+    public RequestContextReferenceDataChangedEvent(Object entity) {
+        super(entity);
+    }
+
+    /**
+     * @return the changed site, locale or currency
+     */
+    public Object getEntity() {
+        return source;
+    }
+
+}
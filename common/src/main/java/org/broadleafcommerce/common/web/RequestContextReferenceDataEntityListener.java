@@ -0,0 +1,53 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Publishes a {@link RequestContextReferenceDataChangedEvent} once the transaction that saved or removed a site,
+ * locale or currency commits, so that the cached request context templates are discarded. Nothing is published unless
+ * the cache is enabled with the request.context.resolution.cache.enabled property.
+ *
+ * @see RequestContextResolutionCache
+ */
+public class RequestContextReferenceDataEntityListener {
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void referenceDataChanged(final Object entity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && BLCSystemProperty.resolveBooleanSystemProperty("request.context.resolution.cache.enabled", false)) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    ApplicationContextHolder.getApplicationContext().publishEvent(new RequestContextReferenceDataChangedEvent(entity));
+                }
+            });
+        }
+    }
+
+}
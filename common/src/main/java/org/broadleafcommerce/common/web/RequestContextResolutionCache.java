@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web;
+
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Holds the {@link BroadleafRequestContextTemplate} resolved for each {@link RequestContextResolutionKey}, so that
+ * {@link BroadleafRequestProcessor} can populate the request context of most storefront requests without going back
+ * to the site, theme, locale and currency resolvers. Also keeps the time spent in each resolution phase, whether or not
+ * caching is enabled.
+ */
+public interface RequestContextResolutionCache {
+
+    enum Phase {
+        SITE, LOCALE, TIME_ZONE, CURRENCY, SANDBOX, THEME
+    }
+
+    /**
+     * @return whether templates are cached, controlled by the request.context.resolution.cache.enabled property
+     */
+    boolean isEnabled();
+
+    /**
+     * Build the key for the given request
+     *
+     * @return the key, or null if the request can not be resolved from a cached template
+     */
+    RequestContextResolutionKey buildKey(WebRequest request);
+
+    /**
+     * @return the template cached for the key, or null if there is none or it has expired
+     */
+    BroadleafRequestContextTemplate get(RequestContextResolutionKey key);
+
+    /**
+     * Cache the template resolved for the key. The template is ignored if the key does not describe it completely
+     * (see {@link RequestContextResolutionKey#matches}) or the cache is full.
+     */
+    void put(RequestContextResolutionKey key, BroadleafRequestContextTemplate template);
+
+    /**
+     * Discard every cached template
+     */
+    void invalidateAll();
+
+    /**
+     * Record the time taken to resolve one phase of a request
+     *
+     * @param phase the phase
+     * @param nanos the elapsed time, in nanoseconds
+     */
+    void recordPhase(Phase phase, long nanos);
+
+}
@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web;
+
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.util.BLCRequestUtils;
+import org.broadleafcommerce.common.web.RequestContextResolutionKey.Source;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keys requests on the host name plus the source and code of the requested locale and currency, following the same
+ * precedence as {@link BroadleafLocaleResolverImpl} and {@link BroadleafCurrencyResolverImpl}. This assumes that the
+ * configured site and theme resolvers only depend on the host name; implementations whose resolvers look at more of
+ * the request should override {@link #buildKey(WebRequest)} or leave the cache disabled.
+ * <p/>
+ * Templates are discarded when a site, locale or currency is saved on this node (see
+ * {@link RequestContextReferenceDataEntityListener}) and otherwise expire after ttlSeconds, which bounds how long other
+ * nodes in a cluster serve a stale template.
+ */
+@Component("blRequestContextResolutionCache")
+@ManagedResource(objectName="org.broadleafcommerce:name=RequestContextResolutionCache", description="Request Context Resolution Cache", currencyTimeLimit=15)
+public class RequestContextResolutionCacheImpl implements RequestContextResolutionCache, ApplicationListener<RequestContextReferenceDataChangedEvent> {
+
+    @Value("${request.context.resolution.cache.enabled:false}")
+    protected boolean enabled = false;
+
+    @Value("${request.context.resolution.cache.ttlSeconds:300}")
+    protected long ttlSeconds = 300;
+
+    /**
+     * Keys come from the request, so the number of templates is capped rather than trusting the host header
+     */
+    @Value("${request.context.resolution.cache.maxEntries:1000}")
+    protected int maxEntries = 1000;
+
+    protected final ConcurrentMap<RequestContextResolutionKey, BroadleafRequestContextTemplate> templates =
+            new ConcurrentHashMap<RequestContextResolutionKey, BroadleafRequestContextTemplate>();
+
+    protected final AtomicLong hitCount = new AtomicLong();
+    protected final AtomicLong missCount = new AtomicLong();
+    protected final AtomicLongArray phaseCounts = new AtomicLongArray(Phase.values().length);
+    protected final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public RequestContextResolutionKey buildKey(WebRequest request) {
+        if (!(request instanceof ServletWebRequest)) {
+            return null;
+        }
+        String host = ((ServletWebRequest) request).getRequest().getServerName();
+        boolean useSession = BLCRequestUtils.isOKtoUseSession(request);
+
+        Source localeSource = Source.DEFAULT;
+        String localeCode = null;
+        Locale locale = (Locale) request.getAttribute(BroadleafLocaleResolverImpl.LOCALE_VAR, WebRequest.SCOPE_REQUEST);
+        String localeParam = BLCRequestUtils.getURLorHeaderParameter(request, BroadleafLocaleResolverImpl.LOCALE_CODE_PARAM);
+        if (locale != null) {
+            localeSource = Source.ATTRIBUTE;
+            localeCode = locale.getLocaleCode();
+        } else if (localeParam != null) {
+            localeSource = Source.PARAMETER;
+            localeCode = localeParam;
+        } else if (useSession) {
+            locale = (Locale) request.getAttribute(BroadleafLocaleResolverImpl.LOCALE_VAR, WebRequest.SCOPE_GLOBAL_SESSION);
+            if (locale != null) {
+                localeSource = Source.SESSION;
+                localeCode = locale.getLocaleCode();
+            }
+        }
+
+        Source currencySource = Source.DEFAULT;
+        String currencyCode = null;
+        BroadleafCurrency currency = (BroadleafCurrency) request.getAttribute(BroadleafCurrencyResolverImpl.CURRENCY_VAR, WebRequest.SCOPE_REQUEST);
+        String currencyParam = BLCRequestUtils.getURLorHeaderParameter(request, BroadleafCurrencyResolverImpl.CURRENCY_CODE_PARAM);
+        if (currency != null) {
+            currencySource = Source.ATTRIBUTE;
+            currencyCode = currency.getCurrencyCode();
+        } else if (currencyParam != null) {
+            currencySource = Source.PARAMETER;
+            currencyCode = currencyParam;
+        } else if (useSession && (localeSource == Source.ATTRIBUTE || localeSource == Source.SESSION)) {
+            // the locale resolver removes the session currency when the locale is requested or defaulted
+            currency = (BroadleafCurrency) request.getAttribute(BroadleafCurrencyResolverImpl.CURRENCY_VAR, WebRequest.SCOPE_GLOBAL_SESSION);
+            if (currency != null) {
+                currencySource = Source.SESSION;
+                currencyCode = currency.getCurrencyCode();
+            }
+        }
+        return new RequestContextResolutionKey(host, localeSource, localeCode, currencySource, currencyCode);
+    }
+
+    @Override
+    public BroadleafRequestContextTemplate get(RequestContextResolutionKey key) {
+        BroadleafRequestContextTemplate template = templates.get(key);
+        if (template != null && ttlSeconds > 0 && System.currentTimeMillis() - template.getCreatedAt() > ttlSeconds * 1000L) {
+            templates.remove(key, template);
+            template = null;
+        }
+        if (template == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return template;
+    }
+
+    @Override
+    public void put(RequestContextResolutionKey key, BroadleafRequestContextTemplate template) {
+        if (!key.matches(template.getLocale(), template.getCurrencyDto())) {
+            return;
+        }
+        if (templates.size() < maxEntries || templates.containsKey(key)) {
+            templates.put(key, template);
+        }
+    }
+
+    @Override
+    @ManagedOperation(description="Discard every cached request context template")
+    public void invalidateAll() {
+        templates.clear();
+    }
+
+    @Override
+    public void onApplicationEvent(RequestContextReferenceDataChangedEvent event) {
+        invalidateAll();
+    }
+
+    @Override
+    public void recordPhase(Phase phase, long nanos) {
+        phaseCounts.incrementAndGet(phase.ordinal());
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    @ManagedOperation(description="Reset the hit, miss and phase timing statistics")
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        for (int j = 0; j < phaseCounts.length(); j++) {
+            phaseCounts.set(j, 0);
+            phaseNanos.set(j, 0);
+        }
+    }
+
+    @ManagedAttribute(description="The number of cached request context templates", currencyTimeLimit=15)
+    public int getSize() {
+        return templates.size();
+    }
+
+    @ManagedAttribute(description="The number of requests populated from a cached template", currencyTimeLimit=15)
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @ManagedAttribute(description="The number of requests that had to be resolved", currencyTimeLimit=15)
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @ManagedAttribute(description="The average time spent resolving each phase of a request, in microseconds", currencyTimeLimit=15)
+    public String getPhaseTimings() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            long count = phaseCounts.get(phase.ordinal());
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(phase).append('=');
+            sb.append(count == 0 ? "0" : String.format("%.1f", phaseNanos.get(phase.ordinal()) / 1000D / count));
+            sb.append(" (").append(count).append(')');
+        }
+        return sb.toString();
+    }
+
+    public boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+}
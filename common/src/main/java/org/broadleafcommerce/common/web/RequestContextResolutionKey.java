@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web;
+
+import org.apache.commons.lang3.ObjectUtils;
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
+import org.broadleafcommerce.common.currency.domain.BroadleafRequestedCurrencyDto;
+import org.broadleafcommerce.common.locale.domain.Locale;
+
+/**
+ * Identifies the inputs that {@link BroadleafRequestProcessor} resolves the site, theme, locale and currency of a
+ * request from: the host name and, for the locale and the currency, where the resolvers will find the requested
+ * value and its code.
+ *
+ * @see RequestContextResolutionCache
+ */
+public class RequestContextResolutionKey {
+
+    public enum Source {
+        /** Set as a request attribute by an earlier filter */
+        ATTRIBUTE,
+        /** Requested with a URL parameter or header */
+        PARAMETER,
+        /** Held in the session by an earlier request */
+        SESSION,
+        /** Not requested, so the default (or, for the currency, the locale's default) is used */
+        DEFAULT
+    }
+
+    protected final String host;
+    protected final Source localeSource;
+    protected final String localeCode;
+    protected final Source currencySource;
+    protected final String currencyCode;
+
+    public RequestContextResolutionKey(String host, Source localeSource, String localeCode, Source currencySource, String currencyCode) {
+        this.host = host;
+        this.localeSource = localeSource;
+        this.localeCode = localeCode;
+        this.currencySource = currencySource;
+        this.currencyCode = currencyCode;
+    }
+
+    /**
+     * Whether the locale and currency resolved for this key are the ones the key asked for. A requested code that does
+     * not exist makes the resolvers fall back to the session or the default, which this key does not capture, so such
+     * a resolution must not be cached.
+     */
+    public boolean matches(Locale locale, BroadleafRequestedCurrencyDto currencyDto) {
+        if (localeSource != Source.DEFAULT && (locale == null || !ObjectUtils.equals(localeCode, locale.getLocaleCode()))) {
+            return false;
+        }
+        if (currencySource != Source.DEFAULT) {
+            BroadleafCurrency requestedCurrency = currencyDto == null ? null : currencyDto.getRequestedCurrency();
+            if (requestedCurrency == null || !ObjectUtils.equals(currencyCode, requestedCurrency.getCurrencyCode())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public Source getLocaleSource() {
+        return localeSource;
+    }
+
+    public String getLocaleCode() {
+        return localeCode;
+    }
+
+    public Source getCurrencySource() {
+        return currencySource;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestContextResolutionKey)) {
+            return false;
+        }
+        RequestContextResolutionKey that = (RequestContextResolutionKey) o;
+        return ObjectUtils.equals(host, that.host)
+                && localeSource == that.localeSource
+                && ObjectUtils.equals(localeCode, that.localeCode)
+                && currencySource == that.currencySource
+                && ObjectUtils.equals(currencyCode, that.currencyCode);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = host != null ? host.hashCode() : 0;
+        result = 31 * result + localeSource.hashCode();
+        result = 31 * result + (localeCode != null ? localeCode.hashCode() : 0);
+        result = 31 * result + currencySource.hashCode();
+        result = 31 * result + (currencyCode != null ? currencyCode.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return host + "|" + localeSource + ":" + localeCode + "|" + currencySource + ":" + currencyCode;
+    }
+
+}
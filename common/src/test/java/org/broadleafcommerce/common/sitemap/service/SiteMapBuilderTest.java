@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+
+package org.broadleafcommerce.common.sitemap.service;
+
+import org.broadleafcommerce.common.file.domain.FileWorkArea;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapConfigurationImpl;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Tests when {@link SiteMapBuilder} starts a new sitemap file
+ */
+public class SiteMapBuilderTest {
+
+    protected File directory;
+    protected FileWorkArea fileWorkArea;
+    protected SiteMapConfiguration siteMapConfig;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("sitemap-builder").toFile();
+        fileWorkArea = new FileWorkArea();
+        fileWorkArea.setFilePathLocation(directory.getAbsolutePath() + File.separator);
+        siteMapConfig = new SiteMapConfigurationImpl();
+        siteMapConfig.setIndexedSiteMapFileName("sitemap_index.xml");
+    }
+
+    @After
+    public void deleteTempFiles() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testRolloverByUrlCount() throws IOException {
+        siteMapConfig.setMaximumUrlEntriesPerFile(2);
+        SiteMapBuilder builder = createBuilder(false);
+        addUrls(builder, 5);
+        builder.persistSiteMap();
+
+        Assert.assertEquals(Arrays.asList("sitemap1.xml", "sitemap2.xml", "sitemap3.xml", "sitemap_index.xml"),
+                builder.getIndexedFileNames());
+        Assert.assertEquals(2, countOccurrences(read("sitemap1.xml"), "<url>"));
+        Assert.assertEquals(2, countOccurrences(read("sitemap2.xml"), "<url>"));
+        Assert.assertEquals(1, countOccurrences(read("sitemap3.xml"), "<url>"));
+        Assert.assertTrue(read("sitemap3.xml").contains("<loc>http://www.heatclinic.com/5</loc>"));
+
+        String index = read("sitemap_index.xml");
+        Assert.assertEquals(3, countOccurrences(index, "<sitemap>"));
+        Assert.assertTrue(index.contains("<loc>http://www.heatclinic.com/sitemap3.xml</loc>"));
+    }
+
+    @Test
+    public void testRolloverByBytes() throws IOException {
+        siteMapConfig.setMaximumUrlEntriesPerFile(1000);
+        SiteMapBuilder builder = createBuilder(false);
+        long entryBytes = builder.formatUrl(createUrl(builder, 1)).getBytes(SiteMapFileWriter.UTF_8).length;
+        long maximumBytes = SiteMapBuilder.URL_SET_HEADER.length() + SiteMapBuilder.URL_SET_FOOTER.length()
+                + 2 * entryBytes;
+        builder.setMaximumBytesPerFile(maximumBytes);
+        // The URLs 1 to 9 all format to the same size
+        addUrls(builder, 5);
+        builder.persistSiteMap();
+
+        Assert.assertEquals(Arrays.asList("sitemap1.xml", "sitemap2.xml", "sitemap3.xml", "sitemap_index.xml"),
+                builder.getIndexedFileNames());
+        Assert.assertEquals(maximumBytes, new File(directory, "sitemap1.xml").length());
+        Assert.assertEquals(maximumBytes, new File(directory, "sitemap2.xml").length());
+        Assert.assertEquals(1, countOccurrences(read("sitemap3.xml"), "<url>"));
+    }
+
+    @Test
+    public void testUrlLargerThanMaximumBytesGetsItsOwnFile() throws IOException {
+        SiteMapBuilder builder = createBuilder(false);
+        builder.setMaximumBytesPerFile(1);
+        addUrls(builder, 2);
+        builder.persistSiteMap();
+
+        Assert.assertEquals(Arrays.asList("sitemap1.xml", "sitemap2.xml", "sitemap_index.xml"),
+                builder.getIndexedFileNames());
+        Assert.assertEquals(1, countOccurrences(read("sitemap1.xml"), "<url>"));
+        Assert.assertEquals(1, countOccurrences(read("sitemap2.xml"), "<url>"));
+    }
+
+    @Test
+    public void testSingleFileIsNotIndexed() throws IOException {
+        siteMapConfig.setMaximumUrlEntriesPerFile(2);
+        SiteMapBuilder builder = createBuilder(true);
+        addUrls(builder, 2);
+        builder.persistSiteMap();
+
+        Assert.assertEquals(Arrays.asList("sitemap.xml"), builder.getIndexedFileNames());
+        Assert.assertFalse(new File(directory, "sitemap1.xml").exists());
+        Assert.assertFalse(new File(directory, "sitemap1.xml.gz").exists());
+        Assert.assertTrue(new File(directory, "sitemap.xml.gz").exists());
+        Assert.assertEquals(2, countOccurrences(read("sitemap.xml"), "<url>"));
+    }
+
+    @Test
+    public void testEmptySiteMap() throws IOException {
+        SiteMapBuilder builder = createBuilder(false);
+        builder.persistSiteMap();
+
+        Assert.assertEquals(Arrays.asList("sitemap.xml"), builder.getIndexedFileNames());
+        Assert.assertEquals(SiteMapBuilder.URL_SET_HEADER + SiteMapBuilder.URL_SET_FOOTER, read("sitemap.xml"));
+    }
+
+    @Test
+    public void testIndexReferencesGzippedFiles() throws IOException {
+        siteMapConfig.setMaximumUrlEntriesPerFile(1);
+        SiteMapBuilder builder = createBuilder(true);
+        builder.setKeepUncompressedFiles(false);
+        addUrls(builder, 2);
+        builder.persistSiteMap();
+
+        Assert.assertFalse(new File(directory, "sitemap1.xml").exists());
+        Assert.assertTrue(new File(directory, "sitemap1.xml.gz").exists());
+        Assert.assertTrue(new File(directory, "sitemap2.xml.gz").exists());
+        Assert.assertTrue(new File(directory, "sitemap_index.xml.gz").exists());
+    }
+
+    protected SiteMapBuilder createBuilder(boolean gzip) {
+        return new SiteMapBuilder(siteMapConfig, fileWorkArea, "http://www.heatclinic.com", gzip);
+    }
+
+    protected SiteMapURLWrapper createUrl(SiteMapBuilder builder, int number) {
+        SiteMapURLWrapper urlWrapper = new SiteMapURLWrapper();
+        urlWrapper.setLoc(builder.getBaseUrl() + "/" + number);
+        return urlWrapper;
+    }
+
+    protected void addUrls(SiteMapBuilder builder, int count) {
+        for (int i = 1; i <= count; i++) {
+            builder.addUrl(createUrl(builder, i));
+        }
+    }
+
+    protected String read(String fileName) throws IOException {
+        return new String(Files.readAllBytes(new File(directory, fileName).toPath()), SiteMapFileWriter.UTF_8);
+    }
+
+    protected int countOccurrences(String text, String value) {
+        int count = 0;
+        int pos = text.indexOf(value);
+        while (pos >= 0) {
+            count++;
+            pos = text.indexOf(value, pos + value.length());
+        }
+        return count;
+    }
+
+}
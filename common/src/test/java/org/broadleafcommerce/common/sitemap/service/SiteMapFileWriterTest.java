@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+
+package org.broadleafcommerce.common.sitemap.service;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests the files written by {@link SiteMapFileWriter}
+ */
+public class SiteMapFileWriterTest {
+
+    protected static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<urlset>\n";
+    protected static final String FOOTER = "</urlset>\n";
+    protected static final String ENTRY = "    <url><loc>http://www.heatclinic.com/caf\u00e9</loc></url>\n";
+
+    protected File directory;
+    protected File file;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("sitemap-writer").toFile();
+        file = new File(directory, "sitemap.xml");
+    }
+
+    @After
+    public void deleteTempFiles() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File current : files) {
+                current.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testWritesUncompressedDocument() throws IOException {
+        byte[] entry = ENTRY.getBytes(SiteMapFileWriter.UTF_8);
+        SiteMapFileWriter writer = new SiteMapFileWriter(file, false, true, HEADER, FOOTER);
+        Assert.assertEquals(HEADER.length(), writer.getByteCount());
+        Assert.assertEquals(HEADER.length() + entry.length + FOOTER.length(), writer.getByteCountWith(entry));
+
+        writer.writeEntry(entry);
+        writer.writeEntry(entry);
+        Assert.assertEquals(2, writer.getEntryCount());
+        Assert.assertEquals(HEADER.length() + 2 * entry.length, writer.getByteCount());
+        writer.close();
+
+        String expected = HEADER + ENTRY + ENTRY + FOOTER;
+        Assert.assertEquals(expected, new String(Files.readAllBytes(file.toPath()), SiteMapFileWriter.UTF_8));
+        // The accented character takes two bytes
+        Assert.assertEquals(expected.getBytes(SiteMapFileWriter.UTF_8).length, file.length());
+        Assert.assertEquals(expected.length() + 2, file.length());
+        Assert.assertFalse(new File(file.getPath() + ".gz").exists());
+    }
+
+    @Test
+    public void testWritesGzippedAndUncompressedDocument() throws IOException {
+        SiteMapFileWriter writer = new SiteMapFileWriter(file, true, true, HEADER, FOOTER);
+        writer.writeEntry(ENTRY.getBytes(SiteMapFileWriter.UTF_8));
+        writer.close();
+
+        byte[] uncompressed = Files.readAllBytes(file.toPath());
+        Assert.assertEquals(HEADER + ENTRY + FOOTER, new String(uncompressed, SiteMapFileWriter.UTF_8));
+        Assert.assertArrayEquals(uncompressed, gunzip(new File(file.getPath() + ".gz")));
+    }
+
+    @Test
+    public void testWritesGzippedDocumentOnly() throws IOException {
+        SiteMapFileWriter writer = new SiteMapFileWriter(file, true, false, HEADER, FOOTER);
+        writer.writeEntry(ENTRY.getBytes(SiteMapFileWriter.UTF_8));
+        writer.close();
+
+        Assert.assertFalse(file.exists());
+        Assert.assertEquals(HEADER + ENTRY + FOOTER,
+                new String(gunzip(new File(file.getPath() + ".gz")), SiteMapFileWriter.UTF_8));
+        Assert.assertEquals(1, writer.getEntryCount());
+    }
+
+    protected byte[] gunzip(File gzipped) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(gzipped));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -22,6 +22,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.broadleafcommerce.common.config.domain.ModuleConfiguration;
 import org.broadleafcommerce.common.config.service.ModuleConfigurationService;
 import org.broadleafcommerce.common.config.service.type.ModuleConfigurationType;
+import org.broadleafcommerce.common.dao.GenericEntityDao;
 import org.broadleafcommerce.common.file.service.BroadleafFileServiceImpl;
 import org.broadleafcommerce.common.file.service.FileServiceProvider;
 import org.broadleafcommerce.common.file.service.FileSystemFileServiceProvider;
@@ -37,6 +38,9 @@ import org.easymock.EasyMock;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -67,6 +71,8 @@ public class SiteMapGeneratorTest {
             return "http://www.heatclinic.com/admin";
         }
     };
+    protected NoOpTransactionManager transactionManager = new NoOpTransactionManager();
+    protected GenericEntityDao genericEntityDao = EasyMock.createNiceMock(GenericEntityDao.class);
 
     @Before
     public void setup() {
@@ -74,7 +80,9 @@ public class SiteMapGeneratorTest {
         fileService.setDefaultFileServiceProvider(defaultFileServiceProvider);
         siteMapService.broadleafFileService = fileService;
         siteMapService.baseUrlResolver = baseUrlResolver;
-
+        siteMapService.transactionManager = transactionManager;
+        siteMapService.genericEntityDao = genericEntityDao;
+        EasyMock.replay(genericEntityDao);
     }
 
     @After
@@ -155,4 +163,34 @@ public class SiteMapGeneratorTest {
         return sb.toString();
     }
 
+    /**
+     * Lets the generators run in the transactions of {@link SiteMapServiceImpl} without a database
+     */
+    protected static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        private static final long serialVersionUID = 1L;
+
+        protected int commitCount = 0;
+        protected int rollbackCount = 0;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commitCount++;
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbackCount++;
+        }
+    }
+
 }
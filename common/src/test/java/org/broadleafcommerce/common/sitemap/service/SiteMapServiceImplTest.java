@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+
+package org.broadleafcommerce.common.sitemap.service;
+
+import org.broadleafcommerce.common.dao.GenericEntityDao;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfigurationImpl;
+import org.broadleafcommerce.common.sitemap.exception.SiteMapException;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests how {@link SiteMapServiceImpl} runs the generators
+ */
+public class SiteMapServiceImplTest extends SiteMapGeneratorTest {
+
+    @Test
+    public void testPageCompletedClearsPersistenceContextWithOneThread() throws SiteMapException, IOException {
+        genericEntityDao = EasyMock.createStrictMock(GenericEntityDao.class);
+        genericEntityDao.clear();
+        EasyMock.expectLastCall().times(2);
+        EasyMock.replay(genericEntityDao);
+        siteMapService.genericEntityDao = genericEntityDao;
+
+        PagingSiteMapGenerator generator = new PagingSiteMapGenerator();
+        testGenerator(getConfiguration(), generator, 2);
+
+        EasyMock.verify(genericEntityDao);
+        Assert.assertTrue(generator.readOnlyTransaction);
+        Assert.assertNull(generator.siteMapBuilder.getPageCompletedCallback());
+        Assert.assertEquals(1, transactionManager.commitCount);
+        Assert.assertEquals(0, transactionManager.rollbackCount);
+    }
+
+    @Test
+    public void testEachConfigurationRunsInItsOwnTransaction() throws SiteMapException, IOException {
+        List<SiteMapGeneratorConfiguration> smgcList = new ArrayList<>();
+        smgcList.add(getConfiguration());
+        smgcList.add(getConfiguration());
+        testGenerator(smgcList, new PagingSiteMapGenerator(), 2);
+
+        Assert.assertEquals(2, transactionManager.commitCount);
+    }
+
+    @Test
+    public void testFailedGeneratorRollsBackAndResetsCallback() throws IOException {
+        final List<SiteMapBuilder> builders = new ArrayList<>();
+        SiteMapGenerator generator = new PagingSiteMapGenerator() {
+
+            @Override
+            public void addSiteMapEntries(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
+                builders.add(siteMapBuilder);
+                throw new IllegalStateException("Simulated generator failure");
+            }
+        };
+        try {
+            testGenerator(getConfiguration(), generator, 2);
+            Assert.fail("The generator failure should propagate");
+        } catch (IllegalStateException e) {
+            // expected
+        } catch (SiteMapException e) {
+            Assert.fail(e.getMessage());
+        }
+
+        Assert.assertEquals(0, transactionManager.commitCount);
+        Assert.assertEquals(1, transactionManager.rollbackCount);
+        Assert.assertNull(builders.get(0).getPageCompletedCallback());
+    }
+
+    @Test
+    public void testGeneratorDoesNotSeeResourcesOfTheCallingThread() throws SiteMapException, IOException {
+        Object key = new Object();
+        TransactionSynchronizationManager.bindResource(key, new Object());
+        try {
+            PagingSiteMapGenerator generator = new PagingSiteMapGenerator();
+            testGenerator(getConfiguration(), generator, 2);
+
+            Assert.assertFalse(generator.hasCallerResources);
+            Assert.assertNotSame(Thread.currentThread(), generator.generatorThread);
+        } finally {
+            TransactionSynchronizationManager.unbindResource(key);
+        }
+    }
+
+    protected SiteMapGeneratorConfiguration getConfiguration() {
+        SiteMapGeneratorConfiguration smgc = new SiteMapGeneratorConfigurationImpl();
+        smgc.setDisabled(false);
+        return smgc;
+    }
+
+    /**
+     * Adds two pages of two URLs
+     */
+    protected static class PagingSiteMapGenerator implements SiteMapGenerator {
+
+        protected SiteMapBuilder siteMapBuilder;
+        protected boolean readOnlyTransaction;
+        protected boolean hasCallerResources;
+        protected Thread generatorThread;
+
+        @Override
+        public boolean canHandleSiteMapConfiguration(SiteMapGeneratorConfiguration smgc) {
+            return true;
+        }
+
+        @Override
+        public void addSiteMapEntries(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
+            this.siteMapBuilder = siteMapBuilder;
+            readOnlyTransaction = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+            hasCallerResources = !TransactionSynchronizationManager.getResourceMap().isEmpty();
+            generatorThread = Thread.currentThread();
+            int url = 0;
+            for (int page = 0; page < 2; page++) {
+                for (int i = 0; i < 2; i++) {
+                    SiteMapURLWrapper urlWrapper = new SiteMapURLWrapper();
+                    urlWrapper.setLoc(siteMapBuilder.getBaseUrl() + "/" + ++url);
+                    siteMapBuilder.addUrl(urlWrapper);
+                }
+                siteMapBuilder.pageCompleted();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.cache;
+
+import org.broadleafcommerce.common.cache.CacheStat;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+public class CacheStatTest extends TestCase {
+
+    public void testConcurrentCountsAreNotLost() throws Exception {
+        final CacheStat stat = new CacheStat();
+        final int threads = 8;
+        final int iterations = 10000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            final boolean hit = i % 2 == 0;
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < iterations; j++) {
+                        if (hit) {
+                            stat.incrementHit();
+                        }
+                        stat.incrementRequest();
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertEquals(Long.valueOf(threads * iterations), stat.getRequestCount());
+        assertEquals(Long.valueOf(threads * iterations / 2), stat.getCacheHitCount());
+        assertEquals(50D, stat.getHitRate().doubleValue());
+    }
+
+    public void testLatencyPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getPercentileNanos(99D));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000L);
+        }
+        histogram.record(1000000L);
+        assertEquals(100L, histogram.getCount());
+        assertTrue(histogram.getPercentileNanos(50D) >= 1000L && histogram.getPercentileNanos(50D) < 2000L);
+        assertTrue(histogram.getPercentileNanos(99D) < 2000L);
+        assertTrue(histogram.getPercentileNanos(100D) >= 1000000L);
+        assertEquals(10990D, histogram.getMeanNanos());
+    }
+
+    public void testConcurrentLatencyRecordsAreNotLost() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 8;
+        final int iterations = 10000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            final long nanos = i % 2 == 0 ? 1000L : 1000000L;
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < iterations; j++) {
+                        histogram.record(nanos);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertEquals(threads * iterations, histogram.getCount());
+        assertTrue(histogram.getPercentileNanos(50D) < 2000L);
+        assertTrue(histogram.getPercentileNanos(51D) >= 1000000L);
+
+        histogram.reset();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getPercentileNanos(100D));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.extension;
+
+import org.broadleafcommerce.common.extension.AbstractExtensionHandler;
+import org.broadleafcommerce.common.extension.ExtensionHandler;
+import org.broadleafcommerce.common.extension.ExtensionManager;
+import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ExtensionManagerTest extends TestCase {
+
+    public interface TestExtensionHandler extends ExtensionHandler {
+
+        ExtensionResultStatusType handle(List<String> calls, int value);
+
+    }
+
+    public static class TestExtensionManager extends ExtensionManager<TestExtensionHandler> {
+
+        protected boolean continueOnHandled;
+
+        public TestExtensionManager(boolean continueOnHandled) {
+            super(TestExtensionHandler.class);
+            this.continueOnHandled = continueOnHandled;
+        }
+
+        @Override
+        public boolean continueOnHandled() {
+            return continueOnHandled;
+        }
+
+    }
+
+    /**
+     * Hides its handlers while disabled, the way a manager filters its handlers for the current request
+     */
+    public static class FilteringExtensionManager extends TestExtensionManager {
+
+        protected boolean filtering;
+
+        public FilteringExtensionManager() {
+            super(false);
+        }
+
+        @Override
+        public List<TestExtensionHandler> getHandlers() {
+            if (filtering) {
+                return Collections.emptyList();
+            }
+            return super.getHandlers();
+        }
+
+    }
+
+    public static class TestHandler extends AbstractExtensionHandler implements TestExtensionHandler {
+
+        protected String name;
+        protected ExtensionResultStatusType result;
+
+        public TestHandler(String name, int priority, ExtensionResultStatusType result) {
+            this.name = name;
+            this.priority = priority;
+            this.result = result;
+        }
+
+        @Override
+        public ExtensionResultStatusType handle(List<String> calls, int value) {
+            calls.add(name + value);
+            return result;
+        }
+
+    }
+
+    /**
+     * Test that the proxy is generated rather than reflective and returns NOT_HANDLED without any handlers
+     */
+    public void testNoHandlers() {
+        TestExtensionManager manager = new TestExtensionManager(false);
+        assertFalse(Proxy.isProxyClass(manager.getProxy().getClass()));
+
+        List<String> calls = new ArrayList<String>();
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, manager.getProxy().handle(calls, 1));
+        assertTrue(calls.isEmpty());
+    }
+
+    /**
+     * Test that the dispatcher class is generated once and shared by every manager of the interface
+     */
+    public void testDispatcherClassIsShared() {
+        TestExtensionManager first = new TestExtensionManager(false);
+        TestExtensionManager second = new TestExtensionManager(true);
+        assertNotSame(first.getProxy(), second.getProxy());
+        assertSame(first.getProxy().getClass(), second.getProxy().getClass());
+    }
+
+    /**
+     * Test that handlers are called in priority order, skipping disabled handlers, until one stops the chain
+     */
+    public void testPriorityAndStop() {
+        TestExtensionManager manager = new TestExtensionManager(false);
+        // handlers are registered once per class, hence the anonymous subclasses
+        TestHandler disabled = new TestHandler("disabled", 0, ExtensionResultStatusType.HANDLED_STOP) { };
+        disabled.setEnabled(false);
+        manager.registerHandler(new TestHandler("b", 2, ExtensionResultStatusType.HANDLED_STOP));
+        manager.registerHandler(new TestHandler("a", 1, ExtensionResultStatusType.NOT_HANDLED) { });
+        manager.registerHandler(disabled);
+        manager.registerHandler(new TestHandler("c", 3, ExtensionResultStatusType.HANDLED_CONTINUE) { });
+
+        List<String> calls = new ArrayList<String>();
+        assertEquals(ExtensionResultStatusType.HANDLED, manager.getProxy().handle(calls, 7));
+        assertEquals("[a7, b7]", calls.toString());
+
+        calls.clear();
+        disabled.setEnabled(true);
+        manager.getProxy().handle(calls, 8);
+        assertEquals("[disabled8]", calls.toString());
+    }
+
+    /**
+     * Test that HANDLED stops the chain unless the manager continues on handled, and that a handler registered after
+     * the first call is picked up
+     */
+    public void testContinueOnHandled() {
+        TestExtensionManager stopping = new TestExtensionManager(false);
+        TestExtensionManager continuing = new TestExtensionManager(true);
+        for (TestExtensionManager manager : new TestExtensionManager[] { stopping, continuing }) {
+            manager.registerHandler(new TestHandler("a", 1, ExtensionResultStatusType.HANDLED));
+            manager.getProxy().handle(new ArrayList<String>(), 0);
+            manager.registerHandler(new TestHandler("b", 2, ExtensionResultStatusType.NOT_HANDLED) { });
+        }
+
+        List<String> calls = new ArrayList<String>();
+        stopping.getProxy().handle(calls, 1);
+        assertEquals("[a1]", calls.toString());
+
+        calls.clear();
+        continuing.getProxy().handle(calls, 1);
+        assertEquals("[a1, b1]", calls.toString());
+    }
+
+    /**
+     * Test that the handlers returned by an overridden getHandlers() are used on every call, by both proxies
+     */
+    public void testOverriddenGetHandlers() {
+        FilteringExtensionManager manager = new FilteringExtensionManager();
+        manager.registerHandler(new TestHandler("a", 1, ExtensionResultStatusType.HANDLED));
+        TestExtensionHandler reflective = (TestExtensionHandler) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { TestExtensionHandler.class }, manager);
+
+        List<String> calls = new ArrayList<String>();
+        assertEquals(ExtensionResultStatusType.HANDLED, manager.getProxy().handle(calls, 1));
+        assertEquals(ExtensionResultStatusType.HANDLED, reflective.handle(calls, 2));
+        assertEquals("[a1, a2]", calls.toString());
+
+        manager.filtering = true;
+        calls.clear();
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, manager.getProxy().handle(calls, 3));
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, reflective.handle(calls, 4));
+        assertTrue(calls.isEmpty());
+
+        manager.filtering = false;
+        assertEquals(ExtensionResultStatusType.HANDLED, manager.getProxy().handle(calls, 5));
+        assertEquals("[a5]", calls.toString());
+    }
+
+    /**
+     * Test that the generated proxy and the reflective proxy agree
+     */
+    public void testReflectiveProxy() {
+        TestExtensionManager manager = new TestExtensionManager(false);
+        manager.registerHandler(new TestHandler("a", 1, ExtensionResultStatusType.NOT_HANDLED));
+        TestExtensionHandler reflective = (TestExtensionHandler) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { TestExtensionHandler.class }, manager);
+
+        List<String> calls = new ArrayList<String>();
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, reflective.handle(calls, 1));
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, manager.getProxy().handle(calls, 2));
+        assertEquals("[a1, a2]", calls.toString());
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.i18n;
+
+import org.broadleafcommerce.common.i18n.service.TranslationDictionary;
+
+import junit.framework.TestCase;
+
+public class TranslationDictionaryTest extends TestCase {
+
+    /**
+     * Test that a locale with a country prefers its own translation, then its language, then another country
+     */
+    public void testCountryLocaleResolution() {
+        TranslationDictionary dictionary = new TranslationDictionary.Builder("es", "es_MX")
+                .add("1", "name", "es_ES", "Salsa de Espana")
+                .add("1", "name", "es", "Salsa")
+                .add("1", "name", "es_MX", "Salsa de Mexico")
+                .add("2", "name", "es_ES", "Salsa de Espana")
+                .add("2", "name", "es", "Salsa")
+                .add("3", "name", "es_ES", "Salsa de Espana")
+                .add("4", "name", "fr", "Sauce")
+                .build();
+
+        assertEquals("Salsa de Mexico", dictionary.getTranslatedValue("name", "1"));
+        assertEquals("Salsa", dictionary.getTranslatedValue("name", "2"));
+        assertEquals("Salsa de Espana", dictionary.getTranslatedValue("name", "3"));
+        assertNull(dictionary.getTranslatedValue("name", "4"));
+        assertNull(dictionary.getTranslatedValue("description", "1"));
+        assertEquals(3, dictionary.size());
+    }
+
+    /**
+     * Test that a locale without a country only uses translations for exactly that locale
+     */
+    public void testLanguageLocaleResolution() {
+        TranslationDictionary dictionary = new TranslationDictionary.Builder("es", "es")
+                .add("1", "name", "es", "Salsa")
+                .add("2", "name", "es_ES", "Salsa de Espana")
+                .build();
+
+        assertEquals("Salsa", dictionary.getTranslatedValue("name", "1"));
+        assertNull(dictionary.getTranslatedValue("name", "2"));
+    }
+
+    /**
+     * Test that numeric and other entity ids are both found, and that ids that only parse to the same number are kept
+     * apart
+     */
+    public void testEntityIds() {
+        TranslationDictionary.Builder builder = new TranslationDictionary.Builder("fr", "fr");
+        for (int i = 1000; i > 0; i--) {
+            builder.add(String.valueOf(i * 7), "name", "fr", "Nom " + i);
+        }
+        builder.add("-5", "name", "fr", "Negatif");
+        builder.add("007", "name", "fr", "Agent");
+        builder.add("SKU-1", "name", "fr", "Texte");
+        TranslationDictionary dictionary = builder.build();
+
+        for (int i = 1; i <= 1000; i++) {
+            assertEquals("Nom " + i, dictionary.getTranslatedValue("name", String.valueOf(i * 7)));
+            assertNull(dictionary.getTranslatedValue("name", String.valueOf(i * 7 + 1)));
+        }
+        assertEquals("Negatif", dictionary.getTranslatedValue("name", "-5"));
+        assertEquals("Agent", dictionary.getTranslatedValue("name", "007"));
+        assertEquals("Nom 1", dictionary.getTranslatedValue("name", "7"));
+        assertEquals("Texte", dictionary.getTranslatedValue("name", "SKU-1"));
+        assertNull(dictionary.getTranslatedValue("name", "99999999999999999999"));
+        assertTrue(dictionary.getEstimatedSize() > 0);
+    }
+
+}
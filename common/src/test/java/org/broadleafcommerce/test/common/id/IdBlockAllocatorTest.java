@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.id;
+
+import org.broadleafcommerce.common.id.service.IdBlockAllocator;
+import org.broadleafcommerce.common.id.service.IdBlockAllocator.IdBlockSource;
+import org.broadleafcommerce.common.id.service.IdBlockAllocator.IdRange;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+public class IdBlockAllocatorTest extends TestCase {
+
+    /**
+     * Test that ids run in sequence across block boundaries
+     */
+    public void testSequentialAllocation() {
+        CountingSource source = new CountingSource(10);
+        IdBlockAllocator allocator = new IdBlockAllocator("test", source);
+        for (long i = 1; i <= 35; i++) {
+            assertEquals(Long.valueOf(i), allocator.allocate());
+        }
+        assertEquals(4, source.fetches.get());
+    }
+
+    /**
+     * Test that concurrent callers never receive the same id and that every reserved id is handed out
+     */
+    public void testConcurrentAllocationIsUnique() throws Exception {
+        CountingSource source = new CountingSource(7);
+        final IdBlockAllocator allocator = new IdBlockAllocator("test", source);
+        int threads = 8;
+        final int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<List<Long>>() {
+                    @Override
+                    public List<Long> call() {
+                        List<Long> ids = new ArrayList<Long>();
+                        for (int j = 0; j < perThread; j++) {
+                            ids.add(allocator.allocate());
+                        }
+                        return ids;
+                    }
+                }));
+            }
+            Set<Long> ids = new HashSet<Long>();
+            for (Future<List<Long>> future : futures) {
+                ids.addAll(future.get());
+            }
+            assertEquals(threads * perThread, ids.size());
+            // 4000 ids in blocks of 7 need 572 blocks, none of which may be skipped
+            assertEquals(572, source.fetches.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that the next block is fetched once the low-water mark is reached, and still handed out in order
+     */
+    public void testPrefetchAtLowWaterMark() {
+        CountingSource source = new CountingSource(10);
+        Executor sameThread = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        IdBlockAllocator allocator = new IdBlockAllocator("test", source, sameThread, 20, false, 0L, 0L);
+        for (long i = 1; i <= 8; i++) {
+            assertEquals(Long.valueOf(i), allocator.allocate());
+        }
+        assertEquals(1, source.fetches.get());
+        assertEquals(Long.valueOf(9), allocator.allocate());
+        assertEquals(2, source.fetches.get());
+        for (long i = 10; i <= 18; i++) {
+            assertEquals(Long.valueOf(i), allocator.allocate());
+        }
+        assertEquals(2, source.fetches.get());
+        assertEquals(Long.valueOf(19), allocator.allocate());
+        assertEquals(3, source.fetches.get());
+    }
+
+    /**
+     * Test that a fast allocation rate grows the requested block size up to the maximum
+     */
+    public void testAdaptiveBlockSize() {
+        CountingSource source = new CountingSource(10);
+        IdBlockAllocator allocator = new IdBlockAllocator("test", source, null, 0, true, 60000L, 1000L);
+        for (int i = 0; i < 2000; i++) {
+            allocator.allocate();
+        }
+        assertTrue(allocator.getRequestedBlockSize() > 10);
+        assertTrue(allocator.getRequestedBlockSize() <= 1000);
+    }
+
+    /**
+     * Test that a failed fetch is retried by the next caller
+     */
+    public void testFailedFetchIsRetried() {
+        final AtomicInteger calls = new AtomicInteger();
+        IdBlockAllocator allocator = new IdBlockAllocator("test", new IdBlockSource() {
+            @Override
+            public IdRange fetchRange(Long requestedSize) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("database unavailable");
+                }
+                return new IdRange(100L, 5L);
+            }
+        });
+        try {
+            allocator.allocate();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(Long.valueOf(100), allocator.allocate());
+    }
+
+    protected static class CountingSource implements IdBlockSource {
+
+        protected final long defaultSize;
+        protected final AtomicLong next = new AtomicLong(1L);
+        protected final AtomicInteger fetches = new AtomicInteger();
+
+        public CountingSource(long defaultSize) {
+            this.defaultSize = defaultSize;
+        }
+
+        @Override
+        public synchronized IdRange fetchRange(Long requestedSize) {
+            fetches.incrementAndGet();
+            long size = requestedSize == null ? defaultSize : requestedSize;
+            return new IdRange(next.getAndAdd(size), size);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.money;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.money.MoneyAccumulator;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class MoneyAccumulatorTest extends TestCase {
+
+    /**
+     * Test that random chains of operations give the same amount and scale as the same chain of Money operations,
+     * including operands with more decimal places than the currency
+     */
+    public void testMatchesMoneyArithmetic() {
+        Random random = new Random(42);
+        for (int run = 0; run < 2000; run++) {
+            String currencyCode = run % 3 == 0 ? "JPY" : "USD";
+            Money expected = new Money(BigDecimal.ZERO, currencyCode);
+            MoneyAccumulator actual = new MoneyAccumulator(expected);
+            for (int i = 0; i < 20; i++) {
+                int scale = random.nextInt(5);
+                Money operand = new Money(BigDecimal.valueOf(random.nextInt(2000000) - 1000000, scale), Currency.getInstance(currencyCode), scale);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        expected = expected.add(operand);
+                        actual.add(operand);
+                        break;
+                    case 1:
+                        expected = expected.subtract(operand);
+                        actual.subtract(operand);
+                        break;
+                    case 2:
+                        int multiplier = random.nextInt(7) - 3;
+                        expected = expected.multiply(multiplier);
+                        actual.multiply(multiplier);
+                        break;
+                    default:
+                        int divisor = random.nextInt(6) + 1;
+                        expected = expected.divide(divisor);
+                        actual.divide(divisor);
+                }
+                assertEquals(expected.compareTo(operand), actual.compareTo(operand));
+            }
+            assertEquals(expected, actual.toMoney());
+            assertEquals(expected.getAmount().scale(), actual.getAmount().scale());
+        }
+    }
+
+    /**
+     * Test that half-way results of division round to the even neighbour like Money
+     */
+    public void testDivideRoundsHalfEven() {
+        String[] amounts = { "0.05", "0.15", "-0.05", "-0.15", "0.25", "1.01", "-1.01" };
+        for (String amount : amounts) {
+            Money money = new Money(amount, "USD");
+            assertEquals(money.divide(2), new MoneyAccumulator(money).divide(2).toMoney());
+            assertEquals(money.divide(-2), new MoneyAccumulator(money).divide(-2).toMoney());
+        }
+    }
+
+    /**
+     * Test that totals that do not fit in a long continue with BigDecimal arithmetic
+     */
+    public void testOverflowFallsBackToBigDecimal() {
+        Money large = new Money(new BigDecimal("90000000000000000.00"), "USD");
+        Money expected = large.add(large).multiply(1000).subtract(large);
+        MoneyAccumulator actual = new MoneyAccumulator(large).add(large).multiply(1000).subtract(large);
+        assertEquals(expected, actual.toMoney());
+
+        expected = new Money(new BigDecimal(Long.MAX_VALUE).movePointLeft(2), "USD").add(new Money("0.01", "USD"));
+        actual = new MoneyAccumulator(new Money(new BigDecimal(Long.MAX_VALUE).movePointLeft(2), "USD")).add(new Money("0.01", "USD"));
+        assertEquals(expected, actual.toMoney());
+    }
+
+    /**
+     * Test that different currencies are handled by Money, which rejects them without a conversion service
+     */
+    public void testDifferentCurrencyIsRejected() {
+        MoneyAccumulator total = new MoneyAccumulator(new Money("1.00", "USD"));
+        try {
+            total.add(new Money("1.00", "EUR"));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+}
@@ -32,6 +32,7 @@ import org.broadleafcommerce.common.web.BroadleafRequestContext;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -114,6 +115,44 @@ public class MvelHelperTest extends TestCase {
         assertTrue(result);
     }
 
+    /**
+     * Test that a precompiled rule is served from the cache on its first evaluation
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testPrecompiledRuleIsCacheHit() {
+        Map<String, Serializable> cache = new HashMap<String, Serializable>();
+        assertTrue(MvelHelper.precompileRule("locale.localeCode == 'US'", cache, null));
+        assertEquals(1, cache.size());
+
+        Locale testLocale = new LocaleImpl();
+        testLocale.setLocaleCode("US");
+        Map parameters = new HashMap();
+        parameters.put("locale", testLocale);
+
+        long hits = MvelHelper.getRuleStatistics().getHits();
+        boolean result = MvelHelper.evaluateRule("locale.localeCode == 'US'", parameters, cache);
+        assertTrue(result);
+        assertEquals(hits + 1, MvelHelper.getRuleStatistics().getHits());
+    }
+
+    /**
+     * Test that parameters bound for one evaluation are not visible to the next one
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testParametersDoNotLeakBetweenEvaluations() {
+        Locale testLocale = new LocaleImpl();
+        testLocale.setLocaleCode("US");
+        Map parameters = new HashMap();
+        parameters.put("locale", testLocale);
+        assertTrue(MvelHelper.evaluateRule("locale.localeCode == 'US'", parameters));
+
+        MvelHelper.setTestMode(true);
+        boolean result = MvelHelper.evaluateRule("locale.localeCode == 'US'", new HashMap());
+        MvelHelper.setTestMode(false);
+        assertFalse(result);
+        assertEquals(1, parameters.size());
+    }
+
     /**
      * Confirms MVEL failure for special overloaded method case.
      * </p>
@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.web;
+
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrencyImpl;
+import org.broadleafcommerce.common.currency.domain.BroadleafRequestedCurrencyDto;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.locale.domain.LocaleImpl;
+import org.broadleafcommerce.common.web.BroadleafCurrencyResolverImpl;
+import org.broadleafcommerce.common.web.BroadleafLocaleResolverImpl;
+import org.broadleafcommerce.common.web.BroadleafRequestContextTemplate;
+import org.broadleafcommerce.common.web.RequestContextResolutionCache.Phase;
+import org.broadleafcommerce.common.web.RequestContextResolutionCacheImpl;
+import org.broadleafcommerce.common.web.RequestContextResolutionKey;
+import org.broadleafcommerce.common.web.RequestContextResolutionKey.Source;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import junit.framework.TestCase;
+
+public class RequestContextResolutionCacheTest extends TestCase {
+
+    protected RequestContextResolutionCacheImpl cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        cache = new RequestContextResolutionCacheImpl();
+        cache.setEnabled(true);
+    }
+
+    /**
+     * Test that the key follows the locale resolver's precedence of attribute, then parameter, then session
+     */
+    public void testLocaleSource() {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+        servletRequest.setServerName("store.example.com");
+        ServletWebRequest request = new ServletWebRequest(servletRequest);
+
+        RequestContextResolutionKey key = cache.buildKey(request);
+        assertEquals("store.example.com", key.getHost());
+        assertEquals(Source.DEFAULT, key.getLocaleSource());
+        assertEquals(Source.DEFAULT, key.getCurrencySource());
+
+        servletRequest.getSession().setAttribute(BroadleafLocaleResolverImpl.LOCALE_VAR, buildLocale("fr_FR"));
+        servletRequest.getSession().setAttribute(BroadleafCurrencyResolverImpl.CURRENCY_VAR, buildCurrency("EUR"));
+        key = cache.buildKey(request);
+        assertEquals(Source.SESSION, key.getLocaleSource());
+        assertEquals("fr_FR", key.getLocaleCode());
+        assertEquals(Source.SESSION, key.getCurrencySource());
+        assertEquals("EUR", key.getCurrencyCode());
+
+        servletRequest.addParameter(BroadleafLocaleResolverImpl.LOCALE_CODE_PARAM, "es_MX");
+        key = cache.buildKey(request);
+        assertEquals(Source.PARAMETER, key.getLocaleSource());
+        assertEquals("es_MX", key.getLocaleCode());
+        // a requested locale clears the session currency, so the currency falls back to the locale's default
+        assertEquals(Source.DEFAULT, key.getCurrencySource());
+
+        servletRequest.setAttribute(BroadleafLocaleResolverImpl.LOCALE_VAR, buildLocale("en_US"));
+        key = cache.buildKey(request);
+        assertEquals(Source.ATTRIBUTE, key.getLocaleSource());
+        assertEquals("en_US", key.getLocaleCode());
+    }
+
+    /**
+     * Test that resolutions which did not honor the requested codes are not cached
+     */
+    public void testPutRequiresMatchingResolution() {
+        RequestContextResolutionKey key = new RequestContextResolutionKey("store.example.com", Source.PARAMETER, "xx_XX",
+                Source.DEFAULT, null);
+        cache.put(key, buildTemplate("en_US", "USD"));
+        assertEquals(0, cache.getSize());
+
+        key = new RequestContextResolutionKey("store.example.com", Source.PARAMETER, "en_US", Source.PARAMETER, "GBP");
+        cache.put(key, buildTemplate("en_US", "USD"));
+        assertEquals(0, cache.getSize());
+
+        key = new RequestContextResolutionKey("store.example.com", Source.PARAMETER, "en_US", Source.PARAMETER, "USD");
+        BroadleafRequestContextTemplate template = buildTemplate("en_US", "USD");
+        cache.put(key, template);
+        assertSame(template, cache.get(new RequestContextResolutionKey("store.example.com", Source.PARAMETER, "en_US",
+                Source.PARAMETER, "USD")));
+    }
+
+    /**
+     * Test the hit and miss counts, the entry cap and invalidation
+     */
+    public void testGetPutAndInvalidate() {
+        cache.setMaxEntries(1);
+        RequestContextResolutionKey first = new RequestContextResolutionKey("a.example.com", Source.DEFAULT, null, Source.DEFAULT, null);
+        RequestContextResolutionKey second = new RequestContextResolutionKey("b.example.com", Source.DEFAULT, null, Source.DEFAULT, null);
+
+        assertNull(cache.get(first));
+        cache.put(first, buildTemplate("en_US", "USD"));
+        cache.put(second, buildTemplate("en_US", "USD"));
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        cache.invalidateAll();
+        assertNull(cache.get(first));
+        assertEquals(0, cache.getSize());
+    }
+
+    /**
+     * Test that an expired template is discarded
+     */
+    public void testTtl() throws Exception {
+        RequestContextResolutionKey key = new RequestContextResolutionKey("a.example.com", Source.DEFAULT, null, Source.DEFAULT, null);
+        cache.put(key, buildTemplate("en_US", "USD"));
+        cache.setTtlSeconds(0);
+        assertNotNull(cache.get(key));
+
+        cache.setTtlSeconds(1);
+        Thread.sleep(1100);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testPhaseTimings() {
+        cache.recordPhase(Phase.SITE, 3000);
+        cache.recordPhase(Phase.SITE, 1000);
+        assertTrue(cache.getPhaseTimings().startsWith("SITE=2.0 (2)"));
+
+        cache.resetStatistics();
+        assertTrue(cache.getPhaseTimings().startsWith("SITE=0 (0)"));
+    }
+
+    protected BroadleafRequestContextTemplate buildTemplate(String localeCode, String currencyCode) {
+        BroadleafCurrency currency = buildCurrency(currencyCode);
+        return new BroadleafRequestContextTemplate(null, null, buildLocale(localeCode),
+                new BroadleafRequestedCurrencyDto(currency, currency));
+    }
+
+    protected Locale buildLocale(String localeCode) {
+        Locale locale = new LocaleImpl();
+        locale.setLocaleCode(localeCode);
+        return locale;
+    }
+
+    protected BroadleafCurrency buildCurrency(String currencyCode) {
+        BroadleafCurrency currency = new BroadleafCurrencyImpl();
+        currency.setCurrencyCode(currencyCode);
+        return currency;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.benchmark;
+
+import org.broadleafcommerce.common.extension.AbstractExtensionHandler;
+import org.broadleafcommerce.common.extension.ExtensionManager;
+import org.broadleafcommerce.common.extension.ExtensionResultHolder;
+import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
+import org.broadleafcommerce.core.catalog.dao.ProductDaoExtensionHandler;
+import org.broadleafcommerce.core.catalog.dao.ProductDaoExtensionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares calling {@link ProductDaoExtensionHandler#findProductByURI(String, ExtensionResultHolder)} through the
+ * generated proxy returned by {@link ExtensionManager#getProxy()} with the reflective {@link Proxy} it replaces, for a
+ * manager with no handlers, with disabled handlers and with enabled handlers that do not handle the call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExtensionManagerBenchmark {
+
+    @Param({"0", "3"})
+    public int handlers;
+
+    @Param({"true", "false"})
+    public boolean enabled;
+
+    protected ProductDaoExtensionHandler generated;
+    protected ProductDaoExtensionHandler reflective;
+    protected ExtensionResultHolder resultHolder;
+
+    @Setup
+    public void setup() {
+        ProductDaoExtensionManager manager = new ProductDaoExtensionManager();
+        List<ProductDaoExtensionHandler> list = new ArrayList<ProductDaoExtensionHandler>();
+        for (int i = 0; i < handlers; i++) {
+            NotHandledProductDaoExtensionHandler handler = new NotHandledProductDaoExtensionHandler();
+            handler.setPriority(i);
+            handler.setEnabled(enabled);
+            list.add(handler);
+        }
+        // registerHandler only accepts one handler per class
+        manager.setHandlers(list);
+        generated = manager.getProxy();
+        reflective = (ProductDaoExtensionHandler) Proxy.newProxyInstance(ProductDaoExtensionHandler.class.getClassLoader(),
+                new Class[] { ProductDaoExtensionHandler.class }, manager);
+        resultHolder = new ExtensionResultHolder();
+    }
+
+    @Benchmark
+    public ExtensionResultStatusType generated() {
+        return generated.findProductByURI("/hot-sauces/green-ghost", resultHolder);
+    }
+
+    @Benchmark
+    public ExtensionResultStatusType reflective() {
+        return reflective.findProductByURI("/hot-sauces/green-ghost", resultHolder);
+    }
+
+    public static class NotHandledProductDaoExtensionHandler extends AbstractExtensionHandler implements ProductDaoExtensionHandler {
+
+        @Override
+        public ExtensionResultStatusType findProductByURI(String uri, ExtensionResultHolder resultHolder) {
+            return ExtensionResultStatusType.NOT_HANDLED;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.benchmark;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.util.BLCFieldUtils;
+import org.broadleafcommerce.common.util.HibernateUtils;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductAttribute;
+import org.broadleafcommerce.core.catalog.domain.ProductAttributeImpl;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link FieldManager#getFieldValue(Object, String)}, which walks property paths through cached method
+ * handle accessors, with the per segment reflection it replaced ({@link #reflection()}), for the kinds of paths an
+ * admin list grid reads for every cell. Map key paths ({@code productAttributes---color}) go through the same map
+ * lookup in both and are only measured on the accessor side.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FieldManagerBenchmark {
+
+    @Param({"url", "defaultSku.name", "defaultSku.retailPrice"})
+    public String path;
+
+    protected Product product;
+    protected FieldManager fieldManager;
+
+    @Setup
+    public void setup() {
+        product = new ProductImpl();
+        product.setUrl("/hot-sauces/sudden_death_sauce");
+        Sku sku = new SkuImpl();
+        sku.setName("Sudden Death Sauce");
+        sku.setRetailPrice(new Money(new BigDecimal("10.99")));
+        product.setDefaultSku(sku);
+
+        Map<String, ProductAttribute> attributes = new HashMap<String, ProductAttribute>();
+        ProductAttribute attribute = new ProductAttributeImpl();
+        attribute.setName("color");
+        attribute.setValue("red");
+        attribute.setProduct(product);
+        attributes.put("color", attribute);
+        product.setProductAttributes(attributes);
+
+        fieldManager = new FieldManager(null, null);
+    }
+
+    @Benchmark
+    public Object accessor() throws Exception {
+        return fieldManager.getFieldValue(product, path);
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        StringTokenizer tokens = new StringTokenizer(path, ".");
+        Class<?> componentClass = product.getClass();
+        Object value = HibernateUtils.deproxy(product);
+        while (tokens.hasMoreTokens()) {
+            Field field = BLCFieldUtils.getSingleField(componentClass, tokens.nextToken());
+            field.setAccessible(true);
+            value = field.get(value);
+            if (value == null) {
+                break;
+            }
+            componentClass = value.getClass();
+        }
+        return value;
+    }
+
+    @Benchmark
+    public Object accessorMapKey() throws Exception {
+        return fieldManager.getFieldValue(product, "productAttributes---color");
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.benchmark;
+
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateOrderOffer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder;
+import org.broadleafcommerce.core.offer.service.processor.OfferPermutationStrategyImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code ItemOfferProcessor.applyAndCompareOrderAndItemOffers}, the permutation search that decides which
+ * combination of item and order offers gives the customer the best price, once per {@link OfferPermutationStrategyImpl}
+ * configuration:
+ * <ul>
+ *     <li>default - every ordering built by the processor is applied in full</li>
+ *     <li>pruning - orderings are abandoned once they can no longer beat the best one found</li>
+ *     <li>exploreExclusive - orderings headed by each totalitarian or non-combinable offer are also trialled</li>
+ *     <li>budgeted - pruning, limited to 8 trial evaluations</li>
+ * </ul>
+ * Applying offers mutates the promotable order, so a fresh one is qualified before each invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ItemOfferProcessorBenchmark {
+
+    @Param({"10", "100"})
+    public int items;
+
+    @Param({"10", "50"})
+    public int offers;
+
+    @Param({"default", "pruning", "exploreExclusive", "budgeted"})
+    public String permutationStrategy;
+
+    protected PricingFixture fixture;
+    protected Order order;
+    protected List<Offer> filteredOffers;
+
+    protected PromotableOrder promotableOrder;
+    protected List<PromotableCandidateOrderOffer> qualifiedOrderOffers;
+    protected List<PromotableCandidateItemOffer> qualifiedItemOffers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticOrderBuilder builder = new SyntheticOrderBuilder().items(items).offers(offers);
+        fixture = new PricingFixture(builder.buildOffers());
+        fixture.setOfferPermutationStrategy(createStrategy(permutationStrategy));
+        order = builder.buildOrder();
+        filteredOffers = fixture.getOrderOfferProcessor().filterOffers(fixture.getOffers(), order.getCustomer());
+    }
+
+    @Setup(Level.Invocation)
+    public void qualify() {
+        promotableOrder = fixture.getPromotableItemFactory().createPromotableOrder(order, false);
+        qualifiedOrderOffers = new ArrayList<PromotableCandidateOrderOffer>();
+        qualifiedItemOffers = new ArrayList<PromotableCandidateItemOffer>();
+        fixture.getItemOfferProcessor().filterOffers(promotableOrder, filteredOffers, qualifiedOrderOffers,
+                qualifiedItemOffers);
+    }
+
+    @Benchmark
+    public PromotableOrder applyAndCompareOrderAndItemOffers() {
+        fixture.getItemOfferProcessor().applyAndCompareOrderAndItemOffers(promotableOrder, qualifiedOrderOffers,
+                qualifiedItemOffers);
+        return promotableOrder;
+    }
+
+    protected OfferPermutationStrategyImpl createStrategy(String name) {
+        OfferPermutationStrategyImpl strategy = new OfferPermutationStrategyImpl();
+        if ("pruning".equals(name)) {
+            strategy.setPruningEnabled(true);
+        } else if ("exploreExclusive".equals(name)) {
+            strategy.setExploreExclusiveOffers(true);
+        } else if ("budgeted".equals(name)) {
+            strategy.setPruningEnabled(true);
+            strategy.setMaxEvaluations(8);
+        } else if (!"default".equals(name)) {
+            throw new IllegalArgumentException("Unknown permutation strategy configuration: " + name);
+        }
+        return strategy;
+    }
+
+}
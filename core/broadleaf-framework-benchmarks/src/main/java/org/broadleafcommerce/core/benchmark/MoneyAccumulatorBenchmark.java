@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.benchmark;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.money.MoneyAccumulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares summing line amounts with chained {@link Money#add(Money)} calls, as the pricing activities used to, with a
+ * {@link MoneyAccumulator}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MoneyAccumulatorBenchmark {
+
+    @Param({"10", "100"})
+    public int lines;
+
+    protected Money zero;
+    protected Money[] amounts;
+
+    @Setup
+    public void setup() {
+        zero = new Money(BigDecimal.ZERO, "USD");
+        amounts = new Money[lines];
+        Random random = new Random(1);
+        for (int i = 0; i < lines; i++) {
+            amounts[i] = new Money(BigDecimal.valueOf(random.nextInt(100000), 2), "USD");
+        }
+    }
+
+    @Benchmark
+    public Money money() {
+        Money total = zero;
+        for (Money amount : amounts) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money accumulator() {
+        MoneyAccumulator total = new MoneyAccumulator(zero);
+        for (Money amount : amounts) {
+            total.add(amount);
+        }
+        return total.toMoney();
+    }
+
+}
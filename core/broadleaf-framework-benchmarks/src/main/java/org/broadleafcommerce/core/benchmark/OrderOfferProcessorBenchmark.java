@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.benchmark;
+
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateOrderOffer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder;
+import org.broadleafcommerce.core.offer.service.processor.OrderOfferProcessor;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures order offer qualification in {@link OrderOfferProcessor}: filtering the offers by customer and date, then
+ * evaluating the order, item and fulfillment group rules of each order offer. This is dominated by MVEL evaluation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OrderOfferProcessorBenchmark {
+
+    @Param({"10", "100"})
+    public int items;
+
+    @Param({"10", "50"})
+    public int offers;
+
+    protected PricingFixture fixture;
+    protected Order order;
+    protected PromotableOrder promotableOrder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticOrderBuilder builder = new SyntheticOrderBuilder().items(items).offers(offers);
+        fixture = new PricingFixture(builder.buildOffers());
+        order = builder.buildOrder();
+        promotableOrder = fixture.getPromotableItemFactory().createPromotableOrder(order, false);
+    }
+
+    @Benchmark
+    public List<PromotableCandidateOrderOffer> qualifyOrderOffers() {
+        OrderOfferProcessor processor = fixture.getOrderOfferProcessor();
+        List<Offer> filteredOffers = processor.filterOffers(fixture.getOffers(), order.getCustomer());
+        List<PromotableCandidateOrderOffer> qualifiedOrderOffers = new ArrayList<PromotableCandidateOrderOffer>();
+        for (Offer offer : filteredOffers) {
+            if (OfferType.ORDER.equals(offer.getType())) {
+                processor.filterOrderLevelOffer(promotableOrder, qualifiedOrderOffers, offer);
+            }
+        }
+        return qualifiedOrderOffers;
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.benchmark;
+
+import org.broadleafcommerce.common.persistence.EntityConfiguration;
+import org.broadleafcommerce.core.offer.dao.CustomerOfferDaoImpl;
+import org.broadleafcommerce.core.offer.dao.OfferDaoImpl;
+import org.broadleafcommerce.core.offer.domain.CustomerOffer;
+import org.broadleafcommerce.core.offer.domain.FulfillmentGroupAdjustment;
+import org.broadleafcommerce.core.offer.domain.FulfillmentGroupAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferCode;
+import org.broadleafcommerce.core.offer.domain.OrderAdjustment;
+import org.broadleafcommerce.core.offer.domain.OrderAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.OrderItemPriceDetailAdjustment;
+import org.broadleafcommerce.core.offer.domain.OrderItemPriceDetailAdjustmentImpl;
+import org.broadleafcommerce.core.offer.service.OfferCandidateIndexImpl;
+import org.broadleafcommerce.core.offer.service.OfferServiceImpl;
+import org.broadleafcommerce.core.offer.service.OfferServiceUtilitiesImpl;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableItemFactoryImpl;
+import org.broadleafcommerce.core.offer.service.processor.FulfillmentGroupOfferProcessorImpl;
+import org.broadleafcommerce.core.offer.service.processor.ItemOfferProcessorImpl;
+import org.broadleafcommerce.core.offer.service.processor.OfferPermutationStrategy;
+import org.broadleafcommerce.core.offer.service.processor.OfferTimeZoneProcessorImpl;
+import org.broadleafcommerce.core.offer.service.processor.OrderOfferProcessorImpl;
+import org.broadleafcommerce.core.order.dao.OrderItemDaoImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetail;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetailImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemQualifier;
+import org.broadleafcommerce.core.order.domain.OrderItemQualifierImpl;
+import org.broadleafcommerce.core.order.domain.TaxDetail;
+import org.broadleafcommerce.core.order.domain.TaxDetailImpl;
+import org.broadleafcommerce.core.order.service.OrderServiceImpl;
+import org.broadleafcommerce.core.pricing.service.PricingService;
+import org.broadleafcommerce.core.pricing.service.PricingServiceImpl;
+import org.broadleafcommerce.core.pricing.service.exception.PricingException;
+import org.broadleafcommerce.core.pricing.service.exception.TaxException;
+import org.broadleafcommerce.core.pricing.service.module.TaxModule;
+import org.broadleafcommerce.core.pricing.service.tax.provider.SimpleTaxProvider;
+import org.broadleafcommerce.core.pricing.service.workflow.FulfillmentGroupMerchandiseTotalActivity;
+import org.broadleafcommerce.core.pricing.service.workflow.FulfillmentItemPricingActivity;
+import org.broadleafcommerce.core.pricing.service.workflow.OfferActivity;
+import org.broadleafcommerce.core.pricing.service.workflow.PricingProcessContextFactory;
+import org.broadleafcommerce.core.pricing.service.workflow.TaxActivity;
+import org.broadleafcommerce.core.pricing.service.workflow.TotalActivity;
+import org.broadleafcommerce.core.workflow.Activity;
+import org.broadleafcommerce.core.workflow.DefaultErrorHandler;
+import org.broadleafcommerce.core.workflow.ProcessContext;
+import org.broadleafcommerce.core.workflow.SequenceProcessor;
+import org.broadleafcommerce.core.workflow.state.ActivityStateManagerImpl;
+import org.broadleafcommerce.profile.core.domain.Customer;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wires the real offer processors, {@link OfferServiceImpl} and a {@link PricingServiceImpl} backed by a
+ * {@link SequenceProcessor} without a Spring context or a database. Persistence is replaced by DAO subclasses that
+ * instantiate domain objects directly and serve the synthetic offers, and saving an order simply returns it.
+ *
+ * The pricing workflow runs the order level activities that do not need persistence or external modules: offers,
+ * fulfillment item pricing, fulfillment group merchandise totals, tax (through {@link SimpleTaxProvider} with a flat
+ * rate) and totals. Fulfillment fee consolidation, shipping, shipping offers and payment adjustment are left out since
+ * they delegate to services that need a database or a configured shipping module.
+ */
+public class PricingFixture {
+
+    protected final List<Offer> offers;
+
+    protected final PromotableItemFactoryImpl promotableItemFactory = new PromotableItemFactoryImpl();
+    protected final OfferServiceUtilitiesImpl offerServiceUtilities = new OfferServiceUtilitiesImpl();
+    protected final OrderOfferProcessorImpl orderOfferProcessor = new OrderOfferProcessorImpl();
+    protected final ItemOfferProcessorImpl itemOfferProcessor = new ItemOfferProcessorImpl();
+    protected final FulfillmentGroupOfferProcessorImpl fulfillmentGroupOfferProcessor = new FulfillmentGroupOfferProcessorImpl();
+    protected final OfferCandidateIndexImpl offerCandidateIndex = new OfferCandidateIndexImpl();
+    protected final OfferServiceImpl offerService;
+    protected final PricingService pricingService;
+
+    public PricingFixture(List<Offer> offers) {
+        this.offers = offers;
+
+        InMemoryOfferDao offerDao = new InMemoryOfferDao(offers);
+        InMemoryOrderItemDao orderItemDao = new InMemoryOrderItemDao();
+        OfferTimeZoneProcessorImpl timeZoneProcessor = new OfferTimeZoneProcessorImpl();
+
+        offerServiceUtilities.setOfferDao(offerDao);
+        offerServiceUtilities.setPromotableItemFactory(promotableItemFactory);
+
+        orderOfferProcessor.setOfferDao(offerDao);
+        orderOfferProcessor.setOrderItemDao(orderItemDao);
+        orderOfferProcessor.setPromotableItemFactory(promotableItemFactory);
+        orderOfferProcessor.setOfferTimeZoneProcessor(timeZoneProcessor);
+        orderOfferProcessor.setOfferServiceUtilities(offerServiceUtilities);
+
+        itemOfferProcessor.setOfferDao(offerDao);
+        itemOfferProcessor.setOrderItemDao(orderItemDao);
+        itemOfferProcessor.setPromotableItemFactory(promotableItemFactory);
+        itemOfferProcessor.setOfferTimeZoneProcessor(timeZoneProcessor);
+        itemOfferProcessor.setOfferServiceUtilities(offerServiceUtilities);
+
+        fulfillmentGroupOfferProcessor.setOfferDao(offerDao);
+        fulfillmentGroupOfferProcessor.setOrderItemDao(orderItemDao);
+        fulfillmentGroupOfferProcessor.setPromotableItemFactory(promotableItemFactory);
+        fulfillmentGroupOfferProcessor.setOfferTimeZoneProcessor(timeZoneProcessor);
+        fulfillmentGroupOfferProcessor.setOfferServiceUtilities(offerServiceUtilities);
+
+        offerService = new OfferServiceImpl() {
+            @Override
+            protected List<OfferCode> refreshOfferCodesIfApplicable(Order order) {
+                return order.getAddedOfferCodes();
+            }
+        };
+        offerService.setOfferDao(offerDao);
+        offerService.setCustomerOfferDao(new InMemoryCustomerOfferDao());
+        offerService.setOrderService(new InMemoryOrderService());
+        offerService.setPromotableItemFactory(promotableItemFactory);
+        offerService.setOrderOfferProcessor(orderOfferProcessor);
+        offerService.setItemOfferProcessor(itemOfferProcessor);
+        offerService.setFulfillmentGroupOfferProcessor(fulfillmentGroupOfferProcessor);
+        offerService.setOfferCandidateIndex(offerCandidateIndex);
+
+        pricingService = createPricingService();
+    }
+
+    protected PricingService createPricingService() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        RootBeanDefinition stateManager = new RootBeanDefinition(ActivityStateManagerImpl.class);
+        stateManager.setInitMethodName("init");
+        beanFactory.registerBeanDefinition("blActivityStateManager", stateManager);
+        beanFactory.preInstantiateSingletons();
+
+        List<Activity<ProcessContext<Order>>> activities = new ArrayList<Activity<ProcessContext<Order>>>();
+        activities.add(new OfferActivity() {
+            {
+                offerService = PricingFixture.this.offerService;
+                orderService = new InMemoryOrderService();
+            }
+        });
+        activities.add(new FulfillmentItemPricingActivity());
+        activities.add(new FulfillmentGroupMerchandiseTotalActivity());
+        TaxActivity taxActivity = new TaxActivity();
+        taxActivity.setTaxModule(new FlatRateTaxModule());
+        activities.add(taxActivity);
+        activities.add(new TotalActivity());
+        for (Activity<ProcessContext<Order>> activity : activities) {
+            activity.setBeanName(activity.getClass().getSimpleName());
+        }
+
+        final SequenceProcessor<Order, Order> workflow = new SequenceProcessor<Order, Order>();
+        workflow.setBeanName("blPricingWorkflow");
+        workflow.setBeanFactory(beanFactory);
+        workflow.setProcessContextFactory(new PricingProcessContextFactory());
+        workflow.setDefaultErrorHandler(new DefaultErrorHandler());
+        workflow.setActivities(activities);
+
+        return new PricingServiceImpl() {
+            {
+                pricingWorkflow = workflow;
+            }
+        };
+    }
+
+    public PricingService getPricingService() {
+        return pricingService;
+    }
+
+    public OfferServiceImpl getOfferService() {
+        return offerService;
+    }
+
+    public OrderOfferProcessorImpl getOrderOfferProcessor() {
+        return orderOfferProcessor;
+    }
+
+    public ItemOfferProcessorImpl getItemOfferProcessor() {
+        return itemOfferProcessor;
+    }
+
+    public PromotableItemFactoryImpl getPromotableItemFactory() {
+        return promotableItemFactory;
+    }
+
+    public List<Offer> getOffers() {
+        return offers;
+    }
+
+    public void setPrefilterEnabled(boolean enabled) {
+        offerCandidateIndex.setEnabled(enabled);
+    }
+
+    public void setOfferPermutationStrategy(OfferPermutationStrategy strategy) {
+        itemOfferProcessor.setOfferPermutationStrategy(strategy);
+    }
+
+    protected static class InMemoryOfferDao extends OfferDaoImpl {
+
+        protected final List<Offer> offers;
+
+        protected InMemoryOfferDao(List<Offer> offers) {
+            this.offers = offers;
+        }
+
+        @Override
+        public List<Offer> readOffersByAutomaticDeliveryType() {
+            return new ArrayList<Offer>(offers);
+        }
+
+        @Override
+        public OrderItemPriceDetailAdjustment createOrderItemPriceDetailAdjustment() {
+            return new OrderItemPriceDetailAdjustmentImpl();
+        }
+
+        @Override
+        public OrderAdjustment createOrderAdjustment() {
+            return new OrderAdjustmentImpl();
+        }
+
+        @Override
+        public FulfillmentGroupAdjustment createFulfillmentGroupAdjustment() {
+            return new FulfillmentGroupAdjustmentImpl();
+        }
+    }
+
+    protected static class InMemoryOrderItemDao extends OrderItemDaoImpl {
+
+        @Override
+        public OrderItemPriceDetail createOrderItemPriceDetail() {
+            return new OrderItemPriceDetailImpl();
+        }
+
+        @Override
+        public OrderItemQualifier createOrderItemQualifier() {
+            return new OrderItemQualifierImpl();
+        }
+    }
+
+    protected static class InMemoryCustomerOfferDao extends CustomerOfferDaoImpl {
+
+        @Override
+        public List<CustomerOffer> readCustomerOffersByCustomer(Customer customer) {
+            return new ArrayList<CustomerOffer>();
+        }
+    }
+
+    protected static class InMemoryOrderService extends OrderServiceImpl {
+
+        @Override
+        public Order save(Order order, Boolean priceOrder) throws PricingException {
+            return order;
+        }
+    }
+
+    /**
+     * Applies {@link SimpleTaxProvider} with an 8.25% item rate, creating tax details directly instead of through the
+     * entity configuration
+     */
+    protected static class FlatRateTaxModule implements TaxModule {
+
+        protected final SimpleTaxProvider provider = new SimpleTaxProvider() {
+            {
+                entityConfig = new EntityConfiguration() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <T> T createEntityInstance(String beanId, Class<T> resultClass) {
+                        if (TaxDetail.class.equals(resultClass)) {
+                            return (T) new TaxDetailImpl();
+                        }
+                        return super.createEntityInstance(beanId, resultClass);
+                    }
+                };
+            }
+        };
+
+        protected String name = "benchmarkFlatRate";
+
+        protected FlatRateTaxModule() {
+            provider.setDefaultItemTaxRate(0.0825D);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Order calculateTaxForOrder(Order order) throws TaxException {
+            return provider.calculateTaxForOrder(order, null);
+        }
+    }
+}
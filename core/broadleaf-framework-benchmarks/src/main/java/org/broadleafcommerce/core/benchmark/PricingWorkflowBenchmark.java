@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.benchmark;
+
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.pricing.service.exception.PricingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code PricingService.executePricing} through the pricing workflow assembled by {@link PricingFixture}.
+ * The same order is repriced on every invocation, as happens on each cart operation, so the first pricing that splits
+ * order items and creates price details is done during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PricingWorkflowBenchmark {
+
+    @Param({"10", "100"})
+    public int items;
+
+    @Param({"10", "50"})
+    public int offers;
+
+    @Param({"1", "4"})
+    public int fulfillmentGroups;
+
+    @Param({"false", "true"})
+    public boolean prefilter;
+
+    protected PricingFixture fixture;
+    protected Order order;
+
+    @Setup(Level.Trial)
+    public void setUp() throws PricingException {
+        SyntheticOrderBuilder builder = new SyntheticOrderBuilder()
+                .items(items)
+                .offers(offers)
+                .fulfillmentGroups(fulfillmentGroups);
+        fixture = new PricingFixture(builder.buildOffers());
+        fixture.setPrefilterEnabled(prefilter);
+        order = builder.buildOrder();
+        order = fixture.getPricingService().executePricing(order);
+    }
+
+    @Benchmark
+    public Order executePricing() throws PricingException {
+        return fixture.getPricingService().executePricing(order);
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.benchmark;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryImpl;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteriaImpl;
+import org.broadleafcommerce.core.offer.domain.OfferOfferRuleXrefImpl;
+import org.broadleafcommerce.core.offer.domain.OfferRule;
+import org.broadleafcommerce.core.offer.domain.OfferRuleImpl;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXrefImpl;
+import org.broadleafcommerce.core.offer.service.type.OfferDiscountType;
+import org.broadleafcommerce.core.offer.service.type.OfferItemRestrictionRuleType;
+import org.broadleafcommerce.core.offer.service.type.OfferRuleType;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItemImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItemImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetail;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetailImpl;
+import org.broadleafcommerce.core.order.service.type.FulfillmentType;
+import org.broadleafcommerce.core.order.service.type.OrderItemType;
+import org.broadleafcommerce.profile.core.domain.Address;
+import org.broadleafcommerce.profile.core.domain.AddressImpl;
+import org.broadleafcommerce.profile.core.domain.Country;
+import org.broadleafcommerce.profile.core.domain.CountryImpl;
+import org.broadleafcommerce.profile.core.domain.Customer;
+import org.broadleafcommerce.profile.core.domain.CustomerImpl;
+import org.broadleafcommerce.profile.core.domain.State;
+import org.broadleafcommerce.profile.core.domain.StateImpl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds detached {@link Order} and {@link Offer} graphs of a configurable size, entirely in memory, for the
+ * benchmarks in this module. Output is deterministic for a given set of sizes so that runs are comparable.
+ *
+ * Items are spread round robin over {@code categories} categories and {@code fulfillmentGroups} fulfillment groups.
+ * Offers alternate between item offers targeting one category and order offers with a subtotal threshold, so that
+ * roughly half of the item offers qualify for any given order.
+ */
+public class SyntheticOrderBuilder {
+
+    protected int items = 10;
+    protected int fulfillmentGroups = 1;
+    protected int categories = 5;
+    protected int offers = 10;
+    protected long seed = 42L;
+
+    public SyntheticOrderBuilder items(int items) {
+        this.items = items;
+        return this;
+    }
+
+    public SyntheticOrderBuilder fulfillmentGroups(int fulfillmentGroups) {
+        this.fulfillmentGroups = fulfillmentGroups;
+        return this;
+    }
+
+    public SyntheticOrderBuilder categories(int categories) {
+        this.categories = categories;
+        return this;
+    }
+
+    public SyntheticOrderBuilder offers(int offers) {
+        this.offers = offers;
+        return this;
+    }
+
+    public Order buildOrder() {
+        Random random = new Random(seed);
+        Order order = new OrderImpl();
+        order.setId(1L);
+        order.setEmailAddress("benchmark@example.com");
+        Customer customer = new CustomerImpl();
+        customer.setId(1L);
+        customer.setEmailAddress("benchmark@example.com");
+        customer.setRegistered(true);
+        order.setCustomer(customer);
+
+        List<Category> categoryList = new ArrayList<Category>(categories);
+        for (int i = 0; i < categories; i++) {
+            Category category = new CategoryImpl();
+            category.setId((long) i + 1);
+            category.setName(getCategoryName(i));
+            categoryList.add(category);
+        }
+
+        List<FulfillmentGroup> groups = new ArrayList<FulfillmentGroup>(fulfillmentGroups);
+        for (int i = 0; i < fulfillmentGroups; i++) {
+            FulfillmentGroup group = new FulfillmentGroupImpl();
+            group.setId((long) i + 1);
+            group.setOrder(order);
+            group.setPrimary(i == 0);
+            group.setType(FulfillmentType.PHYSICAL_SHIP);
+            group.setRetailShippingPrice(new Money(10D));
+            group.setShippingPrice(new Money(10D));
+            group.setAddress(buildAddress(i));
+            groups.add(group);
+            order.getFulfillmentGroups().add(group);
+        }
+
+        for (int i = 0; i < items; i++) {
+            long id = i + 1;
+            Category category = categoryList.get(i % categories);
+            int quantity = 1 + random.nextInt(3);
+
+            Sku sku = new SkuImpl();
+            sku.setId(id);
+            sku.setName("sku" + id);
+            sku.setDiscountable(true);
+            sku.setTaxable(true);
+            sku.setRetailPrice(new Money(BigDecimal.valueOf(500 + random.nextInt(9500), 2)));
+            Product product = new ProductImpl();
+            product.setId(id);
+            product.setDefaultSku(sku);
+            sku.setDefaultProduct(product);
+
+            DiscreteOrderItem orderItem = new DiscreteOrderItemImpl();
+            orderItem.setId(id);
+            orderItem.setName("item" + id);
+            orderItem.setOrder(order);
+            orderItem.setOrderItemType(OrderItemType.DISCRETE);
+            orderItem.setCategory(category);
+            orderItem.setProduct(product);
+            orderItem.setSku(sku);
+            orderItem.setQuantity(quantity);
+
+            OrderItemPriceDetail priceDetail = new OrderItemPriceDetailImpl();
+            priceDetail.setOrderItem(orderItem);
+            priceDetail.setQuantity(quantity);
+            orderItem.getOrderItemPriceDetails().add(priceDetail);
+            order.getOrderItems().add(orderItem);
+
+            FulfillmentGroup group = groups.get(i % fulfillmentGroups);
+            FulfillmentGroupItem fgItem = new FulfillmentGroupItemImpl();
+            fgItem.setFulfillmentGroup(group);
+            fgItem.setOrderItem(orderItem);
+            fgItem.setQuantity(quantity);
+            group.getFulfillmentGroupItems().add(fgItem);
+        }
+
+        order.setSubTotal(order.calculateSubTotal());
+        return order;
+    }
+
+    /**
+     * @return {@code offers} automatically added offers. Even positions are item offers taking 10% off items in a
+     * single category, odd positions are order offers taking 5% off orders over a subtotal threshold.
+     */
+    public List<Offer> buildOffers() {
+        List<Offer> result = new ArrayList<Offer>(offers);
+        for (int i = 0; i < offers; i++) {
+            long id = i + 1;
+            if (i % 2 == 0) {
+                String categoryName = getCategoryName((i / 2) % (categories * 2));
+                String rule = "MvelHelper.toUpperCase(orderItem.?category.?name)==MvelHelper.toUpperCase(\""
+                        + categoryName + "\")";
+                result.add(buildItemOffer(id, rule, i % 4 == 0));
+            } else {
+                result.add(buildOrderOffer(id, "order.subTotal.getAmount()>" + (20 * i)));
+            }
+        }
+        return result;
+    }
+
+    protected Offer buildItemOffer(long id, String targetRule, boolean combinable) {
+        Offer offer = buildOffer(id, OfferType.ORDER_ITEM, OfferDiscountType.PERCENT_OFF, BigDecimal.TEN, null);
+        offer.setCombinableWithOtherOffers(combinable);
+
+        OfferItemCriteria criteria = new OfferItemCriteriaImpl();
+        criteria.setId(id);
+        criteria.setQuantity(1);
+        criteria.setMatchRule(targetRule);
+        OfferTargetCriteriaXref xref = new OfferTargetCriteriaXrefImpl();
+        xref.setOffer(offer);
+        xref.setOfferItemCriteria(criteria);
+        offer.setTargetItemCriteriaXref(Collections.singleton(xref));
+        return offer;
+    }
+
+    protected Offer buildOrderOffer(long id, String orderRule) {
+        return buildOffer(id, OfferType.ORDER, OfferDiscountType.PERCENT_OFF, BigDecimal.valueOf(5), orderRule);
+    }
+
+    protected Offer buildOffer(long id, OfferType type, OfferDiscountType discountType, BigDecimal value, String orderRule) {
+        Offer offer = new OfferImpl();
+        offer.setId(id);
+        offer.setName("offer" + id);
+        offer.setType(type);
+        offer.setDiscountType(discountType);
+        offer.setValue(value);
+        offer.setAutomaticallyAdded(true);
+        offer.setApplyDiscountToSalePrice(true);
+        offer.setCombinableWithOtherOffers(true);
+        offer.setTotalitarianOffer(false);
+        offer.setPriority((int) id);
+        offer.setMaxUsesPerOrder(0);
+        offer.setOfferItemQualifierRuleType(OfferItemRestrictionRuleType.NONE);
+        offer.setOfferItemTargetRuleType(OfferItemRestrictionRuleType.NONE);
+        offer.setStartDate(new Date(System.currentTimeMillis() - 86400000L));
+        offer.setEndDate(new Date(System.currentTimeMillis() + 86400000L * 365));
+        if (orderRule != null) {
+            OfferRule rule = new OfferRuleImpl();
+            rule.setMatchRule(orderRule);
+            offer.getOfferMatchRulesXref().put(OfferRuleType.ORDER.getType(),
+                    new OfferOfferRuleXrefImpl(offer, rule, OfferRuleType.ORDER.getType()));
+        }
+        return offer;
+    }
+
+    protected Address buildAddress(int index) {
+        Country country = new CountryImpl();
+        country.setAbbreviation("US");
+        country.setName("United States");
+        State state = new StateImpl();
+        state.setAbbreviation("TX");
+        state.setName("Texas");
+        state.setCountry(country);
+
+        Address address = new AddressImpl();
+        address.setFirstName("Bench");
+        address.setLastName("Mark");
+        address.setAddressLine1((100 + index) + " Benchmark Road");
+        address.setCity("Dallas");
+        address.setState(state);
+        address.setCountry(country);
+        address.setPostalCode("75244");
+        return address;
+    }
+
+    protected String getCategoryName(int index) {
+        return "category" + index;
+    }
+}
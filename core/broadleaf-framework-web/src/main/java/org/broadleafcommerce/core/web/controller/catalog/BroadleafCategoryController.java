@@ -58,6 +58,7 @@ public class BroadleafCategoryController extends BroadleafAbstractController imp
     protected static String CATEGORY_ATTRIBUTE_NAME = "category";  
     protected static String PRODUCTS_ATTRIBUTE_NAME = "products";  
     protected static String SKUS_ATTRIBUTE_NAME = "skus";
+    protected static String PRODUCT_VIEWS_ATTRIBUTE_NAME = "productViews";
     protected static String FACETS_ATTRIBUTE_NAME = "facets";  
     protected static String PRODUCT_SEARCH_RESULT_ATTRIBUTE_NAME = "result";  
     protected static String ACTIVE_FACETS_ATTRIBUTE_NAME = "activeFacets";  
@@ -122,6 +123,7 @@ public class BroadleafCategoryController extends BroadleafAbstractController imp
             model.addObject(CATEGORY_ATTRIBUTE_NAME, category);
             model.addObject(PRODUCTS_ATTRIBUTE_NAME, result.getProducts());
             model.addObject(SKUS_ATTRIBUTE_NAME, result.getSkus());
+            model.addObject(PRODUCT_VIEWS_ATTRIBUTE_NAME, result.getProductViews());
             model.addObject(FACETS_ATTRIBUTE_NAME, result.getFacets());
             model.addObject(PRODUCT_SEARCH_RESULT_ATTRIBUTE_NAME, result);
             if (request.getParameterMap().containsKey("q")) {
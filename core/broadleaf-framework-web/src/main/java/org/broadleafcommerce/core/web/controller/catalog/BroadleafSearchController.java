@@ -69,6 +69,7 @@ public class BroadleafSearchController extends AbstractCatalogController {
     
     protected static String PRODUCTS_ATTRIBUTE_NAME = "products";
     protected static String SKUS_ATTRIBUTE_NAME = "skus";
+    protected static String PRODUCT_VIEWS_ATTRIBUTE_NAME = "productViews";
     protected static String FACETS_ATTRIBUTE_NAME = "facets";  
     protected static String PRODUCT_SEARCH_RESULT_ATTRIBUTE_NAME = "result";  
     protected static String ACTIVE_FACETS_ATTRIBUTE_NAME = "activeFacets";  
@@ -128,6 +129,7 @@ public class BroadleafSearchController extends AbstractCatalogController {
                 
                 model.addAttribute(PRODUCTS_ATTRIBUTE_NAME, result.getProducts());
                 model.addAttribute(SKUS_ATTRIBUTE_NAME, result.getSkus());
+                model.addAttribute(PRODUCT_VIEWS_ATTRIBUTE_NAME, result.getProductViews());
                 model.addAttribute(FACETS_ATTRIBUTE_NAME, result.getFacets());
                 model.addAttribute(PRODUCT_SEARCH_RESULT_ATTRIBUTE_NAME, result);
                 model.addAttribute(ORIGINAL_QUERY_ATTRIBUTE_NAME, query);
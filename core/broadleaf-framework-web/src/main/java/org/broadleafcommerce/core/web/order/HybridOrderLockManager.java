@@ -0,0 +1,459 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.broadleafcommerce.core.order.domain.NullOrderImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.service.OrderLockManager;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link OrderLockManager} that serializes requests for the same {@link Order} on this node with an in-memory lock
+ * table and only goes to the database to coordinate with other nodes.
+ * 
+ * The lock table is split into stripes, each guarded by a {@link ReentrantLock}. A lock entry exists only while some
+ * thread holds or waits for the lock on that order, so entries are never evicted while in use and the table does not
+ * grow with the number of orders. Threads waiting for an order park on a {@link Condition} of the entry and are
+ * signalled when the lock is released, rather than sleeping and polling.
+ * 
+ * Once a thread holds the in-memory lock, the database lock from {@link DatabaseOrderLockManager} is acquired as well
+ * when <code>order.lock.database.session.affinity</code> is false. When it is true, the database lock rows are keyed by
+ * node, so the database lock cannot exclude other nodes and the in-memory lock already gives the same guarantee; the
+ * database is not used at all in that case.
+ * 
+ * Lock wait times and the orders with the most contention are exposed through JMX.
+ */
+@ManagedResource(objectName="org.broadleafcommerce:name=OrderLockManager", description="Order Lock Manager", currencyTimeLimit=15)
+public class HybridOrderLockManager extends DatabaseOrderLockManager {
+
+    private static final Log LOG = LogFactory.getLog(HybridOrderLockManager.class);
+
+    protected static final int DEFAULT_STRIPES = 64;
+
+    protected static final int MAX_CONTENDED_ORDERS = 1000;
+
+    protected final OrderLockStripe[] stripes;
+
+    /**
+     * The statistics of the most recently contended orders, in access order. Only updated when a thread had to wait,
+     * so guarding it with its own monitor is cheap.
+     */
+    protected final Map<Long, OrderLockStatistics> contendedOrders = new LinkedHashMap<Long, OrderLockStatistics>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, OrderLockStatistics> eldest) {
+            return size() > MAX_CONTENDED_ORDERS;
+        }
+    };
+
+    protected final AtomicLong acquisitions = new AtomicLong();
+
+    protected final AtomicLong contendedAcquisitions = new AtomicLong();
+
+    protected final AtomicLong timeouts = new AtomicLong();
+
+    protected final AtomicLong totalWaitNanos = new AtomicLong();
+
+    protected final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public HybridOrderLockManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes the number of stripes of the lock table, rounded up to a power of two
+     */
+    public HybridOrderLockManager(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new OrderLockStripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new OrderLockStripe();
+        }
+    }
+
+    @Override
+    public Object acquireLock(Order order) {
+        if (order == null || order instanceof NullOrderImpl) {
+            return super.acquireLock(order);
+        }
+
+        OrderLockEntry entry = acquireLocalLock(order.getId(), true);
+        boolean databaseLocked = false;
+        if (isDatabaseLockRequired()) {
+            try {
+                super.acquireLock(order);
+                databaseLocked = true;
+            } catch (RuntimeException e) {
+                releaseLocalLock(entry);
+                throw e;
+            }
+        }
+        return new OrderLockHandle(order, entry, databaseLocked);
+    }
+
+    @Override
+    public Object acquireLockIfAvailable(Order order) {
+        if (order == null || order instanceof NullOrderImpl) {
+            return super.acquireLockIfAvailable(order);
+        }
+
+        OrderLockEntry entry = acquireLocalLock(order.getId(), false);
+        if (entry == null) {
+            return null;
+        }
+        boolean databaseLocked = false;
+        if (isDatabaseLockRequired()) {
+            try {
+                databaseLocked = super.acquireLockIfAvailable(order) != null;
+            } finally {
+                if (!databaseLocked) {
+                    releaseLocalLock(entry);
+                }
+            }
+            if (!databaseLocked) {
+                return null;
+            }
+        }
+        return new OrderLockHandle(order, entry, databaseLocked);
+    }
+
+    @Override
+    public void releaseLock(Object lockObject) {
+        if (!(lockObject instanceof OrderLockHandle)) {
+            super.releaseLock(lockObject);
+            return;
+        }
+
+        OrderLockHandle handle = (OrderLockHandle) lockObject;
+        synchronized (handle) {
+            if (handle.released) {
+                LOG.warn(String.format("Attempted to release the lock on order (%s) more than once", handle.order.getId()));
+                return;
+            }
+            handle.released = true;
+        }
+        try {
+            if (handle.databaseLocked) {
+                super.releaseLock(handle.order);
+            }
+        } finally {
+            releaseLocalLock(handle.entry);
+        }
+    }
+
+    /**
+     * Acquires the in-memory lock for the order.
+     * 
+     * @param orderId the order to lock
+     * @param wait whether to wait for the lock if another thread holds it
+     * @return the held lock entry, or null if the lock was held by another thread and wait was false
+     */
+    protected OrderLockEntry acquireLocalLock(Long orderId, boolean wait) {
+        OrderLockStripe stripe = getStripe(orderId);
+        long start = System.nanoTime();
+        boolean contended = false;
+        boolean acquired = false;
+        OrderLockEntry entry;
+        stripe.lock.lock();
+        try {
+            entry = stripe.entries.get(orderId);
+            if (entry == null) {
+                entry = new OrderLockEntry(orderId, stripe.lock.newCondition());
+                stripe.entries.put(orderId, entry);
+            } else if (entry.held && !wait) {
+                return null;
+            }
+            entry.references++;
+            try {
+                if (entry.held) {
+                    contended = true;
+                    awaitRelease(entry);
+                }
+                entry.held = true;
+                acquired = true;
+            } finally {
+                if (!acquired) {
+                    dereference(stripe, entry);
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        recordAcquisition(orderId, contended, System.nanoTime() - start);
+        return entry;
+    }
+
+    /**
+     * Waits, with the stripe lock held, until the entry is released. Gives up after {@link #getLocalLockMaxWaitMs()}
+     * milliseconds, or never when that is negative.
+     */
+    protected void awaitRelease(OrderLockEntry entry) {
+        long maxWaitMs = getLocalLockMaxWaitMs();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        try {
+            while (entry.held) {
+                if (maxWaitMs < 0) {
+                    entry.released.await();
+                } else if (remaining > 0) {
+                    remaining = entry.released.awaitNanos(remaining);
+                } else {
+                    timeouts.incrementAndGet();
+                    LOG.warn(String.format("Exceeded max wait time to acquire a lock on current Order (%s)", entry.orderId));
+                    throw new RuntimeException("Exceeded max wait time to acquire a lock on current Order");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected void releaseLocalLock(OrderLockEntry entry) {
+        OrderLockStripe stripe = getStripe(entry.orderId);
+        stripe.lock.lock();
+        try {
+            entry.held = false;
+            dereference(stripe, entry);
+            if (entry.references > 0) {
+                entry.released.signal();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    protected void dereference(OrderLockStripe stripe, OrderLockEntry entry) {
+        entry.references--;
+        if (entry.references == 0) {
+            stripe.entries.remove(entry.orderId);
+        }
+    }
+
+    protected OrderLockStripe getStripe(Long orderId) {
+        long id = orderId;
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= (hash >>> 16);
+        return stripes[hash & (stripes.length - 1)];
+    }
+
+    protected void recordAcquisition(Long orderId, boolean contended, long waitNanos) {
+        acquisitions.incrementAndGet();
+        if (!contended) {
+            return;
+        }
+        contendedAcquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        updateMax(maxWaitNanos, waitNanos);
+
+        OrderLockStatistics statistics;
+        synchronized (contendedOrders) {
+            statistics = contendedOrders.get(orderId);
+            if (statistics == null) {
+                statistics = new OrderLockStatistics();
+                contendedOrders.put(orderId, statistics);
+            }
+        }
+        statistics.contentions.incrementAndGet();
+        statistics.totalWaitNanos.addAndGet(waitNanos);
+        updateMax(statistics.maxWaitNanos, waitNanos);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Thread[" + Thread.currentThread().getId() + "] waited " + TimeUnit.NANOSECONDS.toMillis(waitNanos)
+                    + " ms for the lock on order[" + orderId + "]");
+        }
+    }
+
+    protected void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * With session affinity the database lock rows are keyed by node, so they do not exclude other nodes and the
+     * in-memory lock is sufficient.
+     */
+    protected boolean isDatabaseLockRequired() {
+        return !BLCSystemProperty.resolveBooleanSystemProperty("order.lock.database.session.affinity", true);
+    }
+
+    /**
+     * Defaults to the longest time the {@link DatabaseOrderLockManager} would poll for a lock.
+     */
+    protected long getLocalLockMaxWaitMs() {
+        return getDatabaseLockPollingIntervalMs() * getDatabaseLockAcquisitionNumRetries();
+    }
+
+    @ManagedAttribute(description="The number of order locks acquired on this node", currencyTimeLimit=15)
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    @ManagedAttribute(description="The number of order locks acquired after waiting for another thread", currencyTimeLimit=15)
+    public long getContendedAcquisitions() {
+        return contendedAcquisitions.get();
+    }
+
+    @ManagedAttribute(description="The number of waits for an order lock that timed out", currencyTimeLimit=15)
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    @ManagedAttribute(description="The total time in ms spent waiting for order locks", currencyTimeLimit=15)
+    public long getTotalWaitMs() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    @ManagedAttribute(description="The longest time in ms spent waiting for an order lock", currencyTimeLimit=15)
+    public long getMaxWaitMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    @ManagedAttribute(description="The number of orders currently locked or waited for on this node", currencyTimeLimit=15)
+    public int getActiveLocks() {
+        int count = 0;
+        for (OrderLockStripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                count += stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    @ManagedOperation(description="The contention statistics of an order, if another thread has waited for its lock")
+    @ManagedOperationParameters({@ManagedOperationParameter(name = "orderId", description = "the id of the order")})
+    public String getOrderLockStatistics(Long orderId) {
+        OrderLockStatistics statistics;
+        synchronized (contendedOrders) {
+            statistics = contendedOrders.get(orderId);
+        }
+        return statistics == null ? null : statistics.toString();
+    }
+
+    @ManagedOperation(description="The contention statistics of the orders other threads have most recently waited for")
+    public Map<Long, String> getContendedOrders() {
+        Map<Long, String> result = new LinkedHashMap<>();
+        synchronized (contendedOrders) {
+            for (Map.Entry<Long, OrderLockStatistics> entry : contendedOrders.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        return result;
+    }
+
+    @ManagedOperation(description="Reset the order lock statistics")
+    public void resetStatistics() {
+        acquisitions.set(0);
+        contendedAcquisitions.set(0);
+        timeouts.set(0);
+        totalWaitNanos.set(0);
+        maxWaitNanos.set(0);
+        synchronized (contendedOrders) {
+            contendedOrders.clear();
+        }
+    }
+
+    protected static class OrderLockStripe {
+
+        protected final ReentrantLock lock = new ReentrantLock();
+
+        protected final Map<Long, OrderLockEntry> entries = new HashMap<>();
+
+    }
+
+    protected static class OrderLockEntry {
+
+        protected final Long orderId;
+
+        protected final Condition released;
+
+        /**
+         * The number of threads holding or waiting for the lock. The entry is removed from its stripe when this
+         * reaches zero.
+         */
+        protected int references;
+
+        protected boolean held;
+
+        protected OrderLockEntry(Long orderId, Condition released) {
+            this.orderId = orderId;
+            this.released = released;
+        }
+
+    }
+
+    protected static class OrderLockHandle {
+
+        protected final Order order;
+
+        protected final OrderLockEntry entry;
+
+        protected final boolean databaseLocked;
+
+        protected boolean released;
+
+        protected OrderLockHandle(Order order, OrderLockEntry entry, boolean databaseLocked) {
+            this.order = order;
+            this.entry = entry;
+            this.databaseLocked = databaseLocked;
+        }
+
+    }
+
+    protected static class OrderLockStatistics {
+
+        protected final AtomicLong contentions = new AtomicLong();
+
+        protected final AtomicLong totalWaitNanos = new AtomicLong();
+
+        protected final AtomicLong maxWaitNanos = new AtomicLong();
+
+        @Override
+        public String toString() {
+            long count = contentions.get();
+            return String.format("contentions=%d, totalWaitMs=%d, averageWaitMs=%d, maxWaitMs=%d", count,
+                    TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()),
+                    count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count),
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        }
+
+    }
+
+}
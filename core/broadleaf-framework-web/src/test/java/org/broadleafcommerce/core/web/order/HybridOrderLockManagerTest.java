@@ -0,0 +1,415 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import junit.framework.TestCase;
+
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.service.OrderService;
+import org.easymock.EasyMock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class HybridOrderLockManagerTest extends TestCase {
+
+    protected static final long TIMEOUT_MS = 5000;
+
+    protected TestOrderLockManager lockManager;
+
+    protected OrderService orderService;
+
+    @Override
+    protected void setUp() throws Exception {
+        orderService = EasyMock.createStrictMock(OrderService.class);
+        lockManager = new TestOrderLockManager(4);
+        lockManager.orderService = orderService;
+    }
+
+    public void testAcquireAndRelease() throws Exception {
+        EasyMock.replay(orderService);
+        Order order = buildOrder(1L);
+
+        Object handle = lockManager.acquireLock(order);
+        assertNotNull(handle);
+        assertEquals(1, getReferences(1L));
+        assertEquals(1, lockManager.getActiveLocks());
+
+        lockManager.releaseLock(handle);
+        assertEquals(0, lockManager.getActiveLocks());
+        assertEquals(1, lockManager.getAcquisitions());
+        assertEquals(0, lockManager.getContendedAcquisitions());
+
+        // With session affinity the database is never touched
+        EasyMock.verify(orderService);
+    }
+
+    public void testWaitersAreWokenInArrivalOrder() throws Exception {
+        EasyMock.replay(orderService);
+        final Order order = buildOrder(1L);
+        final List<Integer> acquiredBy = Collections.synchronizedList(new ArrayList<Integer>());
+
+        Object handle = lockManager.acquireLock(order);
+        List<LockThread> waiters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final int waiter = i;
+            LockThread thread = new LockThread() {
+                @Override
+                protected Object doRun() {
+                    Object waiterHandle = lockManager.acquireLock(order);
+                    acquiredBy.add(waiter);
+                    lockManager.releaseLock(waiterHandle);
+                    return waiterHandle;
+                }
+            };
+            thread.start();
+            waitForWaiters(1L, i + 1);
+            waiters.add(thread);
+        }
+        assertEquals(4, getReferences(1L));
+        assertTrue(acquiredBy.isEmpty());
+
+        lockManager.releaseLock(handle);
+        for (LockThread waiter : waiters) {
+            waiter.finish();
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2), acquiredBy);
+        assertEquals(4, lockManager.getAcquisitions());
+        assertEquals(3, lockManager.getContendedAcquisitions());
+        assertNotNull(lockManager.getOrderLockStatistics(1L));
+        assertTrue(lockManager.getContendedOrders().containsKey(1L));
+        assertEquals(0, lockManager.getActiveLocks());
+    }
+
+    public void testOtherOrdersOnTheSameStripeAreNotBlocked() throws Exception {
+        EasyMock.replay(orderService);
+        assertSame(lockManager.getStripe(1L), lockManager.getStripe(5L));
+
+        Object handle = lockManager.acquireLock(buildOrder(1L));
+        LockThread other = new LockThread() {
+            @Override
+            protected Object doRun() {
+                Object otherHandle = lockManager.acquireLockIfAvailable(buildOrder(5L));
+                if (otherHandle != null) {
+                    lockManager.releaseLock(otherHandle);
+                }
+                return otherHandle;
+            }
+        };
+        other.start();
+        assertNotNull(other.finish());
+
+        lockManager.releaseLock(handle);
+        assertEquals(0, lockManager.getActiveLocks());
+    }
+
+    public void testLockTimeout() throws Exception {
+        EasyMock.replay(orderService);
+        lockManager.localLockMaxWaitMs = 50;
+        final Order order = buildOrder(1L);
+
+        Object handle = lockManager.acquireLock(order);
+        LockThread waiter = new LockThread() {
+            @Override
+            protected Object doRun() {
+                return lockManager.acquireLock(order);
+            }
+        };
+        waiter.start();
+        waiter.join(TIMEOUT_MS);
+
+        assertFalse(waiter.isAlive());
+        assertTrue(waiter.error instanceof RuntimeException);
+        assertEquals(1, lockManager.getTimeouts());
+        assertEquals(1, getReferences(1L));
+
+        lockManager.releaseLock(handle);
+        assertEquals(0, lockManager.getActiveLocks());
+    }
+
+    public void testInterruptedWaiterGivesUp() throws Exception {
+        EasyMock.replay(orderService);
+        final Order order = buildOrder(1L);
+
+        Object handle = lockManager.acquireLock(order);
+        LockThread waiter = new LockThread() {
+            @Override
+            protected Object doRun() {
+                try {
+                    return lockManager.acquireLock(order);
+                } finally {
+                    interrupted = Thread.currentThread().isInterrupted();
+                }
+            }
+        };
+        waiter.start();
+        waitForWaiters(1L, 1);
+        waiter.interrupt();
+        waiter.join(TIMEOUT_MS);
+
+        assertFalse(waiter.isAlive());
+        assertTrue(waiter.error instanceof RuntimeException);
+        assertTrue(waiter.interrupted);
+        assertEquals(1, getReferences(1L));
+
+        lockManager.releaseLock(handle);
+        assertEquals(0, lockManager.getActiveLocks());
+    }
+
+    public void testTryLockFailsWhileHeld() throws Exception {
+        EasyMock.replay(orderService);
+        final Order order = buildOrder(1L);
+
+        Object handle = lockManager.acquireLock(order);
+        LockThread tryLock = new TryLockThread(order);
+        tryLock.start();
+        assertNull(tryLock.finish());
+        assertEquals(1, getReferences(1L));
+        assertEquals(1, lockManager.getAcquisitions());
+
+        lockManager.releaseLock(handle);
+        assertEquals(0, lockManager.getActiveLocks());
+
+        tryLock = new TryLockThread(order);
+        tryLock.start();
+        assertNotNull(tryLock.finish());
+        assertEquals(0, lockManager.getActiveLocks());
+    }
+
+    public void testReleasingTwiceDoesNotReleaseTheNextHolder() throws Exception {
+        EasyMock.replay(orderService);
+        Order order = buildOrder(1L);
+
+        Object first = lockManager.acquireLock(order);
+        lockManager.releaseLock(first);
+        Object second = lockManager.acquireLock(order);
+        lockManager.releaseLock(first);
+
+        assertEquals(1, getReferences(1L));
+        LockThread tryLock = new TryLockThread(order);
+        tryLock.start();
+        assertNull(tryLock.finish());
+
+        lockManager.releaseLock(second);
+        assertEquals(0, lockManager.getActiveLocks());
+    }
+
+    public void testReleaseFromAnotherThreadWakesWaiter() throws Exception {
+        EasyMock.replay(orderService);
+        final Order order = buildOrder(1L);
+
+        final Object handle = lockManager.acquireLock(order);
+        LockThread waiter = new LockThread() {
+            @Override
+            protected Object doRun() {
+                Object waiterHandle = lockManager.acquireLock(order);
+                lockManager.releaseLock(waiterHandle);
+                return waiterHandle;
+            }
+        };
+        waiter.start();
+        waitForWaiters(1L, 1);
+
+        LockThread releaser = new LockThread() {
+            @Override
+            protected Object doRun() {
+                lockManager.releaseLock(handle);
+                return handle;
+            }
+        };
+        releaser.start();
+        releaser.finish();
+
+        assertNotNull(waiter.finish());
+        assertEquals(0, lockManager.getActiveLocks());
+    }
+
+    public void testDatabaseLockUsedWithoutSessionAffinity() throws Exception {
+        lockManager.databaseLockRequired = true;
+        Order order = buildOrder(1L);
+        EasyMock.expect(orderService.acquireLock(order)).andReturn(true);
+        EasyMock.expect(orderService.releaseLock(order)).andReturn(true);
+        EasyMock.replay(orderService);
+
+        Object handle = lockManager.acquireLock(order);
+        assertEquals(1, getReferences(1L));
+        lockManager.releaseLock(handle);
+        lockManager.releaseLock(handle);
+
+        assertEquals(0, lockManager.getActiveLocks());
+        EasyMock.verify(orderService);
+    }
+
+    public void testDatabaseLockFailureReleasesLocalLock() throws Exception {
+        lockManager.databaseLockRequired = true;
+        Order order = buildOrder(1L);
+        EasyMock.expect(orderService.acquireLock(order)).andReturn(false).times(3);
+        EasyMock.replay(orderService);
+
+        try {
+            lockManager.acquireLock(order);
+            fail("Expected the database lock to time out");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        assertEquals(0, lockManager.getActiveLocks());
+        EasyMock.verify(orderService);
+    }
+
+    public void testDatabaseTryLockFailureReleasesLocalLock() throws Exception {
+        lockManager.databaseLockRequired = true;
+        Order order = buildOrder(1L);
+        EasyMock.expect(orderService.acquireLock(order)).andReturn(false);
+        EasyMock.replay(orderService);
+
+        assertNull(lockManager.acquireLockIfAvailable(order));
+
+        assertEquals(0, lockManager.getActiveLocks());
+        EasyMock.verify(orderService);
+    }
+
+    protected Order buildOrder(Long id) {
+        Order order = new OrderImpl();
+        order.setId(id);
+        return order;
+    }
+
+    protected int getReferences(Long orderId) {
+        HybridOrderLockManager.OrderLockStripe stripe = lockManager.getStripe(orderId);
+        stripe.lock.lock();
+        try {
+            HybridOrderLockManager.OrderLockEntry entry = stripe.entries.get(orderId);
+            return entry == null ? 0 : entry.references;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the given number of threads are parked waiting for the lock on the order.
+     */
+    protected void waitForWaiters(Long orderId, int count) throws InterruptedException {
+        HybridOrderLockManager.OrderLockStripe stripe = lockManager.getStripe(orderId);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            stripe.lock.lock();
+            try {
+                HybridOrderLockManager.OrderLockEntry entry = stripe.entries.get(orderId);
+                if (entry != null && stripe.lock.getWaitQueueLength(entry.released) >= count) {
+                    return;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+            Thread.sleep(5);
+        }
+        fail("Timed out waiting for " + count + " threads to wait for the lock on order " + orderId);
+    }
+
+    protected static class TestOrderLockManager extends HybridOrderLockManager {
+
+        protected boolean databaseLockRequired = false;
+
+        protected long localLockMaxWaitMs = TIMEOUT_MS;
+
+        public TestOrderLockManager(int stripes) {
+            super(stripes);
+        }
+
+        @Override
+        protected boolean isDatabaseLockRequired() {
+            return databaseLockRequired;
+        }
+
+        @Override
+        protected long getLocalLockMaxWaitMs() {
+            return localLockMaxWaitMs;
+        }
+
+        @Override
+        protected long getDatabaseLockPollingIntervalMs() {
+            return 1;
+        }
+
+        @Override
+        protected int getDatabaseLockAcquisitionNumRetries() {
+            return 3;
+        }
+
+    }
+
+    protected abstract static class LockThread extends Thread {
+
+        protected volatile Object result;
+
+        protected volatile Throwable error;
+
+        protected volatile boolean interrupted;
+
+        @Override
+        public void run() {
+            try {
+                result = doRun();
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+
+        protected abstract Object doRun();
+
+        /**
+         * Joins the thread and rethrows anything it failed with.
+         */
+        protected Object finish() throws Exception {
+            join(TIMEOUT_MS);
+            assertFalse("Thread did not finish", isAlive());
+            if (error instanceof Exception) {
+                throw (Exception) error;
+            } else if (error != null) {
+                throw (Error) error;
+            }
+            return result;
+        }
+
+    }
+
+    protected class TryLockThread extends LockThread {
+
+        protected final Order order;
+
+        protected TryLockThread(Order order) {
+            this.order = order;
+        }
+
+        @Override
+        protected Object doRun() {
+            Object handle = lockManager.acquireLockIfAvailable(order);
+            if (handle != null) {
+                lockManager.releaseLock(handle);
+            }
+            return handle;
+        }
+
+    }
+
+}
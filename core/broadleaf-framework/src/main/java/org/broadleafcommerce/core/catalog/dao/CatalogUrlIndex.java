@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.dao;
+
+import org.broadleafcommerce.core.search.dao.LongToLongArrayMap;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps URIs (or url keys) to the ids of the catalog entities that were stored with them. Keys are held as a 64 bit hash
+ * in a primitive keyed table rather than as strings, so a lookup is a single probe and a large catalog costs little
+ * more than its ids. A hash collision only adds candidates, which is why callers must always check that an entity
+ * they load by id still has the URI they asked for.
+ * <p>
+ * The table that is bulk loaded is never modified. Changes made afterwards are kept in a small concurrent overlay
+ * that is consulted first, so readers never block.
+ */
+public class CatalogUrlIndex {
+
+    protected static final long[] NONE = new long[0];
+
+    protected final LongToLongArrayMap base;
+    protected final ConcurrentMap<Long, long[]> changes = new ConcurrentHashMap<>();
+    protected final long createdAt;
+
+    protected CatalogUrlIndex(LongToLongArrayMap base) {
+        this.base = base;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the ids stored for the key, or null if there are none
+     */
+    public long[] get(String key) {
+        if (key == null) {
+            return null;
+        }
+        long hash = hash(key);
+        if (!changes.isEmpty()) {
+            long[] changed = changes.get(hash);
+            if (changed != null) {
+                return changed.length == 0 ? null : changed;
+            }
+        }
+        return base.get(hash);
+    }
+
+    public synchronized void add(String key, long id) {
+        if (key == null) {
+            return;
+        }
+        long hash = hash(key);
+        long[] current = current(hash);
+        for (long existing : current) {
+            if (existing == id) {
+                return;
+            }
+        }
+        long[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = id;
+        changes.put(hash, grown);
+    }
+
+    public synchronized void remove(String key, long id) {
+        if (key == null) {
+            return;
+        }
+        long hash = hash(key);
+        long[] current = current(hash);
+        int pos = -1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == id) {
+                pos = i;
+                break;
+            }
+        }
+        if (pos < 0) {
+            return;
+        }
+        long[] shrunk = new long[current.length - 1];
+        System.arraycopy(current, 0, shrunk, 0, pos);
+        System.arraycopy(current, pos + 1, shrunk, pos, shrunk.length - pos);
+        changes.put(hash, shrunk);
+    }
+
+    protected long[] current(long hash) {
+        long[] current = changes.get(hash);
+        if (current == null) {
+            current = base.get(hash);
+        }
+        return current == null ? NONE : current;
+    }
+
+    /**
+     * @return the number of distinct keys loaded in bulk
+     */
+    public int size() {
+        return base.size();
+    }
+
+    /**
+     * @return the number of keys changed since the bulk load
+     */
+    public int getChangeCount() {
+        return changes.size();
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key's characters
+     */
+    public static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Collects the entries of an index before it is published. Not thread safe.
+     */
+    public static class Builder {
+
+        protected final LongToLongArrayMap map;
+
+        public Builder() {
+            this(1024);
+        }
+
+        public Builder(int expectedSize) {
+            map = new LongToLongArrayMap(expectedSize);
+        }
+
+        public Builder add(String key, long id) {
+            if (key != null) {
+                map.add(hash(key), id);
+            }
+            return this;
+        }
+
+        public CatalogUrlIndex build() {
+            return new CatalogUrlIndex(map);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.dao;
+
+/**
+ * In memory index from storefront URIs and url keys to the ids of the products, categories and skus that use them,
+ * held separately for each site and catalog. It lets {@link ProductDao#findProductByURI(String)},
+ * {@link CategoryDao#findCategoryByURI(String)} and {@link SkuDao#findSkuByURI(String)} resolve a request with a
+ * single hash probe and a load by id instead of a query whose cached results are flushed by any catalog write.
+ * <p>
+ * Each index is loaded in bulk the first time it is used for a site and catalog, reloaded once it is older than
+ * catalog.url.index.ttlSeconds, and updated as products, categories and skus are saved. Ids returned by the index
+ * are only candidates: callers must check that the loaded entity is still active and still has the URI.
+ */
+public interface CatalogUrlIndexDao {
+
+    public enum Type {
+        PRODUCT_URL, PRODUCT_URL_KEY, CATEGORY_URL, SKU_URL
+    }
+
+    /**
+     * @return whether the index should be used for the current request. It is only used outside of a sandbox.
+     */
+    public boolean isEnabled();
+
+    /**
+     * @param type
+     * @param key the URI or url key
+     * @return the candidate ids, or null if the key is not in the index or the index is not available yet, in which
+     * case the caller should query the database
+     */
+    public long[] readIds(Type type, String key);
+
+    /**
+     * Records that the entity with the given id was found in the database for the key
+     */
+    public void add(Type type, String key, Long id);
+
+    /**
+     * Records that the entity with the given id no longer matches the key
+     */
+    public void remove(Type type, String key, Long id);
+
+    /**
+     * Discards every index, so that each is reloaded the next time it is used
+     */
+    public void clear();
+
+}
@@ -0,0 +1,304 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.domain.CatalogEntityPersistedEvent;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+/**
+ * Default implementation of {@link CatalogUrlIndexDao}. Loading an index never blocks a request: while one thread
+ * loads, the others keep using the previous index for that site and catalog, or query the database if there is none.
+ */
+@Repository("blCatalogUrlIndexDao")
+@ManagedResource(objectName="org.broadleafcommerce:name=CatalogUrlIndex", description="Catalog URL Index", currencyTimeLimit=15)
+public class CatalogUrlIndexDaoImpl implements CatalogUrlIndexDao, ApplicationListener<CatalogEntityPersistedEvent> {
+
+    private static final Log LOG = LogFactory.getLog(CatalogUrlIndexDaoImpl.class);
+
+    @PersistenceContext(unitName = "blPU")
+    protected EntityManager em;
+
+    @Value("${catalog.url.index.enabled:false}")
+    protected boolean enabled = false;
+
+    @Value("${catalog.url.index.ttlSeconds:3600}")
+    protected int ttlSeconds = 3600;
+
+    @Value("${catalog.url.index.loadPageSize:10000}")
+    protected int loadPageSize = 10000;
+
+    protected final ConcurrentMap<String, CatalogUrlIndex> indexes = new ConcurrentHashMap<>();
+    protected final ReentrantLock loadLock = new ReentrantLock();
+
+    protected final AtomicLong hitCount = new AtomicLong();
+    protected final AtomicLong missCount = new AtomicLong();
+    protected final AtomicLong loadCount = new AtomicLong();
+
+    @Override
+    @ManagedAttribute(description="Whether the catalog URL index is used", currencyTimeLimit=15)
+    public boolean isEnabled() {
+        if (!enabled) {
+            return false;
+        }
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        return context == null || context.isProductionSandBox();
+    }
+
+    @Override
+    public long[] readIds(Type type, String key) {
+        CatalogUrlIndex index = getIndex(type);
+        if (index == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        long[] ids = index.get(key);
+        if (ids == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return ids;
+    }
+
+    @Override
+    public void add(Type type, String key, Long id) {
+        CatalogUrlIndex index = indexes.get(getIndexKey(type));
+        if (index != null && id != null) {
+            index.add(key, id);
+        }
+    }
+
+    @Override
+    public void remove(Type type, String key, Long id) {
+        CatalogUrlIndex index = indexes.get(getIndexKey(type));
+        if (index != null && id != null) {
+            index.remove(key, id);
+        }
+    }
+
+    /**
+     * @return the index for the current site and catalog, loading it if it is missing or expired and no other thread
+     * is already loading an index
+     */
+    protected CatalogUrlIndex getIndex(Type type) {
+        String indexKey = getIndexKey(type);
+        CatalogUrlIndex index = indexes.get(indexKey);
+        if (index != null && !isExpired(index)) {
+            return index;
+        }
+        if (!loadLock.tryLock()) {
+            return index;
+        }
+        try {
+            CatalogUrlIndex current = indexes.get(indexKey);
+            if (current != index) {
+                return current;
+            }
+            long start = System.currentTimeMillis();
+            index = loadIndex(type);
+            indexes.put(indexKey, index);
+            loadCount.incrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Loaded %s catalog URL index %s with %s keys in %sms", type, indexKey, index.size(),
+                        System.currentTimeMillis() - start));
+            }
+            return index;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    protected boolean isExpired(CatalogUrlIndex index) {
+        return ttlSeconds > 0 && System.currentTimeMillis() - index.getCreatedAt() > ttlSeconds * 1000L;
+    }
+
+    /**
+     * Indexes are kept per site and catalog, as the catalog queries are filtered by both
+     */
+    protected String getIndexKey(Type type) {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        Long siteId = null;
+        Long catalogId = null;
+        if (context != null) {
+            siteId = context.getNonPersistentSite() == null ? null : context.getNonPersistentSite().getId();
+            catalogId = context.getCurrentCatalog() == null ? null : context.getCurrentCatalog().getId();
+        }
+        return siteId + ":" + catalogId + ":" + type;
+    }
+
+    protected CatalogUrlIndex loadIndex(Type type) {
+        CatalogUrlIndex.Builder builder = new CatalogUrlIndex.Builder(loadPageSize);
+        Long lastId = 0L;
+        while (true) {
+            TypedQuery<Object[]> query = em.createQuery(getSelect(type) + " AND e.id > :lastId ORDER BY e.id", Object[].class);
+            query.setParameter("lastId", lastId);
+            query.setMaxResults(loadPageSize);
+            List<Object[]> rows = query.getResultList();
+            for (Object[] row : rows) {
+                for (String key : getKeys(type, row)) {
+                    builder.add(key, (Long) row[0]);
+                }
+                lastId = (Long) row[0];
+            }
+            if (rows.size() < loadPageSize) {
+                break;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the query for the id and URL columns of each entity that can be found by the given type of key. The
+     * entity is aliased as "e" and the query ends with a where clause that can be extended.
+     */
+    protected String getSelect(Type type) {
+        switch (type) {
+            case PRODUCT_URL:
+                return "SELECT e.id, e.url FROM org.broadleafcommerce.core.catalog.domain.Product e WHERE e.url IS NOT NULL";
+            case PRODUCT_URL_KEY:
+                return "SELECT e.id, e.urlKey FROM org.broadleafcommerce.core.catalog.domain.Product e WHERE e.urlKey IS NOT NULL";
+            case CATEGORY_URL:
+                return "SELECT e.id, e.url FROM org.broadleafcommerce.core.catalog.domain.Category e WHERE e.url IS NOT NULL";
+            case SKU_URL:
+                return "SELECT e.id, defaultProduct.url, product.url, e.urlKey FROM org.broadleafcommerce.core.catalog.domain.Sku e "
+                        + "LEFT JOIN e.defaultProduct defaultProduct LEFT JOIN e.product product WHERE e.activeStartDate IS NOT NULL";
+            default:
+                throw new IllegalArgumentException("Unknown catalog URL index type " + type);
+        }
+    }
+
+    /**
+     * A sku can be found by its default product's URL, or by its product's URL followed by its own url key
+     */
+    protected List<String> getKeys(Type type, Object[] row) {
+        List<String> keys = new ArrayList<>(2);
+        if (Type.SKU_URL.equals(type)) {
+            if (row[1] != null) {
+                keys.add((String) row[1]);
+            }
+            if (row[2] != null && row[3] != null) {
+                keys.add((String) row[2] + row[3]);
+            }
+        } else if (row[1] != null) {
+            keys.add((String) row[1]);
+        }
+        return keys;
+    }
+
+    @Override
+    public void onApplicationEvent(CatalogEntityPersistedEvent event) {
+        if (!enabled || indexes.isEmpty()) {
+            return;
+        }
+        Object entity = event.getEntity();
+        try {
+            if (entity instanceof Product) {
+                Long id = ((Product) entity).getId();
+                reindex(Type.PRODUCT_URL, "e.id = :id", id);
+                reindex(Type.PRODUCT_URL_KEY, "e.id = :id", id);
+                reindex(Type.SKU_URL, "(product.id = :id OR defaultProduct.id = :id)", id);
+            } else if (entity instanceof Category) {
+                reindex(Type.CATEGORY_URL, "e.id = :id", ((Category) entity).getId());
+            } else if (entity instanceof Sku) {
+                reindex(Type.SKU_URL, "e.id = :id", ((Sku) entity).getId());
+            }
+        } catch (RuntimeException e) {
+            // The index corrects itself the next time the old or new URL is requested
+            LOG.warn("Unable to update the catalog URL index for " + entity, e);
+        }
+    }
+
+    /**
+     * Adds the current URLs of the matching entities to the index for the current site and catalog, if it is loaded.
+     * Entries for URLs the entities no longer use are removed by the DAOs when they fail to match.
+     * <p>
+     * Only the saving thread's site and catalog are known here, and an entity loaded by id is not checked against the
+     * catalog of the index it is added to, so the indexes of other sites and catalogs are left alone rather than risk
+     * resolving a URL to an entity of another catalog. They pick the change up when they are reloaded after
+     * "catalog.url.index.ttlSeconds", and until then a new URL misses and is added by the DAOs after the database query.
+     */
+    protected void reindex(Type type, String restriction, Long id) {
+        CatalogUrlIndex index = indexes.get(getIndexKey(type));
+        if (index == null || id == null) {
+            return;
+        }
+        TypedQuery<Object[]> query = em.createQuery(getSelect(type) + " AND " + restriction, Object[].class);
+        query.setParameter("id", id);
+        for (Object[] row : query.getResultList()) {
+            for (String key : getKeys(type, row)) {
+                index.add(key, (Long) row[0]);
+            }
+        }
+    }
+
+    @Override
+    @ManagedOperation(description="Discards every catalog URL index")
+    public void clear() {
+        indexes.clear();
+    }
+
+    @ManagedAttribute(description="Whether the catalog URL index is used", currencyTimeLimit=15)
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    @ManagedAttribute(description="The number of lookups answered by the index", currencyTimeLimit=15)
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @ManagedAttribute(description="The number of lookups that had to query the database", currencyTimeLimit=15)
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @ManagedAttribute(description="The number of indexes loaded", currencyTimeLimit=15)
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    @ManagedAttribute(description="The number of indexes held", currencyTimeLimit=15)
+    public int getIndexCount() {
+        return indexes.size();
+    }
+}
@@ -76,6 +76,9 @@ public class CategoryDaoImpl implements CategoryDao {
     @Resource(name = "blCategoryDaoExtensionManager")
     protected CategoryDaoExtensionManager extensionManager;
 
+    @Resource(name = "blCatalogUrlIndexDao")
+    protected CatalogUrlIndexDao urlIndexDao;
+
     @Override
     public Category save(Category category) {
         return em.merge(category);
@@ -282,9 +285,17 @@ public class CategoryDaoImpl implements CategoryDao {
                 return (Category) holder.getResult();
             }
         }
+        Date currentDate = getCurrentDateAfterFactoringInDateResolution();
+        boolean useUrlIndex = urlIndexDao != null && urlIndexDao.isEnabled();
+        if (useUrlIndex) {
+            Category indexed = findCategoryByUrlIndex(uri, currentDate);
+            if (indexed != null) {
+                return indexed;
+            }
+        }
         Query query;
         query = em.createNamedQuery("BC_READ_CATEGORY_OUTGOING_URL");
-        query.setParameter("currentDate", getCurrentDateAfterFactoringInDateResolution());
+        query.setParameter("currentDate", currentDate);
         query.setParameter("url", uri);
         query.setHint(QueryHints.HINT_CACHEABLE, true);
         query.setHint(QueryHints.HINT_CACHE_REGION, "query.Catalog");
@@ -292,6 +303,9 @@ public class CategoryDaoImpl implements CategoryDao {
         @SuppressWarnings("unchecked")
         List<Category> results = query.getResultList();
         if (results != null && !results.isEmpty()) {
+            if (useUrlIndex) {
+                urlIndexDao.add(CatalogUrlIndexDao.Type.CATEGORY_URL, uri, results.get(0).getId());
+            }
             return results.get(0);
 
         } else {
@@ -299,4 +313,36 @@ public class CategoryDaoImpl implements CategoryDao {
         }
     }
 
+    /**
+     * Resolves the category for a URI from the {@link CatalogUrlIndexDao}, loading each candidate by id and applying
+     * the same restrictions as BC_READ_CATEGORY_OUTGOING_URL. Candidates that no longer match are removed from the
+     * index.
+     * 
+     * @return the matching category, or null if the database should be queried instead
+     */
+    protected Category findCategoryByUrlIndex(String uri, Date currentDate) {
+        long[] ids = urlIndexDao.readIds(CatalogUrlIndexDao.Type.CATEGORY_URL, uri);
+        if (ids == null) {
+            return null;
+        }
+        for (long id : ids) {
+            Category category = readCategoryById(id);
+            if (category != null && uri.equals(category.getUrl()) && isActiveForUrl(category, currentDate)) {
+                return category;
+            }
+            urlIndexDao.remove(CatalogUrlIndexDao.Type.CATEGORY_URL, uri, id);
+        }
+        return null;
+    }
+
+    protected boolean isActiveForUrl(Category category, Date currentDate) {
+        if (category instanceof Status && Character.valueOf('Y').equals(((Status) category).getArchived())) {
+            return false;
+        }
+        Date activeStartDate = category.getActiveStartDate();
+        Date activeEndDate = category.getActiveEndDate();
+        return activeStartDate != null && activeStartDate.before(currentDate)
+                && (activeEndDate == null || activeEndDate.after(currentDate));
+    }
+
 }
@@ -291,6 +291,16 @@ public interface ProductDao {
      */
     List<Product> readAllActiveProducts(Integer pageSize, Long lastId);
 
+    /**
+     * Reads the ids of the products that {@link #readAllActiveProducts(Integer, Long)} returns for the same arguments,
+     * without loading the products.
+     *
+     * @param pageSize the number of results per page
+     * @param lastId the last id from the previous page - can be null if this is the first page request
+     * @return the ids of the active products for the given page, in ascending order
+     */
+    List<Long> readAllActiveProductIds(Integer pageSize, Long lastId);
+
     /**
      * @deprecated Use {@link #readAllActiveProducts(int, int)}
      * 
@@ -86,6 +86,9 @@ public class ProductDaoImpl implements ProductDao {
     @Resource(name = "blProductDaoExtensionManager")
     protected ProductDaoExtensionManager extensionManager;
 
+    @Resource(name = "blCatalogUrlIndexDao")
+    protected CatalogUrlIndexDao urlIndexDao;
+
     protected Long currentDateResolution = 10000L;
     protected Date cachedDate = SystemTime.asDate();
 
@@ -512,19 +515,108 @@ public class ProductDaoImpl implements ProductDao {
             }
         }
         String urlKey = uri.substring(uri.lastIndexOf('/'));        
+        Date currentDate = DateUtil.getCurrentDateAfterFactoringInDateResolution(cachedDate, currentDateResolution);
+        boolean useUrlIndex = urlIndexDao != null && urlIndexDao.isEnabled();
+        List<Product> indexed = null;
+        if (useUrlIndex) {
+            indexed = findProductsByUrlIndex(uri, urlKey, currentDate);
+            // Only a url hit is conclusive, a product saved with this url may not be indexed yet
+            if (indexed != null && containsUrl(indexed, uri)) {
+                return indexed;
+            }
+        }
         Query query;
     
         query = em.createNamedQuery("BC_READ_PRODUCTS_BY_OUTGOING_URL");
         query.setParameter("url", uri);
         query.setParameter("urlKey", urlKey);
-        query.setParameter("currentDate", DateUtil.getCurrentDateAfterFactoringInDateResolution(cachedDate, currentDateResolution));
+        query.setParameter("currentDate", currentDate);
         query.setHint(QueryHints.HINT_CACHEABLE, true);
         query.setHint(QueryHints.HINT_CACHE_REGION, "query.Catalog");
     
         @SuppressWarnings("unchecked")
         List<Product> results = query.getResultList();
+        if (useUrlIndex) {
+            for (Product product : results) {
+                if (uri.equals(product.getUrl())) {
+                    urlIndexDao.add(CatalogUrlIndexDao.Type.PRODUCT_URL, uri, product.getId());
+                }
+                if (urlKey.equals(product.getUrlKey())) {
+                    urlIndexDao.add(CatalogUrlIndexDao.Type.PRODUCT_URL_KEY, urlKey, product.getId());
+                }
+            }
+        }
+        if (indexed != null) {
+            results = new ArrayList<>(results);
+            for (Product product : indexed) {
+                if (!results.contains(product)) {
+                    results.add(product);
+                }
+            }
+        }
         return results;
     }
+
+    protected boolean containsUrl(List<Product> products, String uri) {
+        for (Product product : products) {
+            if (uri.equals(product.getUrl())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves the products for a URI from the {@link CatalogUrlIndexDao}, loading each candidate by id and applying
+     * the same restrictions as BC_READ_PRODUCTS_BY_OUTGOING_URL. Candidates that no longer match are removed from
+     * the index. Unless one of the products matches the url itself, the caller still queries the database, since a
+     * product whose url matches may not be indexed yet.
+     * 
+     * @return the matching products, or null if none of the indexed candidates match
+     */
+    protected List<Product> findProductsByUrlIndex(String uri, String urlKey, Date currentDate) {
+        long[] urlIds = urlIndexDao.readIds(CatalogUrlIndexDao.Type.PRODUCT_URL, uri);
+        long[] urlKeyIds = urlIndexDao.readIds(CatalogUrlIndexDao.Type.PRODUCT_URL_KEY, urlKey);
+        if (urlIds == null && urlKeyIds == null) {
+            return null;
+        }
+        List<Product> results = new ArrayList<>();
+        if (urlIds != null) {
+            for (long id : urlIds) {
+                Product product = readProductById(id);
+                if (product != null && uri.equals(product.getUrl()) && isActiveForUrl(product, currentDate)) {
+                    results.add(product);
+                } else {
+                    urlIndexDao.remove(CatalogUrlIndexDao.Type.PRODUCT_URL, uri, id);
+                }
+            }
+        }
+        if (urlKeyIds != null) {
+            for (long id : urlKeyIds) {
+                Product product = readProductById(id);
+                if (product != null && urlKey.equals(product.getUrlKey()) && isActiveForUrl(product, currentDate)) {
+                    if (!results.contains(product)) {
+                        results.add(product);
+                    }
+                } else {
+                    urlIndexDao.remove(CatalogUrlIndexDao.Type.PRODUCT_URL_KEY, urlKey, id);
+                }
+            }
+        }
+        return results.isEmpty() ? null : results;
+    }
+
+    protected boolean isActiveForUrl(Product product, Date currentDate) {
+        if (product instanceof Status && Character.valueOf('Y').equals(((Status) product).getArchived())) {
+            return false;
+        }
+        Sku defaultSku = product.getDefaultSku();
+        if (defaultSku == null) {
+            return false;
+        }
+        Date activeEndDate = defaultSku.getActiveEndDate();
+        return activeEndDate == null || activeEndDate.after(currentDate);
+    }
     
     @Override
     public List<Product> readAllActiveProducts(int page, int pageSize) {
@@ -538,6 +630,27 @@ public class ProductDaoImpl implements ProductDao {
         return readAllActiveProductsInternal(pageSize, currentDate, lastId);
     }
     
+    @Override
+    public List<Long> readAllActiveProductIds(Integer pageSize, Long lastId) {
+        Date currentDate = DateUtil.getCurrentDateAfterFactoringInDateResolution(cachedDate, currentDateResolution);
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+        Root<ProductImpl> product = criteria.from(ProductImpl.class);
+        Join<Product, Sku> sku = product.join("defaultSku");
+        criteria.select(product.get("id").as(Long.class));
+
+        // Same restrictions and ordering as getCriteriaForActiveProducts
+        List<Predicate> restrictions = new ArrayList<Predicate>();
+        attachActiveRestriction(currentDate, product, sku, restrictions);
+        if (lastId != null) {
+            restrictions.add(builder.gt(product.get("id").as(Long.class), lastId));
+        }
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.orderBy(builder.asc(product.get("id")));
+
+        return em.createQuery(criteria).setMaxResults(pageSize).getResultList();
+    }
+    
     @Override
     @Deprecated
     public List<Product> readAllActiveProducts(int page, int pageSize, Date currentDate) {    
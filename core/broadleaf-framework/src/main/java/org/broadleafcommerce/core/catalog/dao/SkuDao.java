@@ -157,6 +157,16 @@ public interface SkuDao {
      */
     List<Sku> readAllActiveSkus(Integer pageSize, Long lastId);
 
+    /**
+     * Reads the ids of the skus that {@link #readAllActiveSkus(Integer, Long)} returns for the same arguments, without
+     * loading the skus.
+     *
+     * @param pageSize the number of results per page
+     * @param lastId the last id from the previous page - can be null if this is the first page request
+     * @return the ids of the active skus for the given page, in ascending order
+     */
+    List<Long> readAllActiveSkuIds(Integer pageSize, Long lastId);
+
     /**
      * Returns the number of milliseconds that the current date/time will be cached for queries before refreshing.
      * This aids in query caching, otherwise every query that utilized current date would be different and caching
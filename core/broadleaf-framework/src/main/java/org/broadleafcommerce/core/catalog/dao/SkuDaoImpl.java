@@ -22,11 +22,13 @@ import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.logging.SupportLogManager;
 import org.broadleafcommerce.common.logging.SupportLogger;
+import org.broadleafcommerce.common.persistence.Status;
 import org.broadleafcommerce.common.persistence.EntityConfiguration;
 import org.broadleafcommerce.common.sandbox.SandBoxHelper;
 import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.util.DateUtil;
 import org.broadleafcommerce.common.util.dao.TypedQueryBuilder;
+import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
 import org.broadleafcommerce.core.catalog.domain.SkuImpl;
@@ -70,6 +72,9 @@ public class SkuDaoImpl implements SkuDao {
     @Resource(name = "blSkuDaoExtensionManager")
     protected SkuDaoExtensionManager extensionManager;
 
+    @Resource(name = "blCatalogUrlIndexDao")
+    protected CatalogUrlIndexDao urlIndexDao;
+
     protected Long currentDateResolution = 10000L;
     protected Date cachedDate = SystemTime.asDate();
 
@@ -226,6 +231,29 @@ public class SkuDaoImpl implements SkuDao {
         return readAllActiveSkusInternal(pageSize, currentDate, lastId);
     }
 
+    @Override
+    public List<Long> readAllActiveSkuIds(Integer pageSize, Long lastId) {
+        Date currentDate = DateUtil.getCurrentDateAfterFactoringInDateResolution(cachedDate, currentDateResolution);
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+        Root<SkuImpl> sku = criteria.from(SkuImpl.class);
+        criteria.select(sku.get("id").as(Long.class));
+
+        // Same restrictions and ordering as getCriteriaForActiveSkus
+        List<Predicate> restrictions = new ArrayList<Predicate>();
+        restrictions.add(builder.lessThan(sku.get("activeStartDate").as(Date.class), currentDate));
+        restrictions.add(builder.or(
+                builder.isNull(sku.get("activeEndDate")),
+                builder.greaterThan(sku.get("activeEndDate").as(Date.class), currentDate)));
+        if (lastId != null) {
+            restrictions.add(builder.gt(sku.get("id").as(Long.class), lastId));
+        }
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.orderBy(builder.asc(sku.get("id")));
+
+        return em.createQuery(criteria).setMaxResults(pageSize).getResultList();
+    }
+
     @Override
     public Long getCurrentDateResolution() {
         return currentDateResolution;
@@ -247,21 +275,75 @@ public class SkuDaoImpl implements SkuDao {
         }
         String skuUrlKey = uri.substring(uri.lastIndexOf('/'));
         String productUrl = uri.substring(0, uri.lastIndexOf('/'));
+        Date currentDate = DateUtil.getCurrentDateAfterFactoringInDateResolution(cachedDate, currentDateResolution);
+        boolean useUrlIndex = urlIndexDao != null && urlIndexDao.isEnabled();
+        if (useUrlIndex) {
+            List<Sku> indexed = findSkusByUrlIndex(uri, productUrl, skuUrlKey, currentDate);
+            if (indexed != null) {
+                return indexed;
+            }
+        }
         Query query;
 
         query = em.createNamedQuery("BC_READ_SKU_BY_OUTGOING_URL");
         query.setParameter("url", uri);
         query.setParameter("productUrl", productUrl);
         query.setParameter("skuUrlKey", skuUrlKey);
-        query.setParameter("currentDate", DateUtil.getCurrentDateAfterFactoringInDateResolution(cachedDate, currentDateResolution));
+        query.setParameter("currentDate", currentDate);
         query.setHint(QueryHints.HINT_CACHEABLE, true);
         query.setHint(QueryHints.HINT_CACHE_REGION, "query.Catalog");
 
         @SuppressWarnings("unchecked")
         List<Sku> results = query.getResultList();
+        if (useUrlIndex) {
+            for (Sku sku : results) {
+                urlIndexDao.add(CatalogUrlIndexDao.Type.SKU_URL, uri, sku.getId());
+            }
+        }
         return results;
     }
 
+    /**
+     * Resolves the skus for a URI from the {@link CatalogUrlIndexDao}, loading each candidate by id and applying the
+     * same restrictions as BC_READ_SKU_BY_OUTGOING_URL. Candidates that no longer match are removed from the index.
+     * 
+     * @return the matching skus, or null if the database should be queried instead
+     */
+    protected List<Sku> findSkusByUrlIndex(String uri, String productUrl, String skuUrlKey, Date currentDate) {
+        long[] ids = urlIndexDao.readIds(CatalogUrlIndexDao.Type.SKU_URL, uri);
+        if (ids == null) {
+            return null;
+        }
+        List<Sku> results = new ArrayList<>();
+        for (long id : ids) {
+            Sku sku = readSkuById(id);
+            if (sku != null && matchesUrl(sku, uri, productUrl, skuUrlKey) && isActiveForUrl(sku, currentDate)) {
+                results.add(sku);
+            } else {
+                urlIndexDao.remove(CatalogUrlIndexDao.Type.SKU_URL, uri, id);
+            }
+        }
+        return results.isEmpty() ? null : results;
+    }
+
+    protected boolean matchesUrl(Sku sku, String uri, String productUrl, String skuUrlKey) {
+        if (sku.getDefaultProduct() != null && uri.equals(sku.getDefaultProduct().getUrl())) {
+            return true;
+        }
+        return sku.getProduct() != null && productUrl.equals(sku.getProduct().getUrl()) && skuUrlKey.equals(sku.getUrlKey());
+    }
+
+    protected boolean isActiveForUrl(Sku sku, Date currentDate) {
+        Product product = sku.getProduct();
+        if (product instanceof Status && Character.valueOf('Y').equals(((Status) product).getArchived())) {
+            return false;
+        }
+        Date activeStartDate = sku.getActiveStartDate();
+        Date activeEndDate = sku.getActiveEndDate();
+        return activeStartDate != null && !activeStartDate.after(currentDate)
+                && (activeEndDate == null || !activeEndDate.before(currentDate));
+    }
+
     protected List<Sku> readAllActiveSkusInternal(int page, int pageSize, Date currentDate) {
         CriteriaQuery<Sku> criteria = getCriteriaForActiveSkus(currentDate);
         int firstResult = page * pageSize;
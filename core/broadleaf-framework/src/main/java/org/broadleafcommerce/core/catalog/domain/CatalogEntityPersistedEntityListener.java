@@ -0,0 +1,51 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+
+/**
+ * Publishes a {@link CatalogEntityPersistedEvent} once the transaction that saved a product, category or sku commits,
+ * so that the catalog URL index can pick up new and changed URLs. Nothing is published unless the index is enabled
+ * with the catalog.url.index.enabled property.
+ *
+ * @see org.broadleafcommerce.core.catalog.dao.CatalogUrlIndexDao
+ */
+public class CatalogEntityPersistedEntityListener {
+
+    @PostPersist
+    @PostUpdate
+    public void catalogEntityUpdated(final Object entity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && BLCSystemProperty.resolveBooleanSystemProperty("catalog.url.index.enabled", false)) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    ApplicationContextHolder.getApplicationContext().publishEvent(new CatalogEntityPersistedEvent(entity));
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.event.BroadleafApplicationEvent;
+
+/**
+ * An event for whenever a {@link Product}, {@link Category} or {@link Sku} has been persisted
+ *
+ * @see {@link CatalogEntityPersistedEntityListener}
+ */
+public class CatalogEntityPersistedEvent extends BroadleafApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param entity the newly persisted product, category or sku
+     */
+    public CatalogEntityPersistedEvent(Object entity) {
+        super(entity);
+    }
+
+    /**
+     * @return the newly persisted product, category or sku
+     */
+    public Object getEntity() {
+        return source;
+    }
+
+}
@@ -69,6 +69,7 @@ import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -111,6 +112,7 @@ import java.util.Set;
  * @see {@link Product}, {@link SkuImpl}, {@link CategoryImpl}
  */
 @Entity
+@EntityListeners(value = { CatalogEntityPersistedEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @javax.persistence.Table(name = "BLC_PRODUCT")
 //multi-column indexes don't appear to get exported correctly when declared at the field level, so declaring here as a workaround
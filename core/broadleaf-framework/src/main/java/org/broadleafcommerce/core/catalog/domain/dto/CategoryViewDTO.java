@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain.dto;
+
+import org.broadleafcommerce.common.media.domain.Media;
+import org.broadleafcommerce.common.persistence.Status;
+import org.broadleafcommerce.common.util.DateUtil;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryAttribute;
+import org.broadleafcommerce.core.catalog.domain.CategoryMediaXref;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, fully assembled snapshot of a {@link Category} that is safe to share between requests and threads. Holds
+ * no references to entities, so reading it never touches the persistence layer.
+ *
+ * @see org.broadleafcommerce.core.catalog.service.CatalogViewService
+ */
+public class CategoryViewDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final String longDescription;
+    private final String url;
+    private final String displayTemplate;
+    private final Date activeStartDate;
+    private final Date activeEndDate;
+    private final boolean archived;
+    private final Long defaultParentCategoryId;
+    private final List<Long> childCategoryIds;
+    private final Map<String, String> mediaUrls;
+    private final Map<String, String> attributes;
+
+    public CategoryViewDTO(Category category) {
+        this.id = category.getId();
+        this.name = category.getName();
+        this.description = category.getDescription();
+        this.longDescription = category.getLongDescription();
+        this.url = category.getUrl();
+        this.displayTemplate = category.getDisplayTemplate();
+        this.activeStartDate = copy(category.getActiveStartDate());
+        this.activeEndDate = copy(category.getActiveEndDate());
+        this.archived = category instanceof Status
+                && Character.valueOf('Y').equals(((Status) category).getArchived());
+        this.defaultParentCategoryId = category.getParentCategory() == null ? null : category.getParentCategory().getId();
+
+        List<Long> childCategoryIds = category.getChildCategoryIds();
+        this.childCategoryIds = childCategoryIds == null ? Collections.<Long>emptyList()
+                : Collections.unmodifiableList(new ArrayList<Long>(childCategoryIds));
+
+        Map<String, String> mediaUrls = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, CategoryMediaXref> entry : category.getCategoryMediaXref().entrySet()) {
+            Media media = entry.getValue() == null ? null : entry.getValue().getMedia();
+            mediaUrls.put(entry.getKey(), media == null ? null : media.getUrl());
+        }
+        this.mediaUrls = Collections.unmodifiableMap(mediaUrls);
+
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, CategoryAttribute> entry : category.getCategoryAttributesMap().entrySet()) {
+            attributes.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().getValue());
+        }
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getLongDescription() {
+        return longDescription;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getDisplayTemplate() {
+        return displayTemplate;
+    }
+
+    /**
+     * Evaluated on every call against the current time, like {@link Category#isActive()}, since the view may be cached
+     * across the active start or end date
+     */
+    public boolean isActive() {
+        return DateUtil.isActive(activeStartDate, activeEndDate, true) && !archived;
+    }
+
+    public Date getActiveStartDate() {
+        return copy(activeStartDate);
+    }
+
+    public Date getActiveEndDate() {
+        return copy(activeEndDate);
+    }
+
+    public Long getDefaultParentCategoryId() {
+        return defaultParentCategoryId;
+    }
+
+    public List<Long> getChildCategoryIds() {
+        return childCategoryIds;
+    }
+
+    public Map<String, String> getMediaUrls() {
+        return mediaUrls;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    private static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain.dto;
+
+import org.broadleafcommerce.common.media.domain.Media;
+import org.broadleafcommerce.common.persistence.Status;
+import org.broadleafcommerce.common.util.DateUtil;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductAttribute;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, fully assembled snapshot of a {@link Product} that is safe to share between requests and threads. Holds
+ * no references to entities, so reading it never touches the persistence layer.
+ *
+ * Prices are intentionally not captured since they may depend on the customer or pricing context.
+ *
+ * @see org.broadleafcommerce.core.catalog.service.CatalogViewService
+ */
+public class ProductViewDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final String longDescription;
+    private final String url;
+    private final String model;
+    private final String manufacturer;
+    private final String displayTemplate;
+    private final Date activeStartDate;
+    private final Date activeEndDate;
+    private final boolean archived;
+    private final Long defaultCategoryId;
+    private final Long defaultSkuId;
+    private final List<Long> skuIds;
+    private final Map<String, String> mediaUrls;
+    private final Map<String, String> attributes;
+
+    public ProductViewDTO(Product product) {
+        this.id = product.getId();
+        this.name = product.getName();
+        this.description = product.getDescription();
+        this.longDescription = product.getLongDescription();
+        this.url = product.getUrl();
+        this.model = product.getModel();
+        this.manufacturer = product.getManufacturer();
+        this.displayTemplate = product.getDisplayTemplate();
+        this.activeStartDate = copy(product.getActiveStartDate());
+        this.activeEndDate = copy(product.getActiveEndDate());
+        this.archived = product instanceof Status
+                && Character.valueOf('Y').equals(((Status) product).getArchived());
+        this.defaultCategoryId = product.getCategory() == null ? null : product.getCategory().getId();
+        this.defaultSkuId = product.getDefaultSku() == null ? null : product.getDefaultSku().getId();
+
+        List<Long> skuIds = new ArrayList<Long>();
+        for (Sku sku : product.getAllSkus()) {
+            skuIds.add(sku.getId());
+        }
+        this.skuIds = Collections.unmodifiableList(skuIds);
+
+        Map<String, String> mediaUrls = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, Media> entry : product.getMedia().entrySet()) {
+            mediaUrls.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().getUrl());
+        }
+        this.mediaUrls = Collections.unmodifiableMap(mediaUrls);
+
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, ProductAttribute> entry : product.getProductAttributes().entrySet()) {
+            attributes.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().getValue());
+        }
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getLongDescription() {
+        return longDescription;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getManufacturer() {
+        return manufacturer;
+    }
+
+    public String getDisplayTemplate() {
+        return displayTemplate;
+    }
+
+    /**
+     * Evaluated on every call against the current time, like {@link Product#isActive()}, since the view may be cached
+     * across the active start or end date
+     */
+    public boolean isActive() {
+        return DateUtil.isActive(activeStartDate, activeEndDate, true) && !archived;
+    }
+
+    public Date getActiveStartDate() {
+        return copy(activeStartDate);
+    }
+
+    public Date getActiveEndDate() {
+        return copy(activeEndDate);
+    }
+
+    public Long getDefaultCategoryId() {
+        return defaultCategoryId;
+    }
+
+    public Long getDefaultSkuId() {
+        return defaultSkuId;
+    }
+
+    public List<Long> getSkuIds() {
+        return skuIds;
+    }
+
+    public Map<String, String> getMediaUrls() {
+        return mediaUrls;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    private static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+}
@@ -25,6 +25,8 @@ import org.broadleafcommerce.core.catalog.domain.ProductOptionValue;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
 import org.broadleafcommerce.core.catalog.domain.dto.AssignedProductOptionDTO;
+import org.broadleafcommerce.core.catalog.domain.dto.CategoryViewDTO;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductViewDTO;
 import org.broadleafcommerce.core.catalog.service.type.ProductType;
 import org.broadleafcommerce.core.search.domain.SearchCriteria;
 
@@ -37,6 +39,14 @@ public interface CatalogService {
     Product saveProduct(Product product);
 
     Product findProductById(Long productId);
+
+    /**
+     * Returns an immutable view of the product, served from the {@link CatalogViewService} near-cache when possible
+     *
+     * @param productId
+     * @return the product view, or null if there is no such product
+     */
+    ProductViewDTO findProductViewById(Long productId);
     
     Product findProductByExternalId(String externalId);
 
@@ -136,6 +146,14 @@ public interface CatalogService {
 
     Category findCategoryById(Long categoryId);
 
+    /**
+     * Returns an immutable view of the category, served from the {@link CatalogViewService} near-cache when possible
+     *
+     * @param categoryId
+     * @return the category view, or null if there is no such category
+     */
+    CategoryViewDTO findCategoryViewById(Long categoryId);
+
     Category findCategoryByExternalId(String externalId);
 
     /**
@@ -34,6 +34,8 @@ import org.broadleafcommerce.core.catalog.domain.ProductOptionValue;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
 import org.broadleafcommerce.core.catalog.domain.dto.AssignedProductOptionDTO;
+import org.broadleafcommerce.core.catalog.domain.dto.CategoryViewDTO;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductViewDTO;
 import org.broadleafcommerce.core.catalog.service.type.ProductType;
 import org.broadleafcommerce.core.search.domain.SearchCriteria;
 import org.springframework.stereotype.Service;
@@ -64,10 +66,18 @@ public class CatalogServiceImpl implements CatalogService {
     @Resource(name = "blCatalogServiceExtensionManager")
     protected CatalogServiceExtensionManager extensionManager;
 
+    @Resource(name = "blCatalogViewService")
+    protected CatalogViewService catalogViewService;
+
     @Override
     public Product findProductById(Long productId) {
         return productDao.readProductById(productId);
     }
+
+    @Override
+    public ProductViewDTO findProductViewById(Long productId) {
+        return catalogViewService.findProductViewById(productId);
+    }
     
     @Override
     public Product findProductByExternalId(String externalId) {
@@ -138,7 +148,9 @@ public class CatalogServiceImpl implements CatalogService {
     @Override
     @Transactional("blTransactionManager")
     public Product saveProduct(Product product) {
-        return productDao.save(product);
+        Product savedProduct = productDao.save(product);
+        catalogViewService.evictProductView(savedProduct.getId());
+        return savedProduct;
     }
 
     @Override
@@ -146,6 +158,11 @@ public class CatalogServiceImpl implements CatalogService {
         return categoryDao.readCategoryById(categoryId);
     }
 
+    @Override
+    public CategoryViewDTO findCategoryViewById(Long categoryId) {
+        return catalogViewService.findCategoryViewById(categoryId);
+    }
+
     @Override
     public Category findCategoryByExternalId(String externalId) {
         return categoryDao.readCategoryByExternalId(externalId);
@@ -170,13 +187,16 @@ public class CatalogServiceImpl implements CatalogService {
     @Override
     @Transactional("blTransactionManager")
     public Category saveCategory(Category category) {
-        return categoryDao.save(category);
+        Category savedCategory = categoryDao.save(category);
+        catalogViewService.evictCategoryView(savedCategory.getId());
+        return savedCategory;
     }
     
     @Override
     @Transactional("blTransactionManager")
     public void removeCategory(Category category){
         categoryDao.delete(category);
+        catalogViewService.evictCategoryView(category.getId());
     }
     
     @Override
@@ -189,6 +209,7 @@ public class CatalogServiceImpl implements CatalogService {
     @Transactional("blTransactionManager")
     public void removeProduct(Product product) {
         productDao.delete(product);
+        catalogViewService.evictProductView(product.getId());
     }
 
     @Override
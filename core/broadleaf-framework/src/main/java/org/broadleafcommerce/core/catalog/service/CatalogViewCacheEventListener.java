@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.common.i18n.domain.TranslationImpl;
+import org.broadleafcommerce.core.catalog.domain.CategoryImpl;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.hibernate.cache.spi.CacheKey;
+
+import java.io.Serializable;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListener;
+
+/**
+ * Listens to the second level cache regions that back products and categories and evicts the matching
+ * {@link CatalogViewService} entries whenever Hibernate puts, updates or removes an element, or the cache evicts or
+ * expires one.
+ *
+ * Changes to a product or category (or one of its collections, which are keyed by the owner id) evict that id only.
+ * Changes to an entity a view was built from, such as the default sku, media or attributes, evict the views registered
+ * for that entity by {@link CatalogViewServiceImpl}, so that routine inventory updates do not flush the whole cache.
+ * Changes to any other entity are ignored.
+ * <p/>
+ * Puts are handled as well as updates, since an entity that is no longer in its region (or never was) is put rather
+ * than updated when it is next cached after a change. Evictions and expirations are handled too, since a change to an
+ * entity that is not in its region, made on this node or another, is not seen by this listener. A view therefore lives
+ * no longer than the second level cache entries it was built from. None of these three mean the entity changed, so
+ * they do not keep views that are being built from being cached.
+ * <p/>
+ * Updates and removals of a translation clear every view, since the translated entity cannot be determined from the
+ * cache key. Other translation events are ignored, since translations are put on every read.
+ */
+public class CatalogViewCacheEventListener implements CacheEventListener {
+
+    protected static final String PRODUCT_NAME = ProductImpl.class.getName();
+    protected static final String CATEGORY_NAME = CategoryImpl.class.getName();
+    protected static final String TRANSLATION_NAME = TranslationImpl.class.getName();
+
+    protected final CatalogViewServiceImpl catalogViewService;
+
+    public CatalogViewCacheEventListener(CatalogViewServiceImpl catalogViewService) {
+        this.catalogViewService = catalogViewService;
+    }
+
+    /**
+     * @param changed whether the event means the entity changed, rather than entered or left the cache
+     */
+    protected void invalidate(Element element, boolean changed) {
+        if (element == null || !(element.getObjectKey() instanceof CacheKey)) {
+            return;
+        }
+        CacheKey cacheKey = (CacheKey) element.getObjectKey();
+        String name = cacheKey.getEntityOrRoleName();
+        Serializable id = cacheKey.getKey();
+        if (name == null) {
+            return;
+        }
+        if (name.startsWith(TRANSLATION_NAME)) {
+            if (changed) {
+                catalogViewService.clearViews();
+            }
+            return;
+        }
+        if (!(id instanceof Long)) {
+            return;
+        }
+        if (name.startsWith(PRODUCT_NAME)) {
+            catalogViewService.evictProductView((Long) id, changed);
+        } else if (name.startsWith(CATEGORY_NAME)) {
+            catalogViewService.evictCategoryView((Long) id, changed);
+        } else {
+            catalogViewService.evictDependentViews(name, (Long) id, changed);
+        }
+    }
+
+    @Override
+    public void notifyElementRemoved(Ehcache cache, Element element) throws CacheException {
+        invalidate(element, true);
+    }
+
+    @Override
+    public void notifyElementPut(Ehcache cache, Element element) throws CacheException {
+        invalidate(element, false);
+    }
+
+    @Override
+    public void notifyElementUpdated(Ehcache cache, Element element) throws CacheException {
+        invalidate(element, true);
+    }
+
+    @Override
+    public void notifyElementExpired(Ehcache cache, Element element) {
+        invalidate(element, false);
+    }
+
+    @Override
+    public void notifyElementEvicted(Ehcache cache, Element element) {
+        invalidate(element, false);
+    }
+
+    @Override
+    public void notifyRemoveAll(Ehcache cache) {
+        catalogViewService.clearViews();
+    }
+
+    @Override
+    public void dispose() {
+        //do nothing
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        return super.clone();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.core.catalog.domain.dto.CategoryViewDTO;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductViewDTO;
+
+/**
+ * Read-through near-cache of immutable product and category views that sits in front of the Hibernate second level
+ * cache. A warm lookup returns a {@link ProductViewDTO} or {@link CategoryViewDTO} without rehydrating entities or
+ * initializing lazy collections.
+ *
+ * Views are cached per site, catalog and locale, and only for the production sandbox. Entries are invalidated when the
+ * underlying entities change in the second level cache, as well as through the eviction methods below.
+ */
+public interface CatalogViewService {
+
+    ProductViewDTO findProductViewById(Long productId);
+
+    CategoryViewDTO findCategoryViewById(Long categoryId);
+
+    void evictProductView(Long productId);
+
+    void evictCategoryView(Long categoryId);
+
+    void clearViews();
+
+}
@@ -0,0 +1,404 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.cache.CacheStatType;
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.media.domain.MediaImpl;
+import org.broadleafcommerce.common.site.domain.Catalog;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.broadleafcommerce.core.catalog.dao.ProductDao;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryAttribute;
+import org.broadleafcommerce.core.catalog.domain.CategoryAttributeImpl;
+import org.broadleafcommerce.core.catalog.domain.CategoryMediaXref;
+import org.broadleafcommerce.core.catalog.domain.CategoryMediaXrefImpl;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXref;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXrefImpl;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductAttribute;
+import org.broadleafcommerce.core.catalog.domain.ProductAttributeImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.domain.SkuMediaXref;
+import org.broadleafcommerce.core.catalog.domain.SkuMediaXrefImpl;
+import org.broadleafcommerce.core.catalog.domain.dto.CategoryViewDTO;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductViewDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+@Service("blCatalogViewService")
+public class CatalogViewServiceImpl implements CatalogViewService {
+
+    private static final Log LOG = LogFactory.getLog(CatalogViewServiceImpl.class);
+
+    public static final String CACHE_NAME = "blCatalogViewElements";
+
+    protected static final String PRODUCT_PREFIX = "product_";
+    protected static final String CATEGORY_PREFIX = "category_";
+
+    /**
+     * Second level cache regions whose changes invalidate cached views
+     */
+    protected static final String[] INVALIDATING_REGIONS = { "blProducts", "blCategories", "blStandardElements",
+            "blTranslationElements" };
+
+    /**
+     * Entities, other than the product or category itself, that a view is built from. A change to one of these only
+     * evicts the views registered for its id in {@link #registerDependency(String, Long, String)}.
+     */
+    protected static final String[] DEPENDENT_ENTITY_NAMES = { SkuImpl.class.getName(), SkuMediaXrefImpl.class.getName(),
+            MediaImpl.class.getName(), ProductAttributeImpl.class.getName(), CategoryProductXrefImpl.class.getName(),
+            CategoryMediaXrefImpl.class.getName(), CategoryAttributeImpl.class.getName() };
+
+    @Resource(name = "blProductDao")
+    protected ProductDao productDao;
+
+    @Resource(name = "blCategoryDao")
+    protected CategoryDao categoryDao;
+
+    @Resource(name = "blStatisticsService")
+    protected StatisticsService statisticsService;
+
+    @Value("${catalog.view.cache.enabled:false}")
+    protected boolean enabled = false;
+
+    /**
+     * Bumped on every eviction so that a view assembled from data read before the eviction is not cached afterwards
+     */
+    protected final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Keys of the cached views, by entity name and id of the dependent entities they were built from
+     */
+    protected final ConcurrentMap<String, Set<String>> viewKeysByDependency = new ConcurrentHashMap<String, Set<String>>();
+
+    protected volatile Cache cache;
+
+    @Override
+    public ProductViewDTO findProductViewById(Long productId) {
+        if (productId == null) {
+            return null;
+        }
+        if (!isCacheable()) {
+            Product product = productDao.readProductById(productId);
+            return product == null ? null : createProductView(product);
+        }
+        String key = buildKey(PRODUCT_PREFIX, productId);
+        String variantKey = buildVariantKey();
+        Object cached = getCachedView(key, variantKey);
+        if (cached != null) {
+            statisticsService.addCacheStat(CacheStatType.CATALOG_VIEW_CACHE_HIT_RATE.toString(), true);
+            return (ProductViewDTO) cached;
+        }
+        statisticsService.addCacheStat(CacheStatType.CATALOG_VIEW_CACHE_HIT_RATE.toString(), false);
+        long readGeneration = generation.get();
+        Product product = productDao.readProductById(productId);
+        if (product == null) {
+            return null;
+        }
+        ProductViewDTO view = createProductView(product);
+        registerProductDependencies(product, key);
+        putIfCurrent(key, variantKey, view, readGeneration);
+        return view;
+    }
+
+    @Override
+    public CategoryViewDTO findCategoryViewById(Long categoryId) {
+        if (categoryId == null) {
+            return null;
+        }
+        if (!isCacheable()) {
+            Category category = categoryDao.readCategoryById(categoryId);
+            return category == null ? null : createCategoryView(category);
+        }
+        String key = buildKey(CATEGORY_PREFIX, categoryId);
+        String variantKey = buildVariantKey();
+        Object cached = getCachedView(key, variantKey);
+        if (cached != null) {
+            statisticsService.addCacheStat(CacheStatType.CATALOG_VIEW_CACHE_HIT_RATE.toString(), true);
+            return (CategoryViewDTO) cached;
+        }
+        statisticsService.addCacheStat(CacheStatType.CATALOG_VIEW_CACHE_HIT_RATE.toString(), false);
+        long readGeneration = generation.get();
+        Category category = categoryDao.readCategoryById(categoryId);
+        if (category == null) {
+            return null;
+        }
+        CategoryViewDTO view = createCategoryView(category);
+        registerCategoryDependencies(category, key);
+        putIfCurrent(key, variantKey, view, readGeneration);
+        return view;
+    }
+
+    @Override
+    public void evictProductView(Long productId) {
+        evictProductView(productId, true);
+    }
+
+    /**
+     * @param changed whether the product changed, as opposed to just entering or leaving the second level cache. Only
+     * a change keeps views that are being built from data read before it from being cached.
+     */
+    public void evictProductView(Long productId, boolean changed) {
+        if (productId != null) {
+            evictByKey(buildKey(PRODUCT_PREFIX, productId), changed);
+        }
+    }
+
+    @Override
+    public void evictCategoryView(Long categoryId) {
+        evictCategoryView(categoryId, true);
+    }
+
+    /**
+     * @param changed see {@link #evictProductView(Long, boolean)}
+     */
+    public void evictCategoryView(Long categoryId, boolean changed) {
+        if (categoryId != null) {
+            evictByKey(buildKey(CATEGORY_PREFIX, categoryId), changed);
+        }
+    }
+
+    /**
+     * Evicts the views built from the given entity, if it is one of {@link #DEPENDENT_ENTITY_NAMES}. Collection roles
+     * of those entities, which are keyed by the owner id, are matched as well.
+     *
+     * @param entityOrRoleName the entity or collection role name of a second level cache key
+     * @param id the id of the entity, or of the owner of the collection
+     */
+    public void evictDependentViews(String entityOrRoleName, Long id) {
+        evictDependentViews(entityOrRoleName, id, true);
+    }
+
+    /**
+     * @param changed see {@link #evictProductView(Long, boolean)}
+     */
+    public void evictDependentViews(String entityOrRoleName, Long id, boolean changed) {
+        if (entityOrRoleName == null || id == null) {
+            return;
+        }
+        for (String entityName : DEPENDENT_ENTITY_NAMES) {
+            if (entityOrRoleName.startsWith(entityName)) {
+                Set<String> keys = viewKeysByDependency.remove(buildDependencyKey(entityName, id));
+                if (keys != null) {
+                    for (String key : keys) {
+                        evictByKey(key, changed);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void clearViews() {
+        generation.incrementAndGet();
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Evicting all keys from the [" + CACHE_NAME + "] cache.");
+        }
+        getCache().removeAll();
+        viewKeysByDependency.clear();
+    }
+
+    protected ProductViewDTO createProductView(Product product) {
+        return new ProductViewDTO(product);
+    }
+
+    protected CategoryViewDTO createCategoryView(Category category) {
+        return new CategoryViewDTO(category);
+    }
+
+    /**
+     * Registers the entities {@link ProductViewDTO} reads besides the product. Collections that are mapped on the
+     * product are keyed by the product id and need no registration.
+     */
+    protected void registerProductDependencies(Product product, String key) {
+        Sku defaultSku = product.getDefaultSku();
+        if (defaultSku != null) {
+            registerDependency(SkuImpl.class.getName(), defaultSku.getId(), key);
+            for (SkuMediaXref xref : defaultSku.getSkuMediaXref().values()) {
+                if (xref != null) {
+                    registerDependency(SkuMediaXrefImpl.class.getName(), xref.getId(), key);
+                    if (xref.getMedia() != null) {
+                        registerDependency(MediaImpl.class.getName(), xref.getMedia().getId(), key);
+                    }
+                }
+            }
+        }
+        for (ProductAttribute attribute : product.getProductAttributes().values()) {
+            if (attribute != null) {
+                registerDependency(ProductAttributeImpl.class.getName(), attribute.getId(), key);
+            }
+        }
+        for (CategoryProductXref xref : product.getAllParentCategoryXrefs()) {
+            registerDependency(CategoryProductXrefImpl.class.getName(), xref.getId(), key);
+        }
+    }
+
+    /**
+     * Registers the entities {@link CategoryViewDTO} reads besides the category
+     */
+    protected void registerCategoryDependencies(Category category, String key) {
+        for (CategoryMediaXref xref : category.getCategoryMediaXref().values()) {
+            if (xref != null) {
+                registerDependency(CategoryMediaXrefImpl.class.getName(), xref.getId(), key);
+                if (xref.getMedia() != null) {
+                    registerDependency(MediaImpl.class.getName(), xref.getMedia().getId(), key);
+                }
+            }
+        }
+        for (CategoryAttribute attribute : category.getCategoryAttributesMap().values()) {
+            if (attribute != null) {
+                registerDependency(CategoryAttributeImpl.class.getName(), attribute.getId(), key);
+            }
+        }
+    }
+
+    protected void registerDependency(String entityName, Long id, String key) {
+        if (id == null) {
+            return;
+        }
+        String dependencyKey = buildDependencyKey(entityName, id);
+        Set<String> keys = viewKeysByDependency.get(dependencyKey);
+        if (keys == null) {
+            Set<String> newKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            keys = viewKeysByDependency.putIfAbsent(dependencyKey, newKeys);
+            if (keys == null) {
+                keys = newKeys;
+            }
+        }
+        keys.add(key);
+    }
+
+    /**
+     * Views are only shared for the production sandbox, the same rule that governs use of the second level cache
+     */
+    protected boolean isCacheable() {
+        if (!enabled) {
+            return false;
+        }
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        return context != null && context.isProductionSandBox();
+    }
+
+    /**
+     * Every variant of a view is held under a single key, so that eviction is a direct remove
+     */
+    protected String buildKey(String prefix, Long id) {
+        return prefix + id;
+    }
+
+    protected String buildDependencyKey(String entityName, Long id) {
+        return entityName + "_" + id;
+    }
+
+    /**
+     * Builds a key of the form {@code site + '_' + catalog + '_' + locale} for the variant of a view that the current
+     * request reads
+     */
+    protected String buildVariantKey() {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        Site site = context.getNonPersistentSite();
+        Catalog catalog = context.getCurrentCatalog();
+        Locale locale = context.getLocale();
+        StringBuilder key = new StringBuilder();
+        key.append(site == null ? "" : site.getId()).append('_');
+        key.append(catalog == null ? "" : catalog.getId()).append('_');
+        key.append(locale == null ? "" : locale.getLocaleCode());
+        return key.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Object getCachedView(String key, String variantKey) {
+        Element element = getCache().get(key);
+        if (element == null) {
+            return null;
+        }
+        return ((ConcurrentMap<String, Object>) element.getObjectValue()).get(variantKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void putIfCurrent(String key, String variantKey, Object view, long readGeneration) {
+        if (generation.get() != readGeneration) {
+            return;
+        }
+        ConcurrentMap<String, Object> variants;
+        Element element = getCache().get(key);
+        if (element == null) {
+            variants = new ConcurrentHashMap<String, Object>();
+            Element existing = getCache().putIfAbsent(new Element(key, variants));
+            if (existing != null) {
+                variants = (ConcurrentMap<String, Object>) existing.getObjectValue();
+            }
+        } else {
+            variants = (ConcurrentMap<String, Object>) element.getObjectValue();
+        }
+        variants.put(variantKey, view);
+        // An eviction may have raced with the put
+        if (generation.get() != readGeneration) {
+            getCache().remove(key);
+        }
+    }
+
+    protected void evictByKey(String key, boolean changed) {
+        if (changed) {
+            generation.incrementAndGet();
+        }
+        getCache().remove(key);
+    }
+
+    protected Cache getCache() {
+        Cache result = cache;
+        if (result == null) {
+            synchronized (this) {
+                result = cache;
+                if (result == null) {
+                    CacheManager cacheManager = CacheManager.getInstance();
+                    result = cacheManager.getCache(CACHE_NAME);
+                    CatalogViewCacheEventListener listener = new CatalogViewCacheEventListener(this);
+                    for (String region : INVALIDATING_REGIONS) {
+                        if (cacheManager.cacheExists(region)) {
+                            cacheManager.getCache(region).getCacheEventNotificationService().registerListener(listener);
+                        }
+                    }
+                    cache = result;
+                }
+            }
+        }
+        return result;
+    }
+
+}
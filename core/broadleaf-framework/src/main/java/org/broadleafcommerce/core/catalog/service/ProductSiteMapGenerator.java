@@ -59,12 +59,13 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
     @Override
     public void addSiteMapEntries(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
 
-        int pageNum = 0;
+        Long lastId = null;
         List<Product> products;
 
         do {
-            products = productDao.readAllActiveProducts(pageNum++, pageSize);
+            products = productDao.readAllActiveProducts(pageSize, lastId);
             for (Product product : products) {
+                lastId = product.getId();
                 if (StringUtils.isEmpty(product.getUrl())) {
                     continue;
                 }
@@ -87,6 +88,7 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
 
                 siteMapBuilder.addUrl(siteMapUrl);
             }
+            siteMapBuilder.pageCompleted();
         } while (products.size() == pageSize);
     }
 
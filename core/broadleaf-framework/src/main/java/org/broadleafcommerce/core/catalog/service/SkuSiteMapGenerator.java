@@ -62,12 +62,13 @@ public class SkuSiteMapGenerator implements SiteMapGenerator {
     @Override
     public void addSiteMapEntries(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
 
-        int pageNum = 0;
+        Long lastId = null;
         List<Sku> skus;
 
         do {
-            skus = skuDao.readAllActiveSkus(pageNum++, pageSize);
+            skus = skuDao.readAllActiveSkus(pageSize, lastId);
             for (Sku sku : skus) {
+                lastId = sku.getId();
                 Product defaultProduct = sku.getDefaultProduct();
                 if (defaultProduct != null && CollectionUtils.isNotEmpty(defaultProduct.getAdditionalSkus())) {
                     continue;
@@ -97,6 +98,7 @@ public class SkuSiteMapGenerator implements SiteMapGenerator {
 
                 siteMapBuilder.addUrl(siteMapUrl);
             }
+            siteMapBuilder.pageCompleted();
         } while (skus.size() == pageSize);
     }
 
@@ -34,7 +34,9 @@ import java.util.Map;
 import javax.annotation.Resource;
 
 /**
- * Decrements inventory
+ * Decrements inventory. Unless an extension handler takes over, the quantities of CHECK_QUANTITY skus are decremented
+ * by {@link org.broadleafcommerce.core.inventory.dao.InventoryDao} with conditional updates, so concurrent checkouts
+ * cannot oversell a sku.
  * 
  * @author Phillip Verheyden (phillipuniverse)
  */
@@ -0,0 +1,60 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.dao;
+
+import org.broadleafcommerce.core.catalog.domain.Sku;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes the quantity available of {@link org.broadleafcommerce.core.inventory.service.type.InventoryType#CHECK_QUANTITY}
+ * skus in the database directly, with one conditional update per sku, rather than reading the quantity, changing it on
+ * the entity and merging the entity. Concurrent checkouts therefore cannot both sell the last unit.
+ * 
+ * Skus are updated in ascending id order so that transactions changing several of the same skus lock their rows in the
+ * same order. The second level cache entries of the updated skus are evicted, and the quantity of the sku instances
+ * passed in is set to the new value.
+ */
+public interface InventoryDao {
+
+    /**
+     * Subtracts the quantities from the quantity available of the skus. A sku that does not have enough quantity
+     * available is left unchanged and returned; the other skus are still decremented, so callers should roll back the
+     * transaction when the result is not empty.
+     * 
+     * @param skuQuantities the quantity to subtract for each sku
+     * @return the skus that did not have enough quantity available, in ascending id order
+     */
+    List<Sku> decrementQuantitiesAvailable(Map<Sku, Integer> skuQuantities);
+
+    /**
+     * Adds the quantities to the quantity available of the skus. A sku whose quantity available is null is left
+     * unchanged and returned.
+     * 
+     * @param skuQuantities the quantity to add for each sku
+     * @return the skus that were not updated, in ascending id order
+     */
+    List<Sku> incrementQuantitiesAvailable(Map<Sku, Integer> skuQuantities);
+
+    /**
+     * @return the quantity available of the sku as currently stored in the database, bypassing the caches
+     */
+    Integer readQuantityAvailable(Long skuId);
+
+}
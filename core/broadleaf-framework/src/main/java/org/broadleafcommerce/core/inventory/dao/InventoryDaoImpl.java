@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.dao;
+
+import org.broadleafcommerce.common.util.HibernateUtils;
+import org.broadleafcommerce.common.util.UpdateExecutor;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+@Repository("blInventoryDao")
+public class InventoryDaoImpl implements InventoryDao {
+
+    protected static final String DECREMENT_QUANTITY_AVAILABLE = "UPDATE BLC_SKU SET QUANTITY_AVAILABLE = QUANTITY_AVAILABLE - ? "
+            + "WHERE QUANTITY_AVAILABLE >= ? AND SKU_ID IN (%s)";
+
+    protected static final String INCREMENT_QUANTITY_AVAILABLE = "UPDATE BLC_SKU SET QUANTITY_AVAILABLE = QUANTITY_AVAILABLE + ? "
+            + "WHERE QUANTITY_AVAILABLE IS NOT NULL AND SKU_ID IN (%s)";
+
+    protected static final String READ_QUANTITIES_AVAILABLE = "SELECT SKU_ID, QUANTITY_AVAILABLE FROM BLC_SKU WHERE SKU_ID IN (:skuIds)";
+
+    protected static final Comparator<Sku> ID_ORDER = new Comparator<Sku>() {
+
+        @Override
+        public int compare(Sku o1, Sku o2) {
+            return o1.getId().compareTo(o2.getId());
+        }
+    };
+
+    @PersistenceContext(unitName = "blPU")
+    protected EntityManager em;
+
+    @Override
+    public List<Sku> decrementQuantitiesAvailable(Map<Sku, Integer> skuQuantities) {
+        return updateQuantitiesAvailable(skuQuantities, DECREMENT_QUANTITY_AVAILABLE, true);
+    }
+
+    @Override
+    public List<Sku> incrementQuantitiesAvailable(Map<Sku, Integer> skuQuantities) {
+        return updateQuantitiesAvailable(skuQuantities, INCREMENT_QUANTITY_AVAILABLE, false);
+    }
+
+    @Override
+    public Integer readQuantityAvailable(Long skuId) {
+        return readQuantitiesAvailable(Collections.singletonList(skuId)).get(skuId);
+    }
+
+    protected List<Sku> updateQuantitiesAvailable(Map<Sku, Integer> skuQuantities, String template, boolean conditional) {
+        // Pending changes to the skus are written first, they would otherwise overwrite the new quantities when flushed
+        em.flush();
+
+        List<Sku> skus = new ArrayList<Sku>(skuQuantities.keySet());
+        Collections.sort(skus, ID_ORDER);
+        List<Sku> notUpdated = new ArrayList<Sku>();
+        List<Sku> updated = new ArrayList<Sku>();
+        for (Sku sku : skus) {
+            Integer quantity = skuQuantities.get(sku);
+            Object[] params;
+            Type[] types;
+            if (conditional) {
+                params = new Object[] { quantity, quantity };
+                types = new Type[] { IntegerType.INSTANCE, IntegerType.INSTANCE };
+            } else {
+                params = new Object[] { quantity };
+                types = new Type[] { IntegerType.INSTANCE };
+            }
+            // An empty table space keeps Hibernate from invalidating the whole sku cache region
+            int count = UpdateExecutor.executeUpdateQuery(em, template, "", params, types, Collections.singletonList(sku.getId()));
+            if (count == 0) {
+                notUpdated.add(sku);
+            } else {
+                updated.add(sku);
+            }
+        }
+
+        if (!updated.isEmpty()) {
+            synchronizeQuantitiesAvailable(updated);
+            invalidateCache(updated);
+        }
+        return notUpdated;
+    }
+
+    /**
+     * Sets the quantity available of the updated sku instances to the value now in the database. The rows stay locked
+     * by this transaction, so the value read is the one that will be committed. For skus attached to the persistence
+     * context the loaded state is updated as well, so the new value is not written again on flush.
+     */
+    protected void synchronizeQuantitiesAvailable(List<Sku> skus) {
+        List<Long> skuIds = new ArrayList<Long>(skus.size());
+        for (Sku sku : skus) {
+            skuIds.add(sku.getId());
+        }
+        Map<Long, Integer> quantities = readQuantitiesAvailable(skuIds);
+
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        for (Sku sku : skus) {
+            Sku target = HibernateUtils.deproxy(sku);
+            Integer quantity = quantities.get(sku.getId());
+            target.setQuantityAvailable(quantity);
+            EntityEntry entry = session.getPersistenceContext().getEntry(target);
+            if (entry != null && entry.getLoadedState() != null) {
+                int index = entry.getPersister().getEntityMetamodel().getPropertyIndex("quantityAvailable");
+                entry.getLoadedState()[index] = quantity;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<Long, Integer> readQuantitiesAvailable(List<Long> skuIds) {
+        List<Object[]> rows = em.createNativeQuery(READ_QUANTITIES_AVAILABLE)
+                .setParameter("skuIds", skuIds)
+                .getResultList();
+        Map<Long, Integer> quantities = new HashMap<Long, Integer>();
+        for (Object[] row : rows) {
+            // numeric columns are returned as different types depending on the database
+            Long skuId = row[0] instanceof BigInteger ? ((BigInteger) row[0]).longValue() : ((Number) row[0]).longValue();
+            quantities.put(skuId, row[1] == null ? null : ((Number) row[1]).intValue());
+        }
+        return quantities;
+    }
+
+    /**
+     * Evicts the updated skus from the second level cache now and again after commit, as a concurrent request could
+     * load the previous quantity into the cache before this transaction commits.
+     */
+    protected void invalidateCache(List<Sku> skus) {
+        final List<Long> skuIds = new ArrayList<Long>(skus.size());
+        for (Sku sku : skus) {
+            skuIds.add(sku.getId());
+        }
+        UpdateExecutor.executeTargetedCacheInvalidation(em, SkuImpl.class, skuIds);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            final SessionFactory sessionFactory = em.unwrap(Session.class).getSessionFactory();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    for (Long skuId : skuIds) {
+                        sessionFactory.getCache().evictEntity(SkuImpl.class, skuId);
+                    }
+                }
+            });
+        }
+    }
+
+}
@@ -25,6 +25,7 @@ import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.util.TransactionUtils;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.inventory.dao.InventoryDao;
 import org.broadleafcommerce.core.inventory.service.type.InventoryType;
 import org.broadleafcommerce.core.order.domain.BundleOrderItem;
 import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
@@ -33,9 +34,11 @@ import org.broadleafcommerce.core.order.domain.OrderItem;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -50,6 +53,9 @@ public class InventoryServiceImpl implements ContextualInventoryService {
     @Resource(name = "blCatalogService")
     protected CatalogService catalogService;
     
+    @Resource(name = "blInventoryDao")
+    protected InventoryDao inventoryDao;
+
     @Resource(name = "blInventoryServiceExtensionManager")
     protected InventoryServiceExtensionManager extensionManager;
 
@@ -179,7 +185,13 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         }
     }
 
+    /**
+     * Decrements the CHECK_QUANTITY skus with a conditional update per sku, so that concurrent checkouts cannot sell
+     * more than the quantity available. Every sku is validated before any inventory is changed, and when one or more
+     * skus do not have enough inventory the exception describes the first of them and lists the ids of all of them.
+     */
     protected void decrementSku(Map<Sku, Integer> skuQuantities, Map<String, Object> context) throws InventoryUnavailableException {
+        Map<Sku, Integer> quantitiesToDecrement = new LinkedHashMap<Sku, Integer>();
         for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
             Sku sku = entry.getKey();
             Integer quantity = entry.getValue();
@@ -189,17 +201,9 @@ public class InventoryServiceImpl implements ContextualInventoryService {
 
             if (checkBasicAvailablility(sku)) {
                 if (InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
-                    Integer inventoryAvailable = retrieveQuantityAvailable(sku, context);
-                    if (inventoryAvailable == null) {
-                        return;
-                    }
-                    if (inventoryAvailable < quantity) {
-                        throw new InventoryUnavailableException(
-                                "There was not enough inventory to fulfill this request.", sku.getId(), quantity, inventoryAvailable);
+                    if (retrieveQuantityAvailable(sku, context) != null) {
+                        quantitiesToDecrement.put(sku, quantity);
                     }
-                    int newInventory = inventoryAvailable - quantity;
-                    sku.setQuantityAvailable(newInventory);
-                    catalogService.saveSku(sku);
                 } else {
                     LOG.info("Not decrementing inventory as the Sku has been marked as always available");
                 }
@@ -207,6 +211,23 @@ public class InventoryServiceImpl implements ContextualInventoryService {
                 throw new InventoryUnavailableException("The Sku has been marked as unavailable", sku.getId(), quantity, 0);
             }
         }
+
+        if (quantitiesToDecrement.isEmpty()) {
+            return;
+        }
+        List<Sku> unavailableSkus = inventoryDao.decrementQuantitiesAvailable(quantitiesToDecrement);
+        if (!unavailableSkus.isEmpty()) {
+            List<Long> unavailableSkuIds = new ArrayList<Long>(unavailableSkus.size());
+            for (Sku sku : unavailableSkus) {
+                unavailableSkuIds.add(sku.getId());
+            }
+            Sku sku = unavailableSkus.get(0);
+            Integer inventoryAvailable = inventoryDao.readQuantityAvailable(sku.getId());
+            InventoryUnavailableException e = new InventoryUnavailableException("There was not enough inventory to fulfill this request.",
+                    sku.getId(), quantitiesToDecrement.get(sku), inventoryAvailable == null ? 0 : inventoryAvailable);
+            e.setUnavailableSkuIds(unavailableSkuIds);
+            throw e;
+        }
     }
 
     @Override
@@ -227,6 +248,7 @@ public class InventoryServiceImpl implements ContextualInventoryService {
     }
 
     protected void incrementSku(Map<Sku, Integer> skuQuantities, Map<String, Object> context) {
+        Map<Sku, Integer> quantitiesToIncrement = new LinkedHashMap<Sku, Integer>();
         for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
             Sku sku = entry.getKey();
             Integer quantity = entry.getValue();
@@ -234,17 +256,18 @@ public class InventoryServiceImpl implements ContextualInventoryService {
                 throw new IllegalArgumentException("Quantity " + quantity + " is not valid. Must be greater than zero and not null.");
             }
             if (InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
-                Integer currentInventoryAvailable = retrieveQuantityAvailable(sku, context);
-                if (currentInventoryAvailable == null) {
+                if (retrieveQuantityAvailable(sku, context) == null) {
                     throw new IllegalArgumentException("The current inventory for this Sku is null");
                 }
-                int newInventory = currentInventoryAvailable + quantity;
-                sku.setQuantityAvailable(newInventory);
-                catalogService.saveSku(sku);
+                quantitiesToIncrement.put(sku, quantity);
             } else {
                 LOG.info("Not incrementing inventory as the Sku has been marked as always available");
             }
         }
+
+        if (!quantitiesToIncrement.isEmpty() && !inventoryDao.incrementQuantitiesAvailable(quantitiesToIncrement).isEmpty()) {
+            throw new IllegalArgumentException("The current inventory for this Sku is null");
+        }
     }
 
     @Override
@@ -18,6 +18,7 @@
 
 package org.broadleafcommerce.core.inventory.service;
 
+import java.util.List;
 
 public class InventoryUnavailableException extends Exception {
 
@@ -29,6 +30,8 @@ public class InventoryUnavailableException extends Exception {
 
     protected Integer quantityAvailable;
 
+    protected List<Long> unavailableSkuIds;
+
     public InventoryUnavailableException(String msg) {
         super(msg);
     }
@@ -75,4 +78,16 @@ public class InventoryUnavailableException extends Exception {
         this.quantityAvailable = quantityAvailable;
     }
 
+    /**
+     * @return the ids of all of the skus that did not have enough inventory when several skus were decremented
+     * together, or null if that was not recorded
+     */
+    public List<Long> getUnavailableSkuIds() {
+        return unavailableSkuIds;
+    }
+
+    public void setUnavailableSkuIds(List<Long> unavailableSkuIds) {
+        this.unavailableSkuIds = unavailableSkuIds;
+    }
+
 }
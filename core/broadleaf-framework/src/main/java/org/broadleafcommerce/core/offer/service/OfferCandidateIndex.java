@@ -0,0 +1,48 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.order.domain.Order;
+
+import java.util.List;
+
+/**
+ * Cheap, per-request elimination of offers whose item criteria can not match anything in the order, so that the
+ * offer processors only evaluate MVEL for plausible candidates.
+ */
+public interface OfferCandidateIndex {
+
+    /**
+     * Parses the item criteria rules of the given offer into {@link OfferItemRulePredicate}s, replacing what was
+     * indexed for it before. Offers that were never indexed are parsed lazily on first use.
+     */
+    void indexOffer(Offer offer);
+
+    /**
+     * Drops what was indexed for the given offer, so that it is parsed again on next use
+     */
+    void removeOffer(Long offerId);
+
+    /**
+     * @return a new list holding the offers that could still apply to the given order. If prefiltering is disabled,
+     * this is simply a copy of the passed offers.
+     */
+    List<Offer> filterOffers(List<Offer> offers, Order order);
+
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteriaImpl;
+import org.hibernate.cache.spi.CacheKey;
+
+import java.io.Serializable;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListener;
+
+/**
+ * Listens to the blOffers second level cache region and drops the matching {@link OfferCandidateIndexImpl} entries
+ * whenever Hibernate puts, updates or removes an element, or the cache evicts or expires one.
+ *
+ * Changes to an offer (or one of its collections, which are keyed by the offer id) drop that offer. Changes to an item
+ * criteria drop every offer indexed with it. Puts are handled as well as updates, since an element that is no longer in
+ * the region (or never was) is put rather than updated when it is next cached after a change. Evictions and
+ * expirations are handled too, since a change to an element that is not in the region is not seen by this listener.
+ */
+public class OfferCandidateIndexCacheEventListener implements CacheEventListener {
+
+    protected static final String OFFER_NAME = OfferImpl.class.getName();
+    protected static final String OFFER_ITEM_CRITERIA_NAME = OfferItemCriteriaImpl.class.getName();
+
+    protected final OfferCandidateIndexImpl offerCandidateIndex;
+
+    public OfferCandidateIndexCacheEventListener(OfferCandidateIndexImpl offerCandidateIndex) {
+        this.offerCandidateIndex = offerCandidateIndex;
+    }
+
+    protected void invalidate(Element element) {
+        if (element == null || !(element.getObjectKey() instanceof CacheKey)) {
+            return;
+        }
+        CacheKey cacheKey = (CacheKey) element.getObjectKey();
+        String name = cacheKey.getEntityOrRoleName();
+        Serializable id = cacheKey.getKey();
+        if (name == null || !(id instanceof Long)) {
+            return;
+        }
+        if (name.equals(OFFER_NAME) || name.startsWith(OFFER_NAME + ".")) {
+            offerCandidateIndex.removeOffer((Long) id);
+        } else if (name.equals(OFFER_ITEM_CRITERIA_NAME)) {
+            offerCandidateIndex.removeCriteria((Long) id);
+        }
+    }
+
+    @Override
+    public void notifyElementRemoved(Ehcache cache, Element element) throws CacheException {
+        invalidate(element);
+    }
+
+    @Override
+    public void notifyElementPut(Ehcache cache, Element element) throws CacheException {
+        invalidate(element);
+    }
+
+    @Override
+    public void notifyElementUpdated(Ehcache cache, Element element) throws CacheException {
+        invalidate(element);
+    }
+
+    @Override
+    public void notifyElementExpired(Ehcache cache, Element element) {
+        invalidate(element);
+    }
+
+    @Override
+    public void notifyElementEvicted(Ehcache cache, Element element) {
+        invalidate(element);
+    }
+
+    @Override
+    public void notifyRemoveAll(Ehcache cache) {
+        offerCandidateIndex.clear();
+    }
+
+    @Override
+    public void dispose() {
+        //do nothing
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        return super.clone();
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.BundleOrderItem;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.ehcache.CacheManager;
+
+/**
+ * Default {@link OfferCandidateIndex}.
+ *
+ * An offer is dropped only when one of its qualifying criteria (or, for {@link OfferType#ORDER_ITEM} offers, one of
+ * its target criteria) is restrictive and no item in the order satisfies it. This mirrors
+ * AbstractBaseProcessor.couldOfferApplyToOrderItems, which requires every such criteria to match. Customer and order
+ * level rules are not considered here; they continue to be evaluated by the offer processors.
+ *
+ * Every indexed offer with a restrictive criteria is posted under the sku, product or category keys of its most
+ * selective criteria, so an order only looks at the offers posted under its own items' keys. Offers that are not
+ * posted under any of those keys are dropped without evaluating their criteria. The number of indexed offers is bounded
+ * by "offer.prefilter.index.size"; the least recently used offer is unposted when the bound is reached. An offer is
+ * dropped from the index when it is saved through {@link OfferService#save(Offer)}, and whenever it, or one of its
+ * item criteria, is put, updated, removed, evicted or expired in the blOffers second level cache region (see
+ * {@link OfferCandidateIndexCacheEventListener}). Since changes made on other nodes do not reach this node's cache
+ * region, an offer is also parsed again once it has been indexed for "offer.prefilter.index.ttlSeconds".
+ */
+@Service("blOfferCandidateIndex")
+public class OfferCandidateIndexImpl implements OfferCandidateIndex {
+
+    private static final Log LOG = LogFactory.getLog(OfferCandidateIndexImpl.class);
+
+    protected static final String CACHE_REGION = "blOffers";
+
+    protected static final String SKU_PREFIX = "sku_";
+    protected static final String PRODUCT_PREFIX = "product_";
+    protected static final String CATEGORY_PREFIX = "category_";
+    protected static final String CATEGORY_NAME_PREFIX = "categoryName_";
+
+    @Value("${offer.prefilter.enabled:false}")
+    protected boolean enabled = false;
+
+    @Value("${offer.prefilter.index.size:10000}")
+    protected int indexSize = 10000;
+
+    @Value("${offer.prefilter.index.ttlSeconds:300}")
+    protected int ttlSeconds = 300;
+
+    /**
+     * Bumped on every removal so that an offer indexed from data read before the removal is not kept afterwards
+     */
+    protected final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Guards every change to the indexed offers and their postings, so that an indexed offer is always posted under
+     * its keys. Reads are not guarded.
+     */
+    protected final Object writeLock = new Object();
+
+    /**
+     * Offer ids by posting key, see {@link #buildPostingKeys(OfferItemRulePredicate)}
+     */
+    protected final ConcurrentMap<String, Set<Long>> offerIdsByPostingKey = new ConcurrentHashMap<String, Set<Long>>();
+
+    protected final ConcurrentMap<Long, Set<Long>> offerIdsByCriteriaId = new ConcurrentHashMap<Long, Set<Long>>();
+
+    protected volatile Map<Long, IndexedOffer> indexedOffers;
+
+    @Override
+    public void indexOffer(Offer offer) {
+        if (offer.getId() == null) {
+            return;
+        }
+        removeOffer(offer.getId());
+        getIndexedOffer(offer);
+    }
+
+    @Override
+    public void removeOffer(Long offerId) {
+        if (offerId == null) {
+            return;
+        }
+        Map<Long, IndexedOffer> offers = getIndexedOffers();
+        synchronized (writeLock) {
+            generation.incrementAndGet();
+            IndexedOffer removed = offers.remove(offerId);
+            if (removed != null) {
+                unpost(offerId, removed);
+            }
+        }
+    }
+
+    /**
+     * Drops every offer indexed with the given item criteria
+     */
+    public void removeCriteria(Long criteriaId) {
+        // Also covers offers that are being indexed from the old criteria and are not posted yet
+        generation.incrementAndGet();
+        Set<Long> offerIds = offerIdsByCriteriaId.get(criteriaId);
+        if (offerIds != null) {
+            for (Long offerId : new ArrayList<Long>(offerIds)) {
+                removeOffer(offerId);
+            }
+        }
+    }
+
+    /**
+     * Drops every indexed offer
+     */
+    public void clear() {
+        Map<Long, IndexedOffer> offers = getIndexedOffers();
+        synchronized (writeLock) {
+            generation.incrementAndGet();
+            offers.clear();
+            offerIdsByPostingKey.clear();
+            offerIdsByCriteriaId.clear();
+        }
+    }
+
+    @Override
+    public List<Offer> filterOffers(List<Offer> offers, Order order) {
+        if (!enabled || offers.isEmpty() || order == null) {
+            return new ArrayList<Offer>(offers);
+        }
+        List<OrderItemKey> items = new ArrayList<OrderItemKey>();
+        if (order.getOrderItems() != null) {
+            for (OrderItem orderItem : order.getOrderItems()) {
+                collectItemKeys(orderItem, items);
+            }
+        }
+        List<IndexedOffer> offerIndexes = new ArrayList<IndexedOffer>(offers.size());
+        for (Offer offer : offers) {
+            offerIndexes.add(getIndexedOffer(offer));
+        }
+        Set<String> itemPostingKeys = new HashSet<String>();
+        for (OrderItemKey item : items) {
+            addPostingKeys(item, itemPostingKeys);
+        }
+        Set<Long> postedOfferIds = new HashSet<Long>();
+        for (String key : itemPostingKeys) {
+            Set<Long> offerIds = offerIdsByPostingKey.get(key);
+            if (offerIds != null) {
+                postedOfferIds.addAll(offerIds);
+            }
+        }
+
+        List<Offer> candidates = new ArrayList<Offer>(offers.size());
+        for (int i = 0; i < offers.size(); i++) {
+            Offer offer = offers.get(i);
+            IndexedOffer indexed = offerIndexes.get(i);
+            if (!indexed.isRestrictive()
+                    || (isPosted(offer.getId(), indexed, postedOfferIds, itemPostingKeys) && indexed.couldApply(items))) {
+                candidates.add(offer);
+            }
+        }
+        if (LOG.isDebugEnabled() && candidates.size() < offers.size()) {
+            LOG.debug("Prefiltered " + (offers.size() - candidates.size()) + " of " + offers.size()
+                    + " offers for order " + order.getId());
+        }
+        return candidates;
+    }
+
+    /**
+     * Whether some item of the order has one of the posting keys of the given offer. Offers that are no longer in the
+     * index, because they were removed, evicted or indexed again by another thread, are checked against their own keys.
+     */
+    protected boolean isPosted(Long offerId, IndexedOffer indexed, Set<Long> postedOfferIds, Set<String> itemPostingKeys) {
+        if (offerId != null && postedOfferIds.contains(offerId)) {
+            return true;
+        }
+        if (offerId != null && getIndexedOffers().get(offerId) == indexed) {
+            return false;
+        }
+        return !Collections.disjoint(indexed.postingKeys, itemPostingKeys);
+    }
+
+    protected IndexedOffer getIndexedOffer(Offer offer) {
+        Long offerId = offer.getId();
+        if (offerId == null) {
+            return createIndexedOffer(offer);
+        }
+        Map<Long, IndexedOffer> offers = getIndexedOffers();
+        IndexedOffer indexed = offers.get(offerId);
+        if (indexed != null && isExpired(indexed)) {
+            removeOffer(offerId);
+            indexed = null;
+        }
+        if (indexed == null) {
+            long readGeneration = generation.get();
+            indexed = createIndexedOffer(offer);
+            synchronized (writeLock) {
+                // Skip offers built from data read before a removal, and offers another thread indexed meanwhile
+                if (generation.get() == readGeneration && !offers.containsKey(offerId)) {
+                    // Post before publishing, so that a published offer is always found under its keys
+                    for (String key : indexed.postingKeys) {
+                        addTo(offerIdsByPostingKey, key, offerId);
+                    }
+                    for (Long criteriaId : indexed.criteriaIds) {
+                        addTo(offerIdsByCriteriaId, criteriaId, offerId);
+                    }
+                    offers.put(offerId, indexed);
+                }
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Whether the offer was indexed more than {@link #ttlSeconds} ago, and may have been changed on another node since
+     */
+    protected boolean isExpired(IndexedOffer indexed) {
+        return ttlSeconds > 0 && SystemTime.asMillis() - indexed.indexedMillis >= ttlSeconds * 1000L;
+    }
+
+    protected void unpost(Long offerId, IndexedOffer indexed) {
+        for (String key : indexed.postingKeys) {
+            removeFrom(offerIdsByPostingKey, key, offerId);
+        }
+        for (Long criteriaId : indexed.criteriaIds) {
+            removeFrom(offerIdsByCriteriaId, criteriaId, offerId);
+        }
+    }
+
+    protected IndexedOffer createIndexedOffer(Offer offer) {
+        List<OfferItemRulePredicate> requirements = new ArrayList<OfferItemRulePredicate>();
+        Set<Long> criteriaIds = new HashSet<Long>();
+        if (offer.getQualifyingItemCriteriaXref() != null) {
+            for (OfferQualifyingCriteriaXref xref : offer.getQualifyingItemCriteriaXref()) {
+                addRequirement(xref.getOfferItemCriteria(), requirements, criteriaIds);
+            }
+        }
+        if (OfferType.ORDER_ITEM.equals(offer.getType()) && offer.getTargetItemCriteriaXref() != null) {
+            for (OfferTargetCriteriaXref xref : offer.getTargetItemCriteriaXref()) {
+                addRequirement(xref.getOfferItemCriteria(), requirements, criteriaIds);
+            }
+        }
+        Set<String> postingKeys = null;
+        for (OfferItemRulePredicate requirement : requirements) {
+            Set<String> keys = buildPostingKeys(requirement);
+            if (postingKeys == null || keys.size() < postingKeys.size()) {
+                postingKeys = keys;
+            }
+        }
+        return new IndexedOffer(requirements, postingKeys == null ? Collections.<String>emptySet() : postingKeys,
+                criteriaIds);
+    }
+
+    protected void addRequirement(OfferItemCriteria criteria, List<OfferItemRulePredicate> requirements,
+            Set<Long> criteriaIds) {
+        if (criteria == null) {
+            return;
+        }
+        if (criteria.getId() != null) {
+            criteriaIds.add(criteria.getId());
+        }
+        OfferItemRulePredicate predicate = OfferItemRulePredicate.fromRule(criteria.getMatchRule());
+        if (predicate.isRestrictive()) {
+            requirements.add(predicate);
+        }
+    }
+
+    /**
+     * @return the keys of the most selective dimension of the given restrictive predicate. An item can only match the
+     * predicate if it has one of these keys.
+     */
+    protected Set<String> buildPostingKeys(OfferItemRulePredicate predicate) {
+        Set<String> keys = null;
+        keys = selectSmaller(keys, predicate.getSkuIds(), SKU_PREFIX);
+        keys = selectSmaller(keys, predicate.getProductIds(), PRODUCT_PREFIX);
+        keys = selectSmaller(keys, predicate.getCategoryIds(), CATEGORY_PREFIX);
+        keys = selectSmaller(keys, predicate.getCategoryNames(), CATEGORY_NAME_PREFIX);
+        return keys == null ? Collections.<String>emptySet() : keys;
+    }
+
+    protected Set<String> selectSmaller(Set<String> keys, Set<?> values, String prefix) {
+        if (values == null || (keys != null && keys.size() <= values.size())) {
+            return keys;
+        }
+        Set<String> result = new HashSet<String>();
+        for (Object value : values) {
+            result.add(prefix + value);
+        }
+        return result;
+    }
+
+    protected void addPostingKeys(OrderItemKey item, Set<String> keys) {
+        if (item.skuId != null) {
+            keys.add(SKU_PREFIX + item.skuId);
+        }
+        if (item.productId != null) {
+            keys.add(PRODUCT_PREFIX + item.productId);
+        }
+        if (item.categoryId != null) {
+            keys.add(CATEGORY_PREFIX + item.categoryId);
+        }
+        if (item.categoryName != null) {
+            keys.add(CATEGORY_NAME_PREFIX + item.categoryName.toUpperCase());
+        }
+    }
+
+    protected void collectItemKeys(OrderItem orderItem, List<OrderItemKey> items) {
+        Sku sku = null;
+        Product product = null;
+        if (orderItem instanceof DiscreteOrderItem) {
+            sku = ((DiscreteOrderItem) orderItem).getSku();
+            product = ((DiscreteOrderItem) orderItem).getProduct();
+        } else if (orderItem instanceof BundleOrderItem) {
+            sku = ((BundleOrderItem) orderItem).getSku();
+            product = ((BundleOrderItem) orderItem).getProduct();
+            if (((BundleOrderItem) orderItem).getDiscreteOrderItems() != null) {
+                for (DiscreteOrderItem discreteOrderItem : ((BundleOrderItem) orderItem).getDiscreteOrderItems()) {
+                    collectItemKeys(discreteOrderItem, items);
+                }
+            }
+        }
+        Category category = orderItem.getCategory();
+        items.add(new OrderItemKey(sku == null ? null : sku.getId(), product == null ? null : product.getId(),
+                category == null ? null : category.getId(), category == null ? null : category.getName()));
+        if (orderItem.getChildOrderItems() != null) {
+            for (OrderItem child : orderItem.getChildOrderItems()) {
+                collectItemKeys(child, items);
+            }
+        }
+    }
+
+    /**
+     * Called while holding the write lock
+     */
+    protected <K> void addTo(ConcurrentMap<K, Set<Long>> map, K key, Long offerId) {
+        Set<Long> offerIds = map.get(key);
+        if (offerIds == null) {
+            offerIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+            map.put(key, offerIds);
+        }
+        offerIds.add(offerId);
+    }
+
+    /**
+     * Called while holding the write lock. Drops the key once no offer is left under it, so that the postings stay
+     * bounded along with the indexed offers.
+     */
+    protected <K> void removeFrom(ConcurrentMap<K, Set<Long>> map, K key, Long offerId) {
+        Set<Long> offerIds = map.get(key);
+        if (offerIds != null && offerIds.remove(offerId) && offerIds.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    protected Map<Long, IndexedOffer> getIndexedOffers() {
+        Map<Long, IndexedOffer> result = indexedOffers;
+        if (result == null) {
+            synchronized (this) {
+                result = indexedOffers;
+                if (result == null) {
+                    result = Collections.synchronizedMap(new IndexedOfferMap(indexSize));
+                    registerCacheEventListener();
+                    indexedOffers = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    protected void registerCacheEventListener() {
+        CacheManager cacheManager = CacheManager.getInstance();
+        if (cacheManager.cacheExists(CACHE_REGION)) {
+            cacheManager.getCache(CACHE_REGION).getCacheEventNotificationService()
+                    .registerListener(new OfferCandidateIndexCacheEventListener(this));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getIndexSize() {
+        return indexSize;
+    }
+
+    public void setIndexSize(int indexSize) {
+        this.indexSize = indexSize;
+    }
+
+    public int getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Unposts the least recently used offer when the index is full. Entries are only added while holding the write
+     * lock, so eviction never races with posting.
+     */
+    protected class IndexedOfferMap extends LRUMap<Long, IndexedOffer> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected IndexedOfferMap(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected boolean removeLRU(LinkEntry<Long, IndexedOffer> entry) {
+            unpost(entry.getKey(), entry.getValue());
+            return true;
+        }
+    }
+
+    /**
+     * The restrictive item criteria of an offer, each of which some item in the order has to satisfy
+     */
+    protected static class IndexedOffer {
+
+        protected final List<OfferItemRulePredicate> requirements;
+        protected final Set<String> postingKeys;
+        protected final Set<Long> criteriaIds;
+        protected final long indexedMillis = SystemTime.asMillis();
+
+        protected IndexedOffer(List<OfferItemRulePredicate> requirements, Set<String> postingKeys, Set<Long> criteriaIds) {
+            this.requirements = requirements;
+            this.postingKeys = postingKeys;
+            this.criteriaIds = criteriaIds;
+        }
+
+        protected boolean isRestrictive() {
+            return !requirements.isEmpty();
+        }
+
+        protected boolean couldApply(List<OrderItemKey> items) {
+            for (OfferItemRulePredicate requirement : requirements) {
+                if (!anyItemMatches(requirement, items)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        protected boolean anyItemMatches(OfferItemRulePredicate predicate, List<OrderItemKey> items) {
+            for (OrderItemKey item : items) {
+                if (predicate.couldMatch(item.skuId, item.productId, item.categoryId, item.categoryName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The values of a single order item that {@link OfferItemRulePredicate} can test
+     */
+    protected static class OrderItemKey {
+
+        protected final Long skuId;
+        protected final Long productId;
+        protected final Long categoryId;
+        protected final String categoryName;
+
+        protected OrderItemKey(Long skuId, Long productId, Long categoryId, String categoryName) {
+            this.skuId = skuId;
+            this.productId = productId;
+            this.categoryId = categoryId;
+            this.categoryName = categoryName;
+        }
+    }
+}
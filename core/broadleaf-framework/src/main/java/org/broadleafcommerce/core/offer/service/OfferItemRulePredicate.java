@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Necessary conditions extracted from an offer item criteria match rule: the sku, product and category values an order
+ * item must have for the rule to have any chance of matching it. Used by {@link OfferCandidateIndex} to drop offers
+ * before any MVEL is evaluated.
+ *
+ * Extraction is deliberately conservative. Only rules that are a plain conjunction (no {@code ||}, negation or ternary)
+ * are considered, and only terms of the forms produced by the admin rule builder are understood, for example
+ * {@code orderItem.?sku.?id == 5},
+ * {@code MvelHelper.toUpperCase(orderItem.?category.?name)==MvelHelper.toUpperCase("merchandise")} or
+ * {@code CollectionUtils.intersection(orderItem.?product.?id,[1,2]).size()>0}. Every other term is ignored, which can
+ * only make the predicate less restrictive. Category names are compared case-insensitively for the same reason.
+ */
+public class OfferItemRulePredicate {
+
+    public static final OfferItemRulePredicate UNRESTRICTED = new OfferItemRulePredicate(null, null, null, null);
+
+    protected static final String ITEM = "(?:discreteOrderItem|orderItem)";
+    protected static final String PATH = "\\s*" + ITEM + "\\.\\??(sku|product|category)\\.\\??(id|name)\\s*";
+
+    protected static final Pattern EQUALS_NUMBER = Pattern.compile(PATH + "==\\s*(\\d+)[lL]?\\s*");
+    protected static final Pattern EQUALS_STRING = Pattern.compile(PATH + "==\\s*\"([^\"]*)\"\\s*");
+    protected static final Pattern EQUALS_UPPER_CASE = Pattern.compile("\\s*MvelHelper\\.toUpperCase\\(" + PATH
+            + "\\)\\s*==\\s*MvelHelper\\.toUpperCase\\(\\s*\"([^\"]*)\"\\s*\\)\\s*");
+    protected static final Pattern INTERSECTION = Pattern.compile("\\s*CollectionUtils\\.intersection\\(" + PATH
+            + ",\\s*\\[([^\\]]*)\\]\\s*\\)\\.size\\(\\)\\s*>\\s*0\\s*");
+    protected static final Pattern NEGATION = Pattern.compile("!(?!=)");
+    protected static final Pattern TERNARY = Pattern.compile("(?<!\\.)\\?(?!\\.)");
+
+    protected final Set<Long> skuIds;
+    protected final Set<Long> productIds;
+    protected final Set<Long> categoryIds;
+    protected final Set<String> categoryNames;
+
+    protected OfferItemRulePredicate(Set<Long> skuIds, Set<Long> productIds, Set<Long> categoryIds, Set<String> categoryNames) {
+        this.skuIds = skuIds == null ? null : Collections.unmodifiableSet(skuIds);
+        this.productIds = productIds == null ? null : Collections.unmodifiableSet(productIds);
+        this.categoryIds = categoryIds == null ? null : Collections.unmodifiableSet(categoryIds);
+        this.categoryNames = categoryNames == null ? null : Collections.unmodifiableSet(categoryNames);
+    }
+
+    /**
+     * @return false if this predicate lets every order item through
+     */
+    public boolean isRestrictive() {
+        return skuIds != null || productIds != null || categoryIds != null || categoryNames != null;
+    }
+
+    /**
+     * @return false only if the rule this predicate was extracted from can not match an item with these values
+     */
+    public boolean couldMatch(Long skuId, Long productId, Long categoryId, String categoryName) {
+        if (skuIds != null && (skuId == null || !skuIds.contains(skuId))) {
+            return false;
+        }
+        if (productIds != null && (productId == null || !productIds.contains(productId))) {
+            return false;
+        }
+        if (categoryIds != null && (categoryId == null || !categoryIds.contains(categoryId))) {
+            return false;
+        }
+        if (categoryNames != null && (categoryName == null || !categoryNames.contains(categoryName.toUpperCase()))) {
+            return false;
+        }
+        return true;
+    }
+
+    public static OfferItemRulePredicate fromRule(String rule) {
+        if (StringUtils.isBlank(rule) || rule.contains("||") || NEGATION.matcher(rule).find()
+                || TERNARY.matcher(rule).find()) {
+            return UNRESTRICTED;
+        }
+        Set<Long> skuIds = null;
+        Set<Long> productIds = null;
+        Set<Long> categoryIds = null;
+        Set<String> categoryNames = null;
+        for (String term : rule.split("&&")) {
+            term = stripGrouping(term);
+            String entity = null;
+            String property = null;
+            Set<String> values = new HashSet<String>();
+            Matcher matcher;
+            if ((matcher = EQUALS_NUMBER.matcher(term)).matches() || (matcher = EQUALS_STRING.matcher(term)).matches()
+                    || (matcher = EQUALS_UPPER_CASE.matcher(term)).matches()) {
+                entity = matcher.group(1);
+                property = matcher.group(2);
+                values.add(matcher.group(3));
+            } else if ((matcher = INTERSECTION.matcher(term)).matches()) {
+                entity = matcher.group(1);
+                property = matcher.group(2);
+                for (String value : matcher.group(3).split(",")) {
+                    values.add(StringUtils.strip(value.trim(), "\"lL"));
+                }
+            }
+            if (entity == null) {
+                continue;
+            }
+            if ("id".equals(property)) {
+                Set<Long> ids = toIds(values);
+                if (ids == null) {
+                    continue;
+                }
+                if ("sku".equals(entity)) {
+                    skuIds = intersect(skuIds, ids);
+                } else if ("product".equals(entity)) {
+                    productIds = intersect(productIds, ids);
+                } else {
+                    categoryIds = intersect(categoryIds, ids);
+                }
+            } else if ("category".equals(entity)) {
+                Set<String> names = new HashSet<String>();
+                for (String value : values) {
+                    names.add(value.toUpperCase());
+                }
+                categoryNames = intersect(categoryNames, names);
+            }
+        }
+        if (skuIds == null && productIds == null && categoryIds == null && categoryNames == null) {
+            return UNRESTRICTED;
+        }
+        return new OfferItemRulePredicate(skuIds, productIds, categoryIds, categoryNames);
+    }
+
+    /**
+     * Without alternation or negation, parentheses only group terms, so those left over from splitting on {@code &&}
+     * (or wrapping a whole term) can be dropped
+     */
+    protected static String stripGrouping(String term) {
+        String result = term.trim();
+        while (result.startsWith("(") && StringUtils.countMatches(result, "(") > StringUtils.countMatches(result, ")")) {
+            result = result.substring(1).trim();
+        }
+        while (result.endsWith(")") && StringUtils.countMatches(result, ")") > StringUtils.countMatches(result, "(")) {
+            result = result.substring(0, result.length() - 1).trim();
+        }
+        while (result.startsWith("(") && result.endsWith(")") && isWrapped(result)) {
+            result = result.substring(1, result.length() - 1).trim();
+        }
+        return result;
+    }
+
+    protected static boolean isWrapped(String term) {
+        int depth = 0;
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0 && i < term.length() - 1) {
+                    return false;
+                }
+            }
+        }
+        return depth == 0;
+    }
+
+    protected static Set<Long> toIds(Set<String> values) {
+        Set<Long> ids = new HashSet<Long>();
+        for (String value : values) {
+            try {
+                ids.add(Long.valueOf(value));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    protected static <T> Set<T> intersect(Set<T> current, Set<T> values) {
+        if (current == null) {
+            return values;
+        }
+        current.retainAll(values);
+        return current;
+    }
+
+    public Set<Long> getSkuIds() {
+        return skuIds;
+    }
+
+    public Set<Long> getProductIds() {
+        return productIds;
+    }
+
+    public Set<Long> getCategoryIds() {
+        return categoryIds;
+    }
+
+    public Set<String> getCategoryNames() {
+        return categoryNames;
+    }
+}
@@ -40,6 +40,7 @@ import org.broadleafcommerce.core.offer.service.discount.domain.PromotableItemFa
 import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder;
 import org.broadleafcommerce.core.offer.service.processor.FulfillmentGroupOfferProcessor;
 import org.broadleafcommerce.core.offer.service.processor.ItemOfferProcessor;
+import org.broadleafcommerce.core.offer.service.processor.OfferRulePrecompiler;
 import org.broadleafcommerce.core.offer.service.processor.OrderOfferProcessor;
 import org.broadleafcommerce.core.offer.service.type.OfferType;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
@@ -113,6 +114,9 @@ public class OfferServiceImpl implements OfferService {
     @Resource(name="blStreamingTransactionCapableUtil")
     protected StreamingTransactionCapableUtil transUtil;
 
+    @Resource(name="blOfferCandidateIndex")
+    protected OfferCandidateIndex offerCandidateIndex;
+
     @Override
     public List<Offer> findAllOffers() {
         return offerDao.readAllOffers();
@@ -121,7 +125,14 @@ public class OfferServiceImpl implements OfferService {
     @Override
     @Transactional("blTransactionManager")
     public Offer save(Offer offer) {
-        return offerDao.save(offer);
+        Offer savedOffer = offerDao.save(offer);
+        if (orderOfferProcessor instanceof OfferRulePrecompiler) {
+            ((OfferRulePrecompiler) orderOfferProcessor).precompileOfferRules(savedOffer);
+        }
+        if (offerCandidateIndex != null) {
+            offerCandidateIndex.indexOffer(savedOffer);
+        }
+        return savedOffer;
     }
 
     @Override
@@ -197,6 +208,9 @@ public class OfferServiceImpl implements OfferService {
             extensionManager.getProxy().addAdditionalOffersForCode(offers, orderOfferCode);
         }
         List<Offer> globalOffers = lookupAutomaticDeliveryOffers();
+        if (offerCandidateIndex != null) {
+            globalOffers = offerCandidateIndex.filterOffers(globalOffers, order);
+        }
         for (Offer globalOffer : globalOffers) {
             if (!offers.contains(globalOffer) && verifyMaxCustomerUsageThreshold(order, globalOffer)) {
                 offers.add(globalOffer);
@@ -707,4 +721,12 @@ public class OfferServiceImpl implements OfferService {
     public Offer findOfferById(Long offerId) {
         return offerDao.readOfferById(offerId);
     }
+
+    public OfferCandidateIndex getOfferCandidateIndex() {
+        return offerCandidateIndex;
+    }
+
+    public void setOfferCandidateIndex(OfferCandidateIndex offerCandidateIndex) {
+        this.offerCandidateIndex = offerCandidateIndex;
+    }
 }
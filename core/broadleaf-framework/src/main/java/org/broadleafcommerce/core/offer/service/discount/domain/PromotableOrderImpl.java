@@ -20,6 +20,7 @@ package org.broadleafcommerce.core.offer.service.discount.domain;
 import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
 import org.broadleafcommerce.common.currency.util.BroadleafCurrencyUtils;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.money.MoneyAccumulator;
 import org.broadleafcommerce.core.offer.domain.OrderAdjustment;
 import org.broadleafcommerce.core.offer.service.discount.OrderItemPriceComparator;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
@@ -254,21 +255,21 @@ public class PromotableOrderImpl implements PromotableOrder {
 
     @Override
     public Money calculateOrderAdjustmentTotal() {
-        Money orderAdjustmentTotal = BroadleafCurrencyUtils.getMoney(order.getCurrency());
+        MoneyAccumulator orderAdjustmentTotal = new MoneyAccumulator(BroadleafCurrencyUtils.getMoney(order.getCurrency()));
         for (PromotableOrderAdjustment adjustment : candidateOrderOfferAdjustments) {
-            orderAdjustmentTotal = orderAdjustmentTotal.add(adjustment.getAdjustmentValue());
+            orderAdjustmentTotal.add(adjustment.getAdjustmentValue());
         }
-        return orderAdjustmentTotal;
+        return orderAdjustmentTotal.toMoney();
     }
 
     @Override
     public Money calculateItemAdjustmentTotal() {
-        Money itemAdjustmentTotal = BroadleafCurrencyUtils.getMoney(order.getCurrency());
+        MoneyAccumulator itemAdjustmentTotal = new MoneyAccumulator(BroadleafCurrencyUtils.getMoney(order.getCurrency()));
 
         for (PromotableOrderItem item : getDiscountableOrderItems()) {
-            itemAdjustmentTotal = itemAdjustmentTotal.add(item.calculateTotalAdjustmentValue());
+            itemAdjustmentTotal.add(item.calculateTotalAdjustmentValue());
         }
-        return itemAdjustmentTotal;
+        return itemAdjustmentTotal.toMoney();
     }
 
     public List<PromotableOrderItemPriceDetail> getAllPromotableOrderItemPriceDetails() {
@@ -312,20 +313,20 @@ public class PromotableOrderImpl implements PromotableOrder {
     
     @Override
     public Money calculateSubtotalWithoutAdjustments() {
-        Money calculatedSubTotal = BroadleafCurrencyUtils.getMoney(order.getCurrency());
+        MoneyAccumulator calculatedSubTotal = new MoneyAccumulator(BroadleafCurrencyUtils.getMoney(order.getCurrency()));
         for (PromotableOrderItem orderItem : getAllOrderItems()) {
-            calculatedSubTotal = calculatedSubTotal.add(orderItem.calculateTotalWithoutAdjustments());
+            calculatedSubTotal.add(orderItem.calculateTotalWithoutAdjustments());
         }
-        return calculatedSubTotal;
+        return calculatedSubTotal.toMoney();
     }
 
     @Override
     public Money calculateSubtotalWithAdjustments() {
-        Money calculatedSubTotal = BroadleafCurrencyUtils.getMoney(order.getCurrency());
+        MoneyAccumulator calculatedSubTotal = new MoneyAccumulator(BroadleafCurrencyUtils.getMoney(order.getCurrency()));
         for (PromotableOrderItem orderItem : getAllOrderItems()) {
-            calculatedSubTotal = calculatedSubTotal.add(orderItem.calculateTotalWithAdjustments());
+            calculatedSubTotal.add(orderItem.calculateTotalWithAdjustments());
         }
-        return calculatedSubTotal;
+        return calculatedSubTotal.toMoney();
     }
 
     @Override
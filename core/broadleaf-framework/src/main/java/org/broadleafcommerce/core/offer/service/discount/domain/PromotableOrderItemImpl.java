@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.money.MoneyAccumulator;
 import org.broadleafcommerce.core.offer.domain.OrderItemPriceDetailAdjustment;
 import org.broadleafcommerce.core.offer.service.discount.PromotionQualifier;
 import org.broadleafcommerce.core.order.domain.OrderItem;
@@ -222,11 +223,11 @@ public class PromotableOrderItemImpl implements PromotableOrderItem {
 
     @Override
     public Money calculateTotalWithAdjustments() {
-        Money returnTotal = new Money(getCurrency());
+        MoneyAccumulator returnTotal = new MoneyAccumulator(new Money(getCurrency()));
         for (PromotableOrderItemPriceDetail detail : itemPriceDetails) {
-            returnTotal = returnTotal.add(detail.getFinalizedTotalWithAdjustments());
+            returnTotal.add(detail.getFinalizedTotalWithAdjustments());
         }
-        return returnTotal;
+        return returnTotal.toMoney();
     }
 
     @Override
@@ -236,11 +237,11 @@ public class PromotableOrderItemImpl implements PromotableOrderItem {
 
     @Override
     public Money calculateTotalAdjustmentValue() {
-        Money returnTotal = new Money(getCurrency());
+        MoneyAccumulator returnTotal = new MoneyAccumulator(new Money(getCurrency()));
         for (PromotableOrderItemPriceDetail detail : itemPriceDetails) {
-            returnTotal = returnTotal.add(detail.calculateTotalAdjustmentValue());
+            returnTotal.add(detail.calculateTotalAdjustmentValue());
         }
-        return returnTotal;
+        return returnTotal.toMoney();
     }
 
     public PromotableOrderItemPriceDetail createNewDetail(int quantity) {
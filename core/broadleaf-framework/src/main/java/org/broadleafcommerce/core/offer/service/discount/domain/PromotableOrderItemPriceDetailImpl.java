@@ -19,6 +19,7 @@ package org.broadleafcommerce.core.offer.service.discount.domain;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.money.MoneyAccumulator;
 import org.broadleafcommerce.core.offer.domain.Offer;
 import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
 import org.broadleafcommerce.core.offer.service.discount.PromotionDiscount;
@@ -103,22 +104,30 @@ public class PromotableOrderItemPriceDetailImpl implements PromotableOrderItemPr
     }
     
     public Money calculateSaleAdjustmentUnitPrice() {
-        Money returnPrice = promotableOrderItem.getSalePriceBeforeAdjustments();
-        if (returnPrice == null) {
-            returnPrice = promotableOrderItem.getRetailPriceBeforeAdjustments();
+        Money salePrice = promotableOrderItem.getSalePriceBeforeAdjustments();
+        if (salePrice == null) {
+            salePrice = promotableOrderItem.getRetailPriceBeforeAdjustments();
         }
+        if (promotableOrderItemPriceDetailAdjustments.isEmpty()) {
+            return salePrice;
+        }
+        MoneyAccumulator returnPrice = new MoneyAccumulator(salePrice);
         for (PromotableOrderItemPriceDetailAdjustment adjustment : promotableOrderItemPriceDetailAdjustments) {
-            returnPrice = returnPrice.subtract(adjustment.getSaleAdjustmentValue());
+            returnPrice.subtract(adjustment.getSaleAdjustmentValue());
         }
-        return returnPrice;
+        return returnPrice.toMoney();
     }
     
     public Money calculateRetailAdjustmentUnitPrice() {
-        Money returnPrice = promotableOrderItem.getRetailPriceBeforeAdjustments();
+        Money retailPrice = promotableOrderItem.getRetailPriceBeforeAdjustments();
+        if (promotableOrderItemPriceDetailAdjustments.isEmpty()) {
+            return retailPrice;
+        }
+        MoneyAccumulator returnPrice = new MoneyAccumulator(retailPrice);
         for (PromotableOrderItemPriceDetailAdjustment adjustment : promotableOrderItemPriceDetailAdjustments) {
-            returnPrice = returnPrice.subtract(adjustment.getRetailAdjustmentValue());
+            returnPrice.subtract(adjustment.getRetailAdjustmentValue());
         }
-        return returnPrice;
+        return returnPrice.toMoney();
     }
 
     /**
@@ -468,13 +477,13 @@ public class PromotableOrderItemPriceDetailImpl implements PromotableOrderItemPr
     }
 
     protected Money calculateAdjustmentsUnitValue() {
-        Money adjustmentUnitValue = new Money(promotableOrderItem.getCurrency());
+        MoneyAccumulator adjustmentUnitValue = new MoneyAccumulator(new Money(promotableOrderItem.getCurrency()));
 
         for (PromotableOrderItemPriceDetailAdjustment adjustment : promotableOrderItemPriceDetailAdjustments) {
-            adjustmentUnitValue = adjustmentUnitValue.add(adjustment.getAdjustmentValue());
+            adjustmentUnitValue.add(adjustment.getAdjustmentValue());
         }
 
-        return adjustmentUnitValue;
+        return adjustmentUnitValue.toMoney();
     }
 
     /**
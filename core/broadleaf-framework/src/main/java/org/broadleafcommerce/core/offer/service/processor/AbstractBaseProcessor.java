@@ -18,7 +18,6 @@
 package org.broadleafcommerce.core.offer.service.processor;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.RequestDTO;
@@ -26,6 +25,7 @@ import org.broadleafcommerce.common.TimeDTO;
 import org.broadleafcommerce.common.money.Money;
 import org.broadleafcommerce.common.rule.MvelHelper;
 import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.common.util.TypedPredicate;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.offer.domain.Offer;
@@ -44,6 +44,7 @@ import org.broadleafcommerce.core.order.service.type.FulfillmentType;
 import org.broadleafcommerce.profile.core.domain.Customer;
 import org.joda.time.LocalDateTime;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -62,10 +63,10 @@ import javax.annotation.Resource;
  * @author jfischer
  *
  */
-public abstract class AbstractBaseProcessor implements BaseProcessor {
+public abstract class AbstractBaseProcessor implements BaseProcessor, OfferRulePrecompiler {
 
     private static final Log LOG = LogFactory.getLog(AbstractBaseProcessor.class);
-    private static final Map EXPRESSION_CACHE = new LRUMap(1000);
+    private static final Map<String, Serializable> EXPRESSION_CACHE = new EfficientLRUMap<String, Serializable>(1000);
 
     @Resource(name = "blOfferTimeZoneProcessor")
     protected OfferTimeZoneProcessor offerTimeZoneProcessor;
@@ -262,13 +263,53 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
      * @return a Boolean object containing the result of executing the MVEL expression
      */
     public Boolean executeExpression(String expression, Map<String, Object> vars) {
-        Map<String, Class<?>> contextImports = new HashMap<>();
-
         expression = usePriceBeforeAdjustments(expression);
+        return MvelHelper.evaluateRule(expression, vars, EXPRESSION_CACHE, getContextImports());
+
+    }
+
+    @Override
+    public void precompileOfferRules(Offer offer) {
+        for (OfferOfferRuleXref ruleXref : offer.getOfferMatchRulesXref().values()) {
+            if (ruleXref != null && ruleXref.getOfferRule() != null) {
+                precompileExpression(ruleXref.getOfferRule().getMatchRule());
+            }
+        }
+        if (offer.getQualifyingItemCriteriaXref() != null) {
+            for (OfferQualifyingCriteriaXref xref : offer.getQualifyingItemCriteriaXref()) {
+                if (xref.getOfferItemCriteria() != null) {
+                    precompileExpression(xref.getOfferItemCriteria().getMatchRule());
+                }
+            }
+        }
+        if (offer.getTargetItemCriteriaXref() != null) {
+            for (OfferTargetCriteriaXref xref : offer.getTargetItemCriteriaXref()) {
+                if (xref.getOfferItemCriteria() != null) {
+                    precompileExpression(xref.getOfferItemCriteria().getMatchRule());
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles the expression into the same cache, and with the same imports, that
+     * {@link #executeExpression(String, Map)} uses.
+     *
+     * @param expression
+     * @return false if the expression could not be compiled
+     */
+    protected boolean precompileExpression(String expression) {
+        if (expression == null || expression.trim().length() == 0) {
+            return true;
+        }
+        return MvelHelper.precompileRule(usePriceBeforeAdjustments(expression), EXPRESSION_CACHE, getContextImports());
+    }
+
+    protected Map<String, Class<?>> getContextImports() {
+        Map<String, Class<?>> contextImports = new HashMap<>();
         contextImports.put("OfferType", OfferType.class);
         contextImports.put("FulfillmentType", FulfillmentType.class);
-        return MvelHelper.evaluateRule(expression, vars, EXPRESSION_CACHE, contextImports);
-
+        return contextImports;
     }
 
     protected String usePriceBeforeAdjustments(String expression) {
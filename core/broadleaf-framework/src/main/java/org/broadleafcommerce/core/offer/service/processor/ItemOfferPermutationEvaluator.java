@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder;
+
+import java.util.List;
+
+/**
+ * Callback handed to an {@link OfferPermutationStrategy} by {@link ItemOfferProcessorImpl} so that the strategy can
+ * trial a candidate ordering of item offers using the processor's own application logic.
+ *
+ * @see OfferPermutationStrategy
+ */
+public interface ItemOfferPermutationEvaluator {
+
+    /**
+     * Applies the offers to the order in the given order through
+     * {@link ItemOfferProcessor#applyAllItemOffers(java.util.List, PromotableOrder)}, exactly as the chosen ordering
+     * will be applied once the strategy returns
+     */
+    void applyItemOffers(PromotableOrder order, List<PromotableCandidateItemOffer> itemOffers);
+
+    /**
+     * Whether {@link PromotableCandidateItemOffer#getPotentialSavings()} is an upper bound on what each offer can save
+     * in any ordering. This holds for the out of box calculation, which applies each offer on its own against the
+     * unadjusted price of every item it targets, while every adjustment applied in an ordering is calculated against
+     * the item's price after the adjustments before it and on no more units. It does not hold once an extension
+     * handler is allowed to supply its own savings.
+     */
+    boolean isPotentialSavingsUpperBound();
+
+    /**
+     * Finalizes the sale or retail choice for every item and returns the resulting order subtotal. The price details
+     * are left in place; {@link #resetPriceDetails(PromotableOrder)} must still be called afterwards.
+     */
+    Money calculateSubtotalWithAdjustments(PromotableOrder order);
+
+    /**
+     * Removes everything applied during the current trial so that the next ordering starts from a clean order
+     */
+    void resetPriceDetails(PromotableOrder order);
+
+}
@@ -20,6 +20,7 @@ package org.broadleafcommerce.core.offer.service.processor;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.extension.ExtensionHandler;
 import org.broadleafcommerce.common.money.Money;
 import org.broadleafcommerce.core.offer.domain.Offer;
 import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
@@ -57,6 +58,8 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 
+import javax.annotation.Resource;
+
 /**
  * Filter and apply order item offers.
  * 
@@ -68,6 +71,9 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
     
     protected static final Log LOG = LogFactory.getLog(ItemOfferProcessorImpl.class);
 
+    @Resource(name = "blOfferPermutationStrategy")
+    protected OfferPermutationStrategy offerPermutationStrategy = new OfferPermutationStrategyImpl();
+
     /* (non-Javadoc)
      * @see org.broadleafcommerce.core.offer.service.processor.ItemOfferProcessor#filterItemLevelOffer(org.broadleafcommerce.core.order.domain.Order, java.util.List, java.util.List, org.broadleafcommerce.core.offer.domain.Offer)
      */
@@ -601,37 +607,45 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
     protected List<PromotableCandidateItemOffer> determineBestPermutation(List<PromotableCandidateItemOffer> itemOffers, PromotableOrder order) {
         List<List<PromotableCandidateItemOffer>> permutations = buildItemOfferPermutations(itemOffers);
         removeDuplicatePermutations(permutations);
-        List<PromotableCandidateItemOffer> bestOfferList = null;
-        Money lowestSubtotal = null;
-        if (permutations.size() > 1) {
-            for (List<PromotableCandidateItemOffer> offerList : permutations) {
-                for (PromotableCandidateItemOffer offer : offerList) {
-                    offer.resetUses();
-                }
-                
-                applyAllItemOffers(offerList, order);
-                chooseSaleOrRetailAdjustments(order);
-                Money testSubtotal = order.calculateSubtotalWithAdjustments();
+        return offerPermutationStrategy.determineBestPermutation(permutations, order, createPermutationEvaluator());
+    }
 
-                if (lowestSubtotal == null || testSubtotal.lessThan(lowestSubtotal)) {
-                    lowestSubtotal = testSubtotal;
-                    bestOfferList = offerList;
+    /**
+     * Exposes the pieces of this processor needed by the {@link OfferPermutationStrategy} to trial an ordering
+     */
+    protected ItemOfferPermutationEvaluator createPermutationEvaluator() {
+        return new ItemOfferPermutationEvaluator() {
+
+            @Override
+            public void applyItemOffers(PromotableOrder order, List<PromotableCandidateItemOffer> itemOffers) {
+                applyAllItemOffers(itemOffers, order);
+            }
+
+            @Override
+            public boolean isPotentialSavingsUpperBound() {
+                if (extensionManager != null) {
+                    for (ExtensionHandler handler : extensionManager.getHandlers()) {
+                        if (handler.isEnabled()) {
+                            return false;
+                        }
+                    }
                 }
+                return true;
+            }
+
+            @Override
+            public Money calculateSubtotalWithAdjustments(PromotableOrder order) {
+                chooseSaleOrRetailAdjustments(order);
+                return order.calculateSubtotalWithAdjustments();
+            }
 
-                // clear price details
+            @Override
+            public void resetPriceDetails(PromotableOrder order) {
                 for (PromotableOrderItem item : order.getDiscountableOrderItems()) {
                     item.resetPriceDetails();
                 }
             }
-        } else {
-            bestOfferList = permutations.get(0);
-        }
-
-        for (PromotableCandidateItemOffer offer : bestOfferList) {
-            offer.resetUses();
-        }
-
-        return bestOfferList;
+        };
     }
 
     protected void removeDuplicatePermutations(List<List<PromotableCandidateItemOffer>> permutations) {
@@ -721,4 +735,12 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
             }  
         }
     }
+
+    public OfferPermutationStrategy getOfferPermutationStrategy() {
+        return offerPermutationStrategy;
+    }
+
+    public void setOfferPermutationStrategy(OfferPermutationStrategy offerPermutationStrategy) {
+        this.offerPermutationStrategy = offerPermutationStrategy;
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder;
+
+import java.util.List;
+
+/**
+ * Chooses which ordering of the qualified item offers gives the customer the lowest subtotal. Invoked by
+ * {@link ItemOfferProcessorImpl} whenever more than one item offer qualifies for an order.
+ * <p>
+ * Implementations may trial as many orderings as they like through the supplied {@link ItemOfferPermutationEvaluator}
+ * but must leave the order's price details reset when they return.
+ *
+ * @see OfferPermutationStrategyImpl
+ */
+public interface OfferPermutationStrategy {
+
+    /**
+     * @param permutations the candidate orderings built by the processor, the first being the default ordering
+     * @param order the order being priced
+     * @param evaluator used to trial an ordering against the order
+     * @return the ordering that should be applied to the order
+     */
+    List<PromotableCandidateItemOffer> determineBestPermutation(List<List<PromotableCandidateItemOffer>> permutations,
+            PromotableOrder order, ItemOfferPermutationEvaluator evaluator);
+
+}
@@ -0,0 +1,244 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default {@link OfferPermutationStrategy}. With the default configuration every candidate ordering is fully applied and
+ * the one producing the lowest subtotal wins, which is the historical behavior of {@link ItemOfferProcessorImpl}.
+ * <p>
+ * When "pricing.offer.permutation.pruning.enabled" is true, an ordering is skipped when even the sum of the
+ * {@link PromotableCandidateItemOffer#getPotentialSavings()} of its offers could not bring the subtotal below the best
+ * ordering found so far. The potential savings of an offer are calculated with that offer applied on its own, and
+ * are only used as a bound when {@link ItemOfferPermutationEvaluator#isPotentialSavingsUpperBound()} says that no
+ * ordering can get more out of the offer. No assumption is made about combinability, which Broadleaf decides per item
+ * price detail. Every ordering that is not skipped is trialed in full with
+ * {@link ItemOfferPermutationEvaluator#applyItemOffers(PromotableOrder, List)}, so its subtotal is the one the order
+ * will end up with. Should a trialed ordering ever save more than its bound, pruning is switched off for the order and
+ * the skipped orderings are trialed as well.
+ * <p>
+ * "pricing.offer.permutation.exploreExclusiveOffers" additionally trials an ordering headed by each totalitarian or
+ * non-combinable offer, and "pricing.offer.permutation.maxEvaluations" / "pricing.offer.permutation.timeBudgetMillis"
+ * limit the work done for very large carts. Unlike pruning, these limits may miss the best ordering. The default
+ * ordering is always evaluated, regardless of the budget.
+ */
+@Service("blOfferPermutationStrategy")
+public class OfferPermutationStrategyImpl implements OfferPermutationStrategy {
+
+    private static final Log LOG = LogFactory.getLog(OfferPermutationStrategyImpl.class);
+
+    @Value("${pricing.offer.permutation.pruning.enabled:false}")
+    protected boolean pruningEnabled = false;
+
+    @Value("${pricing.offer.permutation.exploreExclusiveOffers:false}")
+    protected boolean exploreExclusiveOffers = false;
+
+    @Value("${pricing.offer.permutation.maxEvaluations:0}")
+    protected int maxEvaluations = 0;
+
+    @Value("${pricing.offer.permutation.timeBudgetMillis:0}")
+    protected long timeBudgetMillis = 0;
+
+    @Override
+    public List<PromotableCandidateItemOffer> determineBestPermutation(List<List<PromotableCandidateItemOffer>> permutations,
+            PromotableOrder order, ItemOfferPermutationEvaluator evaluator) {
+        List<List<PromotableCandidateItemOffer>> candidates = new ArrayList<List<PromotableCandidateItemOffer>>(permutations);
+        if (exploreExclusiveOffers) {
+            addExclusiveOfferPermutations(candidates);
+        }
+
+        List<PromotableCandidateItemOffer> bestOfferList = null;
+        if (candidates.size() > 1) {
+            long deadline = timeBudgetMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis) : Long.MAX_VALUE;
+            Money subtotalWithoutAdjustments = order.calculateSubtotalWithoutAdjustments();
+            boolean prune = pruningEnabled && evaluator.isPotentialSavingsUpperBound();
+            Money lowestSubtotal = null;
+            int evaluations = 0;
+            List<List<PromotableCandidateItemOffer>> pruned = new ArrayList<List<PromotableCandidateItemOffer>>();
+
+            for (int i = 0; i < candidates.size(); i++) {
+                List<PromotableCandidateItemOffer> offerList = candidates.get(i);
+                if (bestOfferList != null && isBudgetExhausted(evaluations, deadline)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Item offer permutation budget exhausted, %s orderings not evaluated", candidates.size() - i));
+                    }
+                    break;
+                }
+                Money maximumSavings = prune ? calculateMaximumSavings(offerList) : null;
+                if (lowestSubtotal != null && !canImprove(subtotalWithoutAdjustments, maximumSavings, lowestSubtotal)) {
+                    pruned.add(offerList);
+                    continue;
+                }
+
+                Money testSubtotal = evaluate(offerList, order, evaluator);
+                evaluations++;
+                if (lowestSubtotal == null || testSubtotal.lessThan(lowestSubtotal)) {
+                    lowestSubtotal = testSubtotal;
+                    bestOfferList = offerList;
+                }
+
+                if (maximumSavings != null && subtotalWithoutAdjustments.subtract(testSubtotal).greaterThan(maximumSavings)) {
+                    LOG.warn("An item offer ordering saved more than the potential savings of its offers. Evaluating every ordering for this order.");
+                    prune = false;
+                    candidates.addAll(i + 1, pruned);
+                    pruned.clear();
+                }
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Evaluated %s of %s item offer permutations (%s pruned)", evaluations, candidates.size(), pruned.size()));
+            }
+        }
+
+        if (bestOfferList == null) {
+            bestOfferList = candidates.get(0);
+        }
+        for (PromotableCandidateItemOffer offer : bestOfferList) {
+            offer.resetUses();
+        }
+
+        return bestOfferList;
+    }
+
+    /**
+     * Applies the offers in order and returns the resulting subtotal. The order is always reset before returning.
+     */
+    protected Money evaluate(List<PromotableCandidateItemOffer> offerList, PromotableOrder order, ItemOfferPermutationEvaluator evaluator) {
+        for (PromotableCandidateItemOffer offer : offerList) {
+            offer.resetUses();
+        }
+        try {
+            evaluator.applyItemOffers(order, offerList);
+            return evaluator.calculateSubtotalWithAdjustments(order);
+        } finally {
+            evaluator.resetPriceDetails(order);
+        }
+    }
+
+    /**
+     * @return the most an ordering of these offers could possibly save, or null if this cannot be determined
+     */
+    protected Money calculateMaximumSavings(List<PromotableCandidateItemOffer> offerList) {
+        if (offerList.isEmpty()) {
+            return null;
+        }
+        Money sum = null;
+        for (PromotableCandidateItemOffer offer : offerList) {
+            if (offer.getPotentialSavings() == null) {
+                return null;
+            }
+            sum = sum == null ? offer.getPotentialSavings() : sum.add(offer.getPotentialSavings());
+        }
+        return sum;
+    }
+
+    protected boolean canImprove(Money subtotalWithoutAdjustments, Money maximumSavings, Money lowestSubtotal) {
+        if (maximumSavings == null) {
+            return true;
+        }
+        return subtotalWithoutAdjustments.subtract(maximumSavings).lessThan(lowestSubtotal);
+    }
+
+    protected boolean isBudgetExhausted(int evaluations, long deadline) {
+        return (maxEvaluations > 0 && evaluations >= maxEvaluations) || System.nanoTime() > deadline;
+    }
+
+    /**
+     * A totalitarian or non-combinable offer, which would otherwise only ever be applied to the items not already
+     * taken by the offers ahead of it
+     */
+    protected boolean isExclusive(Offer offer) {
+        return offer.isTotalitarianOffer() || !offer.isCombinableWithOtherOffers();
+    }
+
+    /**
+     * Adds an ordering headed by each totalitarian or non-combinable offer that does not already head a candidate,
+     * followed by the rest of the offers in the default order.
+     */
+    protected void addExclusiveOfferPermutations(List<List<PromotableCandidateItemOffer>> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Set<PromotableCandidateItemOffer> heads = new HashSet<PromotableCandidateItemOffer>();
+        for (List<PromotableCandidateItemOffer> candidate : candidates) {
+            if (!candidate.isEmpty()) {
+                heads.add(candidate.get(0));
+            }
+        }
+
+        List<PromotableCandidateItemOffer> defaultOrdering = candidates.get(0);
+        for (PromotableCandidateItemOffer offer : defaultOrdering) {
+            if (isExclusive(offer.getOffer()) && heads.add(offer)) {
+                List<PromotableCandidateItemOffer> permutation = new ArrayList<PromotableCandidateItemOffer>(defaultOrdering.size());
+                permutation.add(offer);
+                for (PromotableCandidateItemOffer other : defaultOrdering) {
+                    if (other != offer) {
+                        permutation.add(other);
+                    }
+                }
+                candidates.add(permutation);
+            }
+        }
+    }
+
+    public boolean isPruningEnabled() {
+        return pruningEnabled;
+    }
+
+    public void setPruningEnabled(boolean pruningEnabled) {
+        this.pruningEnabled = pruningEnabled;
+    }
+
+    public boolean isExploreExclusiveOffers() {
+        return exploreExclusiveOffers;
+    }
+
+    public void setExploreExclusiveOffers(boolean exploreExclusiveOffers) {
+        this.exploreExclusiveOffers = exploreExclusiveOffers;
+    }
+
+    public int getMaxEvaluations() {
+        return maxEvaluations;
+    }
+
+    public void setMaxEvaluations(int maxEvaluations) {
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.core.offer.domain.Offer;
+
+/**
+ * Implemented by offer processors that can compile an offer's MVEL rules into the expression cache they evaluate them
+ * from, so that the first order priced after the offer changes does not pay for the compilation.
+ *
+ * {@link org.broadleafcommerce.core.offer.service.OfferService#save(Offer)} precompiles the offer it saves. Offers
+ * changed by other means, such as imports or direct database updates, and offers loaded after a restart are compiled
+ * on their first evaluation as before. CMS content rules and customer segment rules are not covered.
+ */
+public interface OfferRulePrecompiler {
+
+    /**
+     * Compiles the match rules and item criteria of the given offer ahead of their first evaluation.
+     * 
+     * @param offer
+     */
+    public void precompileOfferRules(Offer offer);
+
+}
@@ -110,11 +110,9 @@ public class ConsolidateFulfillmentFeesActivity extends BaseActivity<ProcessCont
         String feeExpression = fee.getExpression();
         
         if (StringUtils.isNotEmpty(feeExpression)) {
-            synchronized (EXPRESSION_CACHE) {
-                HashMap<String, Object> vars = new HashMap<>();
-                vars.put("fulfillmentGroup", fulfillmentGroup);
-                MvelHelper.evaluateRule(feeExpression, vars, EXPRESSION_CACHE);
-            }
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("fulfillmentGroup", fulfillmentGroup);
+            MvelHelper.evaluateRule(feeExpression, vars, EXPRESSION_CACHE);
         }
         
         return appliesToFulfillmentGroup;
@@ -38,6 +38,11 @@ public class CatalogStructure implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Display orders are stored in the index as longs, multiplied by this value to maintain any decimals in use
+     */
+    public static final long DISPLAY_ORDER_SCALE = 1000000L;
+
     protected Map<Long, Set<Long>> parentCategoriesByProduct = new HashMap<Long, Set<Long>>();
     protected Map<Long, Set<Long>> parentCategoriesByCategory = new HashMap<Long, Set<Long>>();
     protected Map<Long, List<Long>> productsByCategory = new HashMap<Long, List<Long>>();
@@ -67,4 +72,47 @@ public class CatalogStructure implements Serializable {
         this.displayOrdersByCategoryProduct = displayOrdersByCategoryProduct;
     }
 
+    /**
+     * @param productId the product to look up
+     * @return the immediate parent categories of the product, or null if the product has not been loaded
+     */
+    public long[] getParentCategoryIds(Long productId) {
+        Set<Long> parents = parentCategoriesByProduct.get(productId);
+        if (parents == null) {
+            return null;
+        }
+        long[] response = new long[parents.size()];
+        int pos = 0;
+        for (Long parent : parents) {
+            response[pos++] = parent;
+        }
+        return response;
+    }
+
+    /**
+     * @param categoryId the category the product belongs to
+     * @param productId the product
+     * @return the display order of the product in the category multiplied by {@link #DISPLAY_ORDER_SCALE}, or null
+     * if there isn't one
+     */
+    public Long getDisplayOrder(Long categoryId, Long productId) {
+        BigDecimal displayOrder = displayOrdersByCategoryProduct.get(categoryId + "-" + productId);
+        if (displayOrder == null) {
+            return null;
+        }
+        return displayOrder.multiply(BigDecimal.valueOf(DISPLAY_ORDER_SCALE)).longValue();
+    }
+
+    /**
+     * Structures that have the complete category graph available can return the category along with every one of its
+     * ancestors here. This default implementation returns null, signifying that the ancestors should be found by
+     * walking {@link #getParentCategoriesByCategory()}.
+     *
+     * @param categoryId the category to start from
+     * @return the category and all of its ancestors, or null if not available
+     */
+    public long[] getAncestorCategoryIds(Long categoryId) {
+        return null;
+    }
+
 }
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.dao;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable snapshot of the entire category graph (child category to parent categories, including the default parent)
+ * read once per reindex by {@link SolrIndexDao#readCategoryHierarchy()}. Category ids are held in a sorted primitive
+ * array so lookups are a binary search with no boxing.
+ * <p>
+ * The full ancestor chain of a category is computed the first time it is requested and memoized, so indexing a product
+ * in a deep category only walks the graph once for the entire reindex. Instances are safe to share between indexing
+ * threads; two threads racing on the same category will simply compute the same closure twice.
+ */
+public class CategoryHierarchy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final long[] NO_PARENTS = new long[0];
+
+    protected final long[] categoryIds;
+    protected final long[][] parentIds;
+    protected final AtomicReferenceArray<long[]> ancestorIds;
+
+    protected CategoryHierarchy(LongToLongArrayMap parentsByCategory) {
+        categoryIds = parentsByCategory.keys();
+        Arrays.sort(categoryIds);
+        parentIds = new long[categoryIds.length][];
+        for (int i = 0; i < categoryIds.length; i++) {
+            parentIds[i] = parentsByCategory.get(categoryIds[i]);
+        }
+        ancestorIds = new AtomicReferenceArray<>(categoryIds.length);
+    }
+
+    public boolean containsCategory(long categoryId) {
+        return Arrays.binarySearch(categoryIds, categoryId) >= 0;
+    }
+
+    /**
+     * @return the immediate parents of the category, or an empty array if the category is a root or is unknown
+     */
+    public long[] getParentIds(long categoryId) {
+        int index = Arrays.binarySearch(categoryIds, categoryId);
+        return index < 0 ? NO_PARENTS : parentIds[index];
+    }
+
+    /**
+     * Returns the given category followed by every category above it in the graph, breadth first. Each category
+     * appears once, even if it is reachable along more than one path or the graph contains a cycle.
+     *
+     * @param categoryId the category to start from
+     * @return the category and all of its ancestors
+     */
+    public long[] getAncestorIds(long categoryId) {
+        int index = Arrays.binarySearch(categoryIds, categoryId);
+        if (index < 0) {
+            return new long[] { categoryId };
+        }
+        long[] ancestors = ancestorIds.get(index);
+        if (ancestors == null) {
+            ancestors = computeAncestorIds(categoryId);
+            ancestorIds.set(index, ancestors);
+        }
+        return ancestors;
+    }
+
+    public int size() {
+        return categoryIds.length;
+    }
+
+    protected long[] computeAncestorIds(long categoryId) {
+        long[] result = new long[8];
+        int size = 0;
+        result[size++] = categoryId;
+        for (int pos = 0; pos < size; pos++) {
+            for (long parent : getParentIds(result[pos])) {
+                if (!contains(result, size, parent)) {
+                    if (size == result.length) {
+                        result = Arrays.copyOf(result, size * 2);
+                    }
+                    result[size++] = parent;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    protected static boolean contains(long[] values, int length, long value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Accumulates parent relationships before producing the immutable {@link CategoryHierarchy}
+     */
+    public static class Builder {
+
+        protected final LongToLongArrayMap parentsByCategory;
+
+        public Builder(int expectedSize) {
+            parentsByCategory = new LongToLongArrayMap(expectedSize);
+        }
+
+        /**
+         * Registers a category that may not have any parents (i.e. a root)
+         */
+        public Builder addCategory(long categoryId) {
+            if (!parentsByCategory.containsKey(categoryId)) {
+                parentsByCategory.put(categoryId, NO_PARENTS);
+            }
+            return this;
+        }
+
+        public Builder addParent(long categoryId, long parentId) {
+            parentsByCategory.add(categoryId, parentId);
+            addCategory(parentId);
+            return this;
+        }
+
+        public CategoryHierarchy build() {
+            return new CategoryHierarchy(parentsByCategory);
+        }
+    }
+}
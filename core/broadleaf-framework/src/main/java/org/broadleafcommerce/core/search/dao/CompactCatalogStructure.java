@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.dao;
+
+/**
+ * {@link CatalogStructure} backed by primitive keyed tables rather than maps of boxed ids and concatenated String keys.
+ * The category graph is not loaded page by page; instead a single {@link CategoryHierarchy} covering the whole catalog
+ * is read once per reindex and shared, and ancestor chains are resolved from its memoized closure.
+ * <p>
+ * Only the accessor methods declared on {@link CatalogStructure} ({@link #getParentCategoryIds(Long)},
+ * {@link #getDisplayOrder(Long, Long)} and {@link #getAncestorCategoryIds(Long)}) are populated. The legacy map
+ * getters remain empty for this implementation.
+ *
+ * @see org.broadleafcommerce.core.search.dao.SolrIndexDao#readCategoryHierarchy()
+ */
+public class CompactCatalogStructure extends CatalogStructure {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final CategoryHierarchy categoryHierarchy;
+    protected final LongToLongArrayMap productParentCategories = new LongToLongArrayMap(1024);
+    protected final LongPairToLongMap productDisplayOrders = new LongPairToLongMap(2048);
+
+    public CompactCatalogStructure(CategoryHierarchy categoryHierarchy) {
+        this.categoryHierarchy = categoryHierarchy;
+    }
+
+    public CategoryHierarchy getCategoryHierarchy() {
+        return categoryHierarchy;
+    }
+
+    public boolean containsProduct(long productId) {
+        return productParentCategories.containsKey(productId);
+    }
+
+    /**
+     * Adds the parent categories for products that have not already been loaded
+     */
+    public void addParentCategories(LongToLongArrayMap parentCategoriesByProduct) {
+        productParentCategories.putAllAbsent(parentCategoriesByProduct);
+    }
+
+    /**
+     * @param displayOrder the display order, already multiplied by {@link #DISPLAY_ORDER_SCALE}
+     */
+    public void putDisplayOrder(long categoryId, long productId, long displayOrder) {
+        productDisplayOrders.put(categoryId, productId, displayOrder);
+    }
+
+    @Override
+    public long[] getParentCategoryIds(Long productId) {
+        if (productId == null) {
+            return null;
+        }
+        return productParentCategories.get(productId);
+    }
+
+    @Override
+    public Long getDisplayOrder(Long categoryId, Long productId) {
+        if (categoryId == null || productId == null) {
+            return null;
+        }
+        long displayOrder = productDisplayOrders.get(categoryId, productId, Long.MIN_VALUE);
+        return displayOrder == Long.MIN_VALUE ? null : displayOrder;
+    }
+
+    @Override
+    public long[] getAncestorCategoryIds(Long categoryId) {
+        if (categoryId == null) {
+            return null;
+        }
+        return categoryHierarchy.getAncestorIds(categoryId);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.dao;
+
+import java.io.Serializable;
+
+/**
+ * Open addressing hash map from a pair of primitive longs to a primitive long. {@link CompactCatalogStructure} uses it
+ * to store the (categoryId, productId) display order table without building a concatenated String key per entry.
+ * <p>
+ * This class is not thread safe.
+ */
+public class LongPairToLongMap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int MIN_CAPACITY = 16;
+
+    protected long[] firstKeys;
+    protected long[] secondKeys;
+    protected long[] values;
+    protected boolean[] used;
+    protected int size;
+
+    public LongPairToLongMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongPairToLongMap(int expectedSize) {
+        int capacity = LongToLongArrayMap.tableSizeFor(Math.max(MIN_CAPACITY, expectedSize * 2));
+        firstKeys = new long[capacity];
+        secondKeys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+    }
+
+    public boolean containsKey(long first, long second) {
+        return used[slot(first, second)];
+    }
+
+    /**
+     * @return the value stored for the pair, or the given default if there is no entry
+     */
+    public long get(long first, long second, long defaultValue) {
+        int slot = slot(first, second);
+        return used[slot] ? values[slot] : defaultValue;
+    }
+
+    public void put(long first, long second, long value) {
+        int slot = slot(first, second);
+        if (!used[slot]) {
+            firstKeys[slot] = first;
+            secondKeys[slot] = second;
+            used[slot] = true;
+            size++;
+        }
+        values[slot] = value;
+        ensureCapacity();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    protected int slot(long first, long second) {
+        int mask = used.length - 1;
+        int slot = (LongToLongArrayMap.hash(first) * 31 + LongToLongArrayMap.hash(second)) & mask;
+        while (used[slot] && (firstKeys[slot] != first || secondKeys[slot] != second)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    protected void ensureCapacity() {
+        if (size * 2 <= used.length) {
+            return;
+        }
+        long[] oldFirst = firstKeys;
+        long[] oldSecond = secondKeys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        int capacity = oldUsed.length * 2;
+        firstKeys = new long[capacity];
+        secondKeys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slot(oldFirst[i], oldSecond[i]);
+                firstKeys[slot] = oldFirst[i];
+                secondKeys[slot] = oldSecond[i];
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+}
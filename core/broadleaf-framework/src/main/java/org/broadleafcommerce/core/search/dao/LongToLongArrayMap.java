@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.dao;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from a primitive long key to a primitive long[] value. Used by
+ * {@link CompactCatalogStructure} to hold id adjacency lists without boxing every id into a {@link Long} and every
+ * list into a {@link java.util.Set}.
+ * <p>
+ * This class is not thread safe.
+ */
+public class LongToLongArrayMap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int MIN_CAPACITY = 16;
+
+    protected long[] keys;
+    protected long[][] values;
+    protected int size;
+
+    public LongToLongArrayMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongToLongArrayMap(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(MIN_CAPACITY, expectedSize * 2));
+        keys = new long[capacity];
+        values = new long[capacity][];
+    }
+
+    /**
+     * @return the values for the key, or null if the key is not present
+     */
+    public long[] get(long key) {
+        return values[slot(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return values[slot(key)] != null;
+    }
+
+    public void put(long key, long[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        int slot = slot(key);
+        if (values[slot] == null) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        ensureCapacity();
+    }
+
+    /**
+     * Appends the value to the array for the key, unless it is already present. Creates the entry if needed.
+     */
+    public void add(long key, long value) {
+        int slot = slot(key);
+        long[] current = values[slot];
+        if (current == null) {
+            keys[slot] = key;
+            values[slot] = new long[] { value };
+            size++;
+            ensureCapacity();
+            return;
+        }
+        for (long existing : current) {
+            if (existing == value) {
+                return;
+            }
+        }
+        long[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = value;
+        values[slot] = grown;
+    }
+
+    /**
+     * Copies every entry from the other map whose key is not already present in this one
+     */
+    public void putAllAbsent(LongToLongArrayMap other) {
+        for (int i = 0; i < other.values.length; i++) {
+            if (other.values[i] != null && !containsKey(other.keys[i])) {
+                put(other.keys[i], other.values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return a new array containing every key in the map, in no particular order
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int pos = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result[pos++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    protected int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    protected void ensureCapacity() {
+        if (size * 2 <= keys.length) {
+            return;
+        }
+        long[] oldKeys = keys;
+        long[][] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2][];
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    protected static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    protected static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(capacity - 1) << 1;
+        return n <= 0 ? MIN_CAPACITY : n;
+    }
+}
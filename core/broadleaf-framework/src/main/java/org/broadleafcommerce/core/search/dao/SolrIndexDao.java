@@ -36,4 +36,13 @@ public interface SolrIndexDao {
      */
     void populateProductCatalogStructure(List<Long> productIds, CatalogStructure catalogStructure);
 
+    /**
+     * Read the parent relationships for every category in the catalog in one pass. Intended to be called once per
+     * reindex and shared by every {@link CompactCatalogStructure} built during that reindex.
+     *
+     * @return the complete category graph
+     * @see org.broadleafcommerce.core.search.dao.CategoryHierarchy
+     */
+    CategoryHierarchy readCategoryHierarchy();
+
 }
@@ -59,6 +59,10 @@ public class SolrIndexDaoImpl implements SolrIndexDao {
         Boolean oldIgnoreFilters = context.getInternalIgnoreFilters();
         context.setInternalIgnoreFilters(false);
         try {
+            if (catalogStructure instanceof CompactCatalogStructure) {
+                populateCompactProductCatalogStructure(productIds, (CompactCatalogStructure) catalogStructure);
+                return;
+            }
             Map<Long, Set<Long>> parentCategoriesByProduct = new HashMap<>();
             Map<Long, Set<Long>> parentCategoriesByCategory = new HashMap<>();
     
@@ -121,6 +125,81 @@ public class SolrIndexDaoImpl implements SolrIndexDao {
         }
     }
 
+    /**
+     * Populate the product to category relationships and display orders for a {@link CompactCatalogStructure}. The
+     * category hierarchy is not read here since the structure already holds the entire graph.
+     *
+     * @param productIds
+     * @param catalogStructure
+     */
+    protected void populateCompactProductCatalogStructure(List<Long> productIds, CompactCatalogStructure catalogStructure) {
+        LongToLongArrayMap parentCategoriesByProduct = new LongToLongArrayMap(productIds.size());
+
+        Long[] products = productIds.toArray(new Long[productIds.size()]);
+        BiMap<Long, Long> originalBySandBoxProduct = sandBoxHelper.getSandBoxToOriginalMap(ProductImpl.class, products).inverse();
+        int batchSize = 800;
+        for (int pos = 0; pos < products.length; pos += batchSize) {
+            int mySize = Math.min(batchSize, products.length - pos);
+            Long[] temp = new Long[mySize];
+            System.arraycopy(products, pos, temp, 0, mySize);
+
+            TypedQuery<ParentCategoryByProduct> query = em.createNamedQuery("BC_READ_PARENT_CATEGORY_IDS_BY_PRODUCTS", ParentCategoryByProduct.class);
+            query.setParameter("productIds", sandBoxHelper.mergeCloneIds(ProductImpl.class, temp));
+
+            for (ParentCategoryByProduct item : query.getResultList()) {
+                Long sandBoxProductVal = item.getProduct();
+                if (originalBySandBoxProduct.containsKey(sandBoxProductVal)) {
+                    sandBoxProductVal = originalBySandBoxProduct.get(sandBoxProductVal);
+                }
+                if (!catalogStructure.containsProduct(sandBoxProductVal)) {
+                    //We only want the sandbox parent - if applicable
+                    parentCategoriesByProduct.add(sandBoxProductVal, getSandBoxCategoryId(item.getCategory()));
+                }
+
+                long displayOrder = item.getDisplayOrder() == null ? CatalogStructure.DISPLAY_ORDER_SCALE
+                        : item.getDisplayOrder().multiply(BigDecimal.valueOf(CatalogStructure.DISPLAY_ORDER_SCALE)).longValue();
+                catalogStructure.putDisplayOrder(item.getCategory(), item.getProduct(), displayOrder);
+            }
+        }
+        catalogStructure.addParentCategories(parentCategoriesByProduct);
+    }
+
+    @Override
+    public CategoryHierarchy readCategoryHierarchy() {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        Boolean oldIgnoreFilters = context.getInternalIgnoreFilters();
+        context.setInternalIgnoreFilters(false);
+        try {
+            TypedQuery<ParentCategoryByCategory> query = em.createNamedQuery("BC_READ_ALL_PARENT_CATEGORY_IDS", ParentCategoryByCategory.class);
+            List<ParentCategoryByCategory> results = query.getResultList();
+
+            CategoryHierarchy.Builder builder = new CategoryHierarchy.Builder(results.size());
+            for (ParentCategoryByCategory item : results) {
+                //only the sandbox child and parents
+                long child = getSandBoxCategoryId(item.getChild());
+                builder.addCategory(child);
+                if (item.getParent() != null) {
+                    builder.addParent(child, getSandBoxCategoryId(item.getParent()));
+                }
+                if (item.getDefaultParent() != null) {
+                    builder.addParent(child, getSandBoxCategoryId(item.getDefaultParent()));
+                }
+            }
+            CategoryHierarchy hierarchy = builder.build();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Read category hierarchy containing %s categories", hierarchy.size()));
+            }
+            return hierarchy;
+        } finally {
+            context.setInternalIgnoreFilters(oldIgnoreFilters);
+        }
+    }
+
+    protected Long getSandBoxCategoryId(Long categoryId) {
+        Long sandBoxVal = sandBoxHelper.getSandBoxVersionId(CategoryImpl.class, categoryId);
+        return sandBoxVal == null ? categoryId : sandBoxVal;
+    }
+
     /**
      * Build up a map of category to parent categories
      *
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.domain;
+
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
+import org.broadleafcommerce.common.media.domain.Media;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Product;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Read-only view of a product search hit, built from the stored fields returned by Solr rather than from the
+ * {@link Product} entity. Values are keyed by {@link Field#getAbbreviation()}, so a template can render
+ * <code>${view.name}</code> or <code>${view.get('mfg')}</code> without touching the database.
+ * <p>
+ * Asking for a field that was not projected loads the product (together with every other product on the same page)
+ * and reads the value from the entity instead. Templates that still need the entity itself can use
+ * {@link #getProduct()}, which triggers the same fallback.
+ */
+public class ProductSearchView implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String NAME = "name";
+    public static final String PRICE = "price";
+    public static final String URL = "url";
+    public static final String PRIMARY_IMAGE = "primaryImage";
+
+    /**
+     * Loads the entity behind a view when a template asks for something that was not projected
+     */
+    public interface Loader {
+
+        public Product loadProduct(ProductSearchView view);
+
+        public Object readPropertyValue(Product product, String abbreviation);
+    }
+
+    protected final Long id;
+    protected final Map<String, Object> values;
+    protected final BroadleafCurrency currency;
+    protected final transient Loader loader;
+    protected transient Product product;
+
+    public ProductSearchView(Long id, Map<String, Object> values, BroadleafCurrency currency, Loader loader) {
+        this.id = id;
+        this.values = Collections.unmodifiableMap(values);
+        this.currency = currency;
+        this.loader = loader;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return the projected values, keyed by field abbreviation
+     */
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    public boolean isProjected(String abbreviation) {
+        return values.containsKey(abbreviation);
+    }
+
+    /**
+     * @return the projected value for the given field abbreviation, falling back to the product entity if the field
+     * was not returned by Solr
+     */
+    public Object get(String abbreviation) {
+        if (values.containsKey(abbreviation)) {
+            return values.get(abbreviation);
+        }
+        Product product = getProduct();
+        return product == null ? null : loader.readPropertyValue(product, abbreviation);
+    }
+
+    public String getName() {
+        if (values.containsKey(NAME)) {
+            return asString(values.get(NAME));
+        }
+        Product product = getProduct();
+        return product == null ? null : product.getName();
+    }
+
+    public String getUrl() {
+        if (values.containsKey(URL)) {
+            return asString(values.get(URL));
+        }
+        Product product = getProduct();
+        return product == null ? null : product.getUrl();
+    }
+
+    public String getPrimaryImageUrl() {
+        if (values.containsKey(PRIMARY_IMAGE)) {
+            return asString(values.get(PRIMARY_IMAGE));
+        }
+        Product product = getProduct();
+        if (product == null || product.getMedia() == null) {
+            return null;
+        }
+        Media media = product.getMedia().get("primary");
+        return media == null ? null : media.getUrl();
+    }
+
+    public Money getPrice() {
+        if (values.containsKey(PRICE)) {
+            Object value = values.get(PRICE);
+            if (value == null) {
+                return null;
+            }
+            BigDecimal amount = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(asString(value));
+            return new Money(amount, currency);
+        }
+        Product product = getProduct();
+        return product == null || product.getDefaultSku() == null ? null : product.getDefaultSku().getPrice();
+    }
+
+    /**
+     * @return the product entity for this view, loading it if necessary. Note that this is counted as a fallback.
+     */
+    public Product getProduct() {
+        if (product == null && loader != null) {
+            product = loader.loadProduct(this);
+        }
+        return product;
+    }
+
+    /**
+     * @return whether the product entity has been loaded for this view
+     */
+    public boolean isProductLoaded() {
+        return product != null;
+    }
+
+    protected String asString(Object value) {
+        if (value instanceof Iterable) {
+            Iterator<?> itr = ((Iterable<?>) value).iterator();
+            value = itr.hasNext() ? itr.next() : null;
+        }
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        ProductSearchView other = (ProductSearchView) obj;
+        return id == null ? other.id == null : id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id == null ? 0 : id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ProductSearchView[id=" + id + ", values=" + values + "]";
+    }
+}
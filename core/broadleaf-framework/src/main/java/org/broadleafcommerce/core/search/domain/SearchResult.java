@@ -32,6 +32,7 @@ public class SearchResult {
     
     protected List<Product> products;
     protected List<Sku> skus;
+    protected List<ProductSearchView> productViews;
     protected List<SearchFacetDTO> facets;
     
     protected Integer totalResults;
@@ -56,6 +57,18 @@ public class SearchResult {
         this.skus = skus;
     }
 
+    /**
+     * @return the lightweight views of the matching products when search results are projected from stored Solr
+     * fields, in which case {@link #getProducts()} is not populated
+     */
+    public List<ProductSearchView> getProductViews() {
+        return productViews;
+    }
+
+    public void setProductViews(List<ProductSearchView> productViews) {
+        this.productViews = productViews;
+    }
+
     public List<SearchFacetDTO> getFacets() {
         return facets;
     }
@@ -89,7 +102,7 @@ public class SearchResult {
     }
     
     public Integer getStartResult() {
-        return ((products == null || products.size() == 0) && (skus == null || skus.size() == 0)) ? 0 : ((page - 1) * pageSize) + 1;
+        return isEmpty() ? 0 : ((page - 1) * pageSize) + 1;
     }
     
     public Integer getEndResult() {
@@ -97,7 +110,12 @@ public class SearchResult {
     }
     
     public Integer getTotalPages() {
-        return ((products == null || products.size() == 0) && (skus == null || skus.size() == 0)) ? 1 : (int) Math.ceil(totalResults * 1.0 / pageSize);
+        return isEmpty() ? 1 : (int) Math.ceil(totalResults * 1.0 / pageSize);
+    }
+
+    protected boolean isEmpty() {
+        return (products == null || products.size() == 0) && (skus == null || skus.size() == 0)
+                && (productViews == null || productViews.size() == 0);
     }
 
     public QueryResponse getQueryResponse() {
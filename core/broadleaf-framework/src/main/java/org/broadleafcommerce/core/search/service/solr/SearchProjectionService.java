@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.common.SolrDocument;
+import org.broadleafcommerce.core.search.domain.ProductSearchView;
+import org.broadleafcommerce.core.search.domain.SearchCriteria;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds {@link ProductSearchView}s for product listing pages from the stored fields returned by Solr, so that the
+ * listing can be rendered without loading each product entity. The Solr schema must store the field types of the
+ * projected index fields.
+ */
+public interface SearchProjectionService {
+
+    /**
+     * @return whether product search results should be returned as {@link ProductSearchView}s
+     */
+    public boolean isEnabled();
+
+    /**
+     * Resolves the configured field abbreviations to the Solr fields that hold their values for the current request,
+     * including any locale prefix.
+     * 
+     * @param searchCriteria
+     * @return the Solr field names to request, keyed by field abbreviation
+     */
+    public Map<String, String> getProjectedFieldNames(SearchCriteria searchCriteria);
+
+    /**
+     * Builds a view for each response document, in order. A field is only considered projected if Solr returned it
+     * for at least one of the documents, so fields that are not stored fall back to the entity rather than
+     * rendering as empty.
+     * 
+     * @param responseDocuments
+     * @param projectedFieldNames the result of {@link #getProjectedFieldNames(SearchCriteria)}
+     * @return the views
+     */
+    public List<ProductSearchView> buildProductViews(List<SolrDocument> responseDocuments, Map<String, String> projectedFieldNames);
+
+    /**
+     * @return the number of views that had to load their product entity
+     */
+    public long getFallbackCount();
+
+}
@@ -0,0 +1,247 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.common.SolrDocument;
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.ProductDao;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.search.dao.IndexFieldDao;
+import org.broadleafcommerce.core.search.domain.FieldEntity;
+import org.broadleafcommerce.core.search.domain.IndexField;
+import org.broadleafcommerce.core.search.domain.IndexFieldType;
+import org.broadleafcommerce.core.search.domain.ProductSearchView;
+import org.broadleafcommerce.core.search.domain.SearchCriteria;
+import org.broadleafcommerce.core.search.domain.solr.FieldType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+
+/**
+ * Default implementation of {@link SearchProjectionService}. When a view falls back to its entity, every product on
+ * the same page is read in a single query, so a template that touches an unprojected field costs one query per page
+ * rather than one per product.
+ */
+@Service("blSearchProjectionService")
+@ManagedResource(objectName="org.broadleafcommerce:name=SearchProjectionService", description="Search Projection Service", currencyTimeLimit=15)
+public class SearchProjectionServiceImpl implements SearchProjectionService {
+
+    private static final Log LOG = LogFactory.getLog(SearchProjectionServiceImpl.class);
+
+    @Value("${solr.search.projection.enabled:false}")
+    protected boolean enabled = false;
+
+    @Value("${solr.search.projection.fields:name,price,url,primaryImage}")
+    protected String fields = "name,price,url,primaryImage";
+
+    @Resource(name = "blProductDao")
+    protected ProductDao productDao;
+
+    @Resource(name = "blIndexFieldDao")
+    protected IndexFieldDao indexFieldDao;
+
+    @Resource(name = "blSolrHelperService")
+    protected SolrHelperService shs;
+
+    @Resource(name = "blSolrSearchServiceExtensionManager")
+    protected SolrSearchServiceExtensionManager extensionManager;
+
+    protected final AtomicLong viewCount = new AtomicLong();
+    protected final AtomicLong fallbackCount = new AtomicLong();
+    protected final AtomicLong fallbackQueryCount = new AtomicLong();
+
+    @Override
+    public Map<String, String> getProjectedFieldNames(SearchCriteria searchCriteria) {
+        Map<String, String> projectedFieldNames = new LinkedHashMap<>();
+        for (String abbreviation : StringUtils.split(fields, ",")) {
+            abbreviation = abbreviation.trim();
+            IndexFieldType fieldType = getProjectedFieldType(abbreviation);
+            if (fieldType != null) {
+                projectedFieldNames.put(abbreviation, shs.getPropertyNameForIndexField(fieldType.getIndexField(), fieldType.getFieldType()));
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("No index field found for projected field abbreviation " + abbreviation);
+            }
+        }
+        return projectedFieldNames;
+    }
+
+    /**
+     * Prefers a field type that is not tokenized, as it will hold the value exactly as it was indexed
+     * 
+     * @param abbreviation
+     * @return the field type to read the projected value from, or null if the field is not indexed
+     */
+    protected IndexFieldType getProjectedFieldType(String abbreviation) {
+        List<IndexFieldType> fieldTypes = indexFieldDao.getIndexFieldTypesByAbbreviationAndEntityType(abbreviation, FieldEntity.PRODUCT);
+        IndexFieldType result = null;
+        for (IndexFieldType fieldType : fieldTypes) {
+            if (!FieldType.TEXT.equals(fieldType.getFieldType()) && !FieldType.TEXTS.equals(fieldType.getFieldType())) {
+                return fieldType;
+            }
+            if (result == null) {
+                result = fieldType;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<ProductSearchView> buildProductViews(List<SolrDocument> responseDocuments, Map<String, String> projectedFieldNames) {
+        Map<String, String> returnedFieldNames = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : projectedFieldNames.entrySet()) {
+            for (SolrDocument doc : responseDocuments) {
+                if (doc.containsKey(entry.getValue())) {
+                    returnedFieldNames.put(entry.getKey(), entry.getValue());
+                    break;
+                }
+            }
+        }
+
+        List<Long> productIds = new ArrayList<>(responseDocuments.size());
+        for (SolrDocument doc : responseDocuments) {
+            productIds.add((Long) doc.getFieldValue(shs.getIndexableIdFieldName()));
+        }
+
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        BroadleafCurrency currency = context == null ? null : context.getBroadleafCurrency();
+        ProductSearchView.Loader loader = createLoader(productIds);
+
+        List<ProductSearchView> views = new ArrayList<>(responseDocuments.size());
+        for (int i = 0; i < responseDocuments.size(); i++) {
+            SolrDocument doc = responseDocuments.get(i);
+            Map<String, Object> values = new HashMap<>();
+            for (Map.Entry<String, String> entry : returnedFieldNames.entrySet()) {
+                values.put(entry.getKey(), doc.getFieldValue(entry.getValue()));
+            }
+            views.add(new ProductSearchView(productIds.get(i), values, currency, loader));
+        }
+        viewCount.addAndGet(views.size());
+
+        return views;
+    }
+
+    protected ProductSearchView.Loader createLoader(List<Long> productIds) {
+        return new PageLoader(productIds);
+    }
+
+    /**
+     * Loads every product on a page the first time any view on that page needs its entity
+     */
+    protected class PageLoader implements ProductSearchView.Loader {
+
+        protected final List<Long> productIds;
+        protected Map<Long, Product> products;
+
+        public PageLoader(List<Long> productIds) {
+            this.productIds = productIds;
+        }
+
+        @Override
+        public synchronized Product loadProduct(ProductSearchView view) {
+            fallbackCount.incrementAndGet();
+            if (products == null) {
+                fallbackQueryCount.incrementAndGet();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Loading " + productIds.size() + " products for search views after a request for an unprojected field on product " + view.getId());
+                }
+                List<Product> results = productDao.readProductsByIds(productIds);
+                extensionManager.getProxy().batchFetchCatalogData(results);
+                products = new HashMap<>();
+                if (results != null) {
+                    for (Product product : results) {
+                        products.put(shs.getIndexableId(product), product);
+                    }
+                }
+            }
+            return products.get(view.getId());
+        }
+
+        @Override
+        public Object readPropertyValue(Product product, String abbreviation) {
+            IndexField indexField = indexFieldDao.readIndexFieldByAbbreviationAndEntityType(abbreviation, FieldEntity.PRODUCT);
+            if (indexField == null) {
+                return null;
+            }
+            try {
+                return shs.getPropertyValue(product, indexField.getField());
+            } catch (Exception e) {
+                LOG.warn("Could not read " + indexField.getField().getPropertyName() + " from product " + product.getId(), e);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    @ManagedAttribute(description="Whether product search results are projected from stored fields", currencyTimeLimit=15)
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @ManagedAttribute(description="Whether product search results are projected from stored fields", currencyTimeLimit=15)
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @ManagedAttribute(description="The abbreviations of the projected fields", currencyTimeLimit=15)
+    public String getFields() {
+        return fields;
+    }
+
+    @ManagedAttribute(description="The abbreviations of the projected fields", currencyTimeLimit=15)
+    public void setFields(String fields) {
+        this.fields = fields;
+    }
+
+    @ManagedAttribute(description="The number of product search views built", currencyTimeLimit=15)
+    public long getViewCount() {
+        return viewCount.get();
+    }
+
+    @Override
+    @ManagedAttribute(description="The number of product search views that had to load their product", currencyTimeLimit=15)
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    @ManagedAttribute(description="The number of queries issued to load products for search views", currencyTimeLimit=15)
+    public long getFallbackQueryCount() {
+        return fallbackQueryCount.get();
+    }
+
+    @ManagedOperation(description="Resets the projection counters")
+    public void resetCounters() {
+        viewCount.set(0);
+        fallbackCount.set(0);
+        fallbackQueryCount.set(0);
+    }
+}
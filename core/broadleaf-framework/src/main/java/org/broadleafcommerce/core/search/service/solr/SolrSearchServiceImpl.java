@@ -106,6 +106,9 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
     @Resource(name = "blSolrSearchServiceExtensionManager")
     protected SolrSearchServiceExtensionManager extensionManager;
 
+    @Resource(name = "blSearchProjectionService")
+    protected SearchProjectionService searchProjectionService;
+
     @Autowired
     protected Environment environment;
 
@@ -203,6 +206,13 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         }
 
         solrQuery.setFields(shs.getIndexableIdFieldName());
+        Map<String, String> projectedFieldNames = null;
+        if (isProjectingResults()) {
+            projectedFieldNames = searchProjectionService.getProjectedFieldNames(searchCriteria);
+            for (String fieldName : projectedFieldNames.values()) {
+                solrQuery.addField(fieldName);
+            }
+        }
         if (filterQueries != null) {
             solrQuery.setFilterQueries(filterQueries);
         }
@@ -277,6 +287,8 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         if (useSku) {
             List<Sku> skus = getSkus(responseDocuments);
             result.setSkus(skus);
+        } else if (projectedFieldNames != null) {
+            result.setProductViews(searchProjectionService.buildProductViews(responseDocuments, projectedFieldNames));
         } else {
             // Get the products
             List<Product> products = getProducts(responseDocuments);
@@ -286,6 +298,14 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         return result;
     }
 
+    /**
+     * @return whether product results should be returned as {@link SearchResult#getProductViews()} built from stored
+     * Solr fields instead of being loaded from the database. Sku results are always loaded.
+     */
+    protected boolean isProjectingResults() {
+        return !useSku && searchProjectionService != null && searchProjectionService.isEnabled();
+    }
+
     protected String getDefaultSort(SearchCriteria criteria) {
         if (criteria.getCategory() != null) {
             return shs.getCategorySortFieldName(criteria.getCategory()) + " asc";
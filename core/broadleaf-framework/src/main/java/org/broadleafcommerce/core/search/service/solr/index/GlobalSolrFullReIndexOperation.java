@@ -23,9 +23,14 @@ package org.broadleafcommerce.core.search.service.solr.index;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.solr.client.solrj.SolrClient;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.core.catalog.domain.Indexable;
 import org.broadleafcommerce.core.search.service.solr.SolrConfiguration;
 import org.broadleafcommerce.core.search.service.solr.SolrHelperService;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Rebuilds the entire Solr index. This type of indexing operation prevents other threads from performing any other global
  * reindex operation. The rebuild operation is done on {@link SolrContext#getReindexServer()} and then at the end, the
@@ -104,6 +109,23 @@ public abstract class GlobalSolrFullReIndexOperation implements SolrIndexOperati
         // By default we want to do nothing here
     }
 
+    /**
+     * Reads the ids of the page that {@link #readIndexables(int, Long)} reads for the same arguments, before any
+     * filtering of the page, so that the last id is the one the next page starts after. Used by
+     * {@link SolrIndexPipeline} to find the page boundaries without loading the entities.
+     * <p>
+     * By default the page is read and only the ids are kept. Override this with an id only query that matches
+     * {@link #readIndexables(int, Long)}.
+     */
+    public List<Long> readIndexableIds(int pageSize, Long lastId) throws ServiceException {
+        List<? extends Indexable> indexables = readIndexables(pageSize, lastId);
+        List<Long> ids = new ArrayList<>(indexables.size());
+        for (Indexable indexable : indexables) {
+            ids.add(indexable.getId());
+        }
+        return ids;
+    }
+
     @Override
     public void beforeBuildPage() {
         // By default we want to do nothing here
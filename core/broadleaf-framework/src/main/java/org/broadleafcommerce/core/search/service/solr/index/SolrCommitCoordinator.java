@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.common.exception.ServiceException;
+
+import java.util.Collection;
+
+/**
+ * Coalesces document adds and deletes from concurrent incremental index updates and sends them to Solr in batches,
+ * committing once per batch instead of once per caller. A batch is flushed when it reaches the configured size or when
+ * its oldest update has waited for the configured window, whichever comes first.
+ *
+ * Updates for a given {@link SolrClient} are applied in the order they were submitted.
+ */
+public interface SolrCommitCoordinator {
+
+    /**
+     * @return whether incremental updates should be routed through this coordinator
+     */
+    boolean isEnabled();
+
+    /**
+     * Queues the documents to be added
+     *
+     * @throws ServiceException if too many updates are already pending for the server
+     */
+    void addDocuments(SolrClient server, Collection<SolrInputDocument> documents) throws ServiceException;
+
+    /**
+     * Queues the delete
+     *
+     * @throws ServiceException if too many updates are already pending for the server
+     */
+    void deleteByQuery(SolrClient server, String deleteQuery) throws ServiceException;
+
+    /**
+     * Synchronously sends and commits everything that is pending for every server
+     */
+    void flush() throws ServiceException;
+
+    /**
+     * @return the time between an update being submitted and the commit that made it visible, for recent batches
+     */
+    LatencyHistogram getVisibilityLag();
+
+    /**
+     * @return the visibility lag of the most recently committed batch in milliseconds, or -1 if nothing was committed yet
+     */
+    long getLastVisibilityLagMillis();
+
+}
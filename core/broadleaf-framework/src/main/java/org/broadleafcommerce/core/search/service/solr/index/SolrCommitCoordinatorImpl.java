@@ -0,0 +1,446 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Default {@link SolrCommitCoordinator}. Pending updates are kept per server as a single ordered list so that a delete
+ * followed by an add (or the reverse) reaches Solr in the same order. Flushes for a server are serialized; callers
+ * that push a batch over the size threshold flush it themselves, and a single daemon thread flushes batches whose
+ * window has elapsed.
+ * <p>
+ * A batch that fails is put back at the head of the queue and retried by the next flush. Once it has failed maxAttempts
+ * times in a row, its updates are sent one at a time and any update that still fails is logged and dropped (see
+ * {@link #handleDeadLetter(SolrClient, Object, Exception)}), so that a single bad document cannot hold up every later
+ * update. At most maxPendingUpdates updates are queued per server: a caller that would go over the limit first flushes
+ * the queue itself, and is rejected with a {@link ServiceException} if the queue is still full afterwards.
+ */
+@Service("blSolrCommitCoordinator")
+public class SolrCommitCoordinatorImpl implements SolrCommitCoordinator, DisposableBean {
+
+    private static final Log LOG = LogFactory.getLog(SolrCommitCoordinatorImpl.class);
+
+    @Value("${solr.index.commitCoordinator.enabled:false}")
+    protected boolean enabled = false;
+
+    @Value("${solr.index.commitCoordinator.batchSize:500}")
+    protected int batchSize = 500;
+
+    @Value("${solr.index.commitCoordinator.windowMillis:1000}")
+    protected long windowMillis = 1000L;
+
+    @Value("${solr.index.commitCoordinator.policy:SOFT_WITH_PERIODIC_HARD}")
+    protected SolrCommitPolicy commitPolicy = SolrCommitPolicy.SOFT_WITH_PERIODIC_HARD;
+
+    @Value("${solr.index.commitCoordinator.hardCommitIntervalMillis:60000}")
+    protected long hardCommitIntervalMillis = 60000L;
+
+    @Value("${solr.index.commitCoordinator.maxAttempts:3}")
+    protected int maxAttempts = 3;
+
+    @Value("${solr.index.commitCoordinator.maxPendingUpdates:10000}")
+    protected int maxPendingUpdates = 10000;
+
+    @Value("${solr.index.commit:true}")
+    protected boolean commit = true;
+
+    @Value("${solr.index.waitSearcher:true}")
+    protected boolean waitSearcher = true;
+
+    @Value("${solr.index.waitFlush:true}")
+    protected boolean waitFlush = true;
+
+    protected final ConcurrentMap<SolrClient, PendingUpdates> pendingUpdates = new ConcurrentHashMap<SolrClient, PendingUpdates>();
+
+    protected final LatencyHistogram visibilityLag = new LatencyHistogram();
+
+    protected volatile long lastVisibilityLagMillis = -1L;
+
+    protected final AtomicLong deadLetterCount = new AtomicLong();
+
+    protected volatile ScheduledExecutorService flushExecutor;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void addDocuments(SolrClient server, Collection<SolrInputDocument> documents) throws ServiceException {
+        if (documents == null || documents.isEmpty()) {
+            return;
+        }
+        enqueue(server, new ArrayList<Object>(documents));
+    }
+
+    @Override
+    public void deleteByQuery(SolrClient server, String deleteQuery) throws ServiceException {
+        List<Object> updates = new ArrayList<Object>(1);
+        updates.add(new DeleteQuery(deleteQuery));
+        enqueue(server, updates);
+    }
+
+    protected void enqueue(SolrClient server, List<Object> updates) throws ServiceException {
+        PendingUpdates pending = getPendingUpdates(server);
+        if (!offer(pending, updates)) {
+            // Backpressure: send what is queued before adding more
+            try {
+                flush(server, pending);
+            } catch (ServiceException e) {
+                LOG.warn("Unable to flush pending Solr updates, they will be retried", e);
+            }
+            if (!offer(pending, updates)) {
+                throw new ServiceException("Unable to queue " + updates.size() + " Solr updates, " + maxPendingUpdates
+                        + " updates are already pending for this server");
+            }
+        }
+        boolean full;
+        synchronized (pending) {
+            full = pending.updates.size() >= batchSize;
+        }
+        if (full) {
+            try {
+                flush(server, pending);
+            } catch (ServiceException e) {
+                LOG.warn("Unable to flush pending Solr updates, they will be retried", e);
+            }
+        }
+        ensureFlushScheduled();
+    }
+
+    /**
+     * Queues the updates unless that would take the server past {@link #maxPendingUpdates}
+     *
+     * @return whether the updates were queued
+     */
+    protected boolean offer(PendingUpdates pending, List<Object> updates) {
+        synchronized (pending) {
+            if (maxPendingUpdates > 0 && !pending.updates.isEmpty() && pending.updates.size() + updates.size() > maxPendingUpdates) {
+                return false;
+            }
+            if (pending.updates.isEmpty()) {
+                pending.oldestNanos = System.nanoTime();
+            }
+            pending.updates.addAll(updates);
+            return true;
+        }
+    }
+
+    protected PendingUpdates getPendingUpdates(SolrClient server) {
+        PendingUpdates pending = pendingUpdates.get(server);
+        if (pending == null) {
+            pending = new PendingUpdates();
+            PendingUpdates existing = pendingUpdates.putIfAbsent(server, pending);
+            if (existing != null) {
+                pending = existing;
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public void flush() throws ServiceException {
+        for (Map.Entry<SolrClient, PendingUpdates> entry : pendingUpdates.entrySet()) {
+            flush(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Flushes the servers whose oldest pending update has waited at least {@link #windowMillis}
+     */
+    protected void flushExpired() {
+        long now = System.nanoTime();
+        for (Map.Entry<SolrClient, PendingUpdates> entry : pendingUpdates.entrySet()) {
+            PendingUpdates pending = entry.getValue();
+            boolean expired;
+            synchronized (pending) {
+                expired = !pending.updates.isEmpty()
+                        && now - pending.oldestNanos >= TimeUnit.MILLISECONDS.toNanos(windowMillis);
+            }
+            if (expired) {
+                try {
+                    flush(entry.getKey(), pending);
+                } catch (ServiceException e) {
+                    LOG.error("Unable to flush pending Solr updates, they will be retried", e);
+                }
+            }
+        }
+    }
+
+    protected void flush(SolrClient server, PendingUpdates pending) throws ServiceException {
+        pending.flushLock.lock();
+        try {
+            List<Object> updates;
+            long oldestNanos;
+            synchronized (pending) {
+                if (pending.updates.isEmpty()) {
+                    return;
+                }
+                updates = pending.updates;
+                oldestNanos = pending.oldestNanos;
+                pending.updates = new ArrayList<Object>();
+            }
+            try {
+                send(server, updates);
+                if (commit) {
+                    commit(server);
+                }
+                pending.failedAttempts = 0;
+            } catch (Exception e) {
+                if (++pending.failedAttempts < maxAttempts) {
+                    synchronized (pending) {
+                        // Put the batch back in front of anything submitted meanwhile so that ordering is preserved
+                        updates.addAll(pending.updates);
+                        pending.updates = updates;
+                        pending.oldestNanos = oldestNanos;
+                    }
+                    throw new ServiceException("Could not flush pending updates to Solr (attempt " + pending.failedAttempts
+                            + " of " + maxAttempts + ")", e);
+                }
+                LOG.error("Could not flush " + updates.size() + " pending Solr updates after " + maxAttempts
+                        + " attempts, sending them one at a time", e);
+                pending.failedAttempts = 0;
+                sendIndividually(server, updates);
+            }
+            long lag = System.nanoTime() - oldestNanos;
+            visibilityLag.record(lag);
+            lastVisibilityLagMillis = TimeUnit.NANOSECONDS.toMillis(lag);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Flushed " + updates.size() + " Solr updates, visible after " + lastVisibilityLagMillis + "ms");
+            }
+        } finally {
+            pending.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Sends the updates in order, grouping consecutive document adds into a single request
+     */
+    protected void send(SolrClient server, List<Object> updates) throws Exception {
+        List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+        for (Object update : updates) {
+            if (update instanceof DeleteQuery) {
+                if (!documents.isEmpty()) {
+                    server.add(documents);
+                    documents = new ArrayList<SolrInputDocument>();
+                }
+                server.deleteByQuery(((DeleteQuery) update).query);
+            } else {
+                documents.add((SolrInputDocument) update);
+            }
+        }
+        if (!documents.isEmpty()) {
+            server.add(documents);
+        }
+    }
+
+    /**
+     * Sends each update on its own, handing any that fail to {@link #handleDeadLetter(SolrClient, Object, Exception)},
+     * then commits whatever made it through
+     */
+    protected void sendIndividually(SolrClient server, List<Object> updates) throws ServiceException {
+        List<Object> single = new ArrayList<Object>(1);
+        for (Object update : updates) {
+            single.clear();
+            single.add(update);
+            try {
+                send(server, single);
+            } catch (Exception e) {
+                handleDeadLetter(server, update, e);
+            }
+        }
+        if (commit) {
+            try {
+                commit(server);
+            } catch (Exception e) {
+                throw new ServiceException("Could not commit Solr updates", e);
+            }
+        }
+    }
+
+    /**
+     * Called with each update that could not be sent to Solr even on its own. The update is dropped, so the affected
+     * documents are out of date until they are next updated or the index is rebuilt.
+     */
+    protected void handleDeadLetter(SolrClient server, Object update, Exception e) {
+        deadLetterCount.incrementAndGet();
+        if (update instanceof DeleteQuery) {
+            LOG.error("Dropping Solr delete query that could not be sent: " + ((DeleteQuery) update).query, e);
+        } else {
+            LOG.error("Dropping Solr document that could not be sent: " + ((SolrInputDocument) update).getFieldValue("id"), e);
+        }
+    }
+
+    protected void commit(SolrClient server) throws Exception {
+        boolean softCommit;
+        switch (commitPolicy) {
+            case HARD:
+                softCommit = false;
+                break;
+            case SOFT:
+                softCommit = true;
+                break;
+            default:
+                PendingUpdates pending = getPendingUpdates(server);
+                long now = System.currentTimeMillis();
+                softCommit = now - pending.lastHardCommitMillis < hardCommitIntervalMillis;
+                if (!softCommit) {
+                    pending.lastHardCommitMillis = now;
+                }
+        }
+        // The visibility lag only covers the time until the new searcher is open when waitSearcher is true
+        server.commit(waitFlush, waitSearcher, softCommit);
+    }
+
+    protected void ensureFlushScheduled() {
+        if (flushExecutor == null) {
+            synchronized (this) {
+                if (flushExecutor == null) {
+                    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "solr-commit-coordinator");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    long period = Math.max(1L, windowMillis / 2);
+                    executor.scheduleWithFixedDelay(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            flushExpired();
+                        }
+                    }, period, period, TimeUnit.MILLISECONDS);
+                    flushExecutor = executor;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+        try {
+            flush();
+        } catch (ServiceException e) {
+            LOG.error("Unable to flush pending Solr updates on shutdown", e);
+        }
+    }
+
+    @Override
+    public LatencyHistogram getVisibilityLag() {
+        return visibilityLag;
+    }
+
+    @Override
+    public long getLastVisibilityLagMillis() {
+        return lastVisibilityLagMillis;
+    }
+
+    /**
+     * @return the number of updates dropped because they could not be sent to Solr
+     */
+    public long getDeadLetterCount() {
+        return deadLetterCount.get();
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public void setCommitPolicy(SolrCommitPolicy commitPolicy) {
+        this.commitPolicy = commitPolicy;
+    }
+
+    public void setHardCommitIntervalMillis(long hardCommitIntervalMillis) {
+        this.hardCommitIntervalMillis = hardCommitIntervalMillis;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setMaxPendingUpdates(int maxPendingUpdates) {
+        this.maxPendingUpdates = maxPendingUpdates;
+    }
+
+    public void setCommit(boolean commit) {
+        this.commit = commit;
+    }
+
+    public void setWaitSearcher(boolean waitSearcher) {
+        this.waitSearcher = waitSearcher;
+    }
+
+    public void setWaitFlush(boolean waitFlush) {
+        this.waitFlush = waitFlush;
+    }
+
+    protected static class PendingUpdates {
+
+        protected final ReentrantLock flushLock = new ReentrantLock();
+        protected List<Object> updates = new ArrayList<Object>();
+        protected long oldestNanos;
+        /** Consecutive failed flushes of the batch at the head of the queue, only touched under the flush lock */
+        protected int failedAttempts;
+        protected volatile long lastHardCommitMillis = System.currentTimeMillis();
+    }
+
+    protected static class DeleteQuery {
+
+        protected final String query;
+
+        protected DeleteQuery(String query) {
+            this.query = query;
+        }
+    }
+}
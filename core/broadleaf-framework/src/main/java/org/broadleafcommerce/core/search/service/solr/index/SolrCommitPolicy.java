@@ -0,0 +1,41 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+/**
+ * How {@link SolrCommitCoordinator} commits the updates it flushes.
+ */
+public enum SolrCommitPolicy {
+
+    /**
+     * Every flush is followed by a soft commit. Durability is left to autoCommit in solrconfig.xml.
+     */
+    SOFT,
+
+    /**
+     * Every flush is followed by a hard commit
+     */
+    HARD,
+
+    /**
+     * Flushes are followed by a soft commit, except that a hard commit is issued once the configured hard commit
+     * interval has passed since the last one
+     */
+    SOFT_WITH_PERIODIC_HARD
+
+}
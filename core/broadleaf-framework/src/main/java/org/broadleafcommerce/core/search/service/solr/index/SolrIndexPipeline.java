@@ -0,0 +1,445 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.domain.Indexable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes a {@link SolrIndexOperation} as a three stage pipeline rather than one page at a time on a single thread:
+ *
+ * <ol>
+ *     <li>A reader stage (the calling thread) walks the ids of the indexables with keyset pagination and publishes the
+ *     id that each page starts after. Only ids are read (see {@link GlobalSolrFullReIndexOperation#readIndexableIds}).</li>
+ *     <li>A pool of builder workers each read their page and turn it into {@link SolrInputDocument}s through
+ *     {@link SolrIndexService#buildIncrementalIndex(List, SolrClient)}. Every worker runs its page in its own transaction
+ *     (and therefore its own EntityManager), with a lightweight clone of the caller's {@link BroadleafRequestContext}
+ *     and its own catalog structure cache (see {@link SolrIndexService#performCachedOperation}).</li>
+ *     <li>A single writer stage drains the built documents and sends them to Solr in batches.</li>
+ * </ol>
+ *
+ * Both hand-off queues are bounded, so a slow Solr server throttles the builders and slow builders throttle the reader.
+ * Entities are never shared between threads - a worker reads its own page using the boundary id handed to it by the
+ * reader, so every entity is loaded once. A single commit is issued once every batch has been written.
+ *
+ * @see SolrIndexPipelineMetrics
+ */
+public class SolrIndexPipeline {
+
+    private static final Log LOG = LogFactory.getLog(SolrIndexPipeline.class);
+
+    protected static final long POLL_INTERVAL_MILLIS = 100;
+
+    protected static final PageToken END_OF_PAGES = new PageToken(null);
+    protected static final List<SolrInputDocument> END_OF_DOCUMENTS = Collections.unmodifiableList(new ArrayList<SolrInputDocument>());
+
+    protected final SolrIndexService indexService;
+    protected final SolrIndexOperation operation;
+    protected final PlatformTransactionManager transactionManager;
+    protected final int pageSize;
+    protected final int workerCount;
+    protected final int batchSize;
+
+    protected final BlockingQueue<PageToken> pageQueue;
+    protected final BlockingQueue<List<SolrInputDocument>> documentQueue;
+    protected final AtomicReference<Throwable> failure = new AtomicReference<>();
+    protected final SolrIndexPipelineMetrics metrics = new SolrIndexPipelineMetrics();
+
+    public SolrIndexPipeline(SolrIndexService indexService, SolrIndexOperation operation, PlatformTransactionManager transactionManager,
+                             int pageSize, int workerCount, int queueCapacity, int batchSize) {
+        this.indexService = indexService;
+        this.operation = operation;
+        this.transactionManager = transactionManager;
+        this.pageSize = pageSize;
+        this.workerCount = Math.max(1, workerCount);
+        this.batchSize = Math.max(1, batchSize);
+        this.pageQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.documentQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    /**
+     * Runs the pipeline to completion. Must be called on a thread that has the {@link BroadleafRequestContext} and
+     * the other indexing state (see {@link SolrIndexService#saveState()}) that the builders should inherit.
+     *
+     * @param numItemsToIndex the upper bound on the number of indexables, from {@link SolrIndexOperation#countIndexables()}
+     * @throws ServiceException if any stage failed
+     */
+    public void execute(Long numItemsToIndex) throws ServiceException {
+        final Object[] callerState = indexService.saveState();
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount + 1, new PipelineThreadFactory());
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        runWithState(callerState, new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                buildPages();
+                                return null;
+                            }
+                        });
+                        return null;
+                    }
+                }));
+            }
+            Future<?> writer = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    writeDocuments();
+                    return null;
+                }
+            });
+
+            readPages(numItemsToIndex);
+            for (int i = 0; i < workerCount; i++) {
+                offer(pageQueue, END_OF_PAGES);
+            }
+            awaitAll(workers);
+            offer(documentQueue, END_OF_DOCUMENTS);
+            awaitAll(Collections.<Future<?>>singletonList(writer));
+
+            rethrowFailure();
+            if (metrics.getDocumentsWritten() > 0) {
+                commit();
+            }
+        } finally {
+            executor.shutdownNow();
+            metrics.complete();
+            LOG.info(String.format("Pipelined indexing operation finished - %s", metrics));
+        }
+    }
+
+    public SolrIndexPipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reader stage. Walks the ids of the indexables page by page and publishes the boundary id for each page. The
+     * builder that picks up the boundary reads the entities of the page in its own transaction.
+     */
+    protected void readPages(Long numItemsToIndex) throws ServiceException {
+        Long lastId = null;
+        long remaining = numItemsToIndex == null ? 0 : numItemsToIndex;
+        while (remaining > 0 && failure.get() == null) {
+            Long startAfter = lastId;
+            long start = System.nanoTime();
+            List<Long> ids = readPageIds(startAfter);
+            metrics.recordRead(System.nanoTime() - start);
+            if (CollectionUtils.isEmpty(ids)) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+
+            long waitStart = System.nanoTime();
+            boolean published = offer(pageQueue, new PageToken(startAfter));
+            metrics.recordReadWait(System.nanoTime() - waitStart);
+            if (!published) {
+                break;
+            }
+            remaining -= pageSize;
+        }
+    }
+
+    /**
+     * Builder stage. Each worker runs this loop until it receives {@link #END_OF_PAGES} or another stage fails.
+     */
+    protected void buildPages() throws ServiceException {
+        indexService.performCachedOperation(new SolrIndexCachedOperation.CacheOperation() {
+            @Override
+            public void execute() throws ServiceException {
+                buildCachedPages();
+            }
+        });
+    }
+
+    protected void buildCachedPages() {
+        try {
+            while (true) {
+                PageToken token = poll(pageQueue);
+                if (token == null || token == END_OF_PAGES) {
+                    return;
+                }
+                long start = System.nanoTime();
+                Collection<SolrInputDocument> documents = buildPage(token.getStartAfterId());
+                metrics.recordBuild(documents.size(), System.nanoTime() - start);
+
+                if (!documents.isEmpty()) {
+                    long waitStart = System.nanoTime();
+                    boolean published = offer(documentQueue, new ArrayList<SolrInputDocument>(documents));
+                    metrics.recordBuildWait(System.nanoTime() - waitStart);
+                    if (!published) {
+                        return;
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Writer stage. Accumulates documents from the builders and sends them to Solr whenever {@link #batchSize} is
+     * reached, plus one final partial batch.
+     */
+    protected void writeDocuments() {
+        List<SolrInputDocument> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                List<SolrInputDocument> documents = poll(documentQueue);
+                if (documents == null) {
+                    return;
+                }
+                if (documents == END_OF_DOCUMENTS) {
+                    break;
+                }
+                batch.addAll(documents);
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    protected List<Long> readPageIds(Long startAfter) throws ServiceException {
+        TransactionStatus status = TransactionUtils.createTransaction("readIndexablePageBoundary",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            List<Long> ids;
+            try {
+                operation.beforeReadIndexables();
+                ids = readIndexableIds(startAfter);
+            } finally {
+                operation.afterReadIndexables();
+            }
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return ids;
+        } catch (RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    protected List<Long> readIndexableIds(Long startAfter) throws ServiceException {
+        if (operation instanceof GlobalSolrFullReIndexOperation) {
+            return ((GlobalSolrFullReIndexOperation) operation).readIndexableIds(pageSize, startAfter);
+        }
+        List<? extends Indexable> indexables = operation.readIndexables(pageSize, startAfter);
+        List<Long> ids = new ArrayList<>(indexables.size());
+        for (Indexable indexable : indexables) {
+            ids.add(indexable.getId());
+        }
+        return ids;
+    }
+
+    protected Collection<SolrInputDocument> buildPage(Long startAfter) throws ServiceException {
+        TransactionStatus status = TransactionUtils.createTransaction("buildIndexablePage",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            List<? extends Indexable> indexables;
+            try {
+                operation.beforeReadIndexables();
+                indexables = operation.readIndexables(pageSize, startAfter);
+            } finally {
+                operation.afterReadIndexables();
+            }
+
+            Collection<SolrInputDocument> documents;
+            try {
+                operation.beforeBuildPage();
+                // A null server makes the index service build the documents without sending them; the writer stage
+                // takes care of that
+                documents = indexService.buildIncrementalIndex(indexables, null);
+            } finally {
+                operation.afterBuildPage();
+            }
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return documents == null ? Collections.<SolrInputDocument>emptyList() : documents;
+        } catch (RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    protected void writeBatch(List<SolrInputDocument> batch) throws Exception {
+        long start = System.nanoTime();
+        // The documents were already logged by SolrIndexService#buildIncrementalIndex when they were built
+        operation.getSolrServerForIndexing().add(batch);
+        metrics.recordWrite(batch.size(), System.nanoTime() - start);
+    }
+
+    protected void commit() throws ServiceException {
+        try {
+            indexService.commit(operation.getSolrServerForIndexing());
+        } catch (Exception e) {
+            throw new ServiceException("Could not commit changes to Solr index", e);
+        }
+    }
+
+    /**
+     * Executes the given work with a copy of the caller's indexing state bound to the current (worker) thread, then
+     * clears it again so that nothing leaks into the next use of the thread. Clearing goes through
+     * {@link SolrIndexService#restoreState(Object[])} with an empty pack, so every thread-local that was bound
+     * (request context, sku pricing and sku active date considerations) is reset.
+     */
+    protected void runWithState(Object[] callerState, Callable<Void> work) throws Exception {
+        Object[] workerState = callerState.clone();
+        BroadleafRequestContext callerContext = (BroadleafRequestContext) callerState[0];
+        workerState[0] = callerContext == null ? null : callerContext.createLightWeightClone();
+        indexService.restoreState(workerState);
+        try {
+            work.call();
+        } finally {
+            indexService.restoreState(new Object[callerState.length]);
+        }
+    }
+
+    /**
+     * Blocks until there is room in the queue, giving up if another stage has failed in the meantime.
+     *
+     * @return whether the item was enqueued
+     */
+    protected <T> boolean offer(BlockingQueue<T> queue, T item) {
+        try {
+            while (failure.get() == null) {
+                if (queue.offer(item, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+        return false;
+    }
+
+    /**
+     * Blocks until an item is available, returning null if another stage has failed in the meantime.
+     */
+    protected <T> T poll(BlockingQueue<T> queue) {
+        try {
+            while (failure.get() == null) {
+                T item = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+        return null;
+    }
+
+    protected void fail(Throwable e) {
+        if (failure.compareAndSet(null, e)) {
+            LOG.error("Pipelined indexing operation failed, stopping all stages", e);
+        }
+    }
+
+    protected void awaitAll(List<Future<?>> futures) throws ServiceException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            } catch (ExecutionException e) {
+                fail(e.getCause());
+            }
+        }
+    }
+
+    protected void rethrowFailure() throws ServiceException {
+        Throwable e = failure.get();
+        if (e == null) {
+            return;
+        }
+        if (e instanceof ServiceException) {
+            throw (ServiceException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        throw new ServiceException("Could not rebuild index", e);
+    }
+
+    /**
+     * Identifies a page by the id of the last indexable of the previous page (null for the first page)
+     */
+    protected static class PageToken {
+
+        protected final Long startAfterId;
+
+        public PageToken(Long startAfterId) {
+            this.startAfterId = startAfterId;
+        }
+
+        public Long getStartAfterId() {
+            return startAfterId;
+        }
+    }
+
+    protected static class PipelineThreadFactory implements ThreadFactory {
+
+        protected static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+        protected final int poolNumber = POOL_COUNT.incrementAndGet();
+        protected final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "solr-index-pipeline-" + poolNumber + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
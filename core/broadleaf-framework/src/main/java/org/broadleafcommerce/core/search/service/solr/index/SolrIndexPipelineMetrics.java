@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput counters for each stage of a {@link SolrIndexPipeline}. All counters are safe to update from any of the
+ * pipeline threads. Time spent blocked on a full queue is tracked separately from time spent working so that it is
+ * easy to tell which stage is the bottleneck: a reader with a large wait time means the builders can't keep up, while
+ * builders with a large wait time mean Solr is the limiting factor.
+ */
+public class SolrIndexPipelineMetrics {
+
+    protected final AtomicLong pagesRead = new AtomicLong();
+    protected final AtomicLong readNanos = new AtomicLong();
+    protected final AtomicLong readWaitNanos = new AtomicLong();
+
+    protected final AtomicLong pagesBuilt = new AtomicLong();
+    protected final AtomicLong documentsBuilt = new AtomicLong();
+    protected final AtomicLong buildNanos = new AtomicLong();
+    protected final AtomicLong buildWaitNanos = new AtomicLong();
+
+    protected final AtomicLong batchesWritten = new AtomicLong();
+    protected final AtomicLong documentsWritten = new AtomicLong();
+    protected final AtomicLong writeNanos = new AtomicLong();
+
+    protected final long startNanos = System.nanoTime();
+    protected volatile long endNanos = -1;
+
+    public void recordRead(long nanos) {
+        pagesRead.incrementAndGet();
+        readNanos.addAndGet(nanos);
+    }
+
+    public void recordReadWait(long nanos) {
+        readWaitNanos.addAndGet(nanos);
+    }
+
+    public void recordBuild(int documentCount, long nanos) {
+        pagesBuilt.incrementAndGet();
+        documentsBuilt.addAndGet(documentCount);
+        buildNanos.addAndGet(nanos);
+    }
+
+    public void recordBuildWait(long nanos) {
+        buildWaitNanos.addAndGet(nanos);
+    }
+
+    public void recordWrite(int documentCount, long nanos) {
+        batchesWritten.incrementAndGet();
+        documentsWritten.addAndGet(documentCount);
+        writeNanos.addAndGet(nanos);
+    }
+
+    public void complete() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getPagesRead() {
+        return pagesRead.get();
+    }
+
+    public long getPagesBuilt() {
+        return pagesBuilt.get();
+    }
+
+    public long getDocumentsBuilt() {
+        return documentsBuilt.get();
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public long getDocumentsWritten() {
+        return documentsWritten.get();
+    }
+
+    public long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos.get());
+    }
+
+    public long getReadWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readWaitNanos.get());
+    }
+
+    public long getBuildMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(buildNanos.get());
+    }
+
+    public long getBuildWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(buildWaitNanos.get());
+    }
+
+    public long getWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeNanos.get());
+    }
+
+    public long getElapsedMillis() {
+        long end = endNanos < 0 ? System.nanoTime() : endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    /**
+     * @return the number of documents sent to Solr per second of wall clock time
+     */
+    public double getDocumentsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getDocumentsWritten() * 1000d / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("read: [%s pages in %sms, %sms blocked], build: [%s pages / %s documents in %sms, %sms blocked], "
+                + "write: [%s batches / %s documents in %sms], total: [%sms, %.1f documents/sec]",
+                getPagesRead(), getReadMillis(), getReadWaitMillis(),
+                getPagesBuilt(), getDocumentsBuilt(), getBuildMillis(), getBuildWaitMillis(),
+                getBatchesWritten(), getDocumentsWritten(), getWriteMillis(),
+                getElapsedMillis(), getDocumentsPerSecond());
+    }
+}
@@ -49,6 +49,8 @@ import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPricingServi
 import org.broadleafcommerce.core.catalog.service.dynamic.SkuActiveDateConsiderationContext;
 import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext;
 import org.broadleafcommerce.core.search.dao.CatalogStructure;
+import org.broadleafcommerce.core.search.dao.CategoryHierarchy;
+import org.broadleafcommerce.core.search.dao.CompactCatalogStructure;
 import org.broadleafcommerce.core.search.dao.FieldDao;
 import org.broadleafcommerce.core.search.dao.IndexFieldDao;
 import org.broadleafcommerce.core.search.dao.SearchFacetDao;
@@ -79,6 +81,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Resource;
 
@@ -119,6 +122,21 @@ public class SolrIndexServiceImpl implements SolrIndexService {
     @Value("${solr.index.waitFlush}")
     protected boolean waitFlush;
 
+    @Value("${solr.index.compactCatalogStructure:false}")
+    protected boolean compactCatalogStructure;
+
+    @Value("${solr.index.pipeline.enabled:false}")
+    protected boolean pipelineEnabled;
+
+    @Value("${solr.index.pipeline.workers:4}")
+    protected int pipelineWorkers;
+
+    @Value("${solr.index.pipeline.queueCapacity:8}")
+    protected int pipelineQueueCapacity;
+
+    @Value("${solr.index.pipeline.batchSize:1000}")
+    protected int pipelineBatchSize;
+
     @Resource(name = "blProductDao")
     protected ProductDao productDao;
 
@@ -152,13 +170,21 @@ public class SolrIndexServiceImpl implements SolrIndexService {
     @Resource(name = "blSearchFacetDao")
     protected SearchFacetDao searchFacetDao;
 
+    @Resource(name = "blSolrCommitCoordinator")
+    protected SolrCommitCoordinator commitCoordinator;
+
     @Resource(name = "blIndexFieldDao")
     protected IndexFieldDao indexFieldDao;
 
+    /**
+     * Category graphs read for the indexing operations currently in progress, keyed by catalog
+     */
+    protected final Map<Long, CategoryHierarchy> categoryHierarchies = new ConcurrentHashMap<>();
+
     @Override
     public void performCachedOperation(SolrIndexCachedOperation.CacheOperation cacheOperation) throws ServiceException {
         try {
-            CatalogStructure cache = new CatalogStructure();
+            CatalogStructure cache = createCatalogStructure();
             SolrIndexCachedOperation.setCache(cache);
             cacheOperation.execute();
         } finally {
@@ -166,6 +192,30 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         }
     }
 
+    /**
+     * Creates the cache used by {@link #performCachedOperation(SolrIndexCachedOperation.CacheOperation)}. When
+     * "solr.index.compactCatalogStructure" is enabled, this is a {@link CompactCatalogStructure} sharing the category
+     * graph read at the start of the current indexing operation (or read on demand if there isn't one).
+     *
+     * @return a new, empty catalog structure
+     */
+    protected CatalogStructure createCatalogStructure() {
+        if (!compactCatalogStructure) {
+            return new CatalogStructure();
+        }
+        CategoryHierarchy hierarchy = categoryHierarchies.get(getCatalogCacheKey());
+        if (hierarchy == null) {
+            hierarchy = solrIndexDao.readCategoryHierarchy();
+        }
+        return new CompactCatalogStructure(hierarchy);
+    }
+
+    protected Long getCatalogCacheKey() {
+        BroadleafRequestContext ctx = BroadleafRequestContext.getBroadleafRequestContext();
+        Catalog currentCatalog = ctx == null ? null : ctx.getCurrentCatalog();
+        return currentCatalog == null ? SolrIndexCachedOperation.DEFAULT_CATALOG_CACHE_KEY : currentCatalog.getId();
+    }
+
     @Override
     public void rebuildIndex() throws ServiceException, IOException {
         LOG.info("Rebuilding the entire Solr index...");
@@ -207,6 +257,11 @@ public class SolrIndexServiceImpl implements SolrIndexService {
                 return readAllActiveIndexables(pageSize, lastId);
             }
 
+            @Override
+            public List<Long> readIndexableIds(int pageSize, Long lastId) {
+                return readAllActiveIndexableIds(pageSize, lastId);
+            }
+
             @Override
             public Long countIndexables() {
                 return countIndexableItems();
@@ -226,9 +281,19 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         try {
             LOG.info("Executing Indexing operation");
             StopWatch s = new StopWatch();
+            if (isCommitCoordinated()) {
+                // Don't let incremental updates queued before this operation land on top of it
+                commitCoordinator.flush();
+            }
 
             Object[] pack = saveState();
+            Long catalogCacheKey = getCatalogCacheKey();
             try {
+                if (compactCatalogStructure) {
+                    // Read the whole category graph once and share it with every page of this operation
+                    categoryHierarchies.put(catalogCacheKey, solrIndexDao.readCategoryHierarchy());
+                }
+
                 final Long numItemsToIndex;
                 try {
                     operation.beforeCountIndexables();
@@ -241,29 +306,38 @@ public class SolrIndexServiceImpl implements SolrIndexService {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("There are at most " + numItemsToIndex + " items to index");
                 }
-                performCachedOperation(new SolrIndexCachedOperation.CacheOperation() {
-
-                    @Override
-                    public void execute() throws ServiceException {
-                        int page = 1;
-                        Long lastId = null;
-                        Long remainingNumItemsToIndex = numItemsToIndex;
-                        Long totalPages = getTotalPageCount(numItemsToIndex);
-
-                        while (remainingNumItemsToIndex > 0) {
-                            String pageNumberMessage = buildPageNumberMessage(page, totalPages);
-                            LOG.info(pageNumberMessage);
-
-                            lastId = buildIncrementalIndex(pageSize, lastId, operation);
-                            remainingNumItemsToIndex -= pageSize;
-                            page++;
+                if (isPipelined(operation)) {
+                    createPipeline(operation).execute(numItemsToIndex);
+                } else {
+                    performCachedOperation(new SolrIndexCachedOperation.CacheOperation() {
+
+                        @Override
+                        public void execute() throws ServiceException {
+                            int page = 1;
+                            Long lastId = null;
+                            Long remainingNumItemsToIndex = numItemsToIndex;
+                            Long totalPages = getTotalPageCount(numItemsToIndex);
+
+                            while (remainingNumItemsToIndex > 0) {
+                                String pageNumberMessage = buildPageNumberMessage(page, totalPages);
+                                LOG.info(pageNumberMessage);
+
+                                lastId = buildIncrementalIndex(pageSize, lastId, operation);
+                                remainingNumItemsToIndex -= pageSize;
+                                page++;
+                            }
                         }
-                    }
-                });
+                    });
+                }
 
             } finally {
+                categoryHierarchies.remove(catalogCacheKey);
                 restoreState(pack);
             }
+            if (isCommitCoordinated()) {
+                // In single core mode the pages above were queued against the primary server
+                commitCoordinator.flush();
+            }
 
             LOG.info(String.format("Indexing operation completed in %s", s.toLapString()));
         } finally {
@@ -271,6 +345,23 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         }
     }
 
+    /**
+     * Whether or not the given operation should be run through a {@link SolrIndexPipeline} instead of page by page on
+     * the calling thread. Only full reindex operations are pipelined since the pipeline builds documents directly
+     * through {@link #buildIncrementalIndex(List, SolrClient)} rather than through {@link SolrIndexOperation#buildPage(List)}.
+     * 
+     * @param operation the operation about to be executed
+     * @return true if the operation should be pipelined
+     */
+    protected boolean isPipelined(SolrIndexOperation operation) {
+        return pipelineEnabled && operation instanceof GlobalSolrFullReIndexOperation;
+    }
+
+    protected SolrIndexPipeline createPipeline(SolrIndexOperation operation) {
+        return new SolrIndexPipeline(this, operation, transactionManager, pageSize, pipelineWorkers,
+                pipelineQueueCapacity, pipelineBatchSize);
+    }
+
     protected long getTotalPageCount(Long numItemsToIndex) {
         long numPagesToIndex = numItemsToIndex / pageSize;
         boolean hasRemainingItemsToIndex = numItemsToIndex % pageSize != 0;
@@ -439,8 +530,12 @@ public class SolrIndexServiceImpl implements SolrIndexService {
             logDocuments(documents);
 
             if (!CollectionUtils.isEmpty(documents) && solrServer != null) {
-                solrServer.add(documents);
-                commit(solrServer);
+                if (isCommitCoordinated(solrServer)) {
+                    commitCoordinator.addDocuments(solrServer, documents);
+                } else {
+                    solrServer.add(documents);
+                    commit(solrServer);
+                }
             }
             TransactionUtils.finalizeTransaction(status, transactionManager, false);
 
@@ -473,6 +568,18 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         }
     }
 
+    /**
+     * Reads the ids of the skus or products that {@link #readAllActiveIndexables(int, Long)} reads, before the skus are
+     * filtered. Override both methods together.
+     */
+    protected List<Long> readAllActiveIndexableIds(int pageSize, Long lastId) {
+        if (useSku) {
+            return skuDao.readAllActiveSkuIds(pageSize, lastId);
+        } else {
+            return productDao.readAllActiveProductIds(pageSize, lastId);
+        }
+    }
+
     @Override
     public List<Sku> filterIndexableSkus(List<Sku> skus) {
         ArrayList<Sku> skusToIndex = new ArrayList<>();
@@ -610,17 +717,20 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         extensionManager.getProxy().attachAdditionalBasicFields(indexable, document, shs);
 
         Long cacheKey = this.shs.getCurrentProductId(indexable); // current
-        if (!cache.getParentCategoriesByProduct().containsKey(cacheKey)) {
+        long[] parentCategoryIds = cache.getParentCategoryIds(cacheKey);
+        if (parentCategoryIds == null) {
             cacheKey = sandBoxHelper.getOriginalId(cacheKey); // parent
-            if (!cache.getParentCategoriesByProduct().containsKey(cacheKey)) {
+            parentCategoryIds = cache.getParentCategoryIds(cacheKey);
+            if (parentCategoryIds == null) {
                 cacheKey = shs.getIndexableId(indexable); // master
+                parentCategoryIds = cache.getParentCategoryIds(cacheKey);
             }
         }
 
         // TODO: figure this out more generally; this doesn't work for CMS content
         // The explicit categories are the ones defined by the product itself
-        if (cache.getParentCategoriesByProduct().containsKey(cacheKey)) {
-            for (Long categoryId : cache.getParentCategoriesByProduct().get(cacheKey)) {
+        if (parentCategoryIds != null) {
+            for (Long categoryId : parentCategoryIds) {
                 document.addField(shs.getExplicitCategoryFieldName(), shs.getCategoryId(categoryId));
 
                 // Make sure that we're always referencing the parent for the sort field
@@ -629,12 +739,10 @@ public class SolrIndexServiceImpl implements SolrIndexService {
                 // by product id is the overridden versions. Need to always look at parent version for cache stuff, which
                 // is given from shs.getCategoryId
                 // First try the current level
-                String displayOrderKey = categoryId + "-" + cacheKey;
-                Long displayOrder = convertDisplayOrderToLong(cache, displayOrderKey);
+                Long displayOrder = cache.getDisplayOrder(categoryId, cacheKey);
                 if (displayOrder == null) {
                     // Didn't find the cache at the current level, this might be an override so look upwards
-                    displayOrderKey = shs.getCategoryId(categoryId) + "-" + cacheKey;
-                    displayOrder = convertDisplayOrderToLong(cache, displayOrderKey);
+                    displayOrder = cache.getDisplayOrder(shs.getCategoryId(categoryId), cacheKey);
                 }
                 
                 if (document.getField(categorySortFieldName) == null && displayOrder != null) {
@@ -655,13 +763,17 @@ public class SolrIndexServiceImpl implements SolrIndexService {
      * @param categoryId the current category id
      */
     protected void buildFullCategoryHierarchy(SolrInputDocument document, CatalogStructure cache, Long categoryId, Set<Long> indexedParents) {
-        Long catIdToAdd = shs.getCategoryId(categoryId); 
-
-        Collection<Object> existingValues = document.getFieldValues(shs.getCategoryFieldName());
-        if (existingValues == null || !existingValues.contains(catIdToAdd)) {
-            document.addField(shs.getCategoryFieldName(), catIdToAdd);
+        long[] ancestorIds = cache.getAncestorCategoryIds(categoryId);
+        if (ancestorIds != null) {
+            // The structure already knows the complete chain, no need to walk it
+            for (Long ancestorId : ancestorIds) {
+                addCategoryField(document, ancestorId);
+            }
+            return;
         }
 
+        addCategoryField(document, categoryId);
+
         Set<Long> parents = cache.getParentCategoriesByCategory().get(categoryId);
         for (Long parent : parents) {
             if (!indexedParents.contains(parent)) {
@@ -671,6 +783,15 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         }
     }
 
+    protected void addCategoryField(SolrInputDocument document, Long categoryId) {
+        Long catIdToAdd = shs.getCategoryId(categoryId);
+
+        Collection<Object> existingValues = document.getFieldValues(shs.getCategoryFieldName());
+        if (existingValues == null || !existingValues.contains(catIdToAdd)) {
+            document.addField(shs.getCategoryFieldName(), catIdToAdd);
+        }
+    }
+
     /**
      * Returns a map of prefix to value for the requested attributes. For example, if the requested field corresponds to
      * a Sku's description and the locales list has the en_US locale and the es_ES locale, the resulting map could be
@@ -813,7 +934,9 @@ public class SolrIndexServiceImpl implements SolrIndexService {
      * @param cache
      * @param displayOrderKey
      * @return
+     * @deprecated use {@link CatalogStructure#getDisplayOrder(Long, Long)} instead
      */
+    @Deprecated
     protected Long convertDisplayOrderToLong(CatalogStructure cache, String displayOrderKey) {
         BigDecimal displayOrder = cache.getDisplayOrdersByCategoryProduct().get(displayOrderKey);
 
@@ -824,11 +947,32 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         return displayOrder.multiply(BigDecimal.valueOf(1000000)).longValue();
     }
 
+    /**
+     * Incremental updates are only coordinated for the primary server. Separate reindex cores are written by full
+     * reindex operations, which commit explicitly before their cores are swapped.
+     */
+    protected boolean isCommitCoordinated(SolrClient server) {
+        return isCommitCoordinated() && server == solrConfiguration.getServer();
+    }
+
+    protected boolean isCommitCoordinated() {
+        return commitCoordinator != null && commitCoordinator.isEnabled() && solrConfiguration != null;
+    }
+
     @Override
     public void deleteByQuery(String deleteQuery) throws SolrServerException, IOException {
         String childDeleteQuery = "{!child of=" + shs.getTypeFieldName() + ":" + shs.getPrimaryDocumentType() + "} " + deleteQuery;
-        solrConfiguration.getServer().deleteByQuery(childDeleteQuery);
-        solrConfiguration.getServer().deleteByQuery(deleteQuery);
+        if (isCommitCoordinated(solrConfiguration.getServer())) {
+            try {
+                commitCoordinator.deleteByQuery(solrConfiguration.getServer(), childDeleteQuery);
+                commitCoordinator.deleteByQuery(solrConfiguration.getServer(), deleteQuery);
+            } catch (ServiceException e) {
+                throw new SolrServerException(e.getMessage(), e);
+            }
+        } else {
+            solrConfiguration.getServer().deleteByQuery(childDeleteQuery);
+            solrConfiguration.getServer().deleteByQuery(deleteQuery);
+        }
 
         logDeleteQuery(childDeleteQuery);
         logDeleteQuery(deleteQuery);
@@ -836,7 +980,15 @@ public class SolrIndexServiceImpl implements SolrIndexService {
 
     @Override
     public void addDocuments(Collection<SolrInputDocument> documents) throws IOException, SolrServerException {
-        solrConfiguration.getServer().add(documents);
+        if (isCommitCoordinated(solrConfiguration.getServer())) {
+            try {
+                commitCoordinator.addDocuments(solrConfiguration.getServer(), documents);
+            } catch (ServiceException e) {
+                throw new SolrServerException(e.getMessage(), e);
+            }
+        } else {
+            solrConfiguration.getServer().add(documents);
+        }
         logDocuments(documents);
     }
 
@@ -82,6 +82,34 @@ public interface ResourcePurgeDao {
     Long findCartsCount(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview,
             List<Long> excludedIds);
 
+    /**
+     * Finds the ids of carts from the database, using the same criteria as {@link #findCarts(String[], OrderStatus[], Date, Boolean, List)}.
+     * Ids are returned in ascending order and the scan is keyed on the last id of the previous page (rather than on a
+     * result offset), so the carts already returned may be deleted without shifting the next page.
+     *
+     * @param names One or more order names to restrict the select by. Can be null.
+     * @param statuses One or more order statuses to restrict the select by. Can be null.
+     * @param dateCreatedMinThreshold Min creation date to restrict the select by. Orders created before this date
+     *                                are retrieved. Can be null.
+     * @param isPreview whether or not the results should be preview orders. Can be null.
+     * @param lastId the last id of the previous page. Only ids greater than this are retrieved. Can be null.
+     * @param length the max number of results to include in the returned list.
+     * @return the list of found cart ids
+     */
+    List<Long> findCartIds(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview, Long lastId,
+            int length, List<Long> excludedIds);
+
+    /**
+     * Removes the given carts and the entity graph beneath them (order items, price details, adjustments, fulfillment
+     * groups, attributes and the like) with bulk statements, without loading any of the entities. Order payments and
+     * their transactions are detached from the order and archived, as they are when an order is deleted through
+     * {@link org.broadleafcommerce.core.order.dao.OrderDao#delete(Order)}. Must be called inside a transaction.
+     *
+     * @param cartIds the ids of the carts to remove
+     * @return the number of carts removed
+     */
+    int deleteCarts(List<Long> cartIds);
+
     /**
      * Find customers in the database. The method parameters can be left null, or included to refine
      * the select criteria.
@@ -123,4 +151,32 @@ public interface ResourcePurgeDao {
      * @return the count of found customers
      */
     Long findCustomersCount(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview, List<Long> excludedIds);
+
+    /**
+     * Finds the ids of customers from the database, using the same criteria as {@link #findCustomers(Date, Boolean, Boolean, Boolean, List)}.
+     * Ids are returned in ascending order and the scan is keyed on the last id of the previous page (rather than on a
+     * result offset), so the customers already returned may be deleted without shifting the next page.
+     *
+     * @param dateCreatedMinThreshold Min creation date to restrict the select by. Customers created before this date
+     *                                are retrieved. Can be null.
+     * @param registered Whether or not the results should be registered customers. Can be null.
+     * @param deactivated Whether or not the results should be deactivated customers. Can be null.
+     * @param isPreview Whether or not the results should be preview customers. Can be null.
+     * @param lastId the last id of the previous page. Only ids greater than this are retrieved. Can be null.
+     * @param length the max number of results to include in the returned list.
+     * @return the list of found customer ids
+     */
+    List<Long> findCustomerIds(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview, Long lastId,
+            int length, List<Long> excludedIds);
+
+    /**
+     * Removes the given customers and the entities that are removed with them through
+     * {@link org.broadleafcommerce.profile.core.service.CustomerService#deleteCustomer(Customer)} (roles, attributes,
+     * addresses, phones and saved payments) with bulk statements, without loading any of the entities. A customer that
+     * is still referenced by an order or any other entity fails the delete. Must be called inside a transaction.
+     *
+     * @param customerIds the ids of the customers to remove
+     * @return the number of customers removed
+     */
+    int deleteCustomers(List<Long> customerIds);
 }
@@ -19,8 +19,15 @@ package org.broadleafcommerce.core.util.dao;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -32,11 +39,48 @@ import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
 import javax.persistence.criteria.Subquery;
 
+import org.apache.commons.collections.CollectionUtils;
+import org.broadleafcommerce.common.util.UpdateExecutor;
+import org.broadleafcommerce.core.offer.domain.CandidateFulfillmentGroupOfferImpl;
+import org.broadleafcommerce.core.offer.domain.CandidateItemOfferImpl;
+import org.broadleafcommerce.core.offer.domain.CandidateOrderOfferImpl;
+import org.broadleafcommerce.core.offer.domain.FulfillmentGroupAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.OfferInfoImpl;
+import org.broadleafcommerce.core.offer.domain.OrderAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.OrderItemAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.OrderItemPriceDetailAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.ProratedOrderItemAdjustmentImpl;
+import org.broadleafcommerce.core.order.domain.BundleOrderItemFeePriceImpl;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItemFeePriceImpl;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItemImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupFeeImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItemImpl;
 import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderAttributeImpl;
 import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemAttributeImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetailImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemQualifierImpl;
+import org.broadleafcommerce.core.order.domain.OrderMultishipOptionImpl;
+import org.broadleafcommerce.core.order.domain.PersonalMessageImpl;
+import org.broadleafcommerce.core.order.domain.TaxDetailImpl;
 import org.broadleafcommerce.core.order.service.type.OrderStatus;
+import org.broadleafcommerce.core.payment.domain.OrderPaymentImpl;
+import org.broadleafcommerce.core.payment.domain.PaymentTransactionImpl;
 import org.broadleafcommerce.profile.core.domain.Customer;
+import org.broadleafcommerce.profile.core.domain.CustomerAddressImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerAttributeImpl;
 import org.broadleafcommerce.profile.core.domain.CustomerImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerPaymentImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerPhoneImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerRoleImpl;
+import org.broadleafcommerce.profile.core.domain.PhoneImpl;
+import org.hibernate.Session;
+import org.hibernate.ejb.QueryHints;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.Queryable;
 import org.springframework.stereotype.Repository;
 
 import com.google.common.collect.Lists;
@@ -49,9 +93,25 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
 
     public static final int RESTRICT_IN_CLAUSE_MAX_SIZE = 800;
     
+    protected static final String ARCHIVE_PAYMENT_TRANSACTIONS = "UPDATE BLC_ORDER_PAYMENT_TRANSACTION SET ARCHIVED = 'Y' WHERE PAYMENT_TRANSACTION_ID IN (%s)";
+    protected static final String ARCHIVE_ORDER_PAYMENTS = "UPDATE BLC_ORDER_PAYMENT SET ORDER_ID = NULL, ARCHIVED = 'Y' WHERE ORDER_ID IN (%s)";
+    protected static final String DELETE_FULFILLMENT_GROUP_ITEM_TAXES = "DELETE FROM BLC_FG_ITEM_TAX_XREF WHERE FULFILLMENT_GROUP_ITEM_ID IN (%s)";
+    protected static final String DELETE_FULFILLMENT_GROUP_FEE_TAXES = "DELETE FROM BLC_FG_FEE_TAX_XREF WHERE FULFILLMENT_GROUP_FEE_ID IN (%s)";
+    protected static final String DELETE_FULFILLMENT_GROUP_TAXES = "DELETE FROM BLC_FG_FG_TAX_XREF WHERE FULFILLMENT_GROUP_ID IN (%s)";
+    protected static final String DELETE_ORDER_ITEM_CART_MESSAGES = "DELETE FROM BLC_ORDER_ITEM_CART_MESSAGE WHERE ORDER_ITEM_ID IN (%s)";
+    protected static final String DELETE_ORDER_ITEM_ADDITIONAL_ATTRIBUTES = "DELETE FROM BLC_ORDER_ITEM_ADD_ATTR WHERE ORDER_ITEM_ID IN (%s)";
+    protected static final String CLEAR_ORDER_ITEM_REFERENCES = "UPDATE BLC_ORDER_ITEM SET PARENT_ORDER_ITEM_ID = NULL, GIFT_WRAP_ITEM_ID = NULL WHERE ORDER_ITEM_ID IN (%s)";
+    protected static final String CLEAR_DISCRETE_ORDER_ITEM_REFERENCES = "UPDATE BLC_DISCRETE_ORDER_ITEM SET BUNDLE_ORDER_ITEM_ID = NULL WHERE ORDER_ITEM_ID IN (%s)";
+    protected static final String DELETE_ORDER_OFFER_CODES = "DELETE FROM BLC_ORDER_OFFER_CODE_XREF WHERE ORDER_ID IN (%s)";
+    protected static final String DELETE_ORDER_ADDITIONAL_OFFER_INFO = "DELETE FROM BLC_ADDITIONAL_OFFER_INFO WHERE BLC_ORDER_ORDER_ID IN (%s)";
+    protected static final String DELETE_OFFER_INFO_FIELDS = "DELETE FROM BLC_OFFER_INFO_FIELDS WHERE OFFER_INFO_FIELDS_ID IN (%s)";
+    protected static final String DELETE_CUSTOMER_PAYMENT_FIELDS = "DELETE FROM BLC_CUSTOMER_PAYMENT_FIELDS WHERE CUSTOMER_PAYMENT_ID IN (%s)";
+
     @PersistenceContext(unitName = "blPU")
     protected EntityManager em;
 
+    protected Map<Class<?>, List<String[]>> deleteTemplates = new ConcurrentHashMap<Class<?>, List<String[]>>();
+
     @Override
     public List<Order> findCarts(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview,
             List<Long> excludedIds) {
@@ -75,6 +135,24 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         return query.getSingleResult();
     }
 
+    @Override
+    public List<Long> findCartIds(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview, Long lastId,
+            int length, List<Long> excludedIds) {
+        TypedQuery<Long> query = buildCartIdQuery(names, statuses, dateCreatedMinThreshold, isPreview, lastId, excludedIds);
+        query.setMaxResults(length);
+        query.setHint(QueryHints.HINT_CACHEABLE, false);
+        return query.getResultList();
+    }
+
+    @Override
+    public List<Long> findCustomerIds(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview, Long lastId,
+            int length, List<Long> excludedIds) {
+        TypedQuery<Long> query = buildCustomerIdQuery(dateCreatedMinThreshold, registered, deactivated, isPreview, lastId, excludedIds);
+        query.setMaxResults(length);
+        query.setHint(QueryHints.HINT_CACHEABLE, false);
+        return query.getResultList();
+    }
+
     @Override
     public List<Customer> findCustomers(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview, List<Long> excludedIds) {
         TypedQuery<Customer> query = buildCustomerQuery(dateCreatedMinThreshold, registered, deactivated, isPreview, Customer.class, excludedIds);
@@ -106,7 +184,30 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         } else {
             criteria.select((Selection<? extends T>) root);
         }
+        List<Predicate> restrictions = buildCustomerRestrictions(dateCreatedMinThreshold, registered, deactivated, isPreview, excludedIds,
+                builder, criteria, root);
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        return em.createQuery(criteria);
+    }
 
+    protected TypedQuery<Long> buildCustomerIdQuery(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview,
+            Long lastId, List<Long> excludedIds) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+        Root<CustomerImpl> root = criteria.from(CustomerImpl.class);
+        criteria.select(root.get("id").as(Long.class));
+        List<Predicate> restrictions = buildCustomerRestrictions(dateCreatedMinThreshold, registered, deactivated, isPreview, excludedIds,
+                builder, criteria, root);
+        if (lastId != null) {
+            restrictions.add(builder.greaterThan(root.get("id").as(Long.class), lastId));
+        }
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.orderBy(builder.asc(root.get("id")));
+        return em.createQuery(criteria);
+    }
+
+    protected List<Predicate> buildCustomerRestrictions(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview,
+            List<Long> excludedIds, CriteriaBuilder builder, CriteriaQuery<?> criteria, Root<CustomerImpl> root) {
         //find only customers that do not have any orders, otherwise a purge would fail because of referential integrity
         Subquery<Long> subquery = criteria.subquery(Long.class);
         Root orderRoot = subquery.from(OrderImpl.class);
@@ -145,8 +246,7 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         if (excludedIds != null && excludedIds.size() > 0) {
                 applyLimitedInClause(excludedIds, builder, root, restrictions);
         }
-        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
-        return em.createQuery(criteria);
+        return restrictions;
     }
 
     protected <T> void applyLimitedInClause(List<Long> ids, CriteriaBuilder builder, Root<T> root, List<Predicate> restrictions) {
@@ -168,6 +268,28 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         } else {
             criteria.select((Selection<? extends T>) root);
         }
+        List<Predicate> restrictions = buildCartRestrictions(names, statuses, dateCreatedMinThreshold, isPreview, excludedIds, builder, root);
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        return em.createQuery(criteria);
+    }
+
+    protected TypedQuery<Long> buildCartIdQuery(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview, Long lastId,
+            List<Long> excludedIds) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+        Root<OrderImpl> root = criteria.from(OrderImpl.class);
+        criteria.select(root.get("id").as(Long.class));
+        List<Predicate> restrictions = buildCartRestrictions(names, statuses, dateCreatedMinThreshold, isPreview, excludedIds, builder, root);
+        if (lastId != null) {
+            restrictions.add(builder.greaterThan(root.get("id").as(Long.class), lastId));
+        }
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.orderBy(builder.asc(root.get("id")));
+        return em.createQuery(criteria);
+    }
+
+    protected List<Predicate> buildCartRestrictions(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview,
+            List<Long> excludedIds, CriteriaBuilder builder, Root<OrderImpl> root) {
         List<Predicate> restrictions = new ArrayList<Predicate>();
         List<String> statusList = new ArrayList<String>();
         if (statuses != null) {
@@ -195,7 +317,229 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         if (excludedIds != null && excludedIds.size() > 0) {
             applyLimitedInClause(excludedIds, builder, root, restrictions);
         }
-        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
-        return em.createQuery(criteria);
+        return restrictions;
+    }
+
+    /**
+     * Removes the entity graph beneath the given carts, children first, and then the carts themselves. Ids are read
+     * with scalar queries and the rows are removed with native statements through {@link UpdateExecutor}, so nothing is
+     * loaded into the persistence context and no temporary id tables are created for the joined hierarchies.
+     */
+    @Override
+    public int deleteCarts(List<Long> cartIds) {
+        if (CollectionUtils.isEmpty(cartIds)) {
+            return 0;
+        }
+        List<Long> orderItemIds = readOrderItemIds(cartIds);
+        List<Long> priceDetailIds = readOwnedIds(OrderItemPriceDetailImpl.class, "orderItem", orderItemIds);
+        List<Long> fulfillmentGroupIds = readOwnedIds(FulfillmentGroupImpl.class, "order", cartIds);
+        List<Long> fulfillmentGroupItemIds = readOwnedIds(FulfillmentGroupItemImpl.class, "fulfillmentGroup", fulfillmentGroupIds);
+        List<Long> fulfillmentGroupFeeIds = readOwnedIds(FulfillmentGroupFeeImpl.class, "fulfillmentGroup", fulfillmentGroupIds);
+
+        Set<Long> taxDetailIds = new LinkedHashSet<Long>();
+        taxDetailIds.addAll(readCollectionIds(FulfillmentGroupImpl.class, "taxes", fulfillmentGroupIds));
+        taxDetailIds.addAll(readCollectionIds(FulfillmentGroupItemImpl.class, "taxes", fulfillmentGroupItemIds));
+        taxDetailIds.addAll(readCollectionIds(FulfillmentGroupFeeImpl.class, "taxes", fulfillmentGroupFeeIds));
+        Set<Long> personalMessageIds = new LinkedHashSet<Long>();
+        personalMessageIds.addAll(readReferencedIds(OrderItemImpl.class, "personalMessage", orderItemIds));
+        personalMessageIds.addAll(readReferencedIds(FulfillmentGroupImpl.class, "personalMessage", fulfillmentGroupIds));
+        List<Long> offerInfoIds = readCollectionIds(OrderImpl.class, "additionalOfferInformation", cartIds);
+
+        //payments are not deleted with the order, they are detached and archived (see OrderDaoImpl.delete)
+        List<Long> paymentIds = readOwnedIds(OrderPaymentImpl.class, "order", cartIds);
+        executeUpdate(ARCHIVE_PAYMENT_TRANSACTIONS, "BLC_ORDER_PAYMENT_TRANSACTION",
+                readOwnedIds(PaymentTransactionImpl.class, "orderPayment", paymentIds));
+        executeUpdate(ARCHIVE_ORDER_PAYMENTS, "BLC_ORDER_PAYMENT", cartIds);
+
+        deleteOwnedEntities(OrderMultishipOptionImpl.class, "order", cartIds);
+
+        executeUpdate(DELETE_FULFILLMENT_GROUP_ITEM_TAXES, "BLC_FG_ITEM_TAX_XREF", fulfillmentGroupItemIds);
+        executeUpdate(DELETE_FULFILLMENT_GROUP_FEE_TAXES, "BLC_FG_FEE_TAX_XREF", fulfillmentGroupFeeIds);
+        executeUpdate(DELETE_FULFILLMENT_GROUP_TAXES, "BLC_FG_FG_TAX_XREF", fulfillmentGroupIds);
+        deleteEntities(TaxDetailImpl.class, new ArrayList<Long>(taxDetailIds));
+        deleteEntities(FulfillmentGroupItemImpl.class, fulfillmentGroupItemIds);
+        deleteEntities(FulfillmentGroupFeeImpl.class, fulfillmentGroupFeeIds);
+        deleteOwnedEntities(FulfillmentGroupAdjustmentImpl.class, "fulfillmentGroup", fulfillmentGroupIds);
+        deleteOwnedEntities(CandidateFulfillmentGroupOfferImpl.class, "fulfillmentGroup", fulfillmentGroupIds);
+
+        deleteOwnedEntities(OrderItemPriceDetailAdjustmentImpl.class, "orderItemPriceDetail", priceDetailIds);
+        deleteEntities(OrderItemPriceDetailImpl.class, priceDetailIds);
+        deleteOwnedEntities(OrderItemAdjustmentImpl.class, "orderItem", orderItemIds);
+        deleteOwnedEntities(ProratedOrderItemAdjustmentImpl.class, "orderItem", orderItemIds);
+        deleteOwnedEntities(OrderItemQualifierImpl.class, "orderItem", orderItemIds);
+        deleteOwnedEntities(CandidateItemOfferImpl.class, "orderItem", orderItemIds);
+        deleteOwnedEntities(OrderItemAttributeImpl.class, "orderItem", orderItemIds);
+        deleteOwnedEntities(DiscreteOrderItemFeePriceImpl.class, "discreteOrderItem", orderItemIds);
+        deleteOwnedEntities(BundleOrderItemFeePriceImpl.class, "bundleOrderItem", orderItemIds);
+        executeUpdate(DELETE_ORDER_ITEM_CART_MESSAGES, "BLC_ORDER_ITEM_CART_MESSAGE", orderItemIds);
+        executeUpdate(DELETE_ORDER_ITEM_ADDITIONAL_ATTRIBUTES, "BLC_ORDER_ITEM_ADD_ATTR", orderItemIds);
+        //order items reference each other (parent, gift wrap and bundle items), so break those links before the delete
+        executeUpdate(CLEAR_ORDER_ITEM_REFERENCES, "BLC_ORDER_ITEM", orderItemIds);
+        executeUpdate(CLEAR_DISCRETE_ORDER_ITEM_REFERENCES, "BLC_DISCRETE_ORDER_ITEM", orderItemIds);
+        deleteEntities(OrderItemImpl.class, orderItemIds);
+        deleteEntities(FulfillmentGroupImpl.class, fulfillmentGroupIds);
+        deleteEntities(PersonalMessageImpl.class, new ArrayList<Long>(personalMessageIds));
+
+        deleteOwnedEntities(OrderAdjustmentImpl.class, "order", cartIds);
+        deleteOwnedEntities(CandidateOrderOfferImpl.class, "order", cartIds);
+        deleteOwnedEntities(OrderAttributeImpl.class, "order", cartIds);
+        executeUpdate(DELETE_ORDER_OFFER_CODES, "BLC_ORDER_OFFER_CODE_XREF", cartIds);
+        executeUpdate(DELETE_ORDER_ADDITIONAL_OFFER_INFO, "BLC_ADDITIONAL_OFFER_INFO", cartIds);
+        //the offer info is owned by the order (cascade all with orphan removal), so it goes with it
+        executeUpdate(DELETE_OFFER_INFO_FIELDS, "BLC_OFFER_INFO_FIELDS", offerInfoIds);
+        deleteEntities(OfferInfoImpl.class, offerInfoIds);
+        return deleteEntities(OrderImpl.class, cartIds);
+    }
+
+    /**
+     * Removes the rows beneath the given customers that {@link org.broadleafcommerce.profile.core.service.CustomerService#deleteCustomer(Customer)}
+     * removes through the entity graph, children first, and then the customers themselves. The addresses referenced by
+     * customer addresses and saved payments are shared entities and are left in place, as they are by the cascades.
+     */
+    @Override
+    public int deleteCustomers(List<Long> customerIds) {
+        if (CollectionUtils.isEmpty(customerIds)) {
+            return 0;
+        }
+        List<Long> customerPaymentIds = readOwnedIds(CustomerPaymentImpl.class, "customer", customerIds);
+        List<Long> customerPhoneIds = readOwnedIds(CustomerPhoneImpl.class, "customer", customerIds);
+        List<Long> phoneIds = readReferencedIds(CustomerPhoneImpl.class, "phone", customerPhoneIds);
+
+        executeUpdate(DELETE_CUSTOMER_PAYMENT_FIELDS, "BLC_CUSTOMER_PAYMENT_FIELDS", customerPaymentIds);
+        deleteEntities(CustomerPaymentImpl.class, customerPaymentIds);
+        deleteEntities(CustomerPhoneImpl.class, customerPhoneIds);
+        deleteEntities(PhoneImpl.class, phoneIds);
+        deleteOwnedEntities(CustomerAddressImpl.class, "customer", customerIds);
+        deleteOwnedEntities(CustomerAttributeImpl.class, "customer", customerIds);
+        deleteOwnedEntities(CustomerRoleImpl.class, "customer", customerIds);
+        return deleteEntities(CustomerImpl.class, customerIds);
+    }
+
+    /**
+     * Read the ids of the order items of the given carts. The items of a bundle are not linked to the order themselves,
+     * only to their bundle item, so the items beneath a bundle or parent item are followed as well.
+     */
+    protected List<Long> readOrderItemIds(List<Long> cartIds) {
+        Set<Long> orderItemIds = new LinkedHashSet<Long>(readOwnedIds(OrderItemImpl.class, "order", cartIds));
+        List<Long> parentIds = new ArrayList<Long>(orderItemIds);
+        while (!parentIds.isEmpty()) {
+            List<Long> childIds = new ArrayList<Long>();
+            childIds.addAll(readOwnedIds(DiscreteOrderItemImpl.class, "bundleOrderItem", parentIds));
+            childIds.addAll(readOwnedIds(OrderItemImpl.class, "parentOrderItem", parentIds));
+            parentIds = new ArrayList<Long>();
+            for (Long childId : childIds) {
+                if (orderItemIds.add(childId)) {
+                    parentIds.add(childId);
+                }
+            }
+        }
+        return new ArrayList<Long>(orderItemIds);
+    }
+
+    /**
+     * Read the ids of the entities of the given type whose many-to-one property references one of the owner ids
+     */
+    protected List<Long> readOwnedIds(Class<?> entityClass, String ownerProperty, List<Long> ownerIds) {
+        return readIds("SELECT entity.id FROM " + entityClass.getName() + " entity WHERE entity." + ownerProperty + ".id IN :ids", ownerIds);
+    }
+
+    /**
+     * Read the ids of the elements of the given collection property for the entities with the given ids
+     */
+    protected List<Long> readCollectionIds(Class<?> entityClass, String collectionProperty, List<Long> entityIds) {
+        return readIds("SELECT element.id FROM " + entityClass.getName() + " entity JOIN entity." + collectionProperty
+                + " element WHERE entity.id IN :ids", entityIds);
+    }
+
+    /**
+     * Read the ids referenced by the given many-to-one property of the entities with the given ids
+     */
+    protected List<Long> readReferencedIds(Class<?> entityClass, String referenceProperty, List<Long> entityIds) {
+        return readIds("SELECT entity." + referenceProperty + ".id FROM " + entityClass.getName() + " entity WHERE entity.id IN :ids AND entity."
+                + referenceProperty + " IS NOT NULL", entityIds);
+    }
+
+    protected List<Long> readIds(String queryString, List<Long> ids) {
+        List<Long> response = new ArrayList<Long>();
+        if (CollectionUtils.isEmpty(ids)) {
+            return response;
+        }
+        for (List<Long> run : Lists.partition(ids, RESTRICT_IN_CLAUSE_MAX_SIZE)) {
+            TypedQuery<Long> query = em.createQuery(queryString, Long.class);
+            query.setParameter("ids", run);
+            query.setHint(QueryHints.HINT_CACHEABLE, false);
+            response.addAll(query.getResultList());
+        }
+        return response;
+    }
+
+    protected int deleteOwnedEntities(Class<?> entityClass, String ownerProperty, List<Long> ownerIds) {
+        return deleteEntities(entityClass, readOwnedIds(entityClass, ownerProperty, ownerIds));
+    }
+
+    /**
+     * Delete the rows for the given entity ids from every table mapped by the entity type or one of its subclasses
+     * (e.g. the extension tables of a joined hierarchy), subclass tables first.
+     *
+     * @return the number of rows removed from the root table of the entity
+     */
+    protected int deleteEntities(Class<?> entityClass, List<Long> ids) {
+        int response = 0;
+        if (CollectionUtils.isEmpty(ids)) {
+            return response;
+        }
+        for (String[] table : getDeleteTemplates(entityClass)) {
+            response = executeUpdate(table[1], table[0], ids);
+        }
+        return response;
+    }
+
+    protected int executeUpdate(String template, String tableSpace, List<Long> ids) {
+        if (CollectionUtils.isEmpty(ids)) {
+            return 0;
+        }
+        return UpdateExecutor.executeUpdateQuery(em, template, tableSpace, null, null, ids);
+    }
+
+    /**
+     * Build (and cache) a delete statement template for every table in the hierarchy of the given entity type, ordered
+     * so that a subclass table is always removed before the table of its superclass.
+     *
+     * @return pairs of table name and delete template
+     */
+    protected List<String[]> getDeleteTemplates(Class<?> entityClass) {
+        List<String[]> templates = deleteTemplates.get(entityClass);
+        if (templates == null) {
+            final Map<String, Integer> depths = new HashMap<String, Integer>();
+            Map<String, String> keyColumns = new HashMap<String, String>();
+            Map<String, ClassMetadata> allMetadata = em.unwrap(Session.class).getSessionFactory().getAllClassMetadata();
+            for (ClassMetadata metadata : allMetadata.values()) {
+                if (metadata.getMappedClass() != null && entityClass.isAssignableFrom(metadata.getMappedClass())) {
+                    Queryable persister = (Queryable) metadata;
+                    String[] tableNames = persister.getConstraintOrderedTableNameClosure();
+                    String[][] tableKeyColumns = persister.getContraintOrderedTableKeyColumnClosure();
+                    for (int j = 0; j < tableNames.length; j++) {
+                        depths.put(tableNames[j], tableNames.length - 1 - j);
+                        keyColumns.put(tableNames[j], tableKeyColumns[j][0]);
+                    }
+                }
+            }
+            if (depths.isEmpty()) {
+                throw new IllegalArgumentException("No mapped entity found for " + entityClass.getName());
+            }
+            List<String> tableNames = new ArrayList<String>(depths.keySet());
+            Collections.sort(tableNames, new Comparator<String>() {
+                @Override
+                public int compare(String o1, String o2) {
+                    return depths.get(o2).compareTo(depths.get(o1));
+                }
+            });
+            templates = new ArrayList<String[]>();
+            for (String tableName : tableNames) {
+                templates.add(new String[] { tableName, "DELETE FROM " + tableName + " WHERE " + keyColumns.get(tableName) + " IN (%s)" });
+            }
+            deleteTemplates.put(entityClass, templates);
+        }
+        return templates;
     }
 }
@@ -18,12 +18,23 @@
 package org.broadleafcommerce.core.util.service;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Resource;
 
@@ -40,6 +51,7 @@ import org.broadleafcommerce.core.util.service.type.PurgeCartVariableNames;
 import org.broadleafcommerce.core.util.service.type.PurgeCustomerVariableNames;
 import org.broadleafcommerce.profile.core.domain.Customer;
 import org.broadleafcommerce.profile.core.service.CustomerService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -102,6 +114,24 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
     @Resource(name = "blCustomerService")
     protected CustomerService customerService;
 
+    @Value("${resource.purge.cart.bulk.enabled:false}")
+    protected boolean bulkCartPurgeEnabled = false;
+
+    @Value("${resource.purge.cart.bulk.chunkSize:500}")
+    protected int bulkCartPurgeChunkSize = 500;
+
+    @Value("${resource.purge.cart.bulk.threads:4}")
+    protected int bulkCartPurgeThreads = 4;
+
+    @Value("${resource.purge.customer.bulk.enabled:false}")
+    protected boolean bulkCustomerPurgeEnabled = false;
+
+    @Value("${resource.purge.customer.bulk.chunkSize:500}")
+    protected int bulkCustomerPurgeChunkSize = 500;
+
+    @Value("${resource.purge.customer.bulk.threads:4}")
+    protected int bulkCustomerPurgeThreads = 4;
+
     @Override
     public void purgeCarts(final Map<String, String> config) {
         if (LOG.isDebugEnabled()) {
@@ -112,6 +142,10 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
                     "In the absence of config params, all carts would be candidates for deletion.");
         }
         CartPurgeParams purgeParams = new CartPurgeParams(config).invoke();
+        if (bulkCartPurgeEnabled) {
+            purgeCartsInBulk(purgeParams);
+            return;
+        }
         int processedCount = 0, batchCount = 0;
         synchronized(cartPurgeErrors) {
             Set<Long> failedCartIds = getCartsInErrorToIgnore(purgeParams);
@@ -136,6 +170,151 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         LOG.info(String.format("Cart purge batch processed.  Purged %d from total batch size of %d, %d failures cached", processedCount, batchCount, cartPurgeErrors.size()));
     }
 
+    /**
+     * Purge carts with set based statements rather than through the entity graph of each cart. Chunks of
+     * {@link #bulkCartPurgeChunkSize} ids are removed by {@link ResourcePurgeDao#deleteCarts(List)} on
+     * {@link #bulkCartPurgeThreads} threads, see {@link #purgeInBulk(String, PurgeErrorCache, Long, Long, int, ExecutorService, BulkPurgeOperation)}.
+     *
+     * @param purgeParams configured parameters for the cart purge process
+     */
+    protected void purgeCartsInBulk(final CartPurgeParams purgeParams) {
+        purgeInBulk("Cart", cartPurgeErrors, purgeParams.getFailedRetryTime(), purgeParams.getBatchSize(),
+                bulkCartPurgeChunkSize, createCartPurgeExecutor(), new BulkPurgeOperation() {
+
+                    @Override
+                    public List<Long> readIds(Long lastId, int length, List<Long> idsInError) {
+                        return getCartIdsToPurge(purgeParams, lastId, length, idsInError);
+                    }
+
+                    @Override
+                    public int delete(List<Long> ids) {
+                        return deleteCarts(ids);
+                    }
+                });
+    }
+
+    /**
+     * Purge entities in chunks by id range. Candidate ids are read in chunks of chunkSize with a keyset scan and each
+     * chunk is removed in its own transaction on the given executor. When a chunk fails, its entities are retried one
+     * at a time so that only the entities that actually fail are added to the error cache.
+     *
+     * @param entityName the name of the purged entity, used for transaction names and logging
+     * @param purgeErrors the cache of ids that failed in previous purge attempts
+     * @param failedRetryTime ids that failed before this time are attempted again
+     * @param batchSize the max number of ids to read, or null for no limit
+     * @param chunkSize the number of ids removed in each transaction
+     * @param executor runs the chunks, and is shut down once the purge is done
+     * @param operation reads the candidate ids and removes them
+     */
+    protected void purgeInBulk(String entityName, PurgeErrorCache purgeErrors, Long failedRetryTime, Long batchSize,
+            int chunkSize, ExecutorService executor, BulkPurgeOperation operation) {
+        long start = System.currentTimeMillis();
+        AtomicInteger processedCount = new AtomicInteger();
+        Queue<Long> failedIds = new ConcurrentLinkedQueue<Long>();
+        int scannedCount = 0;
+        synchronized(purgeErrors) {
+            List<Long> idsInError = new ArrayList<Long>(purgeErrors.getEntriesSince(failedRetryTime.longValue()));
+            int idsPerChunk = Math.max(1, chunkSize);
+            List<Future<?>> chunks = new ArrayList<Future<?>>();
+            try {
+                Long lastId = null;
+                while (batchSize == null || scannedCount < batchSize) {
+                    int length = batchSize == null ? idsPerChunk : (int) Math.min(idsPerChunk, batchSize - scannedCount);
+                    List<Long> ids = operation.readIds(lastId, length, idsInError);
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+                    scannedCount += ids.size();
+                    lastId = ids.get(ids.size() - 1);
+                    chunks.add(executor.submit(new PurgeChunk(entityName, operation, ids, processedCount, failedIds)));
+                    if (ids.size() < length) {
+                        break;
+                    }
+                }
+            } finally {
+                executor.shutdown();
+                for (Future<?> chunk : chunks) {
+                    try {
+                        chunk.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } catch (ExecutionException e) {
+                        LOG.error(entityName + " purge chunk failed", e.getCause());
+                    }
+                }
+                //failures are only added here, on the thread holding the lock for the error cache
+                for (Long failedId : failedIds) {
+                    purgeErrors.add(failedId);
+                }
+            }
+        }
+        long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+        String name = entityName.toLowerCase();
+        LOG.info(String.format("Bulk %s purge batch processed.  Purged %d from total batch size of %d in %d ms (%.1f %ss/sec), %d failures cached",
+                name, processedCount.get(), scannedCount, elapsed, processedCount.get() * 1000D / elapsed, name, purgeErrors.size()));
+    }
+
+    /**
+     * Create the executor that runs the cart purge chunks. The work queue is bounded, so once every thread is busy and
+     * the queue is full the scanning thread runs the next chunk itself, which keeps the scan from reading far ahead of
+     * the deletes.
+     */
+    protected ExecutorService createCartPurgeExecutor() {
+        return createPurgeExecutor("cart-purge-", bulkCartPurgeThreads);
+    }
+
+    /**
+     * Create the executor that runs the customer purge chunks. See {@link #createCartPurgeExecutor()}.
+     */
+    protected ExecutorService createCustomerPurgeExecutor() {
+        return createPurgeExecutor("customer-purge-", bulkCustomerPurgeThreads);
+    }
+
+    protected ExecutorService createPurgeExecutor(final String threadNamePrefix, int threadCount) {
+        int threads = Math.max(1, threadCount);
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(threads),
+                new ThreadFactory() {
+                    protected final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadNamePrefix + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Remove a set of entities in a single transaction
+     *
+     * @param entityName the name of the purged entity, used for the transaction name and logging
+     * @param operation removes the entities
+     * @param ids the ids of the entities to remove
+     * @return the number of entities removed, or -1 if the transaction was rolled back
+     */
+    protected int deleteInTransaction(String entityName, BulkPurgeOperation operation, List<Long> ids) {
+        TransactionStatus status = TransactionUtils.createTransaction(entityName + " Purge",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, false);
+        try {
+            int deletedCount = operation.delete(ids);
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return deletedCount;
+        } catch (Exception e) {
+            if (! status.isCompleted()) {
+                TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            }
+            if (ids.size() == 1) {
+                LOG.error(String.format("Not able to purge %s ID: %d", entityName, ids.get(0)), e);
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Not able to purge chunk of %d %ss starting at %s ID: %d, retrying individually",
+                        ids.size(), entityName.toLowerCase(), entityName, ids.get(0)), e);
+            }
+            return -1;
+        }
+    }
+
     @Override
     public void purgeCustomers(final Map<String, String> config) {
         if (LOG.isDebugEnabled()) {
@@ -146,6 +325,10 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
                     "In the absence of config params, all customers would be candidates for deletion.");
         }
         CustomerPurgeParams purgeParams = new CustomerPurgeParams(config).invoke();
+        if (bulkCustomerPurgeEnabled) {
+            purgeCustomersInBulk(purgeParams);
+            return;
+        }
         int processedCount = 0, batchCount = 0;
         synchronized(customerPurgeErrors) {
             Set<Long> failedCustomerIds = getCustomersInErrorToIgnore(purgeParams);
@@ -170,6 +353,29 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         LOG.info(String.format("Customer purge batch processed.  Purged %d from total batch size of %d, %d failures cached", processedCount, batchCount, customerPurgeErrors.size()));
     }
 
+    /**
+     * Purge customers with set based statements rather than through the entity graph of each customer, the same way
+     * {@link #purgeCartsInBulk(CartPurgeParams)} purges carts. Chunks of {@link #bulkCustomerPurgeChunkSize} ids are
+     * removed by {@link ResourcePurgeDao#deleteCustomers(List)} on {@link #bulkCustomerPurgeThreads} threads.
+     *
+     * @param purgeParams configured parameters for the customer purge process
+     */
+    protected void purgeCustomersInBulk(final CustomerPurgeParams purgeParams) {
+        purgeInBulk("Customer", customerPurgeErrors, purgeParams.getFailedRetryTime(), purgeParams.getBatchSize(),
+                bulkCustomerPurgeChunkSize, createCustomerPurgeExecutor(), new BulkPurgeOperation() {
+
+                    @Override
+                    public List<Long> readIds(Long lastId, int length, List<Long> idsInError) {
+                        return getCustomerIdsToPurge(purgeParams, lastId, length, idsInError);
+                    }
+
+                    @Override
+                    public int delete(List<Long> ids) {
+                        return deleteCustomers(ids);
+                    }
+                });
+    }
+
     /**
      * Get the Carts Ids from cache that should be ignored due to errors in previous purge attempts.  Expired cached errors removed.
      * 
@@ -218,6 +424,34 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         return cartBatchSize != null && cartBatchSize < orderCount ? cartBatchSize : orderCount; 
     }
 
+    /**
+     * Get the next page of cart ids to delete from the database. Subclasses may override for custom cart retrieval logic.
+     *
+     * @param purgeParams configured parameters for the Cart purge process
+     * @param lastId the last id of the previous page, or null for the first page
+     * @param length the max number of ids to return
+     * @param cartsInError list of cart ids to be ignored/excluded from the query
+     * @return list of cart ids to delete, in ascending order
+     */
+    protected List<Long> getCartIdsToPurge(CartPurgeParams purgeParams, Long lastId, int length, List<Long> cartsInError) {
+        String[] nameArray = purgeParams.getNameArray();
+        OrderStatus[] statusArray = purgeParams.getStatusArray();
+        Date dateCreatedMinThreshold = purgeParams.getDateCreatedMinThreshold();
+        Boolean isPreview = purgeParams.getIsPreview();
+        return resourcePurgeDao.findCartIds(nameArray, statusArray, dateCreatedMinThreshold, isPreview, lastId, length, cartsInError);
+    }
+
+    /**
+     * Remove a set of carts from the persistence layer with set based statements. Subclasses may override to remove
+     * additional custom tables that reference the carts.
+     *
+     * @param cartIds the ids of the carts to remove
+     * @return the number of carts removed
+     */
+    protected int deleteCarts(List<Long> cartIds) {
+        return resourcePurgeDao.deleteCarts(cartIds);
+    }
+
     /**
      * Remove the cart from the persistence layer. Subclasses may override for custom cart retrieval logic.
      *
@@ -283,6 +517,89 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         customerService.deleteCustomer(customer);
     }
 
+    /**
+     * Get the next page of customer ids to delete from the database. Subclasses may override for custom customer retrieval logic.
+     *
+     * @param purgeParams configured parameters for the Customer purge process
+     * @param lastId the last id of the previous page, or null for the first page
+     * @param length the max number of ids to return
+     * @param customersInError list of customer ids to be ignored/excluded from the query
+     * @return list of customer ids to delete, in ascending order
+     */
+    protected List<Long> getCustomerIdsToPurge(CustomerPurgeParams purgeParams, Long lastId, int length, List<Long> customersInError) {
+        Boolean isRegistered = purgeParams.getIsRegistered();
+        Boolean isDeactivated = purgeParams.getIsDeactivated();
+        Date dateCreatedMinThreshold = purgeParams.getDateCreatedMinThreshold();
+        Boolean isPreview = purgeParams.getIsPreview();
+        return resourcePurgeDao.findCustomerIds(dateCreatedMinThreshold, isRegistered, isDeactivated, isPreview, lastId, length, customersInError);
+    }
+
+    /**
+     * Remove a set of customers from the persistence layer with set based statements. Subclasses may override to remove
+     * additional custom tables that reference the customers.
+     *
+     * @param customerIds the ids of the customers to remove
+     * @return the number of customers removed
+     */
+    protected int deleteCustomers(List<Long> customerIds) {
+        return resourcePurgeDao.deleteCustomers(customerIds);
+    }
+
+    /**
+     * Reads and removes the entities purged by {@link ResourcePurgeServiceImpl#purgeInBulk(String, PurgeErrorCache, Long, Long, int, ExecutorService, BulkPurgeOperation)}
+     */
+    protected interface BulkPurgeOperation {
+
+        /**
+         * @param lastId the last id of the previous page, or null for the first page
+         * @param length the max number of ids to return
+         * @param idsInError ids to be ignored/excluded from the query
+         * @return the next page of ids to delete, in ascending order
+         */
+        List<Long> readIds(Long lastId, int length, List<Long> idsInError);
+
+        /**
+         * @param ids the ids of the entities to remove
+         * @return the number of entities removed
+         */
+        int delete(List<Long> ids);
+    }
+
+    protected class PurgeChunk implements Runnable {
+
+        protected final String entityName;
+        protected final BulkPurgeOperation operation;
+        protected final List<Long> ids;
+        protected final AtomicInteger processedCount;
+        protected final Queue<Long> failedIds;
+
+        public PurgeChunk(String entityName, BulkPurgeOperation operation, List<Long> ids, AtomicInteger processedCount,
+                Queue<Long> failedIds) {
+            this.entityName = entityName;
+            this.operation = operation;
+            this.ids = ids;
+            this.processedCount = processedCount;
+            this.failedIds = failedIds;
+        }
+
+        @Override
+        public void run() {
+            int deletedCount = deleteInTransaction(entityName, operation, ids);
+            if (deletedCount >= 0) {
+                processedCount.addAndGet(deletedCount);
+                return;
+            }
+            for (Long id : ids) {
+                deletedCount = deleteInTransaction(entityName, operation, Collections.singletonList(id));
+                if (deletedCount >= 0) {
+                    processedCount.addAndGet(deletedCount);
+                } else {
+                    failedIds.add(id);
+                }
+            }
+        }
+    }
+
     private class CartPurgeParams {
 
         private Map<String, String> config;
@@ -432,7 +749,7 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         }
     }
     
-    private class PurgeErrorCache {
+    protected class PurgeErrorCache {
 
         private Map<Long, Long> cache = new HashMap<Long, Long>();
         
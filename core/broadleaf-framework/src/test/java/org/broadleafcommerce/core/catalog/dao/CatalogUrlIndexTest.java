@@ -0,0 +1,62 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.dao;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class CatalogUrlIndexTest extends TestCase {
+
+    public void testBulkLoadedLookups() throws Exception {
+        CatalogUrlIndex index = new CatalogUrlIndex.Builder()
+                .add("/hot-sauces/sudden_death_sauce", 1L)
+                .add("/hot-sauces/sweet_death_sauce", 2L)
+                .add("/hot-sauces/sweet_death_sauce", 3L)
+                .add(null, 4L)
+                .build();
+
+        assertTrue(Arrays.equals(new long[] { 1L }, index.get("/hot-sauces/sudden_death_sauce")));
+        assertTrue(Arrays.equals(new long[] { 2L, 3L }, index.get("/hot-sauces/sweet_death_sauce")));
+        assertNull(index.get("/hot-sauces"));
+        assertNull(index.get(null));
+        assertEquals(2, index.size());
+    }
+
+    public void testChangesOverrideBulkLoadedEntries() throws Exception {
+        CatalogUrlIndex index = new CatalogUrlIndex.Builder()
+                .add("/merchandise/hawt_like_a_habanero_shirt", 10L)
+                .build();
+
+        index.add("/merchandise/hawt_like_a_habanero_shirt", 11L);
+        index.add("/merchandise/hawt_like_a_habanero_shirt", 11L);
+        assertTrue(Arrays.equals(new long[] { 10L, 11L }, index.get("/merchandise/hawt_like_a_habanero_shirt")));
+
+        index.remove("/merchandise/hawt_like_a_habanero_shirt", 10L);
+        assertTrue(Arrays.equals(new long[] { 11L }, index.get("/merchandise/hawt_like_a_habanero_shirt")));
+
+        index.remove("/merchandise/hawt_like_a_habanero_shirt", 11L);
+        assertNull(index.get("/merchandise/hawt_like_a_habanero_shirt"));
+
+        index.remove("/merchandise/not_indexed", 12L);
+        index.add("/merchandise/new_shirt", 12L);
+        assertTrue(Arrays.equals(new long[] { 12L }, index.get("/merchandise/new_shirt")));
+        assertEquals(1, index.size());
+        assertEquals(2, index.getChangeCount());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.dao;
+
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.easymock.EasyMock;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import junit.framework.TestCase;
+
+public class ProductDaoImplTest extends TestCase {
+
+    protected static final String URI = "/hot-sauces/new_sauce";
+    protected static final String URL_KEY = "/new_sauce";
+
+    protected EntityManager em;
+    protected Query query;
+    protected CatalogUrlIndexDao urlIndexDao;
+    protected Map<Long, Product> products;
+    protected ProductDaoImpl dao;
+
+    @Override
+    protected void setUp() throws Exception {
+        em = EasyMock.createMock(EntityManager.class);
+        query = EasyMock.createNiceMock(Query.class);
+        urlIndexDao = EasyMock.createMock(CatalogUrlIndexDao.class);
+        products = new HashMap<Long, Product>();
+        dao = new ProductDaoImpl() {
+            @Override
+            public Product readProductById(Long productId) {
+                return products.get(productId);
+            }
+        };
+        dao.em = em;
+        dao.urlIndexDao = urlIndexDao;
+        EasyMock.expect(urlIndexDao.isEnabled()).andReturn(true).anyTimes();
+    }
+
+    /**
+     * Test that a url key hit in the index does not hide a product whose url matches but is not indexed yet
+     */
+    public void testUrlKeyHitStillReadsProductsByUrl() {
+        Product urlKeyMatch = createProduct(2L, "/other-sauces/new_sauce", URL_KEY);
+        Product urlMatch = createProduct(1L, URI, null);
+        products.put(2L, urlKeyMatch);
+        EasyMock.expect(urlIndexDao.readIds(CatalogUrlIndexDao.Type.PRODUCT_URL, URI)).andReturn(null);
+        EasyMock.expect(urlIndexDao.readIds(CatalogUrlIndexDao.Type.PRODUCT_URL_KEY, URL_KEY)).andReturn(new long[] { 2L });
+        urlIndexDao.add(CatalogUrlIndexDao.Type.PRODUCT_URL, URI, 1L);
+        EasyMock.expect(em.createNamedQuery("BC_READ_PRODUCTS_BY_OUTGOING_URL")).andReturn(query);
+        EasyMock.expect(query.getResultList()).andReturn(Arrays.asList(urlMatch));
+        EasyMock.replay(em, query, urlIndexDao);
+
+        List<Product> results = dao.findProductByURI(URI);
+
+        assertEquals(Arrays.asList(urlMatch, urlKeyMatch), results);
+        EasyMock.verify(em, urlIndexDao);
+    }
+
+    /**
+     * Test that a url hit in the index is returned without querying the database
+     */
+    public void testUrlHitIsReturnedFromTheIndex() {
+        Product urlMatch = createProduct(1L, URI, null);
+        products.put(1L, urlMatch);
+        EasyMock.expect(urlIndexDao.readIds(CatalogUrlIndexDao.Type.PRODUCT_URL, URI)).andReturn(new long[] { 1L });
+        EasyMock.expect(urlIndexDao.readIds(CatalogUrlIndexDao.Type.PRODUCT_URL_KEY, URL_KEY)).andReturn(null);
+        EasyMock.replay(em, query, urlIndexDao);
+
+        assertEquals(Arrays.asList(urlMatch), dao.findProductByURI(URI));
+        EasyMock.verify(em, urlIndexDao);
+    }
+
+    protected Product createProduct(Long id, String url, String urlKey) {
+        Sku defaultSku = EasyMock.createNiceMock(Sku.class);
+        Product product = EasyMock.createNiceMock(Product.class);
+        EasyMock.expect(product.getId()).andReturn(id).anyTimes();
+        EasyMock.expect(product.getUrl()).andReturn(url).anyTimes();
+        EasyMock.expect(product.getUrlKey()).andReturn(urlKey).anyTimes();
+        EasyMock.expect(product.getDefaultSku()).andReturn(defaultSku).anyTimes();
+        EasyMock.replay(defaultSku, product);
+        return product;
+    }
+
+}
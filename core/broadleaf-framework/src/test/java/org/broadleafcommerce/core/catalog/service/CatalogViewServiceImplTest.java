@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.media.domain.Media;
+import org.broadleafcommerce.common.time.FixedTimeSource;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.broadleafcommerce.core.catalog.dao.ProductDao;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryAttribute;
+import org.broadleafcommerce.core.catalog.domain.CategoryMediaXref;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXref;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductAttribute;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.domain.SkuMediaXref;
+import org.broadleafcommerce.core.catalog.domain.dto.CategoryViewDTO;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductViewDTO;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.hibernate.cache.spi.CacheKey;
+import org.hibernate.type.LongType;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+
+public class CatalogViewServiceImplTest extends TestCase {
+
+    protected static final long NOW = 1000000000000L;
+
+    protected CacheManager cacheManager;
+    protected CatalogViewServiceImpl service;
+    protected ProductDao productDao;
+    protected CategoryDao categoryDao;
+
+    @Override
+    protected void setUp() throws Exception {
+        cacheManager = new CacheManager(new Configuration().name("catalogViewServiceImplTest"));
+        Cache cache = new Cache(new CacheConfiguration(CatalogViewServiceImpl.CACHE_NAME, 100));
+        cacheManager.addCache(cache);
+
+        productDao = EasyMock.createMock(ProductDao.class);
+        categoryDao = EasyMock.createMock(CategoryDao.class);
+        service = new CatalogViewServiceImpl();
+        service.productDao = productDao;
+        service.categoryDao = categoryDao;
+        service.statisticsService = EasyMock.createNiceMock(StatisticsService.class);
+        EasyMock.replay(service.statisticsService);
+        service.cache = cache;
+        service.enabled = true;
+
+        BroadleafRequestContext.setBroadleafRequestContext(new BroadleafRequestContext());
+        SystemTime.setLocalTimeSource(new FixedTimeSource(NOW));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SystemTime.reset();
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+        cacheManager.shutdown();
+    }
+
+    public void testProductViewIsEvictedById() {
+        Product product = createProduct(1L, null, null);
+        EasyMock.expect(productDao.readProductById(1L)).andReturn(product).times(2);
+        EasyMock.replay(productDao);
+
+        ProductViewDTO view = service.findProductViewById(1L);
+        assertSame(view, service.findProductViewById(1L));
+
+        service.evictProductView(2L);
+        assertSame(view, service.findProductViewById(1L));
+
+        service.evictProductView(1L);
+        ProductViewDTO reread = service.findProductViewById(1L);
+        assertNotSame(view, reread);
+        assertEquals(Long.valueOf(1L), reread.getId());
+
+        EasyMock.verify(productDao);
+    }
+
+    public void testProductViewIsEvictedByDependentSku() {
+        Sku sku = EasyMock.createNiceMock(Sku.class);
+        EasyMock.expect(sku.getId()).andReturn(10L).anyTimes();
+        EasyMock.expect(sku.getSkuMediaXref()).andReturn(new HashMap<String, SkuMediaXref>()).anyTimes();
+        EasyMock.replay(sku);
+        Product product = createProduct(1L, sku, null);
+        EasyMock.expect(productDao.readProductById(1L)).andReturn(product).times(2);
+        EasyMock.replay(productDao);
+
+        ProductViewDTO view = service.findProductViewById(1L);
+        service.evictDependentViews(SkuImpl.class.getName(), 11L);
+        assertSame(view, service.findProductViewById(1L));
+
+        service.evictDependentViews(SkuImpl.class.getName(), 10L);
+        assertNotSame(view, service.findProductViewById(1L));
+
+        EasyMock.verify(productDao);
+    }
+
+    public void testCategoryViewIsEvictedById() {
+        Category category = createCategory(5L, null);
+        EasyMock.expect(categoryDao.readCategoryById(5L)).andReturn(category).times(2);
+        EasyMock.replay(categoryDao);
+
+        CategoryViewDTO view = service.findCategoryViewById(5L);
+        assertSame(view, service.findCategoryViewById(5L));
+
+        service.evictCategoryView(5L);
+        assertNotSame(view, service.findCategoryViewById(5L));
+
+        EasyMock.verify(categoryDao);
+    }
+
+    public void testProductViewIsEvictedWhenProductEntersOrLeavesTheSecondLevelCache() {
+        Product product = createProduct(1L, null, null);
+        EasyMock.expect(productDao.readProductById(1L)).andReturn(product).times(3);
+        EasyMock.replay(productDao);
+        CatalogViewCacheEventListener listener = new CatalogViewCacheEventListener(service);
+
+        // A product changed while it was not in blProducts is put there, not updated, when it is next read
+        ProductViewDTO view = service.findProductViewById(1L);
+        listener.notifyElementPut(null, createElement(ProductImpl.class.getName(), 1L));
+        ProductViewDTO reread = service.findProductViewById(1L);
+        assertNotSame(view, reread);
+
+        listener.notifyElementEvicted(null, createElement(ProductImpl.class.getName(), 1L));
+        assertNotSame(reread, service.findProductViewById(1L));
+
+        EasyMock.verify(productDao);
+    }
+
+    public void testProductViewIsCachedWhenReadingItPutsTheProduct() {
+        final Product product = createProduct(1L, null, null);
+        final CatalogViewCacheEventListener listener = new CatalogViewCacheEventListener(service);
+        EasyMock.expect(productDao.readProductById(1L)).andAnswer(new IAnswer<Product>() {
+            @Override
+            public Product answer() throws Throwable {
+                listener.notifyElementPut(null, createElement(ProductImpl.class.getName(), 1L));
+                return product;
+            }
+        }).once();
+        EasyMock.replay(productDao);
+
+        ProductViewDTO view = service.findProductViewById(1L);
+        assertSame(view, service.findProductViewById(1L));
+
+        EasyMock.verify(productDao);
+    }
+
+    public void testCachedProductViewIsActiveAtReadTime() {
+        Product product = createProduct(1L, null, new Date(NOW + 1000));
+        EasyMock.expect(productDao.readProductById(1L)).andReturn(product).once();
+        EasyMock.replay(productDao);
+
+        assertTrue(service.findProductViewById(1L).isActive());
+
+        SystemTime.setLocalTimeSource(new FixedTimeSource(NOW + 2000));
+        ProductViewDTO cached = service.findProductViewById(1L);
+        assertFalse(cached.isActive());
+
+        SystemTime.setLocalTimeSource(new FixedTimeSource(NOW));
+        assertTrue(cached.isActive());
+
+        EasyMock.verify(productDao);
+    }
+
+    public void testCachedCategoryViewIsActiveAtReadTime() {
+        Category category = createCategory(5L, new Date(NOW + 1000));
+        EasyMock.expect(categoryDao.readCategoryById(5L)).andReturn(category).once();
+        EasyMock.replay(categoryDao);
+
+        assertTrue(service.findCategoryViewById(5L).isActive());
+
+        SystemTime.setLocalTimeSource(new FixedTimeSource(NOW + 2000));
+        assertFalse(service.findCategoryViewById(5L).isActive());
+
+        EasyMock.verify(categoryDao);
+    }
+
+    public void testViewsAreNotCachedWhenDisabled() {
+        service.enabled = false;
+        Product product = createProduct(1L, null, null);
+        EasyMock.expect(productDao.readProductById(1L)).andReturn(product).times(2);
+        EasyMock.replay(productDao);
+
+        assertNotSame(service.findProductViewById(1L), service.findProductViewById(1L));
+
+        EasyMock.verify(productDao);
+    }
+
+    protected Element createElement(String entityName, Long id) {
+        return new Element(new CacheKey(id, LongType.INSTANCE, entityName, null, null), new Object());
+    }
+
+    protected Product createProduct(Long id, Sku defaultSku, Date activeEndDate) {
+        Product product = EasyMock.createNiceMock(Product.class);
+        EasyMock.expect(product.getId()).andReturn(id).anyTimes();
+        EasyMock.expect(product.getDefaultSku()).andReturn(defaultSku).anyTimes();
+        EasyMock.expect(product.getActiveStartDate()).andReturn(new Date(NOW - 1000)).anyTimes();
+        EasyMock.expect(product.getActiveEndDate()).andReturn(activeEndDate).anyTimes();
+        EasyMock.expect(product.getAllSkus()).andReturn(new ArrayList<Sku>()).anyTimes();
+        EasyMock.expect(product.getMedia()).andReturn(new HashMap<String, Media>()).anyTimes();
+        EasyMock.expect(product.getProductAttributes()).andReturn(new HashMap<String, ProductAttribute>()).anyTimes();
+        EasyMock.expect(product.getAllParentCategoryXrefs()).andReturn(new ArrayList<CategoryProductXref>()).anyTimes();
+        EasyMock.replay(product);
+        return product;
+    }
+
+    protected Category createCategory(Long id, Date activeEndDate) {
+        Category category = EasyMock.createNiceMock(Category.class);
+        EasyMock.expect(category.getId()).andReturn(id).anyTimes();
+        EasyMock.expect(category.getActiveStartDate()).andReturn(new Date(NOW - 1000)).anyTimes();
+        EasyMock.expect(category.getActiveEndDate()).andReturn(activeEndDate).anyTimes();
+        EasyMock.expect(category.getCategoryMediaXref()).andReturn(new HashMap<String, CategoryMediaXref>()).anyTimes();
+        EasyMock.expect(category.getCategoryAttributesMap()).andReturn(new HashMap<String, CategoryAttribute>()).anyTimes();
+        EasyMock.replay(category);
+        return category;
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import junit.framework.TestCase;
+
+import org.broadleafcommerce.common.time.FixedTimeSource;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteriaImpl;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXrefImpl;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.easymock.EasyMock;
+import org.hibernate.cache.spi.CacheKey;
+import org.hibernate.type.LongType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.ehcache.Element;
+
+public class OfferCandidateIndexImplTest extends TestCase {
+
+    protected OfferCandidateIndexImpl index;
+
+    @Override
+    protected void setUp() throws Exception {
+        index = new OfferCandidateIndexImpl() {
+            @Override
+            protected void registerCacheEventListener() {
+                //no cache manager in unit tests
+            }
+        };
+        index.setEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SystemTime.reset();
+    }
+
+    public void testOffersAreFilteredBySku() {
+        Offer skuOffer = createOffer(1L, 10L, "discreteOrderItem.?sku.?id == 5");
+        Offer otherSkuOffer = createOffer(2L, 20L, "CollectionUtils.intersection(orderItem.?sku.?id,[6,7]).size()>0");
+        Offer unrestrictedOffer = createOffer(3L, 30L, "orderItem.quantity > 1");
+        List<Offer> offers = Arrays.asList(skuOffer, otherSkuOffer, unrestrictedOffer);
+
+        assertEquals(Arrays.asList(skuOffer, unrestrictedOffer), index.filterOffers(offers, createOrder(5L)));
+        assertEquals(Arrays.asList(otherSkuOffer, unrestrictedOffer), index.filterOffers(offers, createOrder(7L)));
+        assertEquals(Arrays.asList(unrestrictedOffer), index.filterOffers(offers, createOrder(8L)));
+    }
+
+    public void testOffersArePostedUnderTheirSkus() {
+        Offer offer = createOffer(1L, 10L, "CollectionUtils.intersection(orderItem.?sku.?id,[6,7]).size()>0");
+        index.filterOffers(Arrays.asList(offer), createOrder(6L));
+
+        assertTrue(index.offerIdsByPostingKey.get(OfferCandidateIndexImpl.SKU_PREFIX + 6).contains(1L));
+        assertTrue(index.offerIdsByPostingKey.get(OfferCandidateIndexImpl.SKU_PREFIX + 7).contains(1L));
+
+        index.removeOffer(1L);
+        assertNull(index.offerIdsByPostingKey.get(OfferCandidateIndexImpl.SKU_PREFIX + 6));
+        assertNull(index.getIndexedOffers().get(1L));
+    }
+
+    public void testIndexIsBounded() {
+        index.setIndexSize(2);
+        List<Offer> offers = new ArrayList<Offer>();
+        for (long i = 1; i <= 3; i++) {
+            offers.add(createOffer(i, i * 10, "discreteOrderItem.?sku.?id == " + i));
+        }
+
+        assertEquals(offers.subList(0, 1), index.filterOffers(offers, createOrder(1L)));
+        assertEquals(2, index.getIndexedOffers().size());
+        assertNull(index.offerIdsByPostingKey.get(OfferCandidateIndexImpl.SKU_PREFIX + 1));
+        assertEquals(offers.subList(2, 3), index.filterOffers(offers, createOrder(3L)));
+    }
+
+    public void testChangedCriteriaIsReindexedOnlyAfterRemoval() {
+        Offer offer = createOffer(1L, 10L, "discreteOrderItem.?sku.?id == 5");
+        List<Offer> offers = Arrays.asList(offer);
+        assertEquals(1, index.filterOffers(offers, createOrder(5L)).size());
+
+        offer.getQualifyingItemCriteriaXref().iterator().next().getOfferItemCriteria()
+                .setMatchRule("discreteOrderItem.?sku.?id == 6");
+        assertEquals(1, index.filterOffers(offers, createOrder(5L)).size());
+
+        index.removeCriteria(10L);
+        assertEquals(0, index.filterOffers(offers, createOrder(5L)).size());
+        assertEquals(1, index.filterOffers(offers, createOrder(6L)).size());
+    }
+
+    public void testIndexOfferReplacesPreviousEntry() {
+        Offer offer = createOffer(1L, 10L, "discreteOrderItem.?sku.?id == 5");
+        List<Offer> offers = Arrays.asList(offer);
+        index.filterOffers(offers, createOrder(5L));
+
+        offer.getQualifyingItemCriteriaXref().iterator().next().getOfferItemCriteria()
+                .setMatchRule("discreteOrderItem.?sku.?id == 6");
+        index.indexOffer(offer);
+
+        assertNull(index.offerIdsByPostingKey.get(OfferCandidateIndexImpl.SKU_PREFIX + 5));
+        assertEquals(1, index.filterOffers(offers, createOrder(6L)).size());
+    }
+
+    public void testCriteriaPutInTheCacheRegionDropsItsOffers() {
+        Offer offer = createOffer(1L, 10L, "discreteOrderItem.?sku.?id == 5");
+        List<Offer> offers = Arrays.asList(offer);
+        index.filterOffers(offers, createOrder(5L));
+
+        // A changed criteria that is not in the cache region is put there rather than updated
+        offer.getQualifyingItemCriteriaXref().iterator().next().getOfferItemCriteria()
+                .setMatchRule("discreteOrderItem.?sku.?id == 6");
+        OfferCandidateIndexCacheEventListener listener = new OfferCandidateIndexCacheEventListener(index);
+        listener.notifyElementPut(null, createElement(OfferItemCriteriaImpl.class.getName(), 11L));
+        assertEquals(1, index.filterOffers(offers, createOrder(5L)).size());
+
+        listener.notifyElementPut(null, createElement(OfferItemCriteriaImpl.class.getName(), 10L));
+        assertEquals(0, index.filterOffers(offers, createOrder(5L)).size());
+        assertEquals(1, index.filterOffers(offers, createOrder(6L)).size());
+    }
+
+    public void testOfferIsReindexedAfterTtl() {
+        SystemTime.setLocalTimeSource(new FixedTimeSource(1000000L));
+        index.setTtlSeconds(60);
+        Offer offer = createOffer(1L, 10L, "discreteOrderItem.?sku.?id == 5");
+        List<Offer> offers = Arrays.asList(offer);
+        index.filterOffers(offers, createOrder(5L));
+
+        // Changed on another node, so this node is not notified
+        offer.getQualifyingItemCriteriaXref().iterator().next().getOfferItemCriteria()
+                .setMatchRule("discreteOrderItem.?sku.?id == 6");
+        SystemTime.setLocalTimeSource(new FixedTimeSource(1000000L + 59000L));
+        assertEquals(0, index.filterOffers(offers, createOrder(6L)).size());
+
+        SystemTime.setLocalTimeSource(new FixedTimeSource(1000000L + 60000L));
+        assertEquals(1, index.filterOffers(offers, createOrder(6L)).size());
+        assertEquals(0, index.filterOffers(offers, createOrder(5L)).size());
+    }
+
+    protected Element createElement(String entityName, Long id) {
+        return new Element(new CacheKey(id, LongType.INSTANCE, entityName, null, null), new Object());
+    }
+
+    protected Offer createOffer(Long offerId, Long criteriaId, String matchRule) {
+        OfferImpl offer = new OfferImpl();
+        offer.setId(offerId);
+        offer.setType(OfferType.ORDER);
+        OfferItemCriteria criteria = new OfferItemCriteriaImpl();
+        criteria.setId(criteriaId);
+        criteria.setMatchRule(matchRule);
+        OfferQualifyingCriteriaXref xref = new OfferQualifyingCriteriaXrefImpl();
+        xref.setOffer(offer);
+        xref.setOfferItemCriteria(criteria);
+        Set<OfferQualifyingCriteriaXref> xrefs = new HashSet<OfferQualifyingCriteriaXref>();
+        xrefs.add(xref);
+        offer.setQualifyingItemCriteriaXref(xrefs);
+        return offer;
+    }
+
+    protected Order createOrder(Long skuId) {
+        Sku sku = EasyMock.createNiceMock(Sku.class);
+        EasyMock.expect(sku.getId()).andReturn(skuId).anyTimes();
+        DiscreteOrderItem orderItem = EasyMock.createNiceMock(DiscreteOrderItem.class);
+        EasyMock.expect(orderItem.getSku()).andReturn(sku).anyTimes();
+        Order order = EasyMock.createNiceMock(Order.class);
+        EasyMock.expect(order.getOrderItems()).andReturn(Arrays.<OrderItem>asList(orderItem)).anyTimes();
+        EasyMock.replay(sku, orderItem, order);
+        return order;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import junit.framework.TestCase;
+
+public class OfferItemRulePredicateTest extends TestCase {
+
+    public void testSkuEquality() {
+        OfferItemRulePredicate predicate = OfferItemRulePredicate.fromRule("discreteOrderItem.?sku.?id == 5");
+        assertTrue(predicate.isRestrictive());
+        assertTrue(predicate.couldMatch(5L, 1L, null, null));
+        assertFalse(predicate.couldMatch(6L, 1L, null, null));
+        assertFalse(predicate.couldMatch(null, 1L, null, null));
+    }
+
+    public void testCategoryNameIsCaseInsensitive() {
+        OfferItemRulePredicate predicate = OfferItemRulePredicate.fromRule(
+                "MvelHelper.toUpperCase(orderItem.?category.?name)==MvelHelper.toUpperCase(\"merchandise\")");
+        assertTrue(predicate.couldMatch(null, null, 1L, "Merchandise"));
+        assertFalse(predicate.couldMatch(null, null, 1L, "Apparel"));
+    }
+
+    public void testConjunctionRequiresAllTermsOnSameItem() {
+        OfferItemRulePredicate predicate = OfferItemRulePredicate.fromRule(
+                "(orderItem.?product.?id == 10 && CollectionUtils.intersection(orderItem.?category.?name,[\"a\",\"b\"]).size()>0) && orderItem.quantity > 1");
+        assertTrue(predicate.couldMatch(1L, 10L, 2L, "B"));
+        assertFalse(predicate.couldMatch(1L, 10L, 2L, "c"));
+        assertFalse(predicate.couldMatch(1L, 11L, 2L, "a"));
+    }
+
+    public void testRepeatedDimensionIsIntersected() {
+        OfferItemRulePredicate predicate = OfferItemRulePredicate.fromRule(
+                "CollectionUtils.intersection(orderItem.?sku.?id,[1,2,3]).size()>0 && orderItem.sku.id == 2");
+        assertTrue(predicate.couldMatch(2L, null, null, null));
+        assertFalse(predicate.couldMatch(1L, null, null, null));
+    }
+
+    public void testUnsupportedRulesAreUnrestricted() {
+        assertFalse(OfferItemRulePredicate.fromRule(null).isRestrictive());
+        assertFalse(OfferItemRulePredicate.fromRule("orderItem.sku.id == 1 || orderItem.sku.id == 2").isRestrictive());
+        assertFalse(OfferItemRulePredicate.fromRule("!(orderItem.sku.id == 1)").isRestrictive());
+        assertFalse(OfferItemRulePredicate.fromRule("orderItem.quantity > 2").isRestrictive());
+        assertFalse(OfferItemRulePredicate.fromRule("orderItem.sku.id == 1 ? true : false").isRestrictive());
+        assertTrue(OfferItemRulePredicate.fromRule("orderItem.sku.id != 1 && orderItem.sku.id == 2").isRestrictive());
+    }
+}
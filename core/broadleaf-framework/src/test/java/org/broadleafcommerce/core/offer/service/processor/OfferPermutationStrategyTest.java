@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.domain.OrderItemPriceDetailAdjustment;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOfferImpl;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder;
+import org.broadleafcommerce.core.offer.service.type.OfferDiscountType;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetail;
+import org.easymock.EasyMock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class OfferPermutationStrategyTest extends TestCase {
+
+    protected static final String ORDER_RULE = "order.subTotal.getAmount()>20";
+
+    protected ItemOfferProcessorTest fixture;
+
+    @Override
+    protected void setUp() throws Exception {
+        fixture = new ItemOfferProcessorTest();
+        fixture.setUp();
+        fixture.replay();
+    }
+
+    /**
+     * Test that pruning picks the same offers as trialing every ordering when combinable, non-combinable and
+     * totalitarian offers target different items
+     */
+    public void testPrunedMatchesExhaustiveForMixedOffers() throws Exception {
+        // One letter per offer: Combinable, Non-combinable or Totalitarian. The first two offers target the first
+        // item in the basic order and the last two the second item.
+        String[] combinations = new String[] { "CCCC", "NCTC", "CNCT", "NNCC", "TCNC", "TTCC", "NTNT", "CTTN" };
+        for (String combination : combinations) {
+            for (boolean exploreExclusiveOffers : new boolean[] { false, true }) {
+                Map<Long, Integer> exhaustive = new TreeMap<Long, Integer>();
+                Money exhaustiveSubtotal = applyOffers(buildOffers(combination), false, exploreExclusiveOffers, exhaustive);
+
+                Map<Long, Integer> pruned = new TreeMap<Long, Integer>();
+                Money prunedSubtotal = applyOffers(buildOffers(combination), true, exploreExclusiveOffers, pruned);
+
+                String message = combination + ", exploreExclusiveOffers " + exploreExclusiveOffers;
+                assertEquals(message, exhaustiveSubtotal, prunedSubtotal);
+                assertEquals(message, exhaustive, pruned);
+            }
+        }
+    }
+
+    /**
+     * Test that an ordering is only skipped when the potential savings of its offers cannot beat the best subtotal
+     */
+    public void testPruningSkipsOnlyOrderingsThatCannotImprove() {
+        PromotableCandidateItemOffer a = buildCandidate(1L, 10D);
+        PromotableCandidateItemOffer b = buildCandidate(2L, 5D);
+        List<List<PromotableCandidateItemOffer>> permutations = new ArrayList<List<PromotableCandidateItemOffer>>();
+        permutations.add(Arrays.asList(a, b));
+        permutations.add(Arrays.asList(b, a));
+        permutations.add(Arrays.asList(b));
+
+        // The first ordering realises all 15 of potential savings, so nothing can beat it
+        TableEvaluator evaluator = new TableEvaluator(100D, true);
+        evaluator.subtotals.put("[1, 2]", 85D);
+        evaluator.subtotals.put("[2, 1]", 90D);
+        evaluator.subtotals.put("[2]", 95D);
+        OfferPermutationStrategyImpl strategy = new OfferPermutationStrategyImpl();
+        strategy.setPruningEnabled(true);
+        assertEquals(Arrays.asList(a, b), strategy.determineBestPermutation(permutations, evaluator.order, evaluator));
+        assertEquals(Arrays.asList("[1, 2]"), evaluator.evaluated);
+
+        // A lower first result leaves room for the others to improve on it
+        evaluator = new TableEvaluator(100D, true);
+        evaluator.subtotals.put("[1, 2]", 92D);
+        evaluator.subtotals.put("[2, 1]", 88D);
+        evaluator.subtotals.put("[2]", 95D);
+        assertEquals(Arrays.asList(b, a), strategy.determineBestPermutation(permutations, evaluator.order, evaluator));
+        // 100 - 5 cannot beat 88
+        assertEquals(Arrays.asList("[1, 2]", "[2, 1]"), evaluator.evaluated);
+
+        // Without a proven bound every ordering is trialed
+        evaluator = new TableEvaluator(100D, false);
+        evaluator.subtotals.put("[1, 2]", 85D);
+        evaluator.subtotals.put("[2, 1]", 90D);
+        evaluator.subtotals.put("[2]", 95D);
+        strategy.determineBestPermutation(permutations, evaluator.order, evaluator);
+        assertEquals(3, evaluator.evaluated.size());
+    }
+
+    /**
+     * Test that orderings skipped on a bound that turns out not to hold are trialed after all
+     */
+    public void testBoundViolationEvaluatesSkippedOrderings() {
+        PromotableCandidateItemOffer a = buildCandidate(1L, 10D);
+        PromotableCandidateItemOffer b = buildCandidate(2L, 5D);
+        List<List<PromotableCandidateItemOffer>> permutations = new ArrayList<List<PromotableCandidateItemOffer>>();
+        permutations.add(Arrays.asList(a, b));
+        permutations.add(Arrays.asList(b));
+        permutations.add(Arrays.asList(b, a));
+
+        TableEvaluator evaluator = new TableEvaluator(100D, true);
+        evaluator.subtotals.put("[1, 2]", 90D);
+        evaluator.subtotals.put("[2]", 80D);
+        evaluator.subtotals.put("[2, 1]", 70D);
+        OfferPermutationStrategyImpl strategy = new OfferPermutationStrategyImpl();
+        strategy.setPruningEnabled(true);
+        assertEquals(Arrays.asList(b, a), strategy.determineBestPermutation(permutations, evaluator.order, evaluator));
+        // [2] is skipped at first, as 100 - 5 cannot beat 90, but [2, 1] then saves 30 against a bound of 15
+        assertEquals(Arrays.asList("[1, 2]", "[2, 1]", "[2]"), evaluator.evaluated);
+    }
+
+    protected Money applyOffers(List<Offer> offers, boolean pruningEnabled, boolean exploreExclusiveOffers,
+            Map<Long, Integer> appliedQuantities) throws Exception {
+        OfferPermutationStrategyImpl strategy = new OfferPermutationStrategyImpl();
+        strategy.setPruningEnabled(pruningEnabled);
+        strategy.setExploreExclusiveOffers(exploreExclusiveOffers);
+        fixture.itemProcessor.setOfferPermutationStrategy(strategy);
+
+        Order order = fixture.dataProvider.createBasicOrder();
+        order.updatePrices();
+        fixture.offerService.applyAndSaveOffersToOrder(offers, order);
+
+        for (OrderItem item : order.getOrderItems()) {
+            for (OrderItemPriceDetail detail : item.getOrderItemPriceDetails()) {
+                for (OrderItemPriceDetailAdjustment adjustment : detail.getOrderItemPriceDetailAdjustments()) {
+                    Long offerId = adjustment.getOffer().getId();
+                    Integer quantity = appliedQuantities.get(offerId);
+                    appliedQuantities.put(offerId, (quantity == null ? 0 : quantity) + detail.getQuantity());
+                }
+            }
+        }
+        return order.getSubTotal();
+    }
+
+    /**
+     * Two offers on each of the two items in the basic order, with the given combinability of each offer
+     */
+    protected List<Offer> buildOffers(String combination) {
+        List<Offer> offers = new ArrayList<Offer>();
+        offers.add(buildOffer(1L, "test1", OfferDiscountType.PERCENT_OFF, 20, combination.charAt(0)));
+        offers.add(buildOffer(2L, "test1", OfferDiscountType.AMOUNT_OFF, 5, combination.charAt(1)));
+        offers.add(buildOffer(3L, "test2", OfferDiscountType.PERCENT_OFF, 10, combination.charAt(2)));
+        offers.add(buildOffer(4L, "test2", OfferDiscountType.AMOUNT_OFF, 4, combination.charAt(3)));
+        return offers;
+    }
+
+    protected Offer buildOffer(Long id, String categoryName, OfferDiscountType discountType, int value, char combinability) {
+        String rule = "([MVEL.eval(\"toUpperCase()\",\"" + categoryName + "\")] contains MVEL.eval(\"toUpperCase()\", discreteOrderItem.category.name))";
+        Offer offer = fixture.dataProvider.createItemBasedOfferWithItemCriteria(ORDER_RULE, discountType, null, rule).get(0);
+        offer.setId(id);
+        offer.setName("offer" + id);
+        offer.setValue(BigDecimal.valueOf(value));
+        offer.setCombinableWithOtherOffers(combinability == 'C');
+        offer.setTotalitarianOffer(combinability == 'T');
+        return offer;
+    }
+
+    protected PromotableCandidateItemOffer buildCandidate(Long offerId, double potentialSavings) {
+        Offer offer = new OfferImpl();
+        offer.setId(offerId);
+        PromotableCandidateItemOffer candidate = new PromotableCandidateItemOfferImpl(EasyMock.createNiceMock(PromotableOrder.class), offer);
+        candidate.setPotentialSavings(new Money(potentialSavings));
+        return candidate;
+    }
+
+    /**
+     * Looks up the subtotal of each ordering, keyed on its offer ids, and records the orderings trialed
+     */
+    protected static class TableEvaluator implements ItemOfferPermutationEvaluator {
+
+        protected final PromotableOrder order;
+        protected final boolean potentialSavingsUpperBound;
+        protected final Map<String, Double> subtotals = new HashMap<String, Double>();
+        protected final List<String> evaluated = new ArrayList<String>();
+        protected String current;
+
+        public TableEvaluator(double subtotalWithoutAdjustments, boolean potentialSavingsUpperBound) {
+            this.potentialSavingsUpperBound = potentialSavingsUpperBound;
+            order = EasyMock.createNiceMock(PromotableOrder.class);
+            EasyMock.expect(order.calculateSubtotalWithoutAdjustments()).andReturn(new Money(subtotalWithoutAdjustments)).anyTimes();
+            EasyMock.replay(order);
+        }
+
+        @Override
+        public void applyItemOffers(PromotableOrder order, List<PromotableCandidateItemOffer> itemOffers) {
+            List<Long> ids = new ArrayList<Long>();
+            for (PromotableCandidateItemOffer itemOffer : itemOffers) {
+                ids.add(itemOffer.getOffer().getId());
+            }
+            current = ids.toString();
+            evaluated.add(current);
+        }
+
+        @Override
+        public boolean isPotentialSavingsUpperBound() {
+            return potentialSavingsUpperBound;
+        }
+
+        @Override
+        public Money calculateSubtotalWithAdjustments(PromotableOrder order) {
+            return new Money(subtotals.get(current));
+        }
+
+        @Override
+        public void resetPriceDetails(PromotableOrder order) {
+            current = null;
+        }
+
+    }
+
+}
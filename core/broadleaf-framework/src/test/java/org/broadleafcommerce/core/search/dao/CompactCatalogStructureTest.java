@@ -0,0 +1,72 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.dao;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class CompactCatalogStructureTest extends TestCase {
+
+    public void testAncestorClosure() throws Exception {
+        CategoryHierarchy hierarchy = new CategoryHierarchy.Builder(4)
+                .addParent(4L, 3L)
+                .addParent(4L, 2L)
+                .addParent(3L, 1L)
+                .addParent(2L, 1L)
+                .build();
+
+        long[] ancestors = hierarchy.getAncestorIds(4L);
+        assertEquals(4L, ancestors[0]);
+        assertSame(ancestors, hierarchy.getAncestorIds(4L));
+        long[] sorted = ancestors.clone();
+        Arrays.sort(sorted);
+        assertTrue(Arrays.equals(new long[] { 1L, 2L, 3L, 4L }, sorted));
+        assertEquals(0, hierarchy.getParentIds(1L).length);
+        assertTrue(Arrays.equals(new long[] { 99L }, hierarchy.getAncestorIds(99L)));
+    }
+
+    public void testAncestorClosureWithCycle() throws Exception {
+        CategoryHierarchy hierarchy = new CategoryHierarchy.Builder(2)
+                .addParent(1L, 2L)
+                .addParent(2L, 1L)
+                .build();
+
+        long[] ancestors = hierarchy.getAncestorIds(1L);
+        Arrays.sort(ancestors);
+        assertTrue(Arrays.equals(new long[] { 1L, 2L }, ancestors));
+    }
+
+    public void testProductParentsAndDisplayOrders() throws Exception {
+        CompactCatalogStructure structure = new CompactCatalogStructure(new CategoryHierarchy.Builder(0).build());
+
+        LongToLongArrayMap parents = new LongToLongArrayMap();
+        for (long productId = 1; productId <= 5000; productId++) {
+            parents.add(productId, productId % 7);
+            parents.add(productId, productId % 7);
+            parents.add(productId, 100L);
+            structure.putDisplayOrder(productId % 7, productId, productId * CatalogStructure.DISPLAY_ORDER_SCALE);
+        }
+        structure.addParentCategories(parents);
+
+        assertTrue(Arrays.equals(new long[] { 3L, 100L }, structure.getParentCategoryIds(10L)));
+        assertNull(structure.getParentCategoryIds(5001L));
+        assertEquals(Long.valueOf(10L * CatalogStructure.DISPLAY_ORDER_SCALE), structure.getDisplayOrder(3L, 10L));
+        assertNull(structure.getDisplayOrder(4L, 10L));
+    }
+}
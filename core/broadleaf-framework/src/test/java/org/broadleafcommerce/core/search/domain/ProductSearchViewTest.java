@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.domain;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.easymock.EasyMock;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ProductSearchViewTest extends TestCase {
+
+    public void testProjectedValuesDoNotLoadProduct() throws Exception {
+        ProductSearchView.Loader loader = EasyMock.createMock(ProductSearchView.Loader.class);
+        EasyMock.replay(loader);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put(ProductSearchView.NAME, "Sudden Death Sauce");
+        values.put(ProductSearchView.PRICE, 10.99d);
+        values.put(ProductSearchView.URL, "/hot-sauces/sudden_death_sauce");
+        values.put("color", Arrays.asList("Red", "Green"));
+        ProductSearchView view = new ProductSearchView(1L, values, null, loader);
+
+        assertEquals("Sudden Death Sauce", view.getName());
+        assertEquals(new Money(new BigDecimal("10.99")), view.getPrice());
+        assertEquals("/hot-sauces/sudden_death_sauce", view.getUrl());
+        assertEquals(Arrays.asList("Red", "Green"), view.get("color"));
+        assertFalse(view.isProductLoaded());
+        EasyMock.verify(loader);
+    }
+
+    public void testUnprojectedValuesFallBackToProductOnce() throws Exception {
+        Product product = EasyMock.createMock(Product.class);
+        EasyMock.expect(product.getUrl()).andReturn("/hot-sauces/sudden_death_sauce").anyTimes();
+        ProductSearchView.Loader loader = EasyMock.createMock(ProductSearchView.Loader.class);
+        Map<String, Object> values = new HashMap<>();
+        values.put(ProductSearchView.NAME, "Sudden Death Sauce");
+        ProductSearchView view = new ProductSearchView(1L, values, null, loader);
+        EasyMock.expect(loader.loadProduct(view)).andReturn(product).once();
+        EasyMock.expect(loader.readPropertyValue(product, "mfg")).andReturn("Blair's");
+        EasyMock.replay(product, loader);
+
+        assertEquals("Sudden Death Sauce", view.getName());
+        assertEquals("/hot-sauces/sudden_death_sauce", view.getUrl());
+        assertEquals("Blair's", view.get("mfg"));
+        assertTrue(view.isProductLoaded());
+        EasyMock.verify(product, loader);
+    }
+}
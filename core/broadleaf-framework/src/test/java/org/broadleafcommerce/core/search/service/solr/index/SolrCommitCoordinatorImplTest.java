@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.easymock.classextension.EasyMock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class SolrCommitCoordinatorImplTest extends TestCase {
+
+    protected SolrClient server;
+    protected RecordingCoordinator coordinator;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = EasyMock.createMock(SolrClient.class);
+        coordinator = new RecordingCoordinator();
+        coordinator.setEnabled(true);
+        coordinator.setBatchSize(100);
+        // Keep the background flush out of the way
+        coordinator.setWindowMillis(3600000L);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        coordinator.failing = false;
+        coordinator.poison = null;
+        coordinator.destroy();
+    }
+
+    /**
+     * Test that a failed batch is retried ahead of the updates queued after it
+     */
+    public void testFailedBatchIsRetriedInOrder() throws Exception {
+        coordinator.addDocuments(server, documents("1", "2"));
+        coordinator.failing = true;
+        try {
+            coordinator.flush();
+            fail("Expected the flush to fail");
+        } catch (ServiceException e) {
+            // expected
+        }
+        coordinator.deleteByQuery(server, "id:1");
+        coordinator.addDocuments(server, documents("3"));
+
+        coordinator.failing = false;
+        coordinator.flush();
+        assertEquals(Arrays.asList("1", "2", "delete id:1", "3"), coordinator.sent);
+        assertEquals(1, coordinator.commits);
+        assertEquals(0, coordinator.getDeadLetterCount());
+    }
+
+    /**
+     * Test that a batch failing maxAttempts times is sent one update at a time and only the bad update is dropped
+     */
+    public void testPoisonDocumentIsDroppedAfterMaxAttempts() throws Exception {
+        coordinator.setMaxAttempts(2);
+        coordinator.poison = "2";
+        coordinator.addDocuments(server, documents("1", "2", "3"));
+        try {
+            coordinator.flush();
+            fail("Expected the first attempt to fail");
+        } catch (ServiceException e) {
+            // expected
+        }
+        assertTrue(coordinator.sent.isEmpty());
+
+        coordinator.flush();
+        assertEquals(Arrays.asList("1", "3"), coordinator.sent);
+        assertEquals(1, coordinator.getDeadLetterCount());
+        assertEquals(1, coordinator.commits);
+
+        // Later updates are no longer held up
+        coordinator.addDocuments(server, documents("4"));
+        coordinator.flush();
+        assertEquals(Arrays.asList("1", "3", "4"), coordinator.sent);
+    }
+
+    /**
+     * Test that a caller is rejected once the queue is full and cannot be flushed, and accepted once it can
+     */
+    public void testPendingUpdatesAreBounded() throws Exception {
+        coordinator.setMaxAttempts(10);
+        coordinator.setMaxPendingUpdates(3);
+        coordinator.failing = true;
+        coordinator.addDocuments(server, documents("1", "2"));
+        coordinator.addDocuments(server, documents("3"));
+        try {
+            coordinator.addDocuments(server, documents("4"));
+            fail("Expected the update to be rejected");
+        } catch (ServiceException e) {
+            // expected
+        }
+        assertTrue(coordinator.sent.isEmpty());
+
+        // The caller flushes the full queue itself before adding more
+        coordinator.failing = false;
+        coordinator.addDocuments(server, documents("4"));
+        assertEquals(Arrays.asList("1", "2", "3"), coordinator.sent);
+        coordinator.flush();
+        assertEquals(Arrays.asList("1", "2", "3", "4"), coordinator.sent);
+    }
+
+    /**
+     * Test that commits use the configured waitFlush and waitSearcher values
+     */
+    public void testCommitUsesConfiguredWaitFlags() throws Exception {
+        SolrCommitCoordinatorImpl committing = new SolrCommitCoordinatorImpl();
+        committing.setWaitFlush(false);
+        committing.setWaitSearcher(false);
+        EasyMock.expect(server.commit(false, false, true)).andReturn(null);
+        EasyMock.expect(server.commit(false, false, false)).andReturn(null);
+        EasyMock.replay(server);
+
+        committing.setCommitPolicy(SolrCommitPolicy.SOFT);
+        committing.commit(server);
+        committing.setCommitPolicy(SolrCommitPolicy.HARD);
+        committing.commit(server);
+        EasyMock.verify(server);
+    }
+
+    protected List<SolrInputDocument> documents(String... ids) {
+        List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+        for (String id : ids) {
+            SolrInputDocument document = new SolrInputDocument();
+            document.addField("id", id);
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    /**
+     * Records what would have been sent to Solr instead of sending it, failing on request
+     */
+    protected static class RecordingCoordinator extends SolrCommitCoordinatorImpl {
+
+        protected final List<String> sent = new ArrayList<String>();
+        protected boolean failing;
+        protected String poison;
+        protected int commits;
+
+        @Override
+        protected void send(SolrClient server, List<Object> updates) throws Exception {
+            List<String> batch = new ArrayList<String>();
+            for (Object update : updates) {
+                if (update instanceof DeleteQuery) {
+                    batch.add("delete " + ((DeleteQuery) update).query);
+                } else {
+                    String id = (String) ((SolrInputDocument) update).getFieldValue("id");
+                    if (id.equals(poison)) {
+                        throw new IllegalArgumentException("Bad document " + id);
+                    }
+                    batch.add(id);
+                }
+            }
+            if (failing) {
+                throw new IllegalStateException("Solr is unavailable");
+            }
+            sent.addAll(batch);
+        }
+
+        @Override
+        protected void commit(SolrClient server) throws Exception {
+            if (failing) {
+                throw new IllegalStateException("Solr is unavailable");
+            }
+            commits++;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.locale.domain.LocaleImpl;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.domain.Indexable;
+import org.broadleafcommerce.core.search.domain.FieldEntity;
+import org.easymock.IAnswer;
+import org.easymock.classextension.EasyMock;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class SolrIndexPipelineTest extends TestCase {
+
+    protected static final int INDEXABLE_COUNT = 53;
+
+    @Override
+    protected void tearDown() throws Exception {
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+    }
+
+    /**
+     * Test that the pipelined reindex sends the same documents as the page by page reindex
+     */
+    public void testPipelineBuildsTheSameDocumentsAsSerialReindex() throws Exception {
+        Map<String, String> serial = reindex(false);
+        Map<String, String> pipelined = reindex(true);
+
+        // Every other indexable is left out when its document is built
+        assertEquals((INDEXABLE_COUNT + 1) / 2, serial.size());
+        assertEquals(serial, pipelined);
+    }
+
+    /**
+     * Runs a full reindex and returns the documents sent to Solr, as their summary by id
+     */
+    protected Map<String, String> reindex(boolean pipelined) throws Exception {
+        Locale locale = new LocaleImpl();
+        locale.setLocaleCode("en_US");
+        BroadleafRequestContext context = new BroadleafRequestContext();
+        context.setLocale(locale);
+        BroadleafRequestContext.setBroadleafRequestContext(context);
+
+        final List<SolrInputDocument> sent = Collections.synchronizedList(new ArrayList<SolrInputDocument>());
+        final SolrClient server = EasyMock.createMock(SolrClient.class);
+        EasyMock.expect(server.add(EasyMock.<Collection<SolrInputDocument>>anyObject())).andAnswer(new IAnswer<UpdateResponse>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public UpdateResponse answer() throws Throwable {
+                sent.addAll((Collection<SolrInputDocument>) EasyMock.getCurrentArguments()[0]);
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.replay(server);
+
+        DocumentBuildingIndexService indexService = new DocumentBuildingIndexService();
+        indexService.transactionManager = new NoOpTransactionManager();
+        indexService.pageSize = 4;
+        indexService.pipelineEnabled = pipelined;
+        indexService.pipelineWorkers = 3;
+        indexService.pipelineQueueCapacity = 2;
+        indexService.pipelineBatchSize = 5;
+        indexService.executeSolrIndexOperation(new TestReindexOperation(indexService, server));
+
+        Map<String, String> documents = new TreeMap<String, String>();
+        for (SolrInputDocument document : sent) {
+            String id = (String) document.getFieldValue("id");
+            assertNull("Document " + id + " was sent twice", documents.put(id, document.toString()));
+        }
+        return documents;
+    }
+
+    /**
+     * Builds a document from the indexable id and the state that the real implementation depends on, and leaves out
+     * the indexables with an even id
+     */
+    protected static class DocumentBuildingIndexService extends SolrIndexServiceImpl {
+
+        @Override
+        public Collection<SolrInputDocument> buildIncrementalIndex(List<? extends Indexable> indexables, SolrClient solrServer)
+                throws ServiceException {
+            List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+            for (Indexable indexable : indexables) {
+                if (indexable.getId() % 2 == 0) {
+                    continue;
+                }
+                SolrInputDocument document = new SolrInputDocument();
+                document.addField("id", String.valueOf(indexable.getId()));
+                document.addField("locale", BroadleafRequestContext.getBroadleafRequestContext().getLocale().getLocaleCode());
+                document.addField("cached", SolrIndexCachedOperation.getCache() != null);
+                documents.add(document);
+            }
+            if (solrServer != null && !documents.isEmpty()) {
+                try {
+                    solrServer.add(documents);
+                } catch (Exception e) {
+                    throw new ServiceException("Could not add documents", e);
+                }
+            }
+            return documents;
+        }
+    }
+
+    /**
+     * Reads the indexables 1 to {@link #INDEXABLE_COUNT} by keyset pagination
+     */
+    protected static class TestReindexOperation extends GlobalSolrFullReIndexOperation {
+
+        protected final SolrClient server;
+
+        public TestReindexOperation(SolrIndexService indexService, SolrClient server) {
+            super(indexService, null, null, false);
+            this.server = server;
+        }
+
+        @Override
+        public SolrClient getSolrServerForIndexing() {
+            return server;
+        }
+
+        @Override
+        public Long countIndexables() {
+            return (long) INDEXABLE_COUNT;
+        }
+
+        @Override
+        public List<? extends Indexable> readIndexables(int pageSize, Long lastId) {
+            List<Indexable> indexables = new ArrayList<Indexable>();
+            for (long id = lastId == null ? 1 : lastId + 1; id <= INDEXABLE_COUNT && indexables.size() < pageSize; id++) {
+                indexables.add(new TestIndexable(id));
+            }
+            return indexables;
+        }
+
+        @Override
+        public void buildPage(List<? extends Indexable> indexables) throws ServiceException {
+            indexService.buildIncrementalIndex(indexables, getSolrServerForIndexing());
+        }
+    }
+
+    protected static class TestIndexable implements Indexable {
+
+        protected final Long id;
+
+        public TestIndexable(Long id) {
+            this.id = id;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public FieldEntity getFieldEntityType() {
+            return FieldEntity.PRODUCT;
+        }
+    }
+
+    /**
+     * Lets the index service and the pipeline open their transactions without a database
+     */
+    protected static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.util.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.broadleafcommerce.core.order.service.type.OrderStatus;
+import org.broadleafcommerce.core.util.dao.ResourcePurgeDaoImpl;
+import org.broadleafcommerce.core.util.service.type.PurgeCartVariableNames;
+import org.broadleafcommerce.core.util.service.type.PurgeCustomerVariableNames;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+public class ResourcePurgeServiceImplTest extends TestCase {
+
+    protected StubResourcePurgeDao dao;
+    protected ResourcePurgeServiceImpl service;
+
+    @Override
+    protected void setUp() throws Exception {
+        dao = new StubResourcePurgeDao();
+        for (long id = 1; id <= 23; id++) {
+            dao.carts.add(id);
+            dao.customers.add(id);
+        }
+        service = new ResourcePurgeServiceImpl();
+        service.resourcePurgeDao = dao;
+        service.transactionManager = new StubTransactionManager();
+        service.bulkCartPurgeEnabled = true;
+        service.bulkCartPurgeChunkSize = 5;
+        service.bulkCartPurgeThreads = 3;
+        service.bulkCustomerPurgeEnabled = true;
+        service.bulkCustomerPurgeChunkSize = 4;
+        service.bulkCustomerPurgeThreads = 2;
+    }
+
+    public void testBulkPurgeRemovesCandidatesInChunks() throws Exception {
+        service.purgeCarts(buildConfig(100));
+
+        assertTrue(dao.carts.isEmpty());
+        assertEquals(5, dao.deleteCalls);
+        assertEquals(new Long(20L), dao.lastIds.get(dao.lastIds.size() - 1));
+    }
+
+    public void testBulkPurgeStopsAtBatchSize() throws Exception {
+        service.purgeCarts(buildConfig(7));
+
+        assertEquals(16, dao.carts.size());
+        assertEquals(new Long(8L), dao.carts.first());
+    }
+
+    public void testFailedCartsAreRetriedIndividuallyAndCached() throws Exception {
+        dao.failingCartId = 4L;
+        service.purgeCarts(buildConfig(100));
+
+        assertEquals(1, dao.carts.size());
+        assertTrue(dao.carts.contains(4L));
+
+        dao.failingCartId = null;
+        service.purgeCarts(buildConfig(100));
+
+        assertTrue(dao.carts.contains(4L));
+        assertTrue(dao.excludedIds.contains(4L));
+    }
+
+    public void testBulkCustomerPurgeRetriesFailedChunkIndividually() throws Exception {
+        dao.failingCustomerId = 10L;
+        service.purgeCustomers(buildCustomerConfig(100));
+
+        assertEquals(1, dao.customers.size());
+        assertTrue(dao.customers.contains(10L));
+        assertEquals(new Long(20L), dao.customerLastIds.get(dao.customerLastIds.size() - 1));
+
+        dao.failingCustomerId = null;
+        service.purgeCustomers(buildCustomerConfig(100));
+
+        assertTrue(dao.customers.contains(10L));
+        assertTrue(dao.excludedIds.contains(10L));
+    }
+
+    public void testBulkCustomerPurgeStopsAtBatchSize() throws Exception {
+        service.purgeCustomers(buildCustomerConfig(6));
+
+        assertEquals(17, dao.customers.size());
+        assertEquals(new Long(7L), dao.customers.first());
+    }
+
+    protected Map<String, String> buildCustomerConfig(int batchSize) {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put(PurgeCustomerVariableNames.BATCH_SIZE.toString(), String.valueOf(batchSize));
+        return config;
+    }
+
+    protected Map<String, String> buildConfig(int batchSize) {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put(PurgeCartVariableNames.BATCH_SIZE.toString(), String.valueOf(batchSize));
+        return config;
+    }
+
+    protected static class StubResourcePurgeDao extends ResourcePurgeDaoImpl {
+
+        protected TreeSet<Long> carts = new TreeSet<Long>();
+        protected TreeSet<Long> customers = new TreeSet<Long>();
+        protected List<Long> lastIds = new ArrayList<Long>();
+        protected List<Long> customerLastIds = new ArrayList<Long>();
+        protected List<Long> excludedIds;
+        protected Long failingCartId;
+        protected Long failingCustomerId;
+        protected int deleteCalls;
+
+        @Override
+        public synchronized List<Long> findCartIds(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview,
+                Long lastId, int length, List<Long> excludedIds) {
+            this.excludedIds = excludedIds;
+            lastIds.add(lastId);
+            return findPage(carts, lastId, length, excludedIds);
+        }
+
+        @Override
+        public synchronized int deleteCarts(List<Long> cartIds) {
+            deleteCalls++;
+            if (failingCartId != null && cartIds.contains(failingCartId)) {
+                throw new RuntimeException("Referenced by a custom table");
+            }
+            int response = 0;
+            for (Long id : cartIds) {
+                if (carts.remove(id)) {
+                    response++;
+                }
+            }
+            return response;
+        }
+
+        @Override
+        public synchronized List<Long> findCustomerIds(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated,
+                Boolean isPreview, Long lastId, int length, List<Long> excludedIds) {
+            this.excludedIds = excludedIds;
+            customerLastIds.add(lastId);
+            return findPage(customers, lastId, length, excludedIds);
+        }
+
+        @Override
+        public synchronized int deleteCustomers(List<Long> customerIds) {
+            if (failingCustomerId != null && customerIds.contains(failingCustomerId)) {
+                throw new RuntimeException("Referenced by an order");
+            }
+            int response = 0;
+            for (Long id : customerIds) {
+                if (customers.remove(id)) {
+                    response++;
+                }
+            }
+            return response;
+        }
+
+        protected List<Long> findPage(TreeSet<Long> ids, Long lastId, int length, List<Long> excludedIds) {
+            List<Long> response = new ArrayList<Long>();
+            for (Long id : lastId == null ? ids : ids.tailSet(lastId, false)) {
+                if (response.size() == length) {
+                    break;
+                }
+                if (!excludedIds.contains(id)) {
+                    response.add(id);
+                }
+            }
+            return response;
+        }
+    }
+
+    protected static class StubTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
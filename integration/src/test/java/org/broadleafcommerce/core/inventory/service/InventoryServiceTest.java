@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * BroadleafCommerce Integration
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.inventory.dao.InventoryDao;
+import org.broadleafcommerce.core.inventory.service.type.InventoryType;
+import org.broadleafcommerce.test.TestNGSiteIntegrationSetup;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+public class InventoryServiceTest extends TestNGSiteIntegrationSetup {
+
+    private static final Log LOG = LogFactory.getLog(InventoryServiceTest.class);
+
+    private static final int QUANTITY_AVAILABLE = 50;
+
+    private static final int THREADS = 8;
+
+    private static final int ATTEMPTS_PER_THREAD = 10;
+
+    @Resource
+    private CatalogService catalogService;
+
+    @Resource(name = "blInventoryService")
+    private InventoryService inventoryService;
+
+    @Resource(name = "blInventoryDao")
+    private InventoryDao inventoryDao;
+
+    /**
+     * Checks that concurrent decrements of a single sku never sell more than the quantity available. The elapsed time
+     * is logged for reference only; this test does not compare it with the previous read and merge path, so it does
+     * not demonstrate a throughput change.
+     */
+    @Test(groups = {"testConcurrentInventoryDecrement"})
+    public void testConcurrentDecrementDoesNotOversell() throws Exception {
+        final Long skuId = createSku(QUANTITY_AVAILABLE).getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        int decremented = 0;
+                        for (int j = 0; j < ATTEMPTS_PER_THREAD; j++) {
+                            Sku sku = catalogService.findSkuById(skuId);
+                            try {
+                                inventoryService.decrementInventory(sku, 1);
+                                decremented++;
+                            } catch (InventoryUnavailableException e) {
+                                assert e.getSkuId().equals(skuId);
+                                assert e.getQuantityAvailable() == 0;
+                            }
+                        }
+                        return decremented;
+                    }
+                }));
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int decremented = 0;
+        for (Future<Integer> result : results) {
+            decremented += result.get();
+        }
+        LOG.info(String.format("%d inventory decrements attempted by %d threads in %d ms", THREADS * ATTEMPTS_PER_THREAD,
+                THREADS, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+
+        assert decremented == QUANTITY_AVAILABLE;
+        assert inventoryDao.readQuantityAvailable(skuId) == 0;
+        assert catalogService.findSkuById(skuId).getQuantityAvailable() == 0;
+    }
+
+    @Test(groups = {"testInventoryDecrementFailures"})
+    public void testDecrementReportsEveryUnavailableSku() throws Exception {
+        Sku available = createSku(5);
+        Sku unavailable1 = createSku(1);
+        Sku unavailable2 = createSku(0);
+
+        Map<Sku, Integer> quantities = new HashMap<Sku, Integer>();
+        quantities.put(available, 2);
+        quantities.put(unavailable1, 2);
+        quantities.put(unavailable2, 2);
+        try {
+            inventoryService.decrementInventory(quantities);
+            assert false;
+        } catch (InventoryUnavailableException e) {
+            assert e.getUnavailableSkuIds().size() == 2;
+            assert e.getUnavailableSkuIds().contains(unavailable1.getId());
+            assert e.getUnavailableSkuIds().contains(unavailable2.getId());
+        }
+
+        // the whole decrement is rolled back
+        assert inventoryDao.readQuantityAvailable(available.getId()) == 5;
+        assert inventoryDao.readQuantityAvailable(unavailable1.getId()) == 1;
+    }
+
+    protected Sku createSku(int quantityAvailable) {
+        Sku sku = new SkuImpl();
+        sku.setName("Inventory Test Sku");
+        sku.setRetailPrice(new Money(10D));
+        Calendar activeStartCal = Calendar.getInstance();
+        activeStartCal.add(Calendar.DAY_OF_YEAR, -2);
+        sku.setActiveStartDate(activeStartCal.getTime());
+        sku.setInventoryType(InventoryType.CHECK_QUANTITY);
+        sku.setQuantityAvailable(quantityAvailable);
+        return catalogService.saveSku(sku);
+    }
+
+}
@@ -0,0 +1,407 @@
+/*
+ * #%L
+ * BroadleafCommerce Integration
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.util.dao;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.payment.PaymentTransactionType;
+import org.broadleafcommerce.common.payment.PaymentType;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductBundle;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.offer.domain.CandidateFulfillmentGroupOfferImpl;
+import org.broadleafcommerce.core.offer.domain.CandidateItemOfferImpl;
+import org.broadleafcommerce.core.offer.domain.CandidateOrderOfferImpl;
+import org.broadleafcommerce.core.offer.domain.FulfillmentGroupAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferCode;
+import org.broadleafcommerce.core.offer.domain.OfferCodeImpl;
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.domain.OfferInfo;
+import org.broadleafcommerce.core.offer.domain.OfferInfoImpl;
+import org.broadleafcommerce.core.offer.domain.OrderAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.OrderItemAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.OrderItemPriceDetailAdjustmentImpl;
+import org.broadleafcommerce.core.offer.domain.ProratedOrderItemAdjustmentImpl;
+import org.broadleafcommerce.core.offer.service.type.OfferDiscountType;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.BundleOrderItem;
+import org.broadleafcommerce.core.order.domain.BundleOrderItemFeePriceImpl;
+import org.broadleafcommerce.core.order.domain.BundleOrderItemImpl;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItemFeePriceImpl;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItemImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupFee;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupFeeImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItemImpl;
+import org.broadleafcommerce.core.order.domain.GiftWrapOrderItem;
+import org.broadleafcommerce.core.order.domain.GiftWrapOrderItemImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderAttributeImpl;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.broadleafcommerce.core.order.domain.OrderItemAttributeImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetail;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetailImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemQualifierImpl;
+import org.broadleafcommerce.core.order.domain.OrderMultishipOptionImpl;
+import org.broadleafcommerce.core.order.domain.PersonalMessage;
+import org.broadleafcommerce.core.order.domain.PersonalMessageImpl;
+import org.broadleafcommerce.core.order.domain.TaxDetail;
+import org.broadleafcommerce.core.order.domain.TaxDetailImpl;
+import org.broadleafcommerce.core.order.domain.TaxType;
+import org.broadleafcommerce.core.order.service.OrderBaseTest;
+import org.broadleafcommerce.core.order.service.type.OrderItemType;
+import org.broadleafcommerce.core.payment.domain.OrderPayment;
+import org.broadleafcommerce.core.payment.domain.OrderPaymentImpl;
+import org.broadleafcommerce.core.payment.domain.PaymentTransaction;
+import org.broadleafcommerce.core.payment.domain.PaymentTransactionImpl;
+import org.broadleafcommerce.profile.core.domain.Address;
+import org.broadleafcommerce.profile.core.domain.AddressImpl;
+import org.broadleafcommerce.profile.core.domain.Customer;
+import org.broadleafcommerce.profile.core.domain.CustomerAddressImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerAttributeImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerPaymentImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerPhoneImpl;
+import org.broadleafcommerce.profile.core.domain.CustomerRoleImpl;
+import org.broadleafcommerce.profile.core.domain.PhoneImpl;
+import org.broadleafcommerce.profile.core.domain.RoleImpl;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Runs the bulk purge statements of {@link ResourcePurgeDao} against the test database, which enforces the foreign keys
+ * of the mappings, so a table removed out of order or a row left behind fails the delete.
+ */
+public class ResourcePurgeDaoTest extends OrderBaseTest {
+
+    @Resource(name = "blResourcePurgeDao")
+    protected ResourcePurgeDao resourcePurgeDao;
+
+    @PersistenceContext(unitName = "blPU")
+    protected EntityManager em;
+
+    @Test(groups = { "purgeFullyPopulatedCart" })
+    @Transactional
+    public void testDeleteFullyPopulatedCart() {
+        Customer customer = customerService.saveCustomer(createNamedCustomer());
+        Order cart = orderService.createNewCartForCustomer(customer);
+        Order survivor = orderService.createNamedOrderForCustomer("Purge Survivor", customer);
+        Product product = addTestProduct("Purge Crate", "Purge Crates");
+        ProductBundle productBundle = addProductBundle();
+        Offer offer = createOffer();
+        List<Object> removed = new ArrayList<>();
+
+        // items: a discrete item with a child item, a gift wrap wrapping it and a bundle of discrete items
+        DiscreteOrderItem item = buildDiscreteOrderItem(new DiscreteOrderItemImpl(), cart, product.getDefaultSku(), removed);
+        DiscreteOrderItem childItem = buildDiscreteOrderItem(new DiscreteOrderItemImpl(), cart, product.getDefaultSku(), removed);
+        childItem.setParentOrderItem(item);
+        item.getChildOrderItems().add(childItem);
+        GiftWrapOrderItem giftWrap = (GiftWrapOrderItem) buildDiscreteOrderItem(new GiftWrapOrderItemImpl(), cart,
+                product.getDefaultSku(), removed);
+        giftWrap.getWrappedItems().add(item);
+        item.setGiftWrapOrderItem(giftWrap);
+        PersonalMessage itemMessage = persist(new PersonalMessageImpl(), removed);
+        itemMessage.setMessage("Happy purging");
+        item.setPersonalMessage(itemMessage);
+        item.getCartMessages().add("purge me");
+        item.getAdditionalAttributes().put("color", "red");
+
+        BundleOrderItem bundle = new BundleOrderItemImpl();
+        bundle.setOrder(cart);
+        bundle.setName("Purge Bundle");
+        bundle.setQuantity(1);
+        bundle.setOrderItemType(OrderItemType.BUNDLE);
+        bundle.setSku(productBundle.getDefaultSku());
+        bundle.setProductBundle(productBundle);
+        persist(bundle, removed);
+        DiscreteOrderItem bundledItem = new DiscreteOrderItemImpl();
+        bundledItem.setBundleOrderItem(bundle);
+        bundle.getDiscreteOrderItems().add(bundledItem);
+        buildDiscreteOrderItem(bundledItem, null, productBundle.getSkuBundleItems().get(0).getSku(), removed);
+        BundleOrderItemFeePriceImpl bundleFee = new BundleOrderItemFeePriceImpl();
+        bundleFee.setBundleOrderItem(bundle);
+        bundleFee.setName("Bundle Fee");
+        bundleFee.setAmount(new Money(1));
+        persist(bundleFee, removed);
+
+        for (OrderItem orderItem : new OrderItem[] { item, childItem, giftWrap, bundle, bundledItem }) {
+            buildOrderItemChildren(orderItem, offer, removed);
+        }
+
+        // fulfillment: a group with an item and a fee, each of them taxed, plus adjustments and candidate offers
+        FulfillmentGroup fulfillmentGroup = new FulfillmentGroupImpl();
+        fulfillmentGroup.setOrder(cart);
+        PersonalMessage groupMessage = persist(new PersonalMessageImpl(), removed);
+        fulfillmentGroup.setPersonalMessage(groupMessage);
+        fulfillmentGroup.getTaxes().add(buildTaxDetail(removed));
+        persist(fulfillmentGroup, removed);
+        cart.getFulfillmentGroups().add(fulfillmentGroup);
+        for (OrderItem orderItem : new OrderItem[] { item, giftWrap, bundle }) {
+            FulfillmentGroupItem fulfillmentGroupItem = new FulfillmentGroupItemImpl();
+            fulfillmentGroupItem.setFulfillmentGroup(fulfillmentGroup);
+            fulfillmentGroupItem.setOrderItem(orderItem);
+            fulfillmentGroupItem.setQuantity(orderItem.getQuantity());
+            fulfillmentGroupItem.getTaxes().add(buildTaxDetail(removed));
+            persist(fulfillmentGroupItem, removed);
+            fulfillmentGroup.getFulfillmentGroupItems().add(fulfillmentGroupItem);
+        }
+        FulfillmentGroupFee fulfillmentGroupFee = new FulfillmentGroupFeeImpl();
+        fulfillmentGroupFee.setFulfillmentGroup(fulfillmentGroup);
+        fulfillmentGroupFee.setName("Handling");
+        fulfillmentGroupFee.setAmount(new Money(2));
+        fulfillmentGroupFee.getTaxes().add(buildTaxDetail(removed));
+        persist(fulfillmentGroupFee, removed);
+        FulfillmentGroupAdjustmentImpl fulfillmentGroupAdjustment = new FulfillmentGroupAdjustmentImpl();
+        fulfillmentGroupAdjustment.init(fulfillmentGroup, offer, "purge");
+        fulfillmentGroupAdjustment.setValue(new Money(1));
+        persist(fulfillmentGroupAdjustment, removed);
+        CandidateFulfillmentGroupOfferImpl candidateFulfillmentGroupOffer = new CandidateFulfillmentGroupOfferImpl();
+        candidateFulfillmentGroupOffer.setFulfillmentGroup(fulfillmentGroup);
+        candidateFulfillmentGroupOffer.setOffer(offer);
+        persist(candidateFulfillmentGroupOffer, removed);
+
+        OrderMultishipOptionImpl multishipOption = new OrderMultishipOptionImpl();
+        multishipOption.setOrder(cart);
+        multishipOption.setOrderItem(item);
+        persist(multishipOption, removed);
+
+        // order level: adjustments, candidate offers, attributes, offer codes and additional offer info
+        OrderAdjustmentImpl orderAdjustment = new OrderAdjustmentImpl();
+        orderAdjustment.init(cart, offer, "purge");
+        orderAdjustment.setValue(new Money(1));
+        persist(orderAdjustment, removed);
+        CandidateOrderOfferImpl candidateOrderOffer = new CandidateOrderOfferImpl();
+        candidateOrderOffer.setOrder(cart);
+        candidateOrderOffer.setOffer(offer);
+        persist(candidateOrderOffer, removed);
+        OrderAttributeImpl orderAttribute = new OrderAttributeImpl();
+        orderAttribute.setOrder(cart);
+        orderAttribute.setName("channel");
+        orderAttribute.setValue("web");
+        persist(orderAttribute, removed);
+        OfferCode offerCode = new OfferCodeImpl();
+        offerCode.setOffer(offer);
+        offerCode.setOfferCode("PURGE" + cart.getId());
+        em.persist(offerCode);
+        cart.addOfferCode(offerCode);
+        OfferInfo offerInfo = new OfferInfoImpl();
+        offerInfo.getFieldValues().put("reason", "purge");
+        persist(offerInfo, removed);
+        cart.getAdditionalOfferInformation().put(offer, offerInfo);
+
+        // payments are archived and detached rather than removed
+        OrderPayment payment = new OrderPaymentImpl();
+        payment.setOrder(cart);
+        payment.setType(PaymentType.CREDIT_CARD);
+        payment.setAmount(new Money(10));
+        em.persist(payment);
+        PaymentTransaction transaction = new PaymentTransactionImpl();
+        transaction.setOrderPayment(payment);
+        transaction.setType(PaymentTransactionType.AUTHORIZE);
+        transaction.setAmount(new Money(10));
+        transaction.getAdditionalFields().put("authCode", "1234");
+        em.persist(transaction);
+        payment.getTransactions().add(transaction);
+        cart.getPayments().add(payment);
+
+        em.merge(cart);
+        em.flush();
+        em.clear();
+        removed.add(em.find(OrderImpl.class, cart.getId()));
+
+        assert resourcePurgeDao.deleteCarts(Collections.singletonList(cart.getId())) == 1;
+        em.flush();
+        em.clear();
+
+        for (Object entity : removed) {
+            Object id = em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+            assert em.find(entity.getClass(), id) == null : entity.getClass().getSimpleName() + " " + id + " was not removed";
+        }
+        assert "Y".equals(String.valueOf(readSingleValue("SELECT ARCHIVED FROM BLC_ORDER_PAYMENT WHERE ORDER_PAYMENT_ID = ?", payment.getId())));
+        assert readSingleValue("SELECT ORDER_ID FROM BLC_ORDER_PAYMENT WHERE ORDER_PAYMENT_ID = ?", payment.getId()) == null;
+        assert "Y".equals(String.valueOf(readSingleValue("SELECT ARCHIVED FROM BLC_ORDER_PAYMENT_TRANSACTION WHERE PAYMENT_TRANSACTION_ID = ?",
+                transaction.getId())));
+        assert em.find(OrderImpl.class, survivor.getId()) != null;
+        assert em.find(OfferImpl.class, offer.getId()) != null;
+        assert em.find(OfferCodeImpl.class, offerCode.getId()) != null;
+    }
+
+    @Test(groups = { "purgeFullyPopulatedCustomer" })
+    @Transactional
+    public void testDeleteFullyPopulatedCustomer() {
+        Customer customer = customerService.saveCustomer(createNamedCustomer());
+        List<Object> removed = new ArrayList<>();
+
+        CustomerAttributeImpl attribute = new CustomerAttributeImpl();
+        attribute.setCustomer(customer);
+        attribute.setName("source");
+        attribute.setValue("purge");
+        persist(attribute, removed);
+
+        Address address = new AddressImpl();
+        address.setAddressLine1("1 Purge Lane");
+        address.setCity("Dallas");
+        em.persist(address);
+        CustomerAddressImpl customerAddress = new CustomerAddressImpl();
+        customerAddress.setCustomer(customer);
+        customerAddress.setAddressName("home");
+        customerAddress.setAddress(address);
+        persist(customerAddress, removed);
+
+        PhoneImpl phone = new PhoneImpl();
+        phone.setPhoneNumber("555-0100");
+        persist(phone, removed);
+        CustomerPhoneImpl customerPhone = new CustomerPhoneImpl();
+        customerPhone.setCustomer(customer);
+        customerPhone.setPhoneName("home");
+        customerPhone.setPhone(phone);
+        persist(customerPhone, removed);
+
+        CustomerPaymentImpl customerPayment = new CustomerPaymentImpl();
+        customerPayment.setCustomer(customer);
+        customerPayment.setPaymentToken("purge-token-" + customer.getId());
+        customerPayment.setBillingAddress(address);
+        customerPayment.getAdditionalFields().put("last4", "1111");
+        persist(customerPayment, removed);
+
+        RoleImpl role = new RoleImpl();
+        role.setRoleName("ROLE_PURGE");
+        em.persist(role);
+        CustomerRoleImpl customerRole = new CustomerRoleImpl();
+        customerRole.setCustomer(customer);
+        customerRole.setRole(role);
+        persist(customerRole, removed);
+
+        em.flush();
+        em.clear();
+        removed.add(em.find(CustomerImpl.class, customer.getId()));
+
+        assert resourcePurgeDao.deleteCustomers(Collections.singletonList(customer.getId())) == 1;
+        em.flush();
+        em.clear();
+
+        for (Object entity : removed) {
+            Object id = em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+            assert em.find(entity.getClass(), id) == null : entity.getClass().getSimpleName() + " " + id + " was not removed";
+        }
+        // shared entities are not removed with the customer
+        assert em.find(AddressImpl.class, address.getId()) != null;
+        assert em.find(RoleImpl.class, role.getId()) != null;
+    }
+
+    protected DiscreteOrderItem buildDiscreteOrderItem(DiscreteOrderItem item, Order order, Sku sku, List<Object> removed) {
+        item.setOrder(order);
+        item.setName(sku.getName());
+        item.setQuantity(1);
+        item.setOrderItemType(item instanceof GiftWrapOrderItem ? OrderItemType.GIFTWRAP : OrderItemType.DISCRETE);
+        item.setSku(sku);
+        item.setRetailPrice(new Money(10));
+        persist(item, removed);
+        if (order != null) {
+            order.getOrderItems().add(item);
+        }
+        DiscreteOrderItemFeePriceImpl fee = new DiscreteOrderItemFeePriceImpl();
+        fee.setDiscreteOrderItem(item);
+        fee.setName("Item Fee");
+        fee.setAmount(new Money(1));
+        persist(fee, removed);
+        return item;
+    }
+
+    /**
+     * Adds a price detail with an adjustment and every other kind of offer and attribute row that hangs off an item
+     */
+    protected void buildOrderItemChildren(OrderItem orderItem, Offer offer, List<Object> removed) {
+        OrderItemPriceDetail priceDetail = new OrderItemPriceDetailImpl();
+        priceDetail.setOrderItem(orderItem);
+        priceDetail.setQuantity(orderItem.getQuantity());
+        persist(priceDetail, removed);
+        OrderItemPriceDetailAdjustmentImpl priceDetailAdjustment = new OrderItemPriceDetailAdjustmentImpl();
+        priceDetailAdjustment.init(priceDetail, offer, "purge");
+        priceDetailAdjustment.setValue(new Money(1));
+        persist(priceDetailAdjustment, removed);
+
+        OrderItemAdjustmentImpl itemAdjustment = new OrderItemAdjustmentImpl();
+        itemAdjustment.init(orderItem, offer, "purge");
+        itemAdjustment.setValue(new Money(1));
+        persist(itemAdjustment, removed);
+        ProratedOrderItemAdjustmentImpl proratedAdjustment = new ProratedOrderItemAdjustmentImpl();
+        proratedAdjustment.init(orderItem, offer, "purge");
+        proratedAdjustment.setValue(new Money(1));
+        proratedAdjustment.setQuantity(1);
+        persist(proratedAdjustment, removed);
+        OrderItemQualifierImpl qualifier = new OrderItemQualifierImpl();
+        qualifier.setOrderItem(orderItem);
+        qualifier.setOffer(offer);
+        qualifier.setQuantity(1L);
+        persist(qualifier, removed);
+        CandidateItemOfferImpl candidateItemOffer = new CandidateItemOfferImpl();
+        candidateItemOffer.setOrderItem(orderItem);
+        candidateItemOffer.setOffer(offer);
+        persist(candidateItemOffer, removed);
+        OrderItemAttributeImpl attribute = new OrderItemAttributeImpl();
+        attribute.setOrderItem(orderItem);
+        attribute.setName("engraving");
+        attribute.setValue("purge");
+        persist(attribute, removed);
+    }
+
+    protected TaxDetail buildTaxDetail(List<Object> removed) {
+        TaxDetail taxDetail = new TaxDetailImpl();
+        taxDetail.setType(TaxType.STATE);
+        taxDetail.setAmount(new Money(1));
+        taxDetail.setRate(new BigDecimal("0.05"));
+        return persist(taxDetail, removed);
+    }
+
+    protected Offer createOffer() {
+        Offer offer = new OfferImpl();
+        offer.setName("Purge Offer");
+        offer.setType(OfferType.ORDER_ITEM);
+        offer.setDiscountType(OfferDiscountType.AMOUNT_OFF);
+        offer.setValue(BigDecimal.ONE);
+        offer.setStartDate(new Date());
+        em.persist(offer);
+        return offer;
+    }
+
+    protected <T> T persist(T entity, List<Object> removed) {
+        em.persist(entity);
+        removed.add(entity);
+        return entity;
+    }
+
+    protected Object readSingleValue(String sql, Long id) {
+        return em.createNativeQuery(sql).setParameter(1, id).getSingleResult();
+    }
+
+}